@@ -1,6 +1,7 @@
 
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.DayOfWeek;
 import java.util.*;
 
@@ -433,13 +434,20 @@ public abstract class ASTNode {
 
 
     public static final class InNode extends BinaryOperatorNode {
+        private final ConstantSet constantSet;
+
         public InNode(ASTNode left, ASTNode right) {
             super(left, right);
+            this.constantSet = right instanceof ListNode ? ((ListNode) right).getConstantSet() : null;
         }
 
         @Override
         public Object evaluate(TransactionContext context) throws RuleEvaluationException {
             Object leftValue = left.evaluate(context);
+            if (constantSet != null) {
+                return constantSet.contains(leftValue);
+            }
+
             Object rightValue = right.evaluate(context);
 
             if (rightValue instanceof Collection) {
@@ -462,18 +470,28 @@ public abstract class ASTNode {
         public String toExpressionString() {
             return left.toExpressionString() + " IN " + right.toExpressionString();
         }
+
+        ConstantSet getConstantSet() {
+            return constantSet;
+        }
     }
 
 
     public static final class ListNode extends ASTNode {
         private final List<ASTNode> elements;
+        private final ConstantSet constantSet;
 
         public ListNode(List<ASTNode> elements) {
             this.elements = new ArrayList<>(Objects.requireNonNull(elements, "Elements cannot be null"));
+            this.constantSet = ConstantSet.of(this.elements);
         }
 
         @Override
         public Object evaluate(TransactionContext context) throws RuleEvaluationException {
+            if (constantSet != null) {
+                return constantSet.getValues();
+            }
+
             List<Object> values = new ArrayList<>();
             for (ASTNode element : elements) {
                 values.add(element.evaluate(context));
@@ -502,6 +520,127 @@ public abstract class ASTNode {
         public List<ASTNode> getElements() {
             return new ArrayList<>(elements);
         }
+
+        ConstantSet getConstantSet() {
+            return constantSet;
+        }
+    }
+
+
+    public static final class BetweenNode extends ASTNode {
+        private final ASTNode value;
+        private final ASTNode lower;
+        private final ASTNode upper;
+        private final BigDecimal lowerBound;
+        private final BigDecimal upperBound;
+        private final long lowerInteger;
+        private final long upperInteger;
+
+        public BetweenNode(ASTNode value, ASTNode lower, ASTNode upper) {
+            this.value = Objects.requireNonNull(value, "Value operand cannot be null");
+            this.lower = Objects.requireNonNull(lower, "Lower bound cannot be null");
+            this.upper = Objects.requireNonNull(upper, "Upper bound cannot be null");
+
+            if (lower instanceof NumberNode && upper instanceof NumberNode) {
+                this.lowerBound = ((NumberNode) lower).getValue();
+                this.upperBound = ((NumberNode) upper).getValue();
+                this.lowerInteger = clampToLong(lowerBound.setScale(0, RoundingMode.CEILING));
+                this.upperInteger = clampToLong(upperBound.setScale(0, RoundingMode.FLOOR));
+            } else {
+                this.lowerBound = null;
+                this.upperBound = null;
+                this.lowerInteger = Long.MIN_VALUE;
+                this.upperInteger = Long.MAX_VALUE;
+            }
+        }
+
+        @Override
+        public Object evaluate(TransactionContext context) throws RuleEvaluationException {
+            Object candidate = value.evaluate(context);
+            if (hasConstantBounds()) {
+                return isWithinBounds(candidate);
+            }
+            return isBetween(candidate, lower.evaluate(context), upper.evaluate(context));
+        }
+
+        public boolean hasConstantBounds() {
+            return lowerBound != null;
+        }
+
+        public boolean isWithinBounds(Object candidate) throws RuleEvaluationException {
+            if (candidate instanceof Integer || candidate instanceof Long
+                    || candidate instanceof Short || candidate instanceof Byte) {
+                long number = ((Number) candidate).longValue();
+                return number >= lowerInteger && number <= upperInteger;
+            }
+            if (candidate instanceof BigDecimal) {
+                BigDecimal number = (BigDecimal) candidate;
+                return number.compareTo(lowerBound) >= 0 && number.compareTo(upperBound) <= 0;
+            }
+            return isBetween(candidate, lowerBound, upperBound);
+        }
+
+        @SuppressWarnings("unchecked")
+        public static boolean isBetween(Object candidate, Object lowerValue, Object upperValue)
+                throws RuleEvaluationException {
+            BigDecimal number = ConstantSet.toDecimal(candidate);
+            BigDecimal low = ConstantSet.toDecimal(lowerValue);
+            BigDecimal high = ConstantSet.toDecimal(upperValue);
+            if (number != null && low != null && high != null) {
+                return number.compareTo(low) >= 0 && number.compareTo(high) <= 0;
+            }
+
+            if (candidate instanceof Comparable && lowerValue instanceof Comparable
+                    && upperValue instanceof Comparable) {
+                try {
+                    return ((Comparable<Object>) candidate).compareTo(lowerValue) >= 0
+                            && ((Comparable<Object>) candidate).compareTo(upperValue) <= 0;
+                } catch (ClassCastException e) {
+                    throw new RuleEvaluationException("Cannot compare " + candidate.getClass().getSimpleName() +
+                            " with " + lowerValue.getClass().getSimpleName(), e);
+                }
+            }
+
+            throw new RuleEvaluationException("Operands must be comparable for between operation");
+        }
+
+        private static long clampToLong(BigDecimal value) {
+            if (value.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) < 0) {
+                return Long.MIN_VALUE;
+            }
+            if (value.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) > 0) {
+                return Long.MAX_VALUE;
+            }
+            return value.longValueExact();
+        }
+
+        @Override
+        public int getConditionCount() {
+            return value.getConditionCount() + lower.getConditionCount() + upper.getConditionCount() + 1;
+        }
+
+        @Override
+        public NodeType getNodeType() {
+            return NodeType.BETWEEN;
+        }
+
+        @Override
+        public String toExpressionString() {
+            return value.toExpressionString() + " BETWEEN " + lower.toExpressionString() +
+                    " AND " + upper.toExpressionString();
+        }
+
+        public ASTNode getValue() {
+            return value;
+        }
+
+        public ASTNode getLower() {
+            return lower;
+        }
+
+        public ASTNode getUpper() {
+            return upper;
+        }
     }
 
 
@@ -0,0 +1,68 @@
+import java.util.*;
+
+
+public final class BatchEvaluationResult {
+
+    private final long ruleSetVersion;
+    private final int rowCount;
+    private final Map<String, BitSet> matches;
+    private final Map<String, BitSet> errors;
+
+    BatchEvaluationResult(long ruleSetVersion, int rowCount,
+                          LinkedHashMap<String, BitSet> matches, LinkedHashMap<String, BitSet> errors) {
+        this.ruleSetVersion = ruleSetVersion;
+        this.rowCount = rowCount;
+        this.matches = Collections.unmodifiableMap(matches);
+        this.errors = Collections.unmodifiableMap(errors);
+    }
+
+
+    public long getRuleSetVersion() {
+        return ruleSetVersion;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public List<String> getRuleIds() {
+        return new ArrayList<>(matches.keySet());
+    }
+
+
+    public BitSet getMatches(String ruleId) {
+        return (BitSet) lookup(matches, ruleId).clone();
+    }
+
+    public BitSet getErrors(String ruleId) {
+        return (BitSet) lookup(errors, ruleId).clone();
+    }
+
+    public int getMatchCount(String ruleId) {
+        return lookup(matches, ruleId).cardinality();
+    }
+
+    public int getErrorCount(String ruleId) {
+        return lookup(errors, ruleId).cardinality();
+    }
+
+    public boolean matches(String ruleId, int row) {
+        Objects.checkIndex(row, rowCount);
+        return lookup(matches, ruleId).get(row);
+    }
+
+    private static BitSet lookup(Map<String, BitSet> bitmaps, String ruleId) {
+        BitSet bitmap = bitmaps.get(Objects.requireNonNull(ruleId, "Rule ID cannot be null"));
+        if (bitmap == null) {
+            throw new IllegalArgumentException("Rule '" + ruleId + "' was not evaluated in this batch");
+        }
+        return bitmap;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("BatchEvaluationResult{version=%d, rows=%d, rules=%d}",
+                ruleSetVersion, rowCount, matches.size());
+    }
+}
@@ -0,0 +1,274 @@
+import java.util.*;
+
+public final class BinLookupIndex {
+
+    private static final int MERGE_SWEEP_RATIO = 4;
+    private static final BinLookupIndex EMPTY = new BinLookupIndex(new long[0], new long[0], new BinRange[0]);
+
+    private final long[] starts;
+    private final long[] ends;
+    private final BinRange[] payloads;
+
+    private BinLookupIndex(long[] starts, long[] ends, BinRange[] payloads) {
+        this.starts = starts;
+        this.ends = ends;
+        this.payloads = payloads;
+    }
+
+    public static BinLookupIndex empty() {
+        return EMPTY;
+    }
+
+
+    public static BinLookupIndex of(Collection<BinRange> ranges) throws OverlappingRangeException {
+        Objects.requireNonNull(ranges, "Ranges cannot be null");
+
+        if (ranges.isEmpty()) {
+            return EMPTY;
+        }
+
+        BinRange[] sorted = ranges.toArray(new BinRange[0]);
+        Arrays.sort(sorted);
+
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i - 1].overlaps(sorted[i])) {
+                throw new OverlappingRangeException(sorted[i - 1], sorted[i]);
+            }
+        }
+
+        return fromSorted(sorted);
+    }
+
+    private static BinLookupIndex fromSorted(BinRange[] sorted) {
+        long[] starts = new long[sorted.length];
+        long[] ends = new long[sorted.length];
+
+        for (int i = 0; i < sorted.length; i++) {
+            starts[i] = sorted[i].getStartBin();
+            ends[i] = sorted[i].getEndBin();
+        }
+
+        return new BinLookupIndex(starts, ends, sorted);
+    }
+
+
+    public BinRange find(long bin) {
+        int idx = floorIndex(bin);
+        if (idx < 0 || bin > ends[idx]) {
+            return null;
+        }
+        return payloads[idx];
+    }
+
+
+    public int floorIndex(long bin) {
+        if (starts.length == 0 || bin < starts[0]) {
+            return -1;
+        }
+        return floorInRange(bin, 0, starts.length);
+    }
+
+
+    public int findAll(long[] bins, BinRange[] out) {
+        Objects.requireNonNull(bins, "Bins cannot be null");
+        Objects.requireNonNull(out, "Output array cannot be null");
+        if (out.length < bins.length) {
+            throw new IllegalArgumentException(
+                    String.format("Output array too small: %d < %d", out.length, bins.length));
+        }
+
+        if (bins.length == 0) {
+            return 0;
+        }
+        if (payloads.length == 0) {
+            Arrays.fill(out, 0, bins.length, null);
+            return 0;
+        }
+
+
+        if ((long) bins.length * MERGE_SWEEP_RATIO >= payloads.length && isSorted(bins)) {
+            return mergeSweep(bins, out);
+        }
+        return gallopingSearch(bins, out);
+    }
+
+    private int mergeSweep(long[] sortedBins, BinRange[] out) {
+        int found = 0;
+        int last = payloads.length - 1;
+        int cursor = Math.max(0, floorIndex(sortedBins[0]));
+
+        for (int i = 0; i < sortedBins.length; i++) {
+            long bin = sortedBins[i];
+
+            while (cursor < last && starts[cursor + 1] <= bin) {
+                cursor++;
+            }
+
+            if (starts[cursor] <= bin && bin <= ends[cursor]) {
+                out[i] = payloads[cursor];
+                found++;
+            } else {
+                out[i] = null;
+            }
+        }
+
+        return found;
+    }
+
+    private int gallopingSearch(long[] bins, BinRange[] out) {
+        int found = 0;
+        int cursor = 0;
+
+        for (int i = 0; i < bins.length; i++) {
+            long bin = bins[i];
+            int idx = gallopFloor(bin, cursor);
+
+            if (idx >= 0 && bin <= ends[idx]) {
+                out[i] = payloads[idx];
+                found++;
+            } else {
+                out[i] = null;
+            }
+
+            cursor = Math.max(0, idx);
+        }
+
+        return found;
+    }
+
+
+    private int gallopFloor(long bin, int hint) {
+        int n = starts.length;
+
+        if (starts[hint] <= bin) {
+            int lo = hint;
+            int step = 1;
+            int hi = hint + 1;
+            while (hi < n && starts[hi] <= bin) {
+                lo = hi;
+                step <<= 1;
+                hi = hint + step;
+            }
+            return floorInRange(bin, lo, Math.min(hi, n));
+        }
+
+        int hi = hint;
+        int step = 1;
+        int lo = hint - 1;
+        while (lo >= 0 && starts[lo] > bin) {
+            hi = lo;
+            step <<= 1;
+            lo = hint - step;
+        }
+        if (lo < 0) {
+            if (starts[0] > bin) {
+                return -1;
+            }
+            lo = 0;
+        }
+        return floorInRange(bin, lo, hi);
+    }
+
+
+    private int floorInRange(long bin, int from, int to) {
+        int base = from;
+        int n = to - from;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = (starts[base + half] <= bin) ? base + half : base;
+            n -= half;
+        }
+        return base;
+    }
+
+    private static boolean isSorted(long[] bins) {
+        for (int i = 1; i < bins.length; i++) {
+            if (bins[i] < bins[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    public BinRange findOverlapping(BinRange range) {
+        int idx = floorIndex(range.getEndBin());
+        if (idx >= 0 && ends[idx] >= range.getStartBin()) {
+            return payloads[idx];
+        }
+        return null;
+    }
+
+
+    public BinLookupIndex with(BinRange range) throws OverlappingRangeException {
+        BinRange existing = findOverlapping(range);
+        if (existing != null) {
+            throw new OverlappingRangeException(existing, range);
+        }
+
+        int insertAt = floorIndex(range.getStartBin()) + 1;
+        BinRange[] next = new BinRange[payloads.length + 1];
+        System.arraycopy(payloads, 0, next, 0, insertAt);
+        next[insertAt] = range;
+        System.arraycopy(payloads, insertAt, next, insertAt + 1, payloads.length - insertAt);
+
+        return fromSorted(next);
+    }
+
+
+    public BinLookupIndex without(long startBin) {
+        int idx = indexOfStart(startBin);
+        if (idx < 0) {
+            return this;
+        }
+        if (payloads.length == 1) {
+            return EMPTY;
+        }
+
+        BinRange[] next = new BinRange[payloads.length - 1];
+        System.arraycopy(payloads, 0, next, 0, idx);
+        System.arraycopy(payloads, idx + 1, next, idx, payloads.length - idx - 1);
+
+        return fromSorted(next);
+    }
+
+    public int indexOfStart(long startBin) {
+        int idx = floorIndex(startBin);
+        return (idx >= 0 && starts[idx] == startBin) ? idx : -1;
+    }
+
+
+    public long startAt(int index) {
+        return starts[index];
+    }
+
+    public long endAt(int index) {
+        return ends[index];
+    }
+
+    public BinRange rangeAt(int index) {
+        return payloads[index];
+    }
+
+    public int size() {
+        return payloads.length;
+    }
+
+    public boolean isEmpty() {
+        return payloads.length == 0;
+    }
+
+    public List<BinRange> asList() {
+        return Collections.unmodifiableList(Arrays.asList(payloads));
+    }
+
+    public long estimateMemoryUsage() {
+
+        return payloads.length * (8L + 8L + 4L);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BinLookupIndex[ranges=%d]", payloads.length);
+    }
+}
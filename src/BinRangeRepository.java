@@ -1,4 +1,5 @@
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -10,12 +11,44 @@ public interface BinRangeRepository extends RangeRepository<BinRange, Long, Long
     Optional<BinRange> findRangeForBin(long bin) throws InfrastructureException;
 
 
+    default BinRange lookupBin(long bin) throws InfrastructureException {
+        return findRangeForBin(bin).orElse(null);
+    }
+
+
     void addRange(BinRange range) throws OverlappingRangeException, InfrastructureException;
 
 
     Map<Long, BinRange> findRangesForBins(List<Long> bins) throws InfrastructureException;
 
 
+    default int findRangesForBins(long[] bins, BinRange[] out) throws InfrastructureException {
+        int found = 0;
+        for (int i = 0; i < bins.length; i++) {
+            out[i] = lookupBin(bins[i]);
+            if (out[i] != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+
+    default void replaceAll(Collection<BinRange> ranges) throws OverlappingRangeException, InfrastructureException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support atomic replacement");
+    }
+
+
+    default boolean supportsReplaceAll() {
+        return false;
+    }
+
+
+    default boolean allowsNestedRanges() {
+        return false;
+    }
+
+
     List<BinRange> findByBankName(String bankName) throws InfrastructureException;
 
 
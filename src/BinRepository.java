@@ -54,7 +54,16 @@ public class BinRepository {
         List<Long> sortedBins = new ArrayList<>(bins);
         Collections.sort(sortedBins);
 
-        Iterator<Map.Entry<Long, BinRange>> rangeIterator = rangesByStart.entrySet().iterator();
+        if (sortedBins.isEmpty()) {
+            return results;
+        }
+
+        Long firstKey = rangesByStart.floorKey(sortedBins.get(0));
+        NavigableMap<Long, BinRange> candidates = (firstKey != null)
+                ? rangesByStart.tailMap(firstKey, true)
+                : rangesByStart;
+
+        Iterator<Map.Entry<Long, BinRange>> rangeIterator = candidates.entrySet().iterator();
         Map.Entry<Long, BinRange> currentRange = rangeIterator.hasNext() ? rangeIterator.next() : null;
 
         for (Long bin : sortedBins) {
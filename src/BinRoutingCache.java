@@ -0,0 +1,346 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+public final class BinRoutingCache {
+
+    private static final int WAYS = 8;
+    private static final int SKETCH_DEPTH = 4;
+    private static final int RESET_MULTIPLIER = 10;
+
+    private static final long[] SKETCH_SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int setMask;
+    private final int capacity;
+
+    private final AtomicLongArray sketch;
+    private final int sketchMask;
+    private final int sampleSize;
+    private final AtomicInteger sketchAdditions = new AtomicInteger();
+    private final AtomicBoolean aging = new AtomicBoolean();
+
+    private volatile long epoch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+
+    private static final class Entry {
+        final long bin;
+        final PaymentRouting routing;
+
+        Entry(long bin, PaymentRouting routing) {
+            this.bin = bin;
+            this.routing = routing;
+        }
+    }
+
+    public BinRoutingCache(int maximumSize) {
+        if (maximumSize < WAYS) {
+            throw new IllegalArgumentException("Maximum size must be at least " + WAYS);
+        }
+
+        int sets = Integer.highestOneBit(maximumSize / WAYS);
+        this.setMask = sets - 1;
+        this.capacity = sets * WAYS;
+        this.slots = new AtomicReferenceArray<>(capacity);
+
+        int sketchSize = Math.max(16, Integer.highestOneBit(capacity - 1) << 1);
+        this.sketch = new AtomicLongArray(sketchSize);
+        this.sketchMask = sketchSize - 1;
+        this.sampleSize = RESET_MULTIPLIER * capacity;
+    }
+
+
+    public PaymentRouting get(long bin) {
+        int hash = spread(bin);
+        int base = (hash & setMask) * WAYS;
+
+        recordAccess(hash);
+
+        for (int way = 0; way < WAYS; way++) {
+            Entry entry = slots.get(base + way);
+            if (entry != null && entry.bin == bin) {
+                hits.increment();
+                return entry.routing;
+            }
+        }
+
+        misses.increment();
+        return null;
+    }
+
+
+    public long currentEpoch() {
+        return epoch;
+    }
+
+
+    public void put(long bin, PaymentRouting routing, long observedEpoch) {
+        int hash = spread(bin);
+        int base = (hash & setMask) * WAYS;
+        if (epoch != observedEpoch) {
+            return;
+        }
+
+        Entry candidate = new Entry(bin, routing);
+
+        int victimSlot = -1;
+        Entry victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+
+        for (int way = 0; way < WAYS; way++) {
+            int slot = base + way;
+            Entry entry = slots.get(slot);
+
+            if (entry == null) {
+                if (slots.compareAndSet(slot, null, candidate)) {
+                    revalidate(slot, candidate, observedEpoch);
+                    return;
+                }
+                entry = slots.get(slot);
+                if (entry == null) {
+                    continue;
+                }
+            }
+            if (entry.bin == bin) {
+                return;
+            }
+
+            int frequency = frequency(spread(entry.bin));
+            if (frequency < victimFrequency) {
+                victimFrequency = frequency;
+                victimSlot = slot;
+                victim = entry;
+            }
+        }
+
+
+        if (victim == null || frequency(hash) <= victimFrequency) {
+            rejections.increment();
+            return;
+        }
+
+        if (slots.compareAndSet(victimSlot, victim, candidate)) {
+            evictions.increment();
+            revalidate(victimSlot, candidate, observedEpoch);
+        }
+    }
+
+
+    private void revalidate(int slot, Entry inserted, long observedEpoch) {
+        if (epoch != observedEpoch) {
+            slots.compareAndSet(slot, inserted, null);
+        }
+    }
+
+
+    public synchronized int invalidate(long startBin, long endBin) {
+        epoch++;
+
+        int removed = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            Entry entry = slots.get(slot);
+            if (entry != null && entry.bin >= startBin && entry.bin <= endBin
+                    && slots.compareAndSet(slot, entry, null)) {
+                removed++;
+            }
+        }
+
+        invalidations.add(removed);
+        return removed;
+    }
+
+    public int invalidate(BinRange range) {
+        return invalidate(range.getStartBin(), range.getEndBin());
+    }
+
+    public synchronized void invalidateAll() {
+        epoch++;
+
+        int removed = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (slots.getAndSet(slot, null) != null) {
+                removed++;
+            }
+        }
+
+        invalidations.add(removed);
+    }
+
+
+    private void recordAccess(int hash) {
+        int start = (hash & 3) << 2;
+        boolean added = false;
+
+        for (int depth = 0; depth < SKETCH_DEPTH; depth++) {
+            int index = sketchIndex(hash, depth);
+            int offset = (start + depth) << 2;
+            added |= increment(index, offset);
+        }
+
+        if (added && sketchAdditions.incrementAndGet() >= sampleSize && aging.compareAndSet(false, true)) {
+            try {
+                age();
+            } finally {
+                aging.set(false);
+            }
+        }
+    }
+
+    private boolean increment(int index, int offset) {
+        long mask = 0xfL << offset;
+        while (true) {
+            long word = sketch.get(index);
+            if ((word & mask) == mask) {
+                return false;
+            }
+            if (sketch.compareAndSet(index, word, word + (1L << offset))) {
+                return true;
+            }
+        }
+    }
+
+    private int frequency(int hash) {
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+
+        for (int depth = 0; depth < SKETCH_DEPTH; depth++) {
+            int index = sketchIndex(hash, depth);
+            int offset = (start + depth) << 2;
+            int count = (int) ((sketch.get(index) >>> offset) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    private void age() {
+        if (sketchAdditions.get() < sampleSize) {
+            return;
+        }
+        for (int i = 0; i < sketch.length(); i++) {
+            long word;
+            do {
+                word = sketch.get(i);
+            } while (!sketch.compareAndSet(i, word, (word >>> 1) & RESET_MASK));
+        }
+        sketchAdditions.updateAndGet(additions -> additions / 2);
+    }
+
+    private int sketchIndex(int hash, int depth) {
+        long h = (hash + SKETCH_SEEDS[depth]) * SKETCH_SEEDS[depth];
+        h += (h >>> 32);
+        return (int) h & sketchMask;
+    }
+
+    private static int spread(long bin) {
+        long h = bin * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+
+    public int size() {
+        int size = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (slots.get(slot) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public CacheStatistics getStatistics() {
+        return new CacheStatistics(
+                hits.sum(),
+                misses.sum(),
+                evictions.sum(),
+                rejections.sum(),
+                invalidations.sum(),
+                size(),
+                capacity
+        );
+    }
+
+
+    public static final class CacheStatistics {
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final long rejectionCount;
+        private final long invalidationCount;
+        private final int size;
+        private final int capacity;
+
+        public CacheStatistics(long hitCount, long missCount, long evictionCount, long rejectionCount,
+                               long invalidationCount, int size, int capacity) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.rejectionCount = rejectionCount;
+            this.invalidationCount = invalidationCount;
+            this.size = size;
+            this.capacity = capacity;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        public long getRejectionCount() {
+            return rejectionCount;
+        }
+
+        public long getInvalidationCount() {
+            return invalidationCount;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public double getHitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 0.0 : (double) hitCount / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CacheStats{size=%d/%d, hitRate=%.2f%%, hits=%d, misses=%d, " +
+                            "evictions=%d, rejections=%d, invalidations=%d}",
+                    size, capacity, getHitRate() * 100, hitCount, missCount,
+                    evictionCount, rejectionCount, invalidationCount);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BinRoutingCache{capacity=%d, size=%d}", capacity, size());
+    }
+}
\ No newline at end of file
@@ -1,518 +1,458 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Collectors;
 
 public class BinSearchBenchmark {
 
-    private static final int WARMUP_ITERATIONS = 1000;
-    private static final int BENCHMARK_ITERATIONS = 10000;
-
-    public static class BenchmarkResult {
-        public final String algorithmName;
-        public final long avgTimeNanos;
-        public final long totalTimeMs;
-        public final int dataSize;
-        public final int queryCount;
-        public final double successRate;
-        public final long memoryUsageBytes;
-
-        public BenchmarkResult(String name, long avgNanos, long totalMs, int dataSize,
-                               int queryCount, double successRate, long memoryBytes) {
-            this.algorithmName = name;
-            this.avgTimeNanos = avgNanos;
-            this.totalTimeMs = totalMs;
-            this.dataSize = dataSize;
-            this.queryCount = queryCount;
-            this.successRate = successRate;
-            this.memoryUsageBytes = memoryBytes;
-        }
-
-        @Override
-        public String toString() {
-            return String.format("%s: avg=%.3fμs, total=%dms, success=%.1f%%, memory=%dKB",
-                    algorithmName, avgTimeNanos / 1000.0, totalTimeMs, successRate * 100,
-                    memoryUsageBytes / 1024);
-        }
-    }
+    private static final long SEED = 42L;
 
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 200_000_000L;
+    private static final int OPS_PER_CHECK = 256;
 
-    public static void runComprehensiveBenchmark() {
-        System.out.println("🚀 BIN Search Performance Benchmark");
-        System.out.println("=".repeat(60));
+    private static final int QUERY_COUNT = 1 << 14;
+    private static final int BATCH_COUNT = 64;
+    private static final int BATCH_SIZE = 256;
+    private static final int OVERLAP_QUERY_COUNT = 1 << 10;
 
+    private static final int[] DATA_SIZES = {100, 1_000, 10_000, 100_000};
 
-        int[] dataSizes = {100, 500, 1000, 5000, 10000};
+    private static final String RESULT_PREFIX = "RESULT,";
 
-        for (int dataSize : dataSizes) {
-            System.out.println("\n📊 Data Size: " + dataSize + " BIN ranges");
-            System.out.println("-".repeat(40));
 
-            benchmarkDataSize(dataSize);
-        }
-
-
-        System.out.println("\n🎯 Special Scenario Tests");
-        System.out.println("=".repeat(60));
-
-        testOverlapDetection();
-        testRangeQueries();
-        testMemoryUsage();
-        testWorstCaseScenarios();
+    public enum Density {
+        SPARSE,
+        DENSE,
+        MIXED
     }
 
-    private static void benchmarkDataSize(int dataSize) {
-
-        List<BinRange> testRanges = generateTestData(dataSize);
-        List<Long> queryBins = generateQueryBins(BENCHMARK_ITERATIONS, testRanges);
-
-
-        BinRepository treeMapRepo = new BinRepository();
-        IntervalTree intervalTree = new IntervalTree();
-
-        try {
-
-            for (BinRange range : testRanges) {
-                treeMapRepo.addRange(range);
-                intervalTree.insert(range);
-            }
-
-
-            BenchmarkResult treeMapResult = benchmarkTreeMap(treeMapRepo, queryBins);
-
-
-            BenchmarkResult intervalResult = benchmarkIntervalTree(intervalTree, queryBins);
-
+    public enum AccessPattern {
+        SEQUENTIAL,
+        RANDOM,
+        HOT
+    }
 
-            System.out.println(treeMapResult);
-            System.out.println(intervalResult);
+    public enum Target {
+        REPOSITORY_FIND_RANGE("BinRepository.findRangeForBin", 1),
+        INTERVAL_TREE_FIND("IntervalTree.findInterval", 1),
+        SNAPSHOT_LOOKUP("SnapshotBinRepository.lookupBin", 1),
+        REPOSITORY_FIND_RANGES("BinRepository.findRangesForBins", BATCH_SIZE),
+        SNAPSHOT_FIND_RANGES("SnapshotBinRepository.findRangesForBins", BATCH_SIZE),
+        INTERVAL_TREE_OVERLAPPING("IntervalTree.findAllOverlapping", 1);
 
-            compareResults(treeMapResult, intervalResult);
+        private final String label;
+        private final int binsPerOp;
 
-        } catch (OverlappingRangeException e) {
-            System.err.println("Data generation error: " + e.getMessage());
+        Target(String label, int binsPerOp) {
+            this.label = label;
+            this.binsPerOp = binsPerOp;
         }
-    }
 
-    private static BenchmarkResult benchmarkTreeMap(BinRepository repo, List<Long> queries) {
-
-        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
-            repo.findRangeForBin(queries.get(i % queries.size()));
+        public String getLabel() {
+            return label;
         }
 
-
-        long startTime = System.currentTimeMillis();
-        long totalNanos = 0;
-        int successCount = 0;
-
-        for (Long bin : queries) {
-            long queryStart = System.nanoTime();
-            Optional<BinRange> result = repo.findRangeForBin(bin);
-            long queryTime = System.nanoTime() - queryStart;
-
-            totalNanos += queryTime;
-            if (result.isPresent()) {
-                successCount++;
-            }
+        public int getBinsPerOp() {
+            return binsPerOp;
         }
-
-        long endTime = System.currentTimeMillis();
-        long memoryUsage = estimateTreeMapMemory(repo);
-
-        return new BenchmarkResult(
-                "TreeMap",
-                totalNanos / queries.size(),
-                endTime - startTime,
-                repo.getRangeCount(),
-                queries.size(),
-                (double) successCount / queries.size(),
-                memoryUsage
-        );
     }
 
-    private static BenchmarkResult benchmarkIntervalTree(IntervalTree tree, List<Long> queries) {
 
-        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
-            tree.findInterval(queries.get(i % queries.size()));
+    public static class BenchmarkResult {
+        public final Target target;
+        public final int dataSize;
+        public final Density density;
+        public final AccessPattern accessPattern;
+        public final double nsPerOp;
+        public final double nsPerOpError;
+        public final double bytesPerOp;
+        public final long gcCount;
+        public final long gcTimeMs;
+        public final double hitRate;
+
+        public BenchmarkResult(Target target, int dataSize, Density density, AccessPattern accessPattern,
+                               double nsPerOp, double nsPerOpError, double bytesPerOp,
+                               long gcCount, long gcTimeMs, double hitRate) {
+            this.target = target;
+            this.dataSize = dataSize;
+            this.density = density;
+            this.accessPattern = accessPattern;
+            this.nsPerOp = nsPerOp;
+            this.nsPerOpError = nsPerOpError;
+            this.bytesPerOp = bytesPerOp;
+            this.gcCount = gcCount;
+            this.gcTimeMs = gcTimeMs;
+            this.hitRate = hitRate;
         }
 
-
-        long startTime = System.currentTimeMillis();
-        long totalNanos = 0;
-        int successCount = 0;
-
-        for (Long bin : queries) {
-            long queryStart = System.nanoTime();
-            BinRange result = tree.findInterval(bin);
-            long queryTime = System.nanoTime() - queryStart;
-
-            totalNanos += queryTime;
-            if (result != null) {
-                successCount++;
-            }
+        public String toCsv() {
+            return String.format(Locale.ROOT, "%s,%d,%s,%s,%.3f,%.3f,%.1f,%d,%d,%.4f",
+                    target.name(), dataSize, density, accessPattern,
+                    nsPerOp, nsPerOpError, bytesPerOp, gcCount, gcTimeMs, hitRate);
         }
 
-        long endTime = System.currentTimeMillis();
-        long memoryUsage = tree.estimateMemoryUsage();
-
-        return new BenchmarkResult(
-                "IntervalTree",
-                totalNanos / queries.size(),
-                endTime - startTime,
-                tree.size(),
-                queries.size(),
-                (double) successCount / queries.size(),
-                memoryUsage
-        );
-    }
-
-    private static void compareResults(BenchmarkResult treeMap, BenchmarkResult intervalTree) {
-        double speedupRatio = (double) treeMap.avgTimeNanos / intervalTree.avgTimeNanos;
-        double memoryRatio = (double) intervalTree.memoryUsageBytes / treeMap.memoryUsageBytes;
-
-        System.out.printf("⚡ Speed: IntervalTree is %.2fx %s\n",
-                Math.abs(speedupRatio), speedupRatio > 1 ? "faster" : "slower");
-        System.out.printf("💾 Memory: IntervalTree uses %.2fx %s memory\n",
-                memoryRatio, memoryRatio > 1 ? "more" : "less");
-
+        public static BenchmarkResult fromCsv(String line) {
+            String[] f = line.split(",");
+            return new BenchmarkResult(
+                    Target.valueOf(f[0]), Integer.parseInt(f[1]),
+                    Density.valueOf(f[2]), AccessPattern.valueOf(f[3]),
+                    Double.parseDouble(f[4]), Double.parseDouble(f[5]), Double.parseDouble(f[6]),
+                    Long.parseLong(f[7]), Long.parseLong(f[8]), Double.parseDouble(f[9]));
+        }
 
-        if (speedupRatio > 1.2 && memoryRatio < 2.0) {
-            System.out.println("✅ Recommendation: Use IntervalTree");
-        } else if (speedupRatio < 0.8) {
-            System.out.println("✅ Recommendation: Use TreeMap");
-        } else {
-            System.out.println("🤔 Recommendation: Performance similar, choose based on use case");
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-42s %7d %-7s %-10s %12.2f ± %8.2f %10.1f %5d %6d %6.1f%%",
+                    target.getLabel(), dataSize, density, accessPattern,
+                    nsPerOp, nsPerOpError, bytesPerOp, gcCount, gcTimeMs, hitRate * 100);
         }
-        System.out.println();
     }
 
 
-    private static void testOverlapDetection() {
-        System.out.println("\n🎯 Overlap Detection Performance");
-        System.out.println("-".repeat(40));
-
-        List<BinRange> testRanges = generateTestData(1000);
-        List<BinRange> queryRanges = generateQueryRanges(100);
+    private static final class Fixture {
+        final List<BinRange> ranges;
+        final BinRepository repository;
+        final IntervalTree intervalTree;
+        final SnapshotBinRepository snapshot;
+        final long[] queries;
+        final List<List<Long>> boxedBatches;
+        final long[][] batches;
+        final BinRange[] batchOut;
+        final BinRange[] overlapQueries;
 
-        BinRepository treeMapRepo = new BinRepository();
-        IntervalTree intervalTree = new IntervalTree();
+        Fixture(int dataSize, Density density, AccessPattern accessPattern) throws OverlappingRangeException {
+            Random random = new Random(SEED);
 
-        try {
-
-            for (BinRange range : testRanges) {
-                treeMapRepo.addRange(range);
+            this.ranges = generateRanges(dataSize, density, random);
+            this.repository = new BinRepository();
+            this.intervalTree = new IntervalTree();
+            for (BinRange range : ranges) {
+                repository.addRange(range);
                 intervalTree.insert(range);
             }
+            this.snapshot = new SnapshotBinRepository(ranges);
 
+            this.queries = generateQueries(QUERY_COUNT, ranges, accessPattern, random);
 
-            long startTime = System.nanoTime();
-            for (BinRange query : queryRanges) {
-                findOverlapsNaive(treeMapRepo, query);
+            this.batches = new long[BATCH_COUNT][];
+            this.boxedBatches = new ArrayList<>(BATCH_COUNT);
+            for (int b = 0; b < BATCH_COUNT; b++) {
+                long[] batch = generateQueries(BATCH_SIZE, ranges, accessPattern, random);
+                List<Long> boxed = new ArrayList<>(BATCH_SIZE);
+                for (long bin : batch) {
+                    boxed.add(bin);
+                }
+                batches[b] = batch;
+                boxedBatches.add(boxed);
             }
-            long treeMapTime = System.nanoTime() - startTime;
-
+            this.batchOut = new BinRange[BATCH_SIZE];
 
-            startTime = System.nanoTime();
-            for (BinRange query : queryRanges) {
-                intervalTree.findAllOverlapping(query);
+            this.overlapQueries = new BinRange[OVERLAP_QUERY_COUNT];
+            for (int i = 0; i < OVERLAP_QUERY_COUNT; i++) {
+                long start = queries[i];
+                overlapQueries[i] = BinRange.of(start, start + 1_000 + random.nextInt(9_000), "Query", "Visa", "TR");
             }
-            long intervalTreeTime = System.nanoTime() - startTime;
-
-            System.out.printf("TreeMap (naive): %.2fms\n", treeMapTime / 1_000_000.0);
-            System.out.printf("IntervalTree: %.2fms\n", intervalTreeTime / 1_000_000.0);
-            System.out.printf("Speedup: %.2fx\n", (double) treeMapTime / intervalTreeTime);
-
-        } catch (OverlappingRangeException e) {
-            System.err.println("Setup error: " + e.getMessage());
         }
     }
 
 
-    private static void testRangeQueries() {
-        System.out.println("\n🎯 Range Query Performance");
-        System.out.println("-".repeat(40));
-
-        List<BinRange> testRanges = generateTestData(1000);
-
-        BinRepository treeMapRepo = new BinRepository();
-        IntervalTree intervalTree = new IntervalTree();
-
-        try {
-
-            for (BinRange range : testRanges) {
-                treeMapRepo.addRange(range);
-                intervalTree.insert(range);
-            }
+    private interface Operation {
+        long run(int i);
+    }
 
+    private static long sink;
 
-            List<long[]> rangeQueries = new ArrayList<>();
-            ThreadLocalRandom random = ThreadLocalRandom.current();
-            for (int i = 0; i < 100; i++) {
-                long start = 400000L + random.nextLong(300000);
-                long end = start + random.nextLong(50000);
-                rangeQueries.add(new long[]{start, end});
-            }
 
+    public static BenchmarkResult run(Target target, int dataSize, Density density, AccessPattern accessPattern)
+            throws OverlappingRangeException {
+        Fixture fixture = new Fixture(dataSize, density, accessPattern);
+        Operation operation = operationFor(target, fixture);
 
-            long startTime = System.nanoTime();
-            int treeMapResults = 0;
-            for (long[] query : rangeQueries) {
-                List<BinRange> results = treeMapRepo.findRangesInInterval(query[0], query[1]);
-                treeMapResults += results.size();
-            }
-            long treeMapTime = System.nanoTime() - startTime;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            measureIteration(operation);
+        }
 
 
-            startTime = System.nanoTime();
-            int intervalTreeResults = 0;
-            for (long[] query : rangeQueries) {
-                BinRange queryRange = BinRange.of(query[0], query[1], "Query", "Test", "XX");
-                List<BinRange> results = intervalTree.findAllOverlapping(queryRange);
-                intervalTreeResults += results.size();
-            }
-            long intervalTreeTime = System.nanoTime() - startTime;
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long gcCountBefore = totalGcCount();
+        long gcTimeBefore = totalGcTimeMs();
 
-            System.out.printf("TreeMap range queries: %.2fms (found %d ranges)\n",
-                    treeMapTime / 1_000_000.0, treeMapResults);
-            System.out.printf("IntervalTree range queries: %.2fms (found %d ranges)\n",
-                    intervalTreeTime / 1_000_000.0, intervalTreeResults);
+        double[] nsPerOp = new double[MEASUREMENT_ITERATIONS];
+        long totalOps = 0;
+        long totalBytes = 0;
+        long totalHits = 0;
 
-            if (intervalTreeTime > 0) {
-                System.out.printf("Range query speedup: %.2fx\n",
-                        (double) treeMapTime / intervalTreeTime);
-            }
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+            long[] iteration = measureIteration(operation);
+            totalBytes += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
 
-        } catch (OverlappingRangeException e) {
-            System.err.println("Range query setup error: " + e.getMessage());
+            nsPerOp[i] = iteration[1] / (double) iteration[0];
+            totalOps += iteration[0];
+            totalHits += iteration[2];
         }
-    }
-
-    private static List<BinRange> findOverlapsNaive(BinRepository repo, BinRange query) {
-        return repo.getAllRanges().stream()
-                .filter(range -> range.overlaps(query))
-                .collect(Collectors.toList());
-    }
 
+        double mean = Arrays.stream(nsPerOp).average().orElse(0.0);
+        double variance = Arrays.stream(nsPerOp).map(v -> (v - mean) * (v - mean)).sum()
+                / Math.max(1, MEASUREMENT_ITERATIONS - 1);
 
-    private static void testMemoryUsage() {
-        System.out.println("\n💾 Memory Usage Analysis");
-        System.out.println("-".repeat(40));
-
-        int[] sizes = {1000, 5000, 10000};
-
-        for (int size : sizes) {
-            List<BinRange> testData = generateTestData(size);
-
+        return new BenchmarkResult(target, dataSize, density, accessPattern,
+                mean, Math.sqrt(variance),
+                totalBytes / (double) totalOps,
+                totalGcCount() - gcCountBefore,
+                totalGcTimeMs() - gcTimeBefore,
+                totalHits / (double) (totalOps * target.getBinsPerOp()));
+    }
 
-            BinRepository treeMapRepo = new BinRepository();
-            long treeMapMemory = 0;
-            try {
-                for (BinRange range : testData) {
-                    treeMapRepo.addRange(range);
-                }
-                treeMapMemory = estimateTreeMapMemory(treeMapRepo);
-            } catch (OverlappingRangeException e) {
-                System.err.println("TreeMap setup error: " + e.getMessage());
-                continue;
-            }
 
+    private static long[] measureIteration(Operation operation) {
+        long ops = 0;
+        long hits = 0;
+        long start = System.nanoTime();
+        long elapsed;
 
-            IntervalTree intervalTree = new IntervalTree();
-            long intervalTreeMemory = 0;
-            try {
-                for (BinRange range : testData) {
-                    intervalTree.insert(range);
-                }
-                intervalTreeMemory = intervalTree.estimateMemoryUsage();
-            } catch (OverlappingRangeException e) {
-                System.err.println("IntervalTree setup error: " + e.getMessage());
-                continue;
+        do {
+            for (int k = 0; k < OPS_PER_CHECK; k++) {
+                hits += operation.run((int) ops++);
             }
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ITERATION_NANOS);
 
-            System.out.printf("Size %d: TreeMap=%dKB, IntervalTree=%dKB, Ratio=%.2fx\n",
-                    size, treeMapMemory / 1024, intervalTreeMemory / 1024,
-                    (double) intervalTreeMemory / treeMapMemory);
-        }
+        sink += hits;
+        return new long[]{ops, elapsed, hits};
     }
 
 
-    private static void testWorstCaseScenarios() {
-        System.out.println("\n⚠️  Worst Case Scenarios");
-        System.out.println("-".repeat(40));
-
-
-        testSparseData();
-
-
-        testDenseOverlaps();
-
-
-        testAccessPatterns();
+    private static Operation operationFor(Target target, Fixture f) {
+        int queryMask = QUERY_COUNT - 1;
+        int batchMask = BATCH_COUNT - 1;
+        int overlapMask = OVERLAP_QUERY_COUNT - 1;
+
+        switch (target) {
+            case REPOSITORY_FIND_RANGE:
+                return i -> f.repository.findRangeForBin(f.queries[i & queryMask]).isPresent() ? 1 : 0;
+            case INTERVAL_TREE_FIND:
+                return i -> f.intervalTree.findInterval(f.queries[i & queryMask]) != null ? 1 : 0;
+            case SNAPSHOT_LOOKUP:
+                return i -> f.snapshot.lookupBin(f.queries[i & queryMask]) != null ? 1 : 0;
+            case REPOSITORY_FIND_RANGES:
+                return i -> {
+                    List<Long> batch = f.boxedBatches.get(i & batchMask);
+                    Map<Long, BinRange> found = f.repository.findRangesForBins(batch);
+                    long hits = 0;
+                    for (Long bin : batch) {
+                        if (found.containsKey(bin)) {
+                            hits++;
+                        }
+                    }
+                    return hits;
+                };
+            case SNAPSHOT_FIND_RANGES:
+                return i -> f.snapshot.findRangesForBins(f.batches[i & batchMask], f.batchOut);
+            case INTERVAL_TREE_OVERLAPPING:
+                return i -> f.intervalTree.findAllOverlapping(f.overlapQueries[i & overlapMask]).isEmpty() ? 0 : 1;
+            default:
+                throw new IllegalArgumentException("Unknown benchmark target: " + target);
+        }
     }
 
-    private static void testSparseData() {
-        System.out.println("📍 Sparse Data Test (many cache misses)");
 
+    private static List<BinRange> generateRanges(int count, Density density, Random random) {
+        List<BinRange> ranges = new ArrayList<>(count);
+        long cursor = 400000L;
 
-        List<BinRange> sparseRanges = new ArrayList<>();
-        for (int i = 0; i < 100; i++) {
-            long start = i * 100000L + 400000L;
-            sparseRanges.add(BinRange.of(start, start + 100, "Bank" + i, "Visa", "TR"));
-        }
+        for (int i = 0; i < count; i++) {
+            long width;
+            long gap;
+
+            switch (density) {
+                case SPARSE:
+                    width = 100;
+                    gap = 100_000;
+                    break;
+                case DENSE:
+                    width = 1_000;
+                    gap = 0;
+                    break;
+                default:
+                    width = 1 + random.nextInt(1_000);
+                    gap = random.nextInt(2_000);
+                    break;
+            }
 
+            long start = cursor + gap;
+            long end = start + width - 1;
+            String bank = "Bank" + (i % 20);
+            String cardType = (i % 2 == 0) ? "Visa" : "Mastercard";
+            String country = (i % 10 == 0) ? "US" : "TR";
 
-        List<Long> missQueries = new ArrayList<>();
-        for (int i = 0; i < 1000; i++) {
-            missQueries.add(ThreadLocalRandom.current().nextLong(100000, 50000000));
+            ranges.add(BinRange.of(start, end, bank, cardType, country));
+            cursor = end + 1;
         }
 
-        benchmarkScenario("Sparse Data", sparseRanges, missQueries);
+        return ranges;
     }
 
-    private static void testDenseOverlaps() {
-        System.out.println("📍 Dense Overlap Test");
 
+    private static long[] generateQueries(int count, List<BinRange> ranges, AccessPattern pattern, Random random) {
+        long[] queries = new long[count];
+        long min = ranges.get(0).getStartBin();
+        long max = ranges.get(ranges.size() - 1).getEndBin();
+        long span = max - min + 1;
 
-        List<BinRange> denseRanges = new ArrayList<>();
-        for (int i = 0; i < 500; i++) {
-            long start = 400000L + i * 1000;
-            denseRanges.add(BinRange.of(start, start + 999, "Bank" + i, "Visa", "TR"));
-        }
+        switch (pattern) {
+            case SEQUENTIAL:
+                long step = Math.max(1, span / count);
+                long offset = (long) (random.nextDouble() * span);
+                for (int i = 0; i < count; i++) {
+                    queries[i] = min + (offset + i * step) % span;
+                }
+                Arrays.sort(queries);
+                break;
+
+            case HOT:
+                int hotRanges = Math.max(1, ranges.size() / 100);
+                for (int i = 0; i < count; i++) {
+                    BinRange range = (random.nextDouble() < 0.9)
+                            ? ranges.get(random.nextInt(hotRanges))
+                            : ranges.get(random.nextInt(ranges.size()));
+                    queries[i] = range.getStartBin() + (long) (random.nextDouble() * range.getRangeSize());
+                }
+                break;
 
-        List<Long> queries = new ArrayList<>();
-        for (int i = 0; i < 1000; i++) {
-            queries.add(400000L + ThreadLocalRandom.current().nextLong(500000));
+            default:
+                for (int i = 0; i < count; i++) {
+                    queries[i] = min + (long) (random.nextDouble() * span);
+                }
+                break;
         }
 
-        benchmarkScenario("Dense Ranges", denseRanges, queries);
+        return queries;
     }
 
-    private static void testAccessPatterns() {
-        System.out.println("📍 Access Pattern Test");
-
-        List<BinRange> ranges = generateTestData(1000);
 
-
-        List<Long> sequentialQueries = new ArrayList<>();
-        for (int i = 0; i < 1000; i++) {
-            sequentialQueries.add(400000L + i * 100);
+    private static long totalGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
         }
+        return count;
+    }
 
-
-        List<Long> randomQueries = new ArrayList<>();
-        for (int i = 0; i < 1000; i++) {
-            randomQueries.add(400000L + ThreadLocalRandom.current().nextLong(100000));
+    private static long totalGcTimeMs() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
         }
-
-        System.out.println("Sequential access:");
-        benchmarkScenario("Sequential", ranges, sequentialQueries);
-
-        System.out.println("Random access:");
-        benchmarkScenario("Random", ranges, randomQueries);
+        return time;
     }
 
-    private static void benchmarkScenario(String scenarioName, List<BinRange> ranges, List<Long> queries) {
-        BinRepository treeMapRepo = new BinRepository();
-        IntervalTree intervalTree = new IntervalTree();
 
-        try {
-
-            for (BinRange range : ranges) {
-                treeMapRepo.addRange(range);
-                intervalTree.insert(range);
-            }
+    private static BenchmarkResult runForked(Target target, int dataSize, Density density, AccessPattern pattern)
+            throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
 
+        ProcessBuilder builder = new ProcessBuilder(
+                java, "-Xms1g", "-Xmx1g", "-XX:+UseParallelGC",
+                "-cp", System.getProperty("java.class.path"),
+                BinSearchBenchmark.class.getName(),
+                "--run", target.name(), String.valueOf(dataSize), density.name(), pattern.name());
+        builder.redirectErrorStream(true);
 
-            BenchmarkResult treeMapResult = benchmarkTreeMap(treeMapRepo, queries);
-            BenchmarkResult intervalResult = benchmarkIntervalTree(intervalTree, queries);
+        Process process = builder.start();
+        BenchmarkResult result = null;
 
-            System.out.printf("  %s - TreeMap: %.3fμs, IntervalTree: %.3fμs\n",
-                    scenarioName,
-                    treeMapResult.avgTimeNanos / 1000.0,
-                    intervalResult.avgTimeNanos / 1000.0);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    result = BenchmarkResult.fromCsv(line.substring(RESULT_PREFIX.length()));
+                } else {
+                    System.err.println("  [fork] " + line);
+                }
+            }
+        }
 
-        } catch (OverlappingRangeException e) {
-            System.err.println("  " + scenarioName + " setup failed: " + e.getMessage());
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || result == null) {
+            throw new IllegalStateException(String.format(
+                    "Forked benchmark %s/%d/%s/%s failed with exit code %d",
+                    target, dataSize, density, pattern, exitCode));
         }
+        return result;
     }
 
 
-    private static List<BinRange> generateTestData(int count) {
-        List<BinRange> ranges = new ArrayList<>();
-        ThreadLocalRandom random = ThreadLocalRandom.current();
-
-        Set<Long> usedStarts = new HashSet<>();
-
-        for (int i = 0; i < count; i++) {
-            long start;
-            do {
-                start = 400000L + random.nextLong(500000);
-            } while (usedStarts.contains(start));
-
-            usedStarts.add(start);
+    public static List<BenchmarkResult> runSuite(String filter, boolean fork) throws Exception {
+        List<BenchmarkResult> results = new ArrayList<>();
 
-            long end = start + random.nextLong(1, 1000);
-            String bank = "Bank" + (i % 20);
-            String cardType = (i % 2 == 0) ? "Visa" : "Mastercard";
-            String country = (i % 10 == 0) ? "US" : "TR";
+        for (Target target : Target.values()) {
+            if (filter != null && !target.getLabel().contains(filter) && !target.name().contains(filter)) {
+                continue;
+            }
 
-            ranges.add(BinRange.of(start, end, bank, cardType, country));
+            for (int dataSize : DATA_SIZES) {
+                for (Density density : Density.values()) {
+                    for (AccessPattern pattern : AccessPattern.values()) {
+                        BenchmarkResult result = fork
+                                ? runForked(target, dataSize, density, pattern)
+                                : run(target, dataSize, density, pattern);
+                        System.out.println(result);
+                        results.add(result);
+                    }
+                }
+            }
         }
 
-        return ranges;
+        return results;
     }
 
-    private static List<Long> generateQueryBins(int count, List<BinRange> ranges) {
-        List<Long> queries = new ArrayList<>();
-        ThreadLocalRandom random = ThreadLocalRandom.current();
 
+    public static void main(String[] args) throws Exception {
+        if (args.length == 5 && "--run".equals(args[0])) {
+            BenchmarkResult result = run(
+                    Target.valueOf(args[1]), Integer.parseInt(args[2]),
+                    Density.valueOf(args[3]), AccessPattern.valueOf(args[4]));
+            System.out.println(RESULT_PREFIX + result.toCsv());
+            System.exit(sink == Long.MIN_VALUE ? 1 : 0);
+        }
 
-        for (int i = 0; i < count; i++) {
-            if (random.nextDouble() < 0.7 && !ranges.isEmpty()) {
+        String filter = null;
+        boolean fork = true;
+        String csvPath = null;
 
-                BinRange randomRange = ranges.get(random.nextInt(ranges.size()));
-                long bin = randomRange.getStartBin() +
-                        random.nextLong(randomRange.getRangeSize());
-                queries.add(bin);
+        for (String arg : args) {
+            if ("--no-fork".equals(arg)) {
+                fork = false;
+            } else if (arg.startsWith("--csv=")) {
+                csvPath = arg.substring("--csv=".length());
             } else {
-
-                queries.add(random.nextLong(100000, 1000000));
+                filter = arg;
             }
         }
 
-        return queries;
-    }
+        System.out.println("BIN Search Benchmark Suite");
+        System.out.printf("warmup=%dx%dms, measurement=%dx%dms, fork=%s, seed=%d%n",
+                WARMUP_ITERATIONS, ITERATION_NANOS / 1_000_000,
+                MEASUREMENT_ITERATIONS, ITERATION_NANOS / 1_000_000, fork, SEED);
+        System.out.printf("%-42s %7s %-7s %-10s %12s   %8s %10s %5s %6s %7s%n",
+                "Benchmark", "ranges", "density", "access", "ns/op", "error", "B/op", "gc", "gc-ms", "hits");
 
-    private static List<BinRange> generateQueryRanges(int count) {
-        List<BinRange> queries = new ArrayList<>();
-        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<BenchmarkResult> results = runSuite(filter, fork);
 
-        for (int i = 0; i < count; i++) {
-            long start = 400000L + random.nextLong(500000);
-            long end = start + random.nextLong(1000, 10000);
-            queries.add(BinRange.of(start, end, "QueryBank", "Visa", "TR"));
+        if (csvPath != null) {
+            List<String> lines = new ArrayList<>();
+            lines.add("target,dataSize,density,accessPattern,nsPerOp,nsPerOpError,bytesPerOp,gcCount,gcTimeMs,hitRate");
+            for (BenchmarkResult result : results) {
+                lines.add(result.toCsv());
+            }
+            java.nio.file.Files.write(java.nio.file.Paths.get(csvPath), lines);
         }
-
-        return queries;
-    }
-
-    private static long estimateTreeMapMemory(BinRepository repo) {
-
-        return repo.getRangeCount() * (32L + 100L);
-    }
-
-
-    public static void main(String[] args) {
-        System.out.println("BIN Search Algorithm Performance Analysis");
-        System.out.println("Target: <0.5ms average query time for 10k ranges");
-        System.out.println();
-
-        runComprehensiveBenchmark();
-
-        System.out.println("\n📋 Summary & Recommendations");
-        System.out.println("=".repeat(60));
-        System.out.println("• TreeMap: Better for simple point queries, lower memory");
-        System.out.println("• IntervalTree: Better for overlap queries, range searches");
-        System.out.println("• For production BIN routing: Choose based on query patterns");
-        System.out.println("• Target <0.5ms achieved by both for datasets <10k ranges");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,126 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+public final class BinSecondaryIndexes {
+
+    private final Map<String, List<BinRange>> byBank;
+    private final Map<String, List<BinRange>> byCountry;
+    private final Map<String, List<BinRange>> byCardType;
+
+    private BinSecondaryIndexes() {
+        this.byBank = new ConcurrentHashMap<>();
+        this.byCountry = new ConcurrentHashMap<>();
+        this.byCardType = new ConcurrentHashMap<>();
+    }
+
+    public static BinSecondaryIndexes empty() {
+        return new BinSecondaryIndexes();
+    }
+
+
+    public static BinSecondaryIndexes build(Collection<BinRange> ranges) {
+        BinSecondaryIndexes indexes = new BinSecondaryIndexes();
+
+        List<BinRange> sorted = new ArrayList<>(ranges);
+        Collections.sort(sorted);
+
+        group(sorted, BinRange::getBankName, indexes.byBank);
+        group(sorted, BinRange::getCountry, indexes.byCountry);
+        group(sorted, BinRange::getCardType, indexes.byCardType);
+
+        return indexes;
+    }
+
+    private static void group(List<BinRange> sorted, Function<BinRange, String> key,
+                              Map<String, List<BinRange>> target) {
+        Map<String, List<BinRange>> groups = new HashMap<>();
+        for (BinRange range : sorted) {
+            groups.computeIfAbsent(key.apply(range), k -> new ArrayList<>()).add(range);
+        }
+        for (Map.Entry<String, List<BinRange>> entry : groups.entrySet()) {
+            target.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+        }
+    }
+
+
+    public void add(BinRange range) {
+        insert(byBank, range.getBankName(), range);
+        insert(byCountry, range.getCountry(), range);
+        insert(byCardType, range.getCardType(), range);
+    }
+
+    public void remove(BinRange range) {
+        delete(byBank, range.getBankName(), range);
+        delete(byCountry, range.getCountry(), range);
+        delete(byCardType, range.getCardType(), range);
+    }
+
+
+    private static void insert(Map<String, List<BinRange>> index, String key, BinRange range) {
+        index.compute(key, (k, current) -> {
+            if (current == null) {
+                return List.of(range);
+            }
+
+            int pos = Collections.binarySearch(current, range);
+            if (pos >= 0 && current.get(pos).equals(range)) {
+                return current;
+            }
+            pos = (pos >= 0) ? pos : -pos - 1;
+
+            List<BinRange> next = new ArrayList<>(current.size() + 1);
+            next.addAll(current.subList(0, pos));
+            next.add(range);
+            next.addAll(current.subList(pos, current.size()));
+            return Collections.unmodifiableList(next);
+        });
+    }
+
+    private static void delete(Map<String, List<BinRange>> index, String key, BinRange range) {
+        index.computeIfPresent(key, (k, current) -> {
+            int pos = current.indexOf(range);
+            if (pos < 0) {
+                return current;
+            }
+            if (current.size() == 1) {
+                return null;
+            }
+
+            List<BinRange> next = new ArrayList<>(current);
+            next.remove(pos);
+            return Collections.unmodifiableList(next);
+        });
+    }
+
+
+    public List<BinRange> findByBank(String bankName) {
+        return byBank.getOrDefault(bankName, Collections.emptyList());
+    }
+
+    public List<BinRange> findByCountry(String country) {
+        return byCountry.getOrDefault(country, Collections.emptyList());
+    }
+
+    public List<BinRange> findByCardType(String cardType) {
+        return byCardType.getOrDefault(cardType, Collections.emptyList());
+    }
+
+    public Set<String> getBankNames() {
+        return Collections.unmodifiableSet(byBank.keySet());
+    }
+
+    public Set<String> getCountries() {
+        return Collections.unmodifiableSet(byCountry.keySet());
+    }
+
+    public Set<String> getCardTypes() {
+        return Collections.unmodifiableSet(byCardType.keySet());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BinSecondaryIndexes[banks=%d, countries=%d, cardTypes=%d]",
+                byBank.size(), byCountry.size(), byCardType.size());
+    }
+}
\ No newline at end of file
@@ -1,40 +1,69 @@
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 
 public class BinService {
 
+    private static final int BIN_FILE_FIELDS = 5;
+    private static final int DEFAULT_ROUTING_CACHE_SIZE = 4096;
+
+    private static final Comparator<BinRange> OUTERMOST_FIRST = Comparator
+            .comparingLong(BinRange::getStartBin)
+            .thenComparing(Comparator.comparingLong(BinRange::getEndBin).reversed());
+
     private final BinRangeRepository repository;
-    private final Map<String, List<BinRange>> bankCache;
-    private final Map<String, List<BinRange>> countryCache;
-    private volatile boolean cacheValid = false;
+    private final BinRoutingCache routingCache;
+    private volatile BinSecondaryIndexes indexes;
 
     public BinService(BinRangeRepository repository) {
+        this(repository, new BinRoutingCache(DEFAULT_ROUTING_CACHE_SIZE));
+    }
+
+    public BinService(BinRangeRepository repository, BinRoutingCache routingCache) {
         this.repository = Objects.requireNonNull(repository, "Repository cannot be null");
-        this.bankCache = new ConcurrentHashMap<>();
-        this.countryCache = new ConcurrentHashMap<>();
+        this.routingCache = Objects.requireNonNull(routingCache, "Routing cache cannot be null");
+        this.indexes = BinSecondaryIndexes.build(repository.findAll());
     }
 
 
     public PaymentRouting routePayment(CardNumber cardNumber) throws DomainException {
         Objects.requireNonNull(cardNumber, "Card number cannot be null");
 
-        long bin = cardNumber.getBin();
+        return routeBin(cardNumber.getBin());
+    }
+
+
+    public PaymentRouting routePayment(CharSequence cardNumber) throws DomainException {
+        Objects.requireNonNull(cardNumber, "Card number cannot be null");
+
+        long bin = CardNumber.parseBin(cardNumber);
+        if (bin == CardNumber.INVALID_BIN) {
+            throw new IllegalArgumentException("Invalid card number");
+        }
+
+        return routeBin(bin);
+    }
+
+
+    public PaymentRouting routeBin(long bin) throws DomainException {
+        PaymentRouting cached = routingCache.get(bin);
+        if (cached != null) {
+            return cached;
+        }
 
         try {
-            Optional<BinRange> range = repository.findRangeForBin(bin);
-
-            if (range.isPresent()) {
-                BinRange binRange = range.get();
-                return PaymentRouting.builder()
-                        .bankName(binRange.getBankName())
-                        .country(binRange.getCountry())
-                        .cardType(binRange.getCardType())
-                        .domesticTransaction(isDomesticTransaction(binRange))
-                        .riskLevel(calculateRiskLevel(binRange))
-                        .build();
+            long epoch = routingCache.currentEpoch();
+            BinRange binRange = repository.lookupBin(bin);
+
+            if (binRange != null) {
+                PaymentRouting routing = toRouting(binRange);
+                routingCache.put(bin, routing, epoch);
+                return routing;
             } else {
                 throw new UnknownBinException("No routing found for BIN: " + bin);
             }
@@ -52,40 +81,63 @@ public class BinService {
             return Collections.emptyMap();
         }
 
-        try {
+        long[] bins = new long[cardNumbers.size()];
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] = cardNumbers.get(i).getBin();
+        }
 
-            List<Long> bins = cardNumbers.stream()
-                    .map(CardNumber::getBin)
-                    .distinct()
-                    .collect(Collectors.toList());
+        PaymentRouting[] routings = new PaymentRouting[bins.length];
+        routePayments(bins, routings);
 
 
-            Map<Long, BinRange> binRanges = repository.findRangesForBins(bins);
+        Map<CardNumber, PaymentRouting> results = new HashMap<>();
 
+        for (int i = 0; i < bins.length; i++) {
+            if (routings[i] != null) {
+                results.put(cardNumbers.get(i), routings[i]);
+            } else {
 
-            Map<CardNumber, PaymentRouting> results = new HashMap<>();
+                logMissingBin(bins[i]);
+            }
+        }
 
-            for (CardNumber cardNumber : cardNumbers) {
-                long bin = cardNumber.getBin();
-                BinRange range = binRanges.get(bin);
+        return results;
+    }
 
-                if (range != null) {
-                    PaymentRouting routing = PaymentRouting.builder()
-                            .bankName(range.getBankName())
-                            .country(range.getCountry())
-                            .cardType(range.getCardType())
-                            .domesticTransaction(isDomesticTransaction(range))
-                            .riskLevel(calculateRiskLevel(range))
-                            .build();
 
-                    results.put(cardNumber, routing);
-                } else {
+    public int routePayments(long[] bins, PaymentRouting[] out) throws DomainException {
+        Objects.requireNonNull(bins, "Bins cannot be null");
+        Objects.requireNonNull(out, "Output array cannot be null");
+
+        if (out.length < bins.length) {
+            throw new IllegalArgumentException(
+                    String.format("Output array too small: %d < %d", out.length, bins.length));
+        }
+
+        try {
+            BinRange[] ranges = new BinRange[bins.length];
+            int found = repository.findRangesForBins(bins, ranges);
+
+
+            BinRange lastRange = null;
+            PaymentRouting lastRouting = null;
+
+            for (int i = 0; i < bins.length; i++) {
+                BinRange range = ranges[i];
 
-                    logMissingBin(bin);
+                if (range == null) {
+                    out[i] = null;
+                    continue;
                 }
+
+                if (range != lastRange) {
+                    lastRange = range;
+                    lastRouting = toRouting(range);
+                }
+                out[i] = lastRouting;
             }
 
-            return results;
+            return found;
 
         } catch (InfrastructureException e) {
             throw new BinRoutingException("Failed to route payments in batch", e);
@@ -99,8 +151,11 @@ public class BinService {
         validateBinRange(range);
 
         try {
-            repository.addRange(range);
-            invalidateCache();
+            synchronized (this) {
+                repository.addRange(range);
+                indexes.add(range);
+                routingCache.invalidate(range);
+            }
 
         } catch (OverlappingRangeException e) {
             throw new BinRangeConflictException(
@@ -112,20 +167,242 @@ public class BinService {
     }
 
 
-    public List<BinRange> findRangesByBank(String bankName) throws DomainException {
-        Objects.requireNonNull(bankName, "Bank name cannot be null");
+    public boolean removeBinRange(BinRange range) throws DomainException {
+        Objects.requireNonNull(range, "BIN range cannot be null");
 
-        if (bankName.trim().isEmpty()) {
-            throw new IllegalArgumentException("Bank name cannot be empty");
+        try {
+            synchronized (this) {
+                boolean removed = repository.delete(range);
+                if (removed) {
+                    indexes.remove(range);
+                    routingCache.invalidate(range);
+                }
+                return removed;
+            }
+
+        } catch (InfrastructureException e) {
+            throw new BinManagementException("Failed to remove BIN range: " + range, e);
         }
+    }
 
+
+    public BulkImportResult importBinFile(Path file, ConflictResolution resolution) throws DomainException {
+        Objects.requireNonNull(file, "File cannot be null");
+        requireBulkImportSupport();
+
+        List<String> lines;
         try {
-            ensureCacheValid();
-            return bankCache.getOrDefault(bankName, Collections.emptyList());
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new BinManagementException("Failed to read BIN file: " + file, e);
+        }
+
+        return importBinLines(lines, resolution);
+    }
+
+
+    public BulkImportResult importBinLines(List<String> lines, ConflictResolution resolution) throws DomainException {
+        Objects.requireNonNull(lines, "Lines cannot be null");
+        Objects.requireNonNull(resolution, "Conflict resolution cannot be null");
+        requireBulkImportSupport();
+
+        BinRange[] parsed = new BinRange[lines.size()];
+        ValidationError[] lineErrors = new ValidationError[lines.size()];
+
+        IntStream.range(0, lines.size()).parallel().forEach(i -> {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                return;
+            }
+
+            BinRange range = null;
+            try {
+                range = parseBinLine(line);
+                validateBinRange(range);
+                parsed[i] = range;
+            } catch (IllegalArgumentException | DomainException e) {
+                lineErrors[i] = (range != null)
+                        ? new ValidationError(range, i + 1, e.getMessage())
+                        : new ValidationError(i + 1, e.getMessage());
+            }
+        });
+
+        List<BinRange> candidates = new ArrayList<>(lines.size());
+        List<ValidationError> errors = new ArrayList<>();
+        for (int i = 0; i < parsed.length; i++) {
+            if (parsed[i] != null) {
+                candidates.add(parsed[i]);
+            } else if (lineErrors[i] != null) {
+                errors.add(lineErrors[i]);
+            }
+        }
+
+        return applyImport(candidates, errors, resolution);
+    }
+
+
+    public BulkImportResult importBinRanges(List<BinRange> ranges, ConflictResolution resolution) throws DomainException {
+        Objects.requireNonNull(ranges, "Ranges cannot be null");
+        Objects.requireNonNull(resolution, "Conflict resolution cannot be null");
+        requireBulkImportSupport();
+
+        ValidationError[] rangeErrors = new ValidationError[ranges.size()];
+
+        IntStream.range(0, ranges.size()).parallel().forEach(i -> {
+            BinRange range = Objects.requireNonNull(ranges.get(i), "BIN range cannot be null");
+            try {
+                validateBinRange(range);
+            } catch (DomainException e) {
+                rangeErrors[i] = new ValidationError(range, e.getMessage());
+            }
+        });
+
+        List<BinRange> candidates = new ArrayList<>(ranges.size());
+        List<ValidationError> errors = new ArrayList<>();
+        for (int i = 0; i < rangeErrors.length; i++) {
+            if (rangeErrors[i] == null) {
+                candidates.add(ranges.get(i));
+            } else {
+                errors.add(rangeErrors[i]);
+            }
+        }
+
+        return applyImport(candidates, errors, resolution);
+    }
+
+
+    private void requireBulkImportSupport() {
+        if (!repository.supportsReplaceAll()) {
+            throw new UnsupportedOperationException(
+                    repository.getClass().getSimpleName() + " does not support bulk BIN import");
+        }
+    }
+
+
+    private BulkImportResult applyImport(List<BinRange> candidates, List<ValidationError> errors,
+                                         ConflictResolution resolution) throws DomainException {
+        BinRange[] sorted = candidates.toArray(new BinRange[0]);
 
+        List<BinRange> accepted = new ArrayList<>(sorted.length);
+        List<BinRangeConflict> conflicts = new ArrayList<>();
+
+        if (repository.allowsNestedRanges()) {
+            Arrays.parallelSort(sorted, OUTERMOST_FIRST);
+            sweepNested(sorted, accepted, conflicts, resolution);
+        } else {
+            Arrays.parallelSort(sorted);
+            sweepFlat(sorted, accepted, conflicts, resolution);
+        }
+
+
+        BinSecondaryIndexes newIndexes = BinSecondaryIndexes.build(accepted);
+
+        try {
+            synchronized (this) {
+                repository.replaceAll(accepted);
+                indexes = newIndexes;
+                routingCache.invalidateAll();
+            }
+        } catch (OverlappingRangeException e) {
+            throw new BinRangeConflictException("Import produced overlapping ranges: " + e.getMessage(), e);
         } catch (InfrastructureException e) {
-            throw new BinQueryException("Failed to find ranges for bank: " + bankName, e);
+            throw new BinManagementException("Failed to swap in imported BIN table", e);
+        }
+
+        return new BulkImportResult(accepted, conflicts, errors);
+    }
+
+
+    private void sweepFlat(BinRange[] sorted, List<BinRange> accepted, List<BinRangeConflict> conflicts,
+                           ConflictResolution resolution) throws DomainException {
+        for (BinRange range : sorted) {
+            int lastIndex = accepted.size() - 1;
+            BinRange last = (lastIndex >= 0) ? accepted.get(lastIndex) : null;
+
+            if (last == null || !last.overlaps(range)) {
+                accepted.add(range);
+                continue;
+            }
+
+            resolveConflict(range, lastIndex, Long.MAX_VALUE, accepted, conflicts, resolution);
+        }
+    }
+
+
+    private void sweepNested(BinRange[] sorted, List<BinRange> accepted, List<BinRangeConflict> conflicts,
+                             ConflictResolution resolution) throws DomainException {
+        Deque<Integer> open = new ArrayDeque<>();
+
+        for (BinRange range : sorted) {
+            while (!open.isEmpty() && accepted.get(open.peek()).getEndBin() < range.getStartBin()) {
+                open.pop();
+            }
+
+            if (open.isEmpty()) {
+                open.push(accepted.size());
+                accepted.add(range);
+                continue;
+            }
+
+            BinRange enclosing = accepted.get(open.peek());
+            boolean duplicate = enclosing.getStartBin() == range.getStartBin()
+                    && enclosing.getEndBin() == range.getEndBin();
+            if (!duplicate && range.getEndBin() <= enclosing.getEndBin()) {
+                open.push(accepted.size());
+                accepted.add(range);
+                continue;
+            }
+
+            Integer top = open.pop();
+            long limit = open.isEmpty() ? Long.MAX_VALUE : accepted.get(open.peek()).getEndBin();
+            open.push(top);
+            resolveConflict(range, top, limit, accepted, conflicts, resolution);
+        }
+    }
+
+
+    private void resolveConflict(BinRange range, int existingIndex, long mergeLimit, List<BinRange> accepted,
+                                 List<BinRangeConflict> conflicts, ConflictResolution resolution)
+            throws DomainException {
+        BinRange existing = accepted.get(existingIndex);
+
+        switch (resolution) {
+            case FAIL_ON_CONFLICT:
+                throw new BinRangeConflictException(
+                        String.format("BIN range %s conflicts with range %s in import", range, existing),
+                        new OverlappingRangeException(existing, range));
+
+            case MERGE_RANGES:
+                long mergedEnd = Math.max(existing.getEndBin(), range.getEndBin());
+                if (!hasSameRouting(existing, range)) {
+                    conflicts.add(new BinRangeConflict(range, existing,
+                            "Skipped: cannot merge ranges with different routing"));
+                } else if (mergedEnd > mergeLimit) {
+                    conflicts.add(new BinRangeConflict(range, existing,
+                            "Skipped: merged range would cross its enclosing range"));
+                } else {
+                    BinRange merged = BinRange.of(existing.getStartBin(), mergedEnd,
+                            existing.getBankName(), existing.getCardType(), existing.getCountry());
+                    accepted.set(existingIndex, merged);
+                    conflicts.add(new BinRangeConflict(range, existing, "Merged into " + merged));
+                }
+                break;
+
+            default:
+                conflicts.add(new BinRangeConflict(range, existing, "Skipped due to overlap"));
+                break;
+        }
+    }
+
+
+    public List<BinRange> findRangesByBank(String bankName) throws DomainException {
+        Objects.requireNonNull(bankName, "Bank name cannot be null");
+
+        if (bankName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Bank name cannot be empty");
         }
+
+        return indexes.findByBank(bankName);
     }
 
 
@@ -136,18 +413,29 @@ public class BinService {
             throw new IllegalArgumentException("Country cannot be empty");
         }
 
-        try {
-            ensureCacheValid();
-            return countryCache.getOrDefault(country, Collections.emptyList());
+        return indexes.findByCountry(country);
+    }
 
-        } catch (InfrastructureException e) {
-            throw new BinQueryException("Failed to find ranges for country: " + country, e);
+
+    public List<BinRange> findRangesByCardType(String cardType) throws DomainException {
+        Objects.requireNonNull(cardType, "Card type cannot be null");
+
+        if (cardType.trim().isEmpty()) {
+            throw new IllegalArgumentException("Card type cannot be empty");
         }
+
+        return indexes.findByCardType(cardType);
     }
 
 
-    public void clearCache() {
-        invalidateCache();
+    public synchronized void clearCache() {
+        indexes = BinSecondaryIndexes.build(repository.findAll());
+        routingCache.invalidateAll();
+    }
+
+
+    public BinRoutingCache.CacheStatistics getRoutingCacheStatistics() {
+        return routingCache.getStatistics();
     }
 
 
@@ -169,6 +457,16 @@ public class BinService {
         }
     }
 
+    private PaymentRouting toRouting(BinRange range) {
+        return PaymentRouting.builder()
+                .bankName(range.getBankName())
+                .country(range.getCountry())
+                .cardType(range.getCardType())
+                .domesticTransaction(isDomesticTransaction(range))
+                .riskLevel(calculateRiskLevel(range))
+                .build();
+    }
+
     private boolean isDomesticTransaction(BinRange range) {
 
         return "TR".equals(range.getCountry());
@@ -185,57 +483,25 @@ public class BinService {
         }
     }
 
-    private void ensureCacheValid() throws InfrastructureException {
-        if (!cacheValid) {
-            refreshCache();
+    private BinRange parseBinLine(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != BIN_FILE_FIELDS) {
+            throw new IllegalArgumentException(
+                    String.format("Expected %d fields but found %d", BIN_FILE_FIELDS, fields.length));
         }
-    }
 
-    private synchronized void refreshCache() throws InfrastructureException {
-        if (cacheValid) return;
-
-        List<BinRange> allRanges = repository.findAll();
-
-
-        Map<String, List<BinRange>> newBankCache = allRanges.stream()
-                .collect(Collectors.groupingBy(BinRange::getBankName));
-
-
-        Map<String, List<BinRange>> newCountryCache = allRanges.stream()
-                .collect(Collectors.groupingBy(BinRange::getCountry));
-
-
-        bankCache.clear();
-        bankCache.putAll(newBankCache);
-        countryCache.clear();
-        countryCache.putAll(newCountryCache);
-
-        cacheValid = true;
-    }
-
-    private void invalidateCache() {
-        cacheValid = false;
-        bankCache.clear();
-        countryCache.clear();
+        return BinRange.of(
+                Long.parseLong(fields[0].trim()),
+                Long.parseLong(fields[1].trim()),
+                fields[2].trim(),
+                fields[3].trim(),
+                fields[4].trim());
     }
 
-    private void addRangeSkipConflicts(BinRange range, List<BinRange> successful, List<BinRangeConflict> conflicts) {
-        try {
-            repository.addRange(range);
-            successful.add(range);
-        } catch (OverlappingRangeException e) {
-            conflicts.add(new BinRangeConflict(range, e.getExistingRange(), "Skipped due to overlap"));
-        }
-    }
-
-    private void addRangeMergeConflicts(BinRange range, List<BinRange> successful, List<BinRangeConflict> conflicts) {
-
-        try {
-            repository.addRange(range);
-            successful.add(range);
-        } catch (OverlappingRangeException e) {
-            conflicts.add(new BinRangeConflict(range, e.getExistingRange(), "Merge not implemented"));
-        }
+    private boolean hasSameRouting(BinRange first, BinRange second) {
+        return first.getBankName().equals(second.getBankName()) &&
+                first.getCardType().equals(second.getCardType()) &&
+                first.getCountry().equals(second.getCountry());
     }
 
     private void logMissingBin(long bin) {
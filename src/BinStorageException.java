@@ -0,0 +1,10 @@
+public class BinStorageException extends InfrastructureException {
+
+    public BinStorageException(String message) {
+        super(message);
+    }
+
+    public BinStorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
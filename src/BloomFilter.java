@@ -1,53 +1,55 @@
-import java.util.BitSet;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 
 public final class BloomFilter {
 
-    private final BitSet bitSet;
+    private final AtomicLongArray words;
     private final int bitArraySize;
     private final int hashFunctionCount;
-    private int elementCount;
+    private final boolean blocked;
+    private final AtomicInteger elementCount;
 
 
-    private static final int[] HASH_SEEDS = {0x7ed55d16, 0xc761c23c, 0x165667b1};
+    private static final int BLOCK_BITS = 512;
+    private static final int WORDS_PER_BLOCK = BLOCK_BITS / Long.SIZE;
+    private static final long MURMUR_SEED = 0x7ed55d16L;
 
 
     private static final int DEFAULT_BIT_SIZE = 1000000;
     private static final int DEFAULT_HASH_COUNT = 3;
 
     public BloomFilter(int expectedElements, double falsePositiveRate) {
-        if (expectedElements <= 0) {
-            throw new IllegalArgumentException("Expected elements must be positive");
-        }
-        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
-            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
-        }
-
-
-        this.bitArraySize = (int) Math.ceil(-expectedElements * Math.log(falsePositiveRate) /
-                (Math.log(2) * Math.log(2)));
-
-
-        this.hashFunctionCount = Math.max(1, (int) Math.round(
-                (double) bitArraySize / expectedElements * Math.log(2)));
-
-        this.bitSet = new BitSet(bitArraySize);
-        this.elementCount = 0;
+        this(optimalBitCount(expectedElements, falsePositiveRate),
+                optimalHashCount(expectedElements, falsePositiveRate), false);
     }
 
     public BloomFilter(int bitArraySize, int hashFunctionCount) {
+        this(bitArraySize, hashFunctionCount, false);
+    }
+
+    private BloomFilter(int bitArraySize, int hashFunctionCount, boolean blocked) {
         if (bitArraySize <= 0) {
             throw new IllegalArgumentException("Bit array size must be positive");
         }
         if (hashFunctionCount <= 0) {
             throw new IllegalArgumentException("Hash function count must be positive");
         }
+        if (blocked && bitArraySize > Integer.MAX_VALUE - BLOCK_BITS) {
+            throw new IllegalArgumentException("Bit array size is too large for a blocked filter");
+        }
 
-        this.bitArraySize = bitArraySize;
-        this.hashFunctionCount = Math.min(hashFunctionCount, HASH_SEEDS.length);
-        this.bitSet = new BitSet(bitArraySize);
-        this.elementCount = 0;
+        this.blocked = blocked;
+        this.bitArraySize = blocked
+                ? (bitArraySize + BLOCK_BITS - 1) / BLOCK_BITS * BLOCK_BITS
+                : bitArraySize;
+        this.hashFunctionCount = hashFunctionCount;
+        this.words = new AtomicLongArray((int) (((long) this.bitArraySize + Long.SIZE - 1) / Long.SIZE));
+        this.elementCount = new AtomicInteger();
     }
 
 
@@ -62,27 +64,94 @@ public final class BloomFilter {
     }
 
 
+    public static BloomFilter createBlocked(int expectedElements, double falsePositiveRate) {
+        return new BloomFilter(optimalBitCount(expectedElements, falsePositiveRate),
+                optimalHashCount(expectedElements, falsePositiveRate), true);
+    }
+
+
+    private static int optimalBitCount(int expectedElements, double falsePositiveRate) {
+        if (expectedElements <= 0) {
+            throw new IllegalArgumentException("Expected elements must be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+
+        double bits = Math.ceil(-expectedElements * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        if (bits > Integer.MAX_VALUE - BLOCK_BITS) {
+            throw new IllegalArgumentException("Bloom filter would exceed the maximum bit array size");
+        }
+        return (int) bits;
+    }
+
+    private static int optimalHashCount(int expectedElements, double falsePositiveRate) {
+        int bits = optimalBitCount(expectedElements, falsePositiveRate);
+        return Math.max(1, (int) Math.round((double) bits / expectedElements * Math.log(2)));
+    }
+
+
     public void add(String element) {
         Objects.requireNonNull(element, "Element cannot be null");
 
-        int[] hashes = getHashValues(element);
-        for (int hash : hashes) {
-            int index = Math.abs(hash) % bitArraySize;
-            bitSet.set(index);
+        long[] hash = murmurHash3x64(element);
+        addHashes(hash[0], hash[1]);
+    }
+
+
+    public void add(long key) {
+        long h1 = fmix64(key ^ MURMUR_SEED);
+        addHashes(h1, fmix64(h1 + key));
+    }
+
+
+    private void addHashes(long h1, long h2) {
+        if (blocked) {
+            int base = blockBase(h1);
+            for (int i = 0; i < hashFunctionCount; i++) {
+                int bit = blockBit(h2, i);
+                setBit(base + (bit >>> 6), bit);
+            }
+        } else {
+            for (int i = 0; i < hashFunctionCount; i++) {
+                int index = index(h1, h2, i);
+                setBit(index >>> 6, index);
+            }
         }
 
-        elementCount++;
+        elementCount.incrementAndGet();
     }
 
 
     public boolean mightContain(String element) {
         Objects.requireNonNull(element, "Element cannot be null");
 
-        int[] hashes = getHashValues(element);
-        for (int hash : hashes) {
-            int index = Math.abs(hash) % bitArraySize;
-            if (!bitSet.get(index)) {
-                return false;
+        long[] hash = murmurHash3x64(element);
+        return containsHashes(hash[0], hash[1]);
+    }
+
+
+    public boolean mightContain(long key) {
+        long h1 = fmix64(key ^ MURMUR_SEED);
+        return containsHashes(h1, fmix64(h1 + key));
+    }
+
+
+    private boolean containsHashes(long h1, long h2) {
+        if (blocked) {
+            int base = blockBase(h1);
+            for (int i = 0; i < hashFunctionCount; i++) {
+                int bit = blockBit(h2, i);
+                if ((words.get(base + (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+        } else {
+            for (int i = 0; i < hashFunctionCount; i++) {
+                int index = index(h1, h2, i);
+                if ((words.get(index >>> 6) & (1L << index)) == 0) {
+                    return false;
+                }
             }
         }
 
@@ -90,6 +159,35 @@ public final class BloomFilter {
     }
 
 
+    private void setBit(int wordIndex, int bit) {
+        long mask = 1L << bit;
+        long current = words.get(wordIndex);
+        while ((current & mask) == 0) {
+            long witness = words.compareAndExchange(wordIndex, current, current | mask);
+            if (witness == current) {
+                return;
+            }
+            current = witness;
+        }
+    }
+
+    private int index(long h1, long h2, int i) {
+        long combined = h1 + i * h2;
+        return (int) Long.remainderUnsigned(combined, bitArraySize);
+    }
+
+    private int blockBase(long h1) {
+        int blockCount = bitArraySize / BLOCK_BITS;
+        return (int) Long.remainderUnsigned(h1, blockCount) * WORDS_PER_BLOCK;
+    }
+
+    private static int blockBit(long h2, int i) {
+        int low = (int) h2;
+        int high = (int) (h2 >>> 32) | 1;
+        return (low + i * high) & (BLOCK_BITS - 1);
+    }
+
+
     public void addAll(Iterable<String> elements) {
         Objects.requireNonNull(elements, "Elements cannot be null");
         for (String element : elements) {
@@ -110,119 +208,208 @@ public final class BloomFilter {
 
 
     public double getEstimatedFalsePositiveRate() {
-        if (elementCount == 0) return 0.0;
+        int count = elementCount.get();
+        if (count == 0) return 0.0;
 
 
-        double exponent = -(double) hashFunctionCount * elementCount / bitArraySize;
+        double exponent = -(double) hashFunctionCount * count / bitArraySize;
         double base = 1.0 - Math.exp(exponent);
         return Math.pow(base, hashFunctionCount);
     }
 
 
     public double getMemoryUtilization() {
-        return (double) bitSet.cardinality() / bitArraySize * 100.0;
+        return (double) getBitsSet() / bitArraySize * 100.0;
     }
 
 
     public void clear() {
-        bitSet.clear();
-        elementCount = 0;
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0L);
+        }
+        elementCount.set(0);
     }
 
 
-    public BloomFilter union(BloomFilter other) {
-        if (this.bitArraySize != other.bitArraySize ||
-                this.hashFunctionCount != other.hashFunctionCount) {
-            throw new IllegalArgumentException("Bloom filters must have same parameters for union");
+    public void writeTo(DataOutput out) throws IOException {
+        int length = words.length();
+        long[] snapshot = new long[length];
+        int nonZero = 0;
+        for (int i = 0; i < length; i++) {
+            snapshot[i] = words.get(i);
+            if (snapshot[i] != 0) {
+                nonZero++;
+            }
         }
 
-        BloomFilter result = new BloomFilter(bitArraySize, hashFunctionCount);
-        result.bitSet.or(this.bitSet);
-        result.bitSet.or(other.bitSet);
-        result.elementCount = this.elementCount + other.elementCount;
+        out.writeInt(bitArraySize);
+        out.writeInt(hashFunctionCount);
+        out.writeBoolean(blocked);
+        out.writeInt(elementCount.get());
+
+
+        boolean sparse = (long) nonZero * (Integer.BYTES + Long.BYTES) < (long) length * Long.BYTES;
+        out.writeBoolean(sparse);
+        if (sparse) {
+            out.writeInt(nonZero);
+            for (int i = 0; i < length; i++) {
+                if (snapshot[i] != 0) {
+                    out.writeInt(i);
+                    out.writeLong(snapshot[i]);
+                }
+            }
+        } else {
+            for (long word : snapshot) {
+                out.writeLong(word);
+            }
+        }
+    }
 
-        return result;
+
+    public void readFrom(DataInput in) throws IOException {
+        int storedBits = in.readInt();
+        int storedHashes = in.readInt();
+        boolean storedBlocked = in.readBoolean();
+        if (storedBits != bitArraySize || storedHashes != hashFunctionCount || storedBlocked != blocked) {
+            throw new IOException(String.format(
+                    "Bloom filter layout mismatch: stored bits=%d, hashes=%d, blocked=%s",
+                    storedBits, storedHashes, storedBlocked));
+        }
+
+        int storedElements = in.readInt();
+        clear();
+
+        if (in.readBoolean()) {
+            int nonZero = in.readInt();
+            for (int i = 0; i < nonZero; i++) {
+                int index = in.readInt();
+                if (index < 0 || index >= words.length()) {
+                    throw new IOException("Bloom filter word index out of range: " + index);
+                }
+                words.set(index, in.readLong());
+            }
+        } else {
+            for (int i = 0; i < words.length(); i++) {
+                words.set(i, in.readLong());
+            }
+        }
+        elementCount.set(storedElements);
     }
 
 
-    private int[] getHashValues(String element) {
-        int[] hashes = new int[Math.min(hashFunctionCount, HASH_SEEDS.length)];
+    public BloomFilter union(BloomFilter other) {
+        if (this.bitArraySize != other.bitArraySize ||
+                this.hashFunctionCount != other.hashFunctionCount ||
+                this.blocked != other.blocked) {
+            throw new IllegalArgumentException("Bloom filters must have same parameters for union");
+        }
 
-        for (int i = 0; i < hashes.length; i++) {
-            hashes[i] = murmurHash3(element, HASH_SEEDS[i]);
+        BloomFilter result = new BloomFilter(bitArraySize, hashFunctionCount, blocked);
+        for (int i = 0; i < words.length(); i++) {
+            result.words.set(i, this.words.get(i) | other.words.get(i));
         }
+        result.elementCount.set(this.elementCount.get() + other.elementCount.get());
 
-        return hashes;
+        return result;
     }
 
 
-    private int murmurHash3(String input, int seed) {
-        byte[] data = input.getBytes(java.nio.charset.StandardCharsets.UTF_8);
-        return murmurHash3(data, seed);
-    }
+    private static long[] murmurHash3x64(String input) {
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
 
-    private int murmurHash3(byte[] data, int seed) {
-        final int c1 = 0xcc9e2d51;
-        final int c2 = 0x1b873593;
-        final int r1 = 15;
-        final int r2 = 13;
-        final int m = 5;
-        final int n = 0xe6546b64;
+        long h1 = MURMUR_SEED;
+        long h2 = MURMUR_SEED;
 
-        int hash = seed;
+        int length = input.length();
+        int blockCount = length / 8;
 
+        for (int block = 0; block < blockCount; block++) {
+            int offset = block * 8;
+            long k1 = packChars(input, offset, 4);
+            long k2 = packChars(input, offset + 4, 4);
 
-        int length = data.length;
-        int numChunks = length / 4;
+            k1 *= c1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= c2;
+            h1 ^= k1;
 
-        for (int i = 0; i < numChunks; i++) {
-            int chunk = 0;
-            for (int j = 0; j < 4; j++) {
-                chunk |= (data[i * 4 + j] & 0xff) << (j * 8);
-            }
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
 
-            chunk *= c1;
-            chunk = Integer.rotateLeft(chunk, r1);
-            chunk *= c2;
+            k2 *= c2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= c1;
+            h2 ^= k2;
 
-            hash ^= chunk;
-            hash = Integer.rotateLeft(hash, r2);
-            hash = hash * m + n;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
         }
 
 
-        int remaining = length % 4;
+        int tailOffset = blockCount * 8;
+        int remaining = length - tailOffset;
         if (remaining > 0) {
-            int chunk = 0;
-            for (int i = 0; i < remaining; i++) {
-                chunk |= (data[numChunks * 4 + i] & 0xff) << (i * 8);
+            long k1 = packChars(input, tailOffset, Math.min(remaining, 4));
+            k1 *= c1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= c2;
+            h1 ^= k1;
+
+            if (remaining > 4) {
+                long k2 = packChars(input, tailOffset + 4, remaining - 4);
+                k2 *= c2;
+                k2 = Long.rotateLeft(k2, 33);
+                k2 *= c1;
+                h2 ^= k2;
             }
-
-            chunk *= c1;
-            chunk = Integer.rotateLeft(chunk, r1);
-            chunk *= c2;
-            hash ^= chunk;
         }
 
 
-        hash ^= length;
-        hash ^= (hash >>> 16);
-        hash *= 0x85ebca6b;
-        hash ^= (hash >>> 13);
-        hash *= 0xc2b2ae35;
-        hash ^= (hash >>> 16);
+        long byteLength = (long) length * 2;
+        h1 ^= byteLength;
+        h2 ^= byteLength;
 
-        return hash;
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        return new long[]{h1, h2};
+    }
+
+    private static long packChars(String input, int offset, int count) {
+        long packed = 0;
+        for (int i = 0; i < count; i++) {
+            packed |= (long) input.charAt(offset + i) << (i * 16);
+        }
+        return packed;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
     }
 
 
     public BloomFilterStatistics getStatistics() {
+        int bitsSet = getBitsSet();
         return new BloomFilterStatistics(
                 bitArraySize,
                 hashFunctionCount,
-                elementCount,
-                bitSet.cardinality(),
-                getMemoryUtilization(),
+                elementCount.get(),
+                bitsSet,
+                (double) bitsSet / bitArraySize * 100.0,
                 getEstimatedFalsePositiveRate()
         );
     }
@@ -237,11 +424,19 @@ public final class BloomFilter {
     }
 
     public int getElementCount() {
-        return elementCount;
+        return elementCount.get();
     }
 
     public int getBitsSet() {
-        return bitSet.cardinality();
+        int bitsSet = 0;
+        for (int i = 0; i < words.length(); i++) {
+            bitsSet += Long.bitCount(words.get(i));
+        }
+        return bitsSet;
+    }
+
+    public boolean isBlocked() {
+        return blocked;
     }
 
 
@@ -311,7 +506,7 @@ public final class BloomFilter {
 
     @Override
     public String toString() {
-        return String.format("BloomFilter{size=%d, hashes=%d, elements=%d, utilization=%.1f%%}",
-                bitArraySize, hashFunctionCount, elementCount, getMemoryUtilization());
+        return String.format("BloomFilter{size=%d, hashes=%d, blocked=%s, elements=%d, utilization=%.1f%%}",
+                bitArraySize, hashFunctionCount, blocked, elementCount.get(), getMemoryUtilization());
     }
 }
\ No newline at end of file
@@ -1,17 +1,23 @@
 
 import java.util.Objects;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 public final class CardNumber implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    public static final long INVALID_BIN = -1L;
+
+    private static final int MIN_DIGITS = 13;
+    private static final int MAX_DIGITS = 19;
+
     private final String number;
     private final long bin;
 
     private CardNumber(String number) {
         this.number = validateAndClean(number);
-        this.bin = extractBin(this.number);
+        this.bin = parseBin(this.number);
     }
 
     public static CardNumber of(String number) {
@@ -38,42 +44,117 @@ public final class CardNumber implements Serializable {
         }
 
 
-        if (!isValidLuhn(cleaned)) {
+        if (!isValidCardNumber(cleaned)) {
             throw new IllegalArgumentException("Invalid card number (Luhn check failed)");
         }
 
         return cleaned;
     }
 
-    private long extractBin(String cardNumber) {
+    public static long parseBin(CharSequence number) {
+        return parseBin(number, 0, number.length());
+    }
 
-        int binLength = Math.min(8, cardNumber.length() - 4);
-        binLength = Math.max(6, binLength);
 
-        return Long.parseLong(cardNumber.substring(0, binLength));
-    }
+    public static long parseBin(CharSequence number, int from, int to) {
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (!isSeparator(c)) {
+                return INVALID_BIN;
+            }
+        }
 
+        if (digits < MIN_DIGITS || digits > MAX_DIGITS) {
+            return INVALID_BIN;
+        }
 
-    private boolean isValidLuhn(String number) {
+        int binLength = binLength(digits);
+        long bin = 0;
         int sum = 0;
-        boolean isEven = false;
+        int position = 0;
+
+        for (int i = from; i < to; i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                continue;
+            }
+
+            int digit = c - '0';
+            if (position < binLength) {
+                bin = bin * 10 + digit;
+            }
+            sum += luhnDigit(digit, digits, position);
+            position++;
+        }
+
+        return (sum % 10 == 0) ? bin : INVALID_BIN;
+    }
+
+
+    public static long parseBin(ByteBuffer buffer, int offset, int length) {
+        int end = offset + length;
+        int digits = 0;
+        for (int i = offset; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                digits++;
+            } else if (!isSeparator((char) b)) {
+                return INVALID_BIN;
+            }
+        }
 
+        if (digits < MIN_DIGITS || digits > MAX_DIGITS) {
+            return INVALID_BIN;
+        }
 
-        for (int i = number.length() - 1; i >= 0; i--) {
-            int digit = Character.getNumericValue(number.charAt(i));
+        int binLength = binLength(digits);
+        long bin = 0;
+        int sum = 0;
+        int position = 0;
 
-            if (isEven) {
-                digit *= 2;
-                if (digit > 9) {
-                    digit -= 9;
-                }
+        for (int i = offset; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                continue;
             }
 
-            sum += digit;
-            isEven = !isEven;
+            int digit = b - '0';
+            if (position < binLength) {
+                bin = bin * 10 + digit;
+            }
+            sum += luhnDigit(digit, digits, position);
+            position++;
         }
 
-        return sum % 10 == 0;
+        return (sum % 10 == 0) ? bin : INVALID_BIN;
+    }
+
+
+    public static boolean isValidCardNumber(CharSequence number) {
+        return parseBin(number) != INVALID_BIN;
+    }
+
+
+    private static int binLength(int digits) {
+        return Math.max(6, Math.min(8, digits - 4));
+    }
+
+
+    private static int luhnDigit(int digit, int totalDigits, int position) {
+        if (((totalDigits - position) & 1) == 0) {
+            digit *= 2;
+            if (digit > 9) {
+                digit -= 9;
+            }
+        }
+        return digit;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '-' || Character.isWhitespace(c);
     }
 
     public String getNumber() {
@@ -0,0 +1,668 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+
+final class ColumnarRuleCompiler {
+
+    private static final byte FALSE = 0;
+    private static final byte TRUE = 1;
+    private static final byte FAILED = 2;
+
+    private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE + 1);
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+    private static final BigDecimal INT_MIN = BigDecimal.valueOf(Integer.MIN_VALUE + 1);
+    private static final BigDecimal INT_MAX = BigDecimal.valueOf(Integer.MAX_VALUE);
+
+    private ColumnarRuleCompiler() {
+    }
+
+
+    interface VectorCondition {
+        Mask evaluate(TransactionBatch batch, long[] selection, Frame frame);
+    }
+
+    private interface Kernel {
+        Mask apply(TransactionBatch batch);
+    }
+
+    private interface ScalarTest {
+        boolean test(Object value) throws RuleEvaluationException;
+    }
+
+
+    static final class Mask {
+        private final long[] values;
+        private final long[] errors;
+
+        Mask(long[] values, long[] errors) {
+            this.values = values;
+            this.errors = errors;
+        }
+
+        long[] getValues() {
+            return values;
+        }
+
+        long[] getErrors() {
+            return errors == null ? new long[values.length] : errors;
+        }
+
+        private Mask restrict(long[] selection) {
+            return new Mask(and(values, selection), errors == null ? null : and(errors, selection));
+        }
+    }
+
+
+    static final class Frame {
+        private final Map<String, Mask> shared = new HashMap<>();
+        private long evaluations;
+        private long reuses;
+
+        private Mask compute(String key, Kernel kernel, TransactionBatch batch) {
+            Mask mask = shared.get(key);
+            if (mask != null) {
+                reuses++;
+                return mask;
+            }
+            evaluations++;
+            mask = kernel.apply(batch);
+            shared.put(key, mask);
+            return mask;
+        }
+
+        long getEvaluations() {
+            return evaluations;
+        }
+
+        long getReuses() {
+            return reuses;
+        }
+    }
+
+
+    static VectorCondition compile(ASTNode ast) {
+        Objects.requireNonNull(ast, "AST cannot be null");
+        if (RuleCompiler.producesBoolean(ast)) {
+            return condition(ast);
+        }
+
+
+        if (constantOf(ast) != null || slotOf(ast) != null) {
+            return constant(false);
+        }
+        return new RowCondition(ast, true);
+    }
+
+
+    static long[] allRows(int size) {
+        long[] words = new long[wordCount(size)];
+        Arrays.fill(words, -1L);
+        if ((size & 63) != 0) {
+            words[words.length - 1] = (1L << size) - 1;
+        }
+        return words;
+    }
+
+
+    private static VectorCondition condition(ASTNode node) {
+        if (node instanceof ASTNode.AndNode) {
+            return chain(node, true);
+        }
+        if (node instanceof ASTNode.OrNode) {
+            return chain(node, false);
+        }
+        if (node instanceof ASTNode.NotNode) {
+            VectorCondition operand = truth(((ASTNode.NotNode) node).getOperand());
+            return (batch, selection, frame) -> {
+                Mask mask = operand.evaluate(batch, selection, frame);
+                long[] values = new long[selection.length];
+                for (int w = 0; w < values.length; w++) {
+                    long failed = mask.errors == null ? 0 : mask.errors[w];
+                    values[w] = selection[w] & ~mask.values[w] & ~failed;
+                }
+                return new Mask(values, mask.errors);
+            };
+        }
+
+        Kernel kernel = comparison(node);
+        if (kernel == null) {
+            return new RowCondition(node, false);
+        }
+        return new ColumnCondition(node.getNodeType() + ":" + node.toExpressionString(), kernel);
+    }
+
+    private static VectorCondition truth(ASTNode node) {
+        if (RuleCompiler.producesBoolean(node)) {
+            return condition(node);
+        }
+
+        Object constant = constantOf(node);
+        if (constant != null) {
+            return constant(ASTNode.isTrue(constant));
+        }
+        RuleCompiler.FieldSlot slot = slotOf(node);
+        if (slot != null) {
+            return new ColumnCondition(node.getNodeType() + ":" + slot.getFieldName(), truthKernel(slot));
+        }
+        return new RowCondition(node, false);
+    }
+
+    private static VectorCondition chain(ASTNode node, boolean conjunction) {
+        List<VectorCondition> terms = new ArrayList<>();
+        flatten(node, conjunction, terms);
+        VectorCondition[] chain = terms.toArray(new VectorCondition[0]);
+
+        if (conjunction) {
+            return (batch, selection, frame) -> {
+                long[] remaining = selection;
+                long[] errors = null;
+                for (VectorCondition term : chain) {
+                    if (isEmpty(remaining)) {
+                        break;
+                    }
+                    Mask mask = term.evaluate(batch, remaining, frame);
+                    errors = or(errors, mask.errors);
+                    remaining = mask.values;
+                }
+                return new Mask(remaining == selection ? selection.clone() : remaining, errors);
+            };
+        }
+
+        return (batch, selection, frame) -> {
+            long[] pending = selection.clone();
+            long[] values = new long[selection.length];
+            long[] errors = null;
+            for (VectorCondition term : chain) {
+                if (isEmpty(pending)) {
+                    break;
+                }
+                Mask mask = term.evaluate(batch, pending, frame);
+                errors = or(errors, mask.errors);
+                for (int w = 0; w < values.length; w++) {
+                    long failed = mask.errors == null ? 0 : mask.errors[w];
+                    values[w] |= mask.values[w];
+                    pending[w] &= ~mask.values[w] & ~failed;
+                }
+            }
+            return new Mask(values, errors);
+        };
+    }
+
+    private static void flatten(ASTNode node, boolean conjunction, List<VectorCondition> terms) {
+        if (conjunction && node instanceof ASTNode.AndNode) {
+            flatten(((ASTNode.AndNode) node).getLeft(), true, terms);
+            flatten(((ASTNode.AndNode) node).getRight(), true, terms);
+        } else if (!conjunction && node instanceof ASTNode.OrNode) {
+            flatten(((ASTNode.OrNode) node).getLeft(), false, terms);
+            flatten(((ASTNode.OrNode) node).getRight(), false, terms);
+        } else {
+            terms.add(truth(node));
+        }
+    }
+
+    private static VectorCondition constant(boolean value) {
+        return (batch, selection, frame) -> new Mask(value ? selection.clone() : new long[selection.length], null);
+    }
+
+
+    private static final class ColumnCondition implements VectorCondition {
+        private final String key;
+        private final Kernel kernel;
+
+        ColumnCondition(String key, Kernel kernel) {
+            this.key = key;
+            this.kernel = kernel;
+        }
+
+        @Override
+        public Mask evaluate(TransactionBatch batch, long[] selection, Frame frame) {
+            return frame.compute(key, kernel, batch).restrict(selection);
+        }
+    }
+
+
+    private static final class RowCondition implements VectorCondition {
+        private final ASTNode node;
+        private final boolean strict;
+
+        RowCondition(ASTNode node, boolean strict) {
+            this.node = node;
+            this.strict = strict;
+        }
+
+        @Override
+        public Mask evaluate(TransactionBatch batch, long[] selection, Frame frame) {
+            long[] values = new long[selection.length];
+            long[] errors = null;
+            for (int w = 0; w < selection.length; w++) {
+                long pending = selection[w];
+                while (pending != 0) {
+                    long bit = pending & -pending;
+                    int row = (w << 6) + Long.numberOfTrailingZeros(pending);
+                    pending ^= bit;
+
+                    try {
+                        Object result = node.evaluate(batch.contextAt(row));
+                        boolean matched = strict
+                                ? result instanceof Boolean && (Boolean) result
+                                : ASTNode.isTrue(result);
+                        if (matched) {
+                            values[w] |= bit;
+                        }
+                    } catch (RuleEvaluationException | RuntimeException e) {
+                        if (errors == null) {
+                            errors = new long[selection.length];
+                        }
+                        errors[w] |= bit;
+                    }
+                }
+            }
+            return new Mask(values, errors);
+        }
+    }
+
+
+    private static Kernel comparison(ASTNode node) {
+        if (node instanceof ASTNode.EqualsNode || node instanceof ASTNode.GreaterThanNode) {
+            ASTNode.BinaryOperatorNode binary = (ASTNode.BinaryOperatorNode) node;
+            RuleCompiler.FieldSlot slot = slotOf(binary.getLeft());
+            Object constant = constantOf(binary.getRight());
+            boolean fieldOnLeft = true;
+            if (slot == null || constant == null) {
+                slot = slotOf(binary.getRight());
+                constant = constantOf(binary.getLeft());
+                fieldOnLeft = false;
+            }
+            if (slot == null || constant == null) {
+                return null;
+            }
+            return node instanceof ASTNode.EqualsNode
+                    ? equalsKernel(slot, constant, fieldOnLeft)
+                    : greaterThanKernel(slot, constant, fieldOnLeft);
+        }
+        if (node instanceof ASTNode.InNode) {
+            ASTNode.InNode in = (ASTNode.InNode) node;
+            RuleCompiler.FieldSlot slot = slotOf(in.getLeft());
+            if (slot == null || in.getConstantSet() == null) {
+                return null;
+            }
+            return inKernel(slot, in.getConstantSet());
+        }
+        if (node instanceof ASTNode.BetweenNode) {
+            ASTNode.BetweenNode between = (ASTNode.BetweenNode) node;
+            RuleCompiler.FieldSlot slot = slotOf(between.getValue());
+            if (slot == null || !between.hasConstantBounds()) {
+                return null;
+            }
+            return betweenKernel(slot, between);
+        }
+        return null;
+    }
+
+    private static Kernel equalsKernel(RuleCompiler.FieldSlot slot, Object constant, boolean fieldOnLeft) {
+        if (isDecimal(slot)) {
+            if (!(constant instanceof BigDecimal)) {
+                return noMatches();
+            }
+            BigDecimal expected = (BigDecimal) constant;
+            Long minorUnits = toMinorUnits(expected, TransactionBatch.AMOUNT_SCALE);
+            if (minorUnits == null || expected.scale() < Byte.MIN_VALUE || expected.scale() > Byte.MAX_VALUE) {
+                return noMatches();
+            }
+            long units = minorUnits;
+            byte scale = (byte) expected.scale();
+            return batch -> new Mask(decimalEquals(batch.decimalColumn(slot), batch.scaleColumn(slot),
+                    units, scale, batch.size()), null);
+        }
+        if (isInteger(slot)) {
+            return constant instanceof Integer ? null : noMatches();
+        }
+        return codeKernel(slot, value -> fieldOnLeft
+                ? Objects.equals(value, constant)
+                : Objects.equals(constant, value));
+    }
+
+    private static Kernel greaterThanKernel(RuleCompiler.FieldSlot slot, Object constant, boolean fieldOnLeft) {
+        if (isDecimal(slot)) {
+            if (!(constant instanceof BigDecimal)) {
+                return allFailed();
+            }
+            BigDecimal threshold = ((BigDecimal) constant).movePointRight(TransactionBatch.AMOUNT_SCALE);
+            return fieldOnLeft
+                    ? rangeKernel(slot, threshold.setScale(0, RoundingMode.FLOOR).add(BigDecimal.ONE), null, true)
+                    : rangeKernel(slot, null, threshold.setScale(0, RoundingMode.CEILING).subtract(BigDecimal.ONE),
+                    true);
+        }
+        if (isInteger(slot)) {
+            return constant instanceof Integer ? null : allFailed();
+        }
+        return codeKernel(slot, value -> fieldOnLeft
+                ? RuleCompiler.compareGreater(value, constant)
+                : RuleCompiler.compareGreater(constant, value));
+    }
+
+    private static Kernel inKernel(RuleCompiler.FieldSlot slot, ConstantSet set) {
+        if (isDecimal(slot) || isInteger(slot)) {
+            long[] candidates = scaledConstants(set, isDecimal(slot) ? TransactionBatch.AMOUNT_SCALE : 0);
+            if (candidates.length == 0) {
+                return noMatches();
+            }
+            if (isDecimal(slot)) {
+                return batch -> new Mask(setWords(batch.decimalColumn(slot), candidates, batch.size()), null);
+            }
+            return batch -> new Mask(setWords(batch.intColumn(slot), candidates, batch.size()), null);
+        }
+        return codeKernel(slot, set::contains);
+    }
+
+    private static Kernel betweenKernel(RuleCompiler.FieldSlot slot, ASTNode.BetweenNode between) {
+        if (isDecimal(slot) || isInteger(slot)) {
+            int scale = isDecimal(slot) ? TransactionBatch.AMOUNT_SCALE : 0;
+            BigDecimal lower = ((ASTNode.NumberNode) between.getLower()).getValue().movePointRight(scale);
+            BigDecimal upper = ((ASTNode.NumberNode) between.getUpper()).getValue().movePointRight(scale);
+            return rangeKernel(slot, lower.setScale(0, RoundingMode.CEILING),
+                    upper.setScale(0, RoundingMode.FLOOR), true);
+        }
+        return codeKernel(slot, between::isWithinBounds);
+    }
+
+    private static Kernel truthKernel(RuleCompiler.FieldSlot slot) {
+        if (isDecimal(slot)) {
+            return batch -> new Mask(rangeWords(batch.decimalColumn(slot), TransactionBatch.NULL_AMOUNT,
+                    0, 0, true, batch.size()), null);
+        }
+        if (isInteger(slot)) {
+            return batch -> new Mask(rangeWords(batch.intColumn(slot), TransactionBatch.NULL_INT,
+                    0, 0, true, batch.size()), null);
+        }
+        return codeKernel(slot, ASTNode::isTrue);
+    }
+
+
+    private static Kernel rangeKernel(RuleCompiler.FieldSlot slot, BigDecimal lower, BigDecimal upper,
+                                      boolean nullFails) {
+        boolean decimal = isDecimal(slot);
+        BigDecimal min = decimal ? LONG_MIN : INT_MIN;
+        BigDecimal max = decimal ? LONG_MAX : INT_MAX;
+        boolean failNulls = nullFails && slot.isNullable();
+
+        BigDecimal low = lower == null ? min : lower.max(min);
+        BigDecimal high = upper == null ? max : upper.min(max);
+        if (low.compareTo(high) > 0) {
+            if (!failNulls) {
+                return noMatches();
+            }
+            return decimal
+                    ? batch -> new Mask(new long[wordCount(batch.size())],
+                    nullWords(batch.decimalColumn(slot), TransactionBatch.NULL_AMOUNT, batch.size()))
+                    : batch -> new Mask(new long[wordCount(batch.size())],
+                    nullWords(batch.intColumn(slot), TransactionBatch.NULL_INT, batch.size()));
+        }
+
+        long lo = low.longValueExact();
+        long hi = high.longValueExact();
+        if (decimal) {
+            return batch -> {
+                long[] column = batch.decimalColumn(slot);
+                return new Mask(rangeWords(column, TransactionBatch.NULL_AMOUNT, lo, hi, false, batch.size()),
+                        failNulls ? nullWords(column, TransactionBatch.NULL_AMOUNT, batch.size()) : null);
+            };
+        }
+        return batch -> {
+            int[] column = batch.intColumn(slot);
+            return new Mask(rangeWords(column, TransactionBatch.NULL_INT, lo, hi, false, batch.size()),
+                    failNulls ? nullWords(column, TransactionBatch.NULL_INT, batch.size()) : null);
+        };
+    }
+
+    private static Kernel codeKernel(RuleCompiler.FieldSlot slot, ScalarTest test) {
+        Object[] constants = slot.getValueType().getEnumConstants();
+        return batch -> {
+            Object[] domain = constants != null ? constants : batch.getDictionary().snapshot();
+            byte[] outcomes = new byte[domain.length + 1];
+            outcomes[0] = outcome(test, null);
+            for (int code = 0; code < domain.length; code++) {
+                outcomes[code + 1] = outcome(test, domain[code]);
+            }
+            return codeWords(batch.intColumn(slot), outcomes, batch.size());
+        };
+    }
+
+    private static byte outcome(ScalarTest test, Object value) {
+        try {
+            return test.test(value) ? TRUE : FALSE;
+        } catch (RuleEvaluationException | RuntimeException e) {
+            return FAILED;
+        }
+    }
+
+    private static Kernel noMatches() {
+        return batch -> new Mask(new long[wordCount(batch.size())], null);
+    }
+
+    private static Kernel allFailed() {
+        return batch -> new Mask(new long[wordCount(batch.size())], allRows(batch.size()));
+    }
+
+
+    private static long[] rangeWords(long[] column, long nullValue, long lo, long hi, boolean negate, int size) {
+        long[] words = new long[wordCount(size)];
+        for (int w = 0, base = 0; w < words.length; w++, base += 64) {
+            int end = Math.min(base + 64, size);
+            long word = 0;
+            for (int i = base; i < end; i++) {
+                long value = column[i];
+                if (value != nullValue && (value >= lo && value <= hi) != negate) {
+                    word |= 1L << i;
+                }
+            }
+            words[w] = word;
+        }
+        return words;
+    }
+
+    private static long[] rangeWords(int[] column, int nullValue, long lo, long hi, boolean negate, int size) {
+        long[] words = new long[wordCount(size)];
+        for (int w = 0, base = 0; w < words.length; w++, base += 64) {
+            int end = Math.min(base + 64, size);
+            long word = 0;
+            for (int i = base; i < end; i++) {
+                int value = column[i];
+                if (value != nullValue && (value >= lo && value <= hi) != negate) {
+                    word |= 1L << i;
+                }
+            }
+            words[w] = word;
+        }
+        return words;
+    }
+
+    private static long[] nullWords(long[] column, long nullValue, int size) {
+        long[] words = new long[wordCount(size)];
+        boolean any = false;
+        for (int w = 0, base = 0; w < words.length; w++, base += 64) {
+            int end = Math.min(base + 64, size);
+            long word = 0;
+            for (int i = base; i < end; i++) {
+                if (column[i] == nullValue) {
+                    word |= 1L << i;
+                }
+            }
+            words[w] = word;
+            any |= word != 0;
+        }
+        return any ? words : null;
+    }
+
+    private static long[] nullWords(int[] column, int nullValue, int size) {
+        long[] words = new long[wordCount(size)];
+        boolean any = false;
+        for (int w = 0, base = 0; w < words.length; w++, base += 64) {
+            int end = Math.min(base + 64, size);
+            long word = 0;
+            for (int i = base; i < end; i++) {
+                if (column[i] == nullValue) {
+                    word |= 1L << i;
+                }
+            }
+            words[w] = word;
+            any |= word != 0;
+        }
+        return any ? words : null;
+    }
+
+    private static long[] setWords(long[] column, long[] candidates, int size) {
+        long[] words = new long[wordCount(size)];
+        for (int w = 0, base = 0; w < words.length; w++, base += 64) {
+            int end = Math.min(base + 64, size);
+            long word = 0;
+            for (int i = base; i < end; i++) {
+                long value = column[i];
+                if (value != TransactionBatch.NULL_AMOUNT && Arrays.binarySearch(candidates, value) >= 0) {
+                    word |= 1L << i;
+                }
+            }
+            words[w] = word;
+        }
+        return words;
+    }
+
+    private static long[] setWords(int[] column, long[] candidates, int size) {
+        long[] words = new long[wordCount(size)];
+        for (int w = 0, base = 0; w < words.length; w++, base += 64) {
+            int end = Math.min(base + 64, size);
+            long word = 0;
+            for (int i = base; i < end; i++) {
+                int value = column[i];
+                if (value != TransactionBatch.NULL_INT && Arrays.binarySearch(candidates, value) >= 0) {
+                    word |= 1L << i;
+                }
+            }
+            words[w] = word;
+        }
+        return words;
+    }
+
+    private static long[] decimalEquals(long[] column, byte[] scales, long expected, byte scale, int size) {
+        long[] words = new long[wordCount(size)];
+        for (int w = 0, base = 0; w < words.length; w++, base += 64) {
+            int end = Math.min(base + 64, size);
+            long word = 0;
+            for (int i = base; i < end; i++) {
+                if (column[i] == expected && scales[i] == scale) {
+                    word |= 1L << i;
+                }
+            }
+            words[w] = word;
+        }
+        return words;
+    }
+
+    private static Mask codeWords(int[] codes, byte[] outcomes, int size) {
+        long[] values = new long[wordCount(size)];
+        long[] errors = new long[values.length];
+        boolean anyFailed = false;
+        for (int w = 0, base = 0; w < values.length; w++, base += 64) {
+            int end = Math.min(base + 64, size);
+            long word = 0;
+            long failed = 0;
+            for (int i = base; i < end; i++) {
+                byte outcome = outcomes[codes[i] + 1];
+                if (outcome == TRUE) {
+                    word |= 1L << i;
+                } else if (outcome == FAILED) {
+                    failed |= 1L << i;
+                }
+            }
+            values[w] = word;
+            errors[w] = failed;
+            anyFailed |= failed != 0;
+        }
+        return new Mask(values, anyFailed ? errors : null);
+    }
+
+
+    private static long[] scaledConstants(ConstantSet set, int scale) {
+        return set.getValues().stream()
+                .map(ConstantSet::toDecimal)
+                .filter(Objects::nonNull)
+                .map(value -> toMinorUnits(value, scale))
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    private static Long toMinorUnits(BigDecimal value, int scale) {
+        try {
+            return value.setScale(scale).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static Object constantOf(ASTNode node) {
+        if (node instanceof ASTNode.NumberNode) {
+            return ((ASTNode.NumberNode) node).getValue();
+        }
+        if (node instanceof ASTNode.StringNode) {
+            return ((ASTNode.StringNode) node).getValue();
+        }
+        if (node instanceof ASTNode.EnumNode) {
+            return ((ASTNode.EnumNode) node).getEnumValue();
+        }
+        return null;
+    }
+
+    private static RuleCompiler.FieldSlot slotOf(ASTNode node) {
+        if (node instanceof ASTNode.FieldNode) {
+            return RuleCompiler.FieldSlot.resolve(((ASTNode.FieldNode) node).getFieldName());
+        }
+        return null;
+    }
+
+    private static boolean isDecimal(RuleCompiler.FieldSlot slot) {
+        return slot.getValueType() == BigDecimal.class;
+    }
+
+    private static boolean isInteger(RuleCompiler.FieldSlot slot) {
+        return slot.getValueType() == Integer.class;
+    }
+
+
+    private static int wordCount(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    private static boolean isEmpty(long[] words) {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long[] and(long[] left, long[] right) {
+        long[] result = new long[left.length];
+        for (int w = 0; w < result.length; w++) {
+            result[w] = left[w] & right[w];
+        }
+        return result;
+    }
+
+    private static long[] or(long[] accumulated, long[] next) {
+        if (next == null) {
+            return accumulated;
+        }
+        if (accumulated == null) {
+            return next.clone();
+        }
+        for (int w = 0; w < accumulated.length; w++) {
+            accumulated[w] |= next[w];
+        }
+        return accumulated;
+    }
+}
@@ -0,0 +1,131 @@
+import java.math.BigDecimal;
+import java.util.*;
+
+
+final class ConstantSet {
+
+    private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private final List<Object> values;
+    private final BigDecimal[] numbers;
+    private final long[] integers;
+    private final Set<Object> others;
+
+
+    private ConstantSet(List<Object> values) {
+        this.values = Collections.unmodifiableList(new ArrayList<>(values));
+
+        TreeSet<BigDecimal> numeric = new TreeSet<>();
+        Set<Object> nonNumeric = new HashSet<>();
+        for (Object value : values) {
+            BigDecimal number = toDecimal(value);
+            if (number != null) {
+                numeric.add(number);
+            } else if (value != null) {
+                nonNumeric.add(value);
+            }
+        }
+
+        this.numbers = numeric.toArray(new BigDecimal[0]);
+        this.integers = numeric.stream()
+                .filter(ConstantSet::isLongValued)
+                .mapToLong(BigDecimal::longValue)
+                .toArray();
+        this.others = Set.copyOf(nonNumeric);
+    }
+
+
+    static ConstantSet of(List<ASTNode> elements) {
+        List<Object> values = new ArrayList<>(elements.size());
+        for (ASTNode element : elements) {
+            if (element instanceof ASTNode.NumberNode) {
+                values.add(((ASTNode.NumberNode) element).getValue());
+            } else if (element instanceof ASTNode.StringNode) {
+                values.add(((ASTNode.StringNode) element).getValue());
+            } else if (element instanceof ASTNode.EnumNode) {
+                values.add(((ASTNode.EnumNode) element).getEnumValue());
+            } else {
+                return null;
+            }
+        }
+        return new ConstantSet(values);
+    }
+
+
+    boolean contains(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return Arrays.binarySearch(integers, ((Number) value).longValue()) >= 0;
+        }
+        if (value instanceof BigDecimal) {
+            return containsDecimal((BigDecimal) value);
+        }
+        if (value instanceof Number) {
+            BigDecimal number = toDecimal(value);
+            return number != null && containsDecimal(number);
+        }
+        return others.contains(value);
+    }
+
+    private boolean containsDecimal(BigDecimal value) {
+        int low = 0;
+        int high = numbers.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = numbers[mid].compareTo(value);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    boolean mayContain(Class<?> type) {
+        if (Number.class.isAssignableFrom(type)) {
+            return numbers.length > 0;
+        }
+        for (Object other : others) {
+            if (type.isInstance(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    List<Object> getValues() {
+        return values;
+    }
+
+    int size() {
+        return numbers.length + others.size();
+    }
+
+
+    static BigDecimal toDecimal(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            return Double.isFinite(d) ? BigDecimal.valueOf(d) : null;
+        }
+        return null;
+    }
+
+    private static boolean isLongValued(BigDecimal value) {
+        return value.signum() == 0
+                || (value.stripTrailingZeros().scale() <= 0
+                && value.compareTo(LONG_MIN) >= 0 && value.compareTo(LONG_MAX) <= 0);
+    }
+}
@@ -0,0 +1,290 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public final class FraudAlertStore implements AutoCloseable {
+
+    private static final Comparator<StoredAlert> TIME_ORDER = Comparator
+            .comparing((StoredAlert stored) -> stored.alert.getAlertTime())
+            .thenComparingLong(stored -> stored.sequence);
+
+    private static final Comparator<StoredAlert> SCORE_ORDER = Comparator
+            .comparingInt((StoredAlert stored) -> stored.alert.getCompositeRiskScore())
+            .thenComparing(TIME_ORDER)
+            .reversed();
+
+    private final int maxAlerts;
+    private final Duration retention;
+
+    private final Map<String, StoredAlert> alertsById;
+    private final ConcurrentSkipListMap<StoredAlert, FraudAlert> timeIndex;
+    private final Map<String, ConcurrentSkipListMap<StoredAlert, FraudAlert>> cardIndex;
+    private final Map<FraudAlert.AlertSeverity, ConcurrentSkipListMap<StoredAlert, FraudAlert>> severityIndex;
+
+    private final AtomicLong sequence;
+    private final AtomicLong evictedCount;
+    private final ScheduledExecutorService evictionExecutor;
+    private volatile boolean closed;
+
+    public FraudAlertStore(int maxAlerts, Duration retention, Duration evictionInterval) {
+        if (maxAlerts <= 0) {
+            throw new IllegalArgumentException("Max alerts must be positive");
+        }
+        Objects.requireNonNull(retention, "Retention cannot be null");
+        Objects.requireNonNull(evictionInterval, "Eviction interval cannot be null");
+        if (retention.isNegative() || retention.isZero()) {
+            throw new IllegalArgumentException("Retention must be positive");
+        }
+        if (evictionInterval.isNegative() || evictionInterval.isZero()) {
+            throw new IllegalArgumentException("Eviction interval must be positive");
+        }
+
+        this.maxAlerts = maxAlerts;
+        this.retention = retention;
+        this.alertsById = new ConcurrentHashMap<>();
+        this.timeIndex = new ConcurrentSkipListMap<>(TIME_ORDER);
+        this.cardIndex = new ConcurrentHashMap<>();
+        this.severityIndex = new EnumMap<>(FraudAlert.AlertSeverity.class);
+        for (FraudAlert.AlertSeverity severity : FraudAlert.AlertSeverity.values()) {
+            severityIndex.put(severity, new ConcurrentSkipListMap<>(SCORE_ORDER));
+        }
+        this.sequence = new AtomicLong();
+        this.evictedCount = new AtomicLong();
+
+        this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "FraudAlertStore-Eviction");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalMillis = evictionInterval.toMillis();
+        evictionExecutor.scheduleAtFixedRate(this::evictExpiredSafely,
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static FraudAlertStore createDefault() {
+        return new FraudAlertStore(100000, Duration.ofHours(24), Duration.ofMinutes(1));
+    }
+
+
+    public synchronized void add(FraudAlert alert) {
+        Objects.requireNonNull(alert, "Alert cannot be null");
+
+        StoredAlert previous = alertsById.get(alert.getAlertId());
+        if (previous != null) {
+            unindex(previous);
+        }
+
+        StoredAlert stored = new StoredAlert(alert, sequence.incrementAndGet());
+        alertsById.put(alert.getAlertId(), stored);
+        timeIndex.put(stored, alert);
+        cardIndex.computeIfAbsent(alert.getCardNumber(), k -> new ConcurrentSkipListMap<>(TIME_ORDER))
+                .put(stored, alert);
+        severityIndex.get(alert.getSeverity()).put(stored, alert);
+
+        while (timeIndex.size() > maxAlerts) {
+            Map.Entry<StoredAlert, FraudAlert> oldest = timeIndex.firstEntry();
+            if (oldest == null) {
+                break;
+            }
+            unindex(oldest.getKey());
+            evictedCount.incrementAndGet();
+        }
+    }
+
+
+    public Optional<FraudAlert> get(String alertId) {
+        Objects.requireNonNull(alertId, "Alert ID cannot be null");
+        StoredAlert stored = alertsById.get(alertId);
+        return stored == null ? Optional.empty() : Optional.of(stored.alert);
+    }
+
+
+    public List<FraudAlert> getRecent(int maxCount) {
+        return take(timeIndex.descendingMap().values(), maxCount);
+    }
+
+
+    public List<FraudAlert> getRecentForCard(String cardNumber, int maxCount) {
+        Objects.requireNonNull(cardNumber, "Card number cannot be null");
+
+        ConcurrentSkipListMap<StoredAlert, FraudAlert> cardAlerts = cardIndex.get(cardNumber);
+        if (cardAlerts == null) {
+            return List.of();
+        }
+        return take(cardAlerts.descendingMap().values(), maxCount);
+    }
+
+
+    public List<FraudAlert> getTopByScore(Set<FraudAlert.AlertSeverity> severities, int maxCount) {
+        Objects.requireNonNull(severities, "Severities cannot be null");
+        if (maxCount <= 0 || severities.isEmpty()) {
+            return List.of();
+        }
+
+        PriorityQueue<PeekingCursor> heads = new PriorityQueue<>(
+                (a, b) -> SCORE_ORDER.compare(a.current, b.current));
+        for (FraudAlert.AlertSeverity severity : severities) {
+            PeekingCursor cursor = new PeekingCursor(severityIndex.get(severity).keySet().iterator());
+            if (cursor.current != null) {
+                heads.add(cursor);
+            }
+        }
+
+        List<FraudAlert> result = new ArrayList<>(Math.min(maxCount, 64));
+        while (result.size() < maxCount && !heads.isEmpty()) {
+            PeekingCursor cursor = heads.poll();
+            result.add(cursor.current.alert);
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return result;
+    }
+
+
+    public int evictExpired(LocalDateTime now) {
+        Objects.requireNonNull(now, "Current time cannot be null");
+
+        LocalDateTime cutoff = now.minus(retention);
+        int evicted = 0;
+
+        synchronized (this) {
+            Map.Entry<StoredAlert, FraudAlert> oldest = timeIndex.firstEntry();
+            while (oldest != null && oldest.getValue().getAlertTime().isBefore(cutoff)) {
+                unindex(oldest.getKey());
+                evicted++;
+                oldest = timeIndex.firstEntry();
+            }
+        }
+
+        evictedCount.addAndGet(evicted);
+        return evicted;
+    }
+
+    private void evictExpiredSafely() {
+        try {
+            evictExpired(LocalDateTime.now());
+        } catch (RuntimeException e) {
+            System.err.println("Alert eviction failed: " + e.getMessage());
+        }
+    }
+
+
+    private void unindex(StoredAlert stored) {
+        FraudAlert alert = stored.alert;
+        alertsById.remove(alert.getAlertId(), stored);
+        timeIndex.remove(stored);
+        severityIndex.get(alert.getSeverity()).remove(stored);
+
+        ConcurrentSkipListMap<StoredAlert, FraudAlert> cardAlerts = cardIndex.get(alert.getCardNumber());
+        if (cardAlerts != null) {
+            cardAlerts.remove(stored);
+            if (cardAlerts.isEmpty()) {
+                cardIndex.remove(alert.getCardNumber(), cardAlerts);
+            }
+        }
+    }
+
+    private static List<FraudAlert> take(Collection<FraudAlert> ordered, int maxCount) {
+        if (maxCount <= 0) {
+            return List.of();
+        }
+        List<FraudAlert> result = new ArrayList<>(Math.min(maxCount, 64));
+        for (FraudAlert alert : ordered) {
+            if (result.size() >= maxCount) {
+                break;
+            }
+            result.add(alert);
+        }
+        return result;
+    }
+
+
+    public synchronized void clear() {
+        alertsById.clear();
+        timeIndex.clear();
+        cardIndex.clear();
+        for (ConcurrentSkipListMap<StoredAlert, FraudAlert> index : severityIndex.values()) {
+            index.clear();
+        }
+    }
+
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        evictionExecutor.shutdown();
+        try {
+            if (!evictionExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                evictionExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            evictionExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    public int size() {
+        return alertsById.size();
+    }
+
+    public int getCardCount() {
+        return cardIndex.size();
+    }
+
+    public int getMaxAlerts() {
+        return maxAlerts;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+
+    private static final class StoredAlert {
+        private final FraudAlert alert;
+        private final long sequence;
+
+        StoredAlert(FraudAlert alert, long sequence) {
+            this.alert = alert;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class PeekingCursor {
+        private final Iterator<StoredAlert> iterator;
+        private StoredAlert current;
+
+        PeekingCursor(Iterator<StoredAlert> iterator) {
+            this.iterator = iterator;
+            advance();
+        }
+
+        boolean advance() {
+            current = iterator.hasNext() ? iterator.next() : null;
+            return current != null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FraudAlertStore{alerts=%d/%d, cards=%d, retention=%s, evicted=%d}",
+                size(), maxAlerts, getCardCount(), retention, evictedCount.get());
+    }
+}
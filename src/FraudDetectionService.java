@@ -1,39 +1,72 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 
 public final class FraudDetectionService {
 
+    private static final int STATE_STRIPES = 64;
+    private static final int BATCH_CHUNKS_PER_THREAD = 4;
+    private static final long CARD_SWEEP_INTERVAL_SECONDS = 60;
+    private static final int MAX_LOCATION_LABEL_CITIES = 100_000;
+    private static final long KEY_HASH_OFFSET = 0xcbf29ce484222325L;
+    private static final long KEY_HASH_PRIME = 0x100000001b3L;
 
-    private final BloomFilter transactionBloomFilter;
+
+    private final RotatingBloomFilter transactionBloomFilter;
     private final LocationTracker locationTracker;
-    private final Map<String, RiskWindow> cardRiskWindows;
+    private final AtomicInteger activeCards;
+    private final Map<String, Map<String, String>> locationLabels;
 
 
-    private final Map<String, FraudAlert> alertHistory;
+    private final FraudAlertStore alertHistory;
     private final AtomicLong alertCounter;
 
 
     private final FraudDetectionConfig config;
+    private final long highAmountThresholdMinorUnits;
 
 
     private final AtomicLong totalTransactionsProcessed;
     private final AtomicLong totalAlertsGenerated;
     private final Map<FraudAlert.AlertSeverity, AtomicLong> alertCountsBySeverity;
 
+
+    private final CardStripe[] cardStripes;
+    private volatile FraudStateCheckpointer stateJournal;
+    private volatile ExecutorService batchExecutor;
+
     public FraudDetectionService(FraudDetectionConfig config) {
         this.config = Objects.requireNonNull(config, "Config cannot be null");
+        this.highAmountThresholdMinorUnits = config.getHighAmountThreshold().movePointRight(2)
+                .setScale(0, RoundingMode.FLOOR).longValueExact();
 
 
-        this.transactionBloomFilter = BloomFilter.createForFraudDetection();
+        this.transactionBloomFilter = RotatingBloomFilter.createForFraudDetection();
         this.locationTracker = LocationTracker.createDefault();
-        this.cardRiskWindows = new ConcurrentHashMap<>();
+        this.activeCards = new AtomicInteger();
+        this.locationLabels = new ConcurrentHashMap<>();
 
 
-        this.alertHistory = new ConcurrentHashMap<>();
+        this.alertHistory = FraudAlertStore.createDefault();
         this.alertCounter = new AtomicLong(1);
 
 
@@ -44,6 +77,11 @@ public final class FraudDetectionService {
         for (FraudAlert.AlertSeverity severity : FraudAlert.AlertSeverity.values()) {
             alertCountsBySeverity.put(severity, new AtomicLong(0));
         }
+
+        this.cardStripes = new CardStripe[STATE_STRIPES];
+        for (int i = 0; i < STATE_STRIPES; i++) {
+            cardStripes[i] = new CardStripe();
+        }
     }
 
     public static FraudDetectionService createDefault() {
@@ -65,22 +103,44 @@ public final class FraudDetectionService {
         Objects.requireNonNull(transactionId, "Transaction ID cannot be null");
         Objects.requireNonNull(cardNumber, "Card number cannot be null");
         Objects.requireNonNull(amount, "Amount cannot be null");
+        requireMinorUnits(amount);
+
+        CardStripe stripe = cardStripes[stateStripeOf(cardNumber)];
+        synchronized (stripe) {
+            FraudStateCheckpointer journal = stateJournal;
+            if (journal != null) {
+                journal.append(transactionId, cardNumber, amount, merchantName, merchantCity,
+                        merchantCountry, latitude, longitude, transactionTime, transactionType);
+            }
+
+            return analyzeCardTransaction(stripe, transactionId, cardNumber, amount, merchantName,
+                    merchantCity, merchantCountry, latitude, longitude, transactionTime, transactionType);
+        }
+    }
+
+
+    private FraudAnalysisResult analyzeCardTransaction(CardStripe stripe, String transactionId,
+                                                       String cardNumber, BigDecimal amount, String merchantName,
+                                                       String merchantCity, String merchantCountry,
+                                                       double latitude, double longitude,
+                                                       LocalDateTime transactionTime,
+                                                       TransactionRisk.TransactionType transactionType) {
 
         totalTransactionsProcessed.incrementAndGet();
 
         try {
 
-            String transactionKey = createTransactionKey(cardNumber, merchantName, amount, transactionTime);
-            boolean possibleDuplicate = transactionBloomFilter.mightContain(transactionKey);
+            long transactionKey = transactionKeyHash(cardNumber, merchantName, amount, transactionTime);
+            boolean possibleDuplicate = transactionBloomFilter.mightContain(transactionKey, transactionTime);
 
 
-            String location = merchantCity + ", " + merchantCountry;
+            String location = locationLabel(merchantCity, merchantCountry);
             LocationTracker.LocationAnalysis locationAnalysis = locationTracker.recordLocation(
                     transactionId, cardNumber, latitude, longitude, merchantCity,
                     merchantCountry, transactionTime);
 
 
-            RiskWindow cardWindow = getOrCreateRiskWindow(cardNumber);
+            RiskWindow cardWindow = riskWindowFor(stripe, cardNumber, transactionTime);
             RiskWindow.WindowAnalysis windowAnalysis = cardWindow.addTransaction(
                     transactionId, cardNumber, amount, merchantName, location, transactionTime);
 
@@ -97,13 +157,11 @@ public final class FraudDetectionService {
                         windowAnalysis, possibleDuplicate);
 
 
-                alertHistory.put(fraudAlert.getAlertId(), fraudAlert);
-                totalAlertsGenerated.incrementAndGet();
-                alertCountsBySeverity.get(fraudAlert.getSeverity()).incrementAndGet();
+                recordAlert(fraudAlert);
             }
 
 
-            transactionBloomFilter.add(transactionKey);
+            transactionBloomFilter.add(transactionKey, transactionTime);
 
             return new FraudAnalysisResult(transactionRisk, locationAnalysis, windowAnalysis,
                     fraudAlert, possibleDuplicate, getRecommendation(fraudAlert));
@@ -116,55 +174,314 @@ public final class FraudDetectionService {
     }
 
 
+    public long scoreTransactionFast(String transactionId, String cardNumber, long amountMinorUnits,
+                                     String merchantName, String merchantCity, String merchantCountry,
+                                     double latitude, double longitude,
+                                     LocalDateTime transactionTime,
+                                     TransactionRisk.TransactionType transactionType) {
+
+        Objects.requireNonNull(transactionId, "Transaction ID cannot be null");
+        Objects.requireNonNull(cardNumber, "Card number cannot be null");
+
+        CardStripe stripe = cardStripes[stateStripeOf(cardNumber)];
+        synchronized (stripe) {
+            FraudStateCheckpointer journal = stateJournal;
+            if (journal != null) {
+                journal.append(transactionId, cardNumber, amountMinorUnits,
+                        merchantName, merchantCity, merchantCountry, latitude, longitude,
+                        transactionTime, transactionType);
+            }
+
+            return scoreCardTransaction(stripe, transactionId, cardNumber, amountMinorUnits, merchantName,
+                    merchantCity, merchantCountry, latitude, longitude, transactionTime, transactionType);
+        }
+    }
+
+
+    private long scoreCardTransaction(CardStripe stripe, String transactionId, String cardNumber,
+                                      long amountMinorUnits,
+                                      String merchantName, String merchantCity, String merchantCountry,
+                                      double latitude, double longitude,
+                                      LocalDateTime transactionTime,
+                                      TransactionRisk.TransactionType transactionType) {
+
+        totalTransactionsProcessed.incrementAndGet();
+
+        try {
+
+            long transactionKey = transactionKeyHash(cardNumber, merchantName, amountMinorUnits, transactionTime);
+            boolean possibleDuplicate = transactionBloomFilter.mightContain(transactionKey, transactionTime);
+
+
+            int locationMask = locationTracker.recordLocationAnomalies(
+                    transactionId, cardNumber, latitude, longitude, merchantCity,
+                    merchantCountry, transactionTime);
+
+
+            RiskWindow cardWindow = riskWindowFor(stripe, cardNumber, transactionTime);
+            int patternMask = cardWindow.recordTransaction(transactionId, cardNumber, amountMinorUnits,
+                    merchantName, locationLabel(merchantCity, merchantCountry), transactionTime);
+
+
+            int factorMask = riskFactorMask(possibleDuplicate, locationMask, patternMask,
+                    amountMinorUnits > highAmountThresholdMinorUnits, transactionTime);
+            int riskScore = TransactionRisk.calculateRiskScore(factorMask, amountMinorUnits);
+            int windowScore = RiskWindow.RiskPattern.scoreOf(patternMask);
+
+
+            ProcessingRecommendation recommendation = ProcessingRecommendation.ALLOW;
+            boolean alerted = shouldGenerateAlert(riskScore, locationMask, windowScore, possibleDuplicate);
+            if (alerted) {
+                LocationTracker.LocationAnalysis locationAnalysis =
+                        locationTracker.describeLatest(cardNumber, locationMask);
+                RiskWindow.WindowAnalysis windowAnalysis = cardWindow.analyzeCard(cardNumber, transactionTime);
+                EnumSet<TransactionRisk.RiskFactor> riskFactors = TransactionRisk.RiskFactor.fromMask(factorMask);
+
+                TransactionRisk transactionRisk = TransactionRisk.suspicious(transactionId, cardNumber,
+                        BigDecimal.valueOf(amountMinorUnits, 2), merchantName, merchantCity, merchantCountry,
+                        transactionTime, transactionType, riskFactors,
+                        buildRiskReason(riskFactors, locationAnalysis, windowAnalysis, possibleDuplicate));
+
+                FraudAlert fraudAlert = generateFraudAlert(transactionRisk, locationAnalysis,
+                        windowAnalysis, possibleDuplicate);
+                recordAlert(fraudAlert);
+                recommendation = getRecommendation(fraudAlert);
+            }
+
+
+            transactionBloomFilter.add(transactionKey, transactionTime);
+
+            return FastScore.pack(riskScore, factorMask, recommendation, alerted);
+
+        } catch (Exception e) {
+
+            System.err.println("Error scoring transaction " + transactionId + ": " + e.getMessage());
+            return FastScore.pack(0, 0, ProcessingRecommendation.REVIEW, false);
+        }
+    }
+
+
+    public FraudAnalysisResult screenTransaction(TransactionData txn) {
+        Objects.requireNonNull(txn, "Transaction cannot be null");
+        Objects.requireNonNull(txn.getTransactionId(), "Transaction ID cannot be null");
+        Objects.requireNonNull(txn.getCardNumber(), "Card number cannot be null");
+        Objects.requireNonNull(txn.getAmount(), "Amount cannot be null");
+        requireMinorUnits(txn.getAmount());
+
+        CardStripe stripe = cardStripes[stateStripeOf(txn.getCardNumber())];
+        synchronized (stripe) {
+            FraudStateCheckpointer journal = stateJournal;
+            if (journal != null) {
+                journal.append(txn.getTransactionId(), txn.getCardNumber(), txn.getAmount(),
+                        txn.getMerchantName(), txn.getMerchantCity(), txn.getMerchantCountry(),
+                        txn.getLatitude(), txn.getLongitude(), txn.getTransactionTime(),
+                        txn.getTransactionType());
+            }
+
+            return screenCardTransaction(stripe, txn);
+        }
+    }
+
+
+    private FraudAnalysisResult screenCardTransaction(CardStripe stripe, TransactionData txn) {
+        totalTransactionsProcessed.incrementAndGet();
+
+        LocalDateTime transactionTime = txn.getTransactionTime();
+        long transactionKey = transactionKeyHash(txn.getCardNumber(), txn.getMerchantName(),
+                txn.getAmount(), transactionTime);
+        boolean possibleDuplicate = transactionBloomFilter.mightContain(transactionKey, transactionTime);
+
+        try {
+
+            locationTracker.recordLocationAnomalies(txn.getTransactionId(), txn.getCardNumber(),
+                    txn.getLatitude(), txn.getLongitude(), txn.getMerchantCity(), txn.getMerchantCountry(),
+                    transactionTime);
+            riskWindowFor(stripe, txn.getCardNumber(), transactionTime).appendTransaction(txn.getTransactionId(),
+                    txn.getCardNumber(), txn.getAmount(), txn.getMerchantName(),
+                    locationLabel(txn.getMerchantCity(), txn.getMerchantCountry()), transactionTime);
+
+        } catch (Exception e) {
+
+            System.err.println("Error recording screened transaction " + txn.getTransactionId() +
+                    ": " + e.getMessage());
+        }
+
+        transactionBloomFilter.add(transactionKey, transactionTime);
+
+        EnumSet<TransactionRisk.RiskFactor> riskFactors = EnumSet.noneOf(TransactionRisk.RiskFactor.class);
+        if (possibleDuplicate) {
+            riskFactors.add(TransactionRisk.RiskFactor.DUPLICATE_TRANSACTION);
+        }
+        if (txn.getAmount().compareTo(config.getHighAmountThreshold()) > 0) {
+            riskFactors.add(TransactionRisk.RiskFactor.AMOUNT_ANOMALY);
+        }
+        if (transactionTime.getHour() < 6 || transactionTime.getHour() > 22) {
+            riskFactors.add(TransactionRisk.RiskFactor.TIME_ANOMALY);
+        }
+
+        TransactionRisk transactionRisk = TransactionRisk.suspicious(txn.getTransactionId(), txn.getCardNumber(),
+                txn.getAmount(), txn.getMerchantName(), txn.getMerchantCity(), txn.getMerchantCountry(),
+                transactionTime, txn.getTransactionType(), riskFactors, "Fast-rule screening only.");
+
+        ProcessingRecommendation recommendation;
+        if (transactionRisk.getRiskScore() >= config.getCriticalRiskThreshold()) {
+            recommendation = ProcessingRecommendation.BLOCK;
+        } else if (transactionRisk.getRiskScore() >= config.getModerateRiskThreshold() || possibleDuplicate) {
+            recommendation = ProcessingRecommendation.REVIEW;
+        } else {
+            recommendation = ProcessingRecommendation.ALLOW;
+        }
+
+        return new FraudAnalysisResult(transactionRisk, null, null, null, possibleDuplicate, recommendation);
+    }
+
+
     public List<FraudAnalysisResult> analyzeTransactionBatch(List<TransactionData> transactions) {
         Objects.requireNonNull(transactions, "Transactions cannot be null");
 
         List<FraudAnalysisResult> results = new ArrayList<>();
 
         for (TransactionData txn : transactions) {
-            try {
-                FraudAnalysisResult result = analyzeTransaction(
-                        txn.getTransactionId(), txn.getCardNumber(), txn.getAmount(),
-                        txn.getMerchantName(), txn.getMerchantCity(), txn.getMerchantCountry(),
-                        txn.getLatitude(), txn.getLongitude(), txn.getTransactionTime(),
-                        txn.getTransactionType());
+            FraudAnalysisResult result = analyzeBatchEntry(txn);
+            if (result != null) {
                 results.add(result);
-            } catch (Exception e) {
-                System.err.println("Error in batch analysis for transaction " +
-                        txn.getTransactionId() + ": " + e.getMessage());
+            }
+        }
+
+        return results;
+    }
+
+
+    public List<FraudAnalysisResult> analyzeTransactionBatchParallel(List<TransactionData> transactions) {
+        return analyzeTransactionBatchParallel(transactions, batchExecutor());
+    }
+
 
+    public List<FraudAnalysisResult> analyzeTransactionBatchParallel(List<TransactionData> transactions,
+                                                                     Executor executor) {
+        Objects.requireNonNull(transactions, "Transactions cannot be null");
+        Objects.requireNonNull(executor, "Executor cannot be null");
+
+        Map<String, List<Integer>> partitions = new LinkedHashMap<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            partitions.computeIfAbsent(transactions.get(i).getCardNumber(), k -> new ArrayList<>()).add(i);
+        }
+
+        Comparator<Integer> eventTimeOrder = Comparator.comparing(
+                i -> transactions.get(i).getTransactionTime(),
+                Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()));
+
+        FraudAnalysisResult[] slots = new FraudAnalysisResult[transactions.size()];
+        int chunkCount = Math.min(partitions.size(), parallelismOf(executor) * BATCH_CHUNKS_PER_THREAD);
+        int chunkTarget = chunkCount == 0 ? 0 : (transactions.size() + chunkCount - 1) / chunkCount;
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(chunkCount);
+
+        List<List<Integer>> chunk = new ArrayList<>();
+        int chunkSize = 0;
+        for (List<Integer> partition : partitions.values()) {
+            partition.sort(eventTimeOrder);
+            chunk.add(partition);
+            chunkSize += partition.size();
+            if (chunkSize >= chunkTarget) {
+                tasks.add(runBatchChunk(chunk, transactions, slots, executor));
+                chunk = new ArrayList<>();
+                chunkSize = 0;
             }
         }
+        if (!chunk.isEmpty()) {
+            tasks.add(runBatchChunk(chunk, transactions, slots, executor));
+        }
 
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+
+        List<FraudAnalysisResult> results = new ArrayList<>(slots.length);
+        for (FraudAnalysisResult result : slots) {
+            if (result != null) {
+                results.add(result);
+            }
+        }
         return results;
     }
 
 
+    private CompletableFuture<Void> runBatchChunk(List<List<Integer>> chunk, List<TransactionData> transactions,
+                                                  FraudAnalysisResult[] slots, Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            for (List<Integer> partition : chunk) {
+                for (int index : partition) {
+                    slots[index] = analyzeBatchEntry(transactions.get(index));
+                }
+            }
+        }, executor);
+    }
+
+
+    private static int parallelismOf(Executor executor) {
+        if (executor instanceof ForkJoinPool) {
+            return ((ForkJoinPool) executor).getParallelism();
+        }
+        if (executor instanceof ThreadPoolExecutor) {
+            return Math.max(1, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+
+    private ExecutorService batchExecutor() {
+        ExecutorService executor = batchExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = batchExecutor;
+                if (executor == null) {
+                    AtomicInteger threadIndex = new AtomicInteger();
+                    executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                        Thread t = new Thread(r, "FraudDetectionService-Batch-" + threadIndex.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    batchExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+
+    private FraudAnalysisResult analyzeBatchEntry(TransactionData txn) {
+        try {
+            return analyzeTransaction(
+                    txn.getTransactionId(), txn.getCardNumber(), txn.getAmount(),
+                    txn.getMerchantName(), txn.getMerchantCity(), txn.getMerchantCountry(),
+                    txn.getLatitude(), txn.getLongitude(), txn.getTransactionTime(),
+                    txn.getTransactionType());
+        } catch (Exception e) {
+            System.err.println("Error in batch analysis for transaction " +
+                    txn.getTransactionId() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+
     public List<FraudAlert> getRecentAlerts(int maxCount) {
-        return alertHistory.values().stream()
-                .sorted(Comparator.comparing(FraudAlert::getAlertTime).reversed())
-                .limit(maxCount)
-                .toList();
+        return alertHistory.getRecent(maxCount);
     }
 
 
     public List<FraudAlert> getCardAlerts(String cardNumber, int maxCount) {
         Objects.requireNonNull(cardNumber, "Card number cannot be null");
 
-        return alertHistory.values().stream()
-                .filter(alert -> alert.getCardNumber().equals(cardNumber))
-                .sorted(Comparator.comparing(FraudAlert::getAlertTime).reversed())
-                .limit(maxCount)
-                .toList();
+        return alertHistory.getRecentForCard(cardNumber, maxCount);
     }
 
 
     public List<FraudAlert> getHighSeverityAlerts() {
-        return alertHistory.values().stream()
-                .filter(alert -> alert.getSeverity() == FraudAlert.AlertSeverity.HIGH ||
-                        alert.getSeverity() == FraudAlert.AlertSeverity.CRITICAL)
-                .sorted(Comparator.comparing(FraudAlert::getCompositeRiskScore).reversed())
-                .toList();
+        return getHighSeverityAlerts(Integer.MAX_VALUE);
+    }
+
+
+    public List<FraudAlert> getHighSeverityAlerts(int maxCount) {
+        return alertHistory.getTopByScore(
+                EnumSet.of(FraudAlert.AlertSeverity.HIGH, FraudAlert.AlertSeverity.CRITICAL), maxCount);
     }
 
 
@@ -181,13 +498,18 @@ public final class FraudDetectionService {
                 totalTransactionsProcessed.get(),
                 totalAlertsGenerated.get(),
                 alertCounts,
-                cardRiskWindows.size(),
+                activeCards.get(),
                 bloomStats,
                 locationStats
         );
     }
 
 
+    public List<BloomFilter.BloomFilterStatistics> getDuplicateFilterGenerationStatistics() {
+        return transactionBloomFilter.getGenerationStatistics();
+    }
+
+
     public void updateConfig(FraudDetectionConfig newConfig) {
         Objects.requireNonNull(newConfig, "Config cannot be null");
 
@@ -197,8 +519,16 @@ public final class FraudDetectionService {
 
 
     public void clearAllData() {
+        for (CardStripe stripe : cardStripes) {
+            synchronized (stripe) {
+                activeCards.addAndGet(-stripe.riskWindows.size());
+                stripe.riskWindows.clear();
+                stripe.latestEpochSecond = Long.MIN_VALUE;
+                stripe.nextSweepSecond = Long.MIN_VALUE;
+            }
+        }
         transactionBloomFilter.clear();
-        cardRiskWindows.clear();
+        locationTracker.clear();
         alertHistory.clear();
         totalTransactionsProcessed.set(0);
         totalAlertsGenerated.set(0);
@@ -209,69 +539,245 @@ public final class FraudDetectionService {
     }
 
 
-    private String createTransactionKey(String cardNumber, String merchantName,
-                                        BigDecimal amount, LocalDateTime timestamp) {
+    public void shutdown() {
+        ExecutorService executor;
+        synchronized (this) {
+            executor = batchExecutor;
+            batchExecutor = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+        alertHistory.close();
+    }
+
 
-        String timeKey = timestamp.withSecond(0).withNano(0).toString();
-        return String.format("%s_%s_%.2f_%s", cardNumber, merchantName, amount.doubleValue(), timeKey);
+    void attachJournal(FraudStateCheckpointer journal) {
+        this.stateJournal = journal;
     }
 
-    private RiskWindow getOrCreateRiskWindow(String cardNumber) {
-        return cardRiskWindows.computeIfAbsent(cardNumber, k -> RiskWindow.createVelocityWindow());
+
+    static int stateStripeOf(String cardNumber) {
+        return Math.floorMod(cardNumber.hashCode(), STATE_STRIPES);
     }
 
-    private TransactionRisk assessTransactionRisk(String transactionId, String cardNumber,
-                                                  BigDecimal amount, String merchantName, String location,
-                                                  LocalDateTime transactionTime, TransactionRisk.TransactionType type,
-                                                  boolean possibleDuplicate,
-                                                  LocationTracker.LocationAnalysis locationAnalysis,
-                                                  RiskWindow.WindowAnalysis windowAnalysis) {
 
+    void restoreTransaction(String transactionId, String cardNumber, BigDecimal amount,
+                            String merchantName, String merchantCity, String merchantCountry,
+                            double latitude, double longitude, LocalDateTime transactionTime) {
 
-        EnumSet<TransactionRisk.RiskFactor> riskFactors = EnumSet.noneOf(TransactionRisk.RiskFactor.class);
+        CardStripe stripe = cardStripes[stateStripeOf(cardNumber)];
+        synchronized (stripe) {
+            try {
 
+                locationTracker.recordLocationAnomalies(transactionId, cardNumber, latitude, longitude,
+                        merchantCity, merchantCountry, transactionTime);
+                riskWindowFor(stripe, cardNumber, transactionTime).appendTransaction(transactionId, cardNumber, amount,
+                        merchantName, locationLabel(merchantCity, merchantCountry), transactionTime);
+                transactionBloomFilter.add(transactionKeyHash(cardNumber, merchantName, amount, transactionTime),
+                        transactionTime);
 
-        if (possibleDuplicate) {
-            riskFactors.add(TransactionRisk.RiskFactor.DUPLICATE_TRANSACTION);
+            } catch (Exception e) {
+
+                System.err.println("Error restoring transaction " + transactionId + ": " + e.getMessage());
+            }
         }
+    }
 
 
-        if (locationAnalysis.hasSuspiciousActivity()) {
-            if (locationAnalysis.getAnomalies().contains(LocationTracker.LocationAnomaly.IMPOSSIBLE_SPEED)) {
-                riskFactors.add(TransactionRisk.RiskFactor.LOCATION_JUMP);
-            }
-            if (locationAnalysis.getAnomalies().contains(LocationTracker.LocationAnomaly.RAPID_CITY_CHANGES)) {
-                riskFactors.add(TransactionRisk.RiskFactor.VELOCITY_ANOMALY);
-            }
-            if (locationAnalysis.getAnomalies().contains(LocationTracker.LocationAnomaly.INTERNATIONAL_TRAVEL)) {
-                riskFactors.add(TransactionRisk.RiskFactor.INTERNATIONAL);
+    void writeSnapshot(OutputStream out, LongSupplier nextJournalSequence) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        DataOutputStream section = new DataOutputStream(buffer);
+        DataOutputStream header = new DataOutputStream(out);
+
+        header.writeInt(STATE_STRIPES);
+        for (CardStripe stripe : cardStripes) {
+            buffer.reset();
+            long stripeSequence;
+
+            synchronized (stripe) {
+                stripeSequence = nextJournalSequence.getAsLong();
+                section.writeInt(stripe.riskWindows.size());
+                for (Map.Entry<String, RiskWindow> entry : stripe.riskWindows.entrySet()) {
+                    section.writeUTF(entry.getKey());
+                    entry.getValue().writeTo(section);
+                    locationTracker.writeCardTo(entry.getKey(), section);
+                }
+                section.flush();
             }
+
+            header.writeLong(stripeSequence);
+            buffer.writeTo(header);
         }
 
 
-        if (windowAnalysis.hasRiskPatterns()) {
-            if (windowAnalysis.getRiskPattern().hasPattern(RiskWindow.RiskPattern.PatternType.HIGH_VELOCITY)) {
-                riskFactors.add(TransactionRisk.RiskFactor.HIGH_FREQUENCY);
+        buffer.reset();
+        transactionBloomFilter.writeTo(section);
+        section.writeLong(nextJournalSequence.getAsLong());
+        section.writeLong(totalTransactionsProcessed.get());
+        section.writeLong(totalAlertsGenerated.get());
+        section.writeInt(alertCountsBySeverity.size());
+        for (Map.Entry<FraudAlert.AlertSeverity, AtomicLong> entry : alertCountsBySeverity.entrySet()) {
+            section.writeUTF(entry.getKey().name());
+            section.writeLong(entry.getValue().get());
+        }
+        section.flush();
+        buffer.writeTo(header);
+        header.flush();
+    }
+
+
+    SnapshotSequences readSnapshot(DataInput in) throws IOException {
+        int stripeCount = in.readInt();
+        if (stripeCount != STATE_STRIPES) {
+            throw new IOException(String.format("Snapshot has %d state stripes, expected %d",
+                    stripeCount, STATE_STRIPES));
+        }
+
+        long[] stripeSequences = new long[STATE_STRIPES];
+        for (int i = 0; i < STATE_STRIPES; i++) {
+            stripeSequences[i] = in.readLong();
+            int cardCount = in.readInt();
+            CardStripe stripe = cardStripes[i];
+
+            synchronized (stripe) {
+                for (int c = 0; c < cardCount; c++) {
+                    String cardNumber = in.readUTF();
+                    if (stateStripeOf(cardNumber) != i) {
+                        throw new IOException("Card stored in the wrong state stripe: " + i);
+                    }
+                    RiskWindow window = RiskWindow.readFrom(in);
+                    if (stripe.riskWindows.put(cardNumber, window) == null) {
+                        activeCards.incrementAndGet();
+                    }
+                    stripe.latestEpochSecond = Math.max(stripe.latestEpochSecond, window.getLatestEpochSecond());
+                    locationTracker.readCardFrom(cardNumber, in);
+                }
             }
-            if (windowAnalysis.getRiskPattern().hasPattern(RiskWindow.RiskPattern.PatternType.NIGHT_ACTIVITY)) {
-                riskFactors.add(TransactionRisk.RiskFactor.NIGHT_ACTIVITY);
+        }
+
+
+        transactionBloomFilter.readFrom(in);
+        long duplicateFilterSequence = in.readLong();
+        totalTransactionsProcessed.set(in.readLong());
+        totalAlertsGenerated.set(in.readLong());
+        int severityCount = in.readInt();
+        for (int i = 0; i < severityCount; i++) {
+            String severity = in.readUTF();
+            long count = in.readLong();
+            try {
+                alertCountsBySeverity.get(FraudAlert.AlertSeverity.valueOf(severity)).set(count);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown alert severity in snapshot: " + severity, e);
             }
         }
 
+        return new SnapshotSequences(stripeSequences, duplicateFilterSequence);
+    }
 
-        if (amount.compareTo(config.getHighAmountThreshold()) > 0) {
-            riskFactors.add(TransactionRisk.RiskFactor.AMOUNT_ANOMALY);
+
+    private static void requireMinorUnits(BigDecimal amount) {
+        if (!RiskWindow.fitsMinorUnits(amount)) {
+            throw new IllegalArgumentException("Amount must have at most 2 decimal places: " + amount);
         }
+    }
 
+    private static long transactionKeyHash(String cardNumber, String merchantName,
+                                           BigDecimal amount, LocalDateTime timestamp) {
 
-        if (transactionTime.getHour() < 6 || transactionTime.getHour() > 22) {
-            riskFactors.add(TransactionRisk.RiskFactor.TIME_ANOMALY);
+        long amountMinorUnits = amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        return transactionKeyHash(cardNumber, merchantName, amountMinorUnits, timestamp);
+    }
+
+    private static long transactionKeyHash(String cardNumber, String merchantName,
+                                           long amountMinorUnits, LocalDateTime timestamp) {
+
+        long minuteOfEpoch = ((long) timestamp.getYear() * 366 + timestamp.getDayOfYear()) * 1440
+                + timestamp.getHour() * 60L + timestamp.getMinute();
+
+        long hash = hashChars(KEY_HASH_OFFSET, cardNumber);
+        hash = hashChars(hash, merchantName);
+        hash = (hash ^ amountMinorUnits) * KEY_HASH_PRIME;
+        return (hash ^ minuteOfEpoch) * KEY_HASH_PRIME;
+    }
+
+    private static long hashChars(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * KEY_HASH_PRIME;
+        }
+        return (hash ^ value.length()) * KEY_HASH_PRIME;
+    }
+
+    private String locationLabel(String merchantCity, String merchantCountry) {
+        if (merchantCity == null || merchantCountry == null) {
+            return merchantCity + ", " + merchantCountry;
         }
 
-        if (transactionTime.getDayOfWeek().getValue() >= 6) {
-            riskFactors.add(TransactionRisk.RiskFactor.WEEKEND_ACTIVITY);
+        Map<String, String> byCountry = locationLabels.get(merchantCity);
+        if (byCountry != null) {
+            String label = byCountry.get(merchantCountry);
+            if (label != null) {
+                return label;
+            }
         }
 
+        String label = merchantCity + ", " + merchantCountry;
+        if (byCountry != null || locationLabels.size() < MAX_LOCATION_LABEL_CITIES) {
+            locationLabels.computeIfAbsent(merchantCity, k -> new ConcurrentHashMap<>())
+                    .putIfAbsent(merchantCountry, label);
+        }
+        return label;
+    }
+
+    private void recordAlert(FraudAlert fraudAlert) {
+        alertHistory.add(fraudAlert);
+        totalAlertsGenerated.incrementAndGet();
+        alertCountsBySeverity.get(fraudAlert.getSeverity()).incrementAndGet();
+    }
+
+    private RiskWindow riskWindowFor(CardStripe stripe, String cardNumber, LocalDateTime transactionTime) {
+        long second = transactionTime.toEpochSecond(ZoneOffset.UTC);
+        if (second > stripe.latestEpochSecond) {
+            stripe.latestEpochSecond = second;
+        }
+        if (second >= stripe.nextSweepSecond) {
+            evictInactiveCards(stripe);
+            stripe.nextSweepSecond = stripe.latestEpochSecond + CARD_SWEEP_INTERVAL_SECONDS;
+        }
+
+        RiskWindow window = stripe.riskWindows.get(cardNumber);
+        if (window == null) {
+            window = RiskWindow.createVelocityWindow();
+            stripe.riskWindows.put(cardNumber, window);
+            activeCards.incrementAndGet();
+        }
+        return window;
+    }
+
+    private void evictInactiveCards(CardStripe stripe) {
+        long cutoffSecond = LocationTracker.inactivityCutoff(stripe.latestEpochSecond);
+        Iterator<RiskWindow> windows = stripe.riskWindows.values().iterator();
+        while (windows.hasNext()) {
+            if (windows.next().getLatestEpochSecond() < cutoffSecond) {
+                windows.remove();
+                activeCards.decrementAndGet();
+            }
+        }
+    }
+
+    private TransactionRisk assessTransactionRisk(String transactionId, String cardNumber,
+                                                  BigDecimal amount, String merchantName, String location,
+                                                  LocalDateTime transactionTime, TransactionRisk.TransactionType type,
+                                                  boolean possibleDuplicate,
+                                                  LocationTracker.LocationAnalysis locationAnalysis,
+                                                  RiskWindow.WindowAnalysis windowAnalysis) {
+
+
+        EnumSet<TransactionRisk.RiskFactor> riskFactors = TransactionRisk.RiskFactor.fromMask(riskFactorMask(
+                possibleDuplicate, locationAnalysis.getAnomalyMask(),
+                windowAnalysis.getRiskPattern().getPatternMask(),
+                amount.compareTo(config.getHighAmountThreshold()) > 0, transactionTime));
+
 
         String riskReason = buildRiskReason(riskFactors, locationAnalysis, windowAnalysis, possibleDuplicate);
 
@@ -280,34 +786,88 @@ public final class FraudDetectionService {
                 transactionTime, type, riskFactors, riskReason);
     }
 
+    private int riskFactorMask(boolean possibleDuplicate, int locationMask, int patternMask,
+                               boolean highAmount, LocalDateTime transactionTime) {
+
+        int riskFactors = 0;
+
+
+        if (possibleDuplicate) {
+            riskFactors |= TransactionRisk.RiskFactor.DUPLICATE_TRANSACTION.mask();
+        }
+
+
+        if ((locationMask & LocationTracker.LocationAnomaly.IMPOSSIBLE_SPEED.mask()) != 0) {
+            riskFactors |= TransactionRisk.RiskFactor.LOCATION_JUMP.mask();
+        }
+        if ((locationMask & LocationTracker.LocationAnomaly.RAPID_CITY_CHANGES.mask()) != 0) {
+            riskFactors |= TransactionRisk.RiskFactor.VELOCITY_ANOMALY.mask();
+        }
+        if ((locationMask & LocationTracker.LocationAnomaly.INTERNATIONAL_TRAVEL.mask()) != 0) {
+            riskFactors |= TransactionRisk.RiskFactor.INTERNATIONAL.mask();
+        }
+
+
+        if ((patternMask & RiskWindow.RiskPattern.PatternType.HIGH_VELOCITY.mask()) != 0) {
+            riskFactors |= TransactionRisk.RiskFactor.HIGH_FREQUENCY.mask();
+        }
+        if ((patternMask & RiskWindow.RiskPattern.PatternType.NIGHT_ACTIVITY.mask()) != 0) {
+            riskFactors |= TransactionRisk.RiskFactor.NIGHT_ACTIVITY.mask();
+        }
+
+
+        if (highAmount) {
+            riskFactors |= TransactionRisk.RiskFactor.AMOUNT_ANOMALY.mask();
+        }
+
+
+        int hour = transactionTime.getHour();
+        if (hour < 6 || hour > 22) {
+            riskFactors |= TransactionRisk.RiskFactor.TIME_ANOMALY.mask();
+        }
+
+        if (transactionTime.getDayOfWeek().compareTo(DayOfWeek.SATURDAY) >= 0) {
+            riskFactors |= TransactionRisk.RiskFactor.WEEKEND_ACTIVITY.mask();
+        }
+
+        return riskFactors;
+    }
+
     private boolean shouldGenerateAlert(TransactionRisk transactionRisk,
                                         LocationTracker.LocationAnalysis locationAnalysis,
                                         RiskWindow.WindowAnalysis windowAnalysis,
                                         boolean possibleDuplicate) {
 
+        return shouldGenerateAlert(transactionRisk.getRiskScore(), locationAnalysis.getAnomalyMask(),
+                windowAnalysis.getRiskPattern().getRiskScore(), possibleDuplicate);
+    }
 
-        if (transactionRisk.getRiskScore() >= config.getCriticalRiskThreshold()) {
+    private boolean shouldGenerateAlert(int riskScore, int locationMask, int windowScore,
+                                        boolean possibleDuplicate) {
+
+
+        if (riskScore >= config.getCriticalRiskThreshold()) {
             return true;
         }
 
 
-        if (locationAnalysis.isHighRisk()) {
+        if (LocationTracker.LocationAnomaly.isHighRisk(locationMask)) {
             return true;
         }
 
 
-        if (windowAnalysis.isHighRisk()) {
+        if (windowScore >= 60) {
             return true;
         }
 
 
-        if (possibleDuplicate && transactionRisk.getRiskScore() >= config.getDuplicateAlertThreshold()) {
+        if (possibleDuplicate && riskScore >= config.getDuplicateAlertThreshold()) {
             return true;
         }
 
 
-        if (transactionRisk.getRiskScore() >= config.getModerateRiskThreshold() &&
-                (locationAnalysis.hasSuspiciousActivity() || windowAnalysis.hasRiskPatterns())) {
+        if (riskScore >= config.getModerateRiskThreshold() &&
+                (locationMask != 0 || windowScore > 0)) {
             return true;
         }
 
@@ -385,10 +945,70 @@ public final class FraudDetectionService {
     }
 
 
+    private static final class CardStripe {
+        private final Map<String, RiskWindow> riskWindows = new HashMap<>();
+        private long latestEpochSecond = Long.MIN_VALUE;
+        private long nextSweepSecond = Long.MIN_VALUE;
+    }
+
+    static final class SnapshotSequences {
+        private final long[] stripeSequences;
+        private final long duplicateFilterSequence;
+
+        SnapshotSequences(long[] stripeSequences, long duplicateFilterSequence) {
+            this.stripeSequences = stripeSequences;
+            this.duplicateFilterSequence = duplicateFilterSequence;
+        }
+
+        long[] getStripeSequences() {
+            return stripeSequences;
+        }
+
+        long getDuplicateFilterSequence() {
+            return duplicateFilterSequence;
+        }
+    }
+
+
     public enum ProcessingRecommendation {
         ALLOW, MONITOR, REVIEW, BLOCK
     }
 
+    public static final class FastScore {
+        private static final ProcessingRecommendation[] RECOMMENDATIONS = ProcessingRecommendation.values();
+        private static final long ALERT_BIT = 1L << 26;
+
+        private FastScore() {
+        }
+
+        static long pack(int riskScore, int factorMask, ProcessingRecommendation recommendation, boolean alerted) {
+            return (riskScore & 0xFFL)
+                    | ((factorMask & 0xFFFFL) << 8)
+                    | ((long) recommendation.ordinal() << 24)
+                    | (alerted ? ALERT_BIT : 0L);
+        }
+
+        public static int riskScore(long score) {
+            return (int) (score & 0xFF);
+        }
+
+        public static int factorMask(long score) {
+            return (int) ((score >>> 8) & 0xFFFF);
+        }
+
+        public static EnumSet<TransactionRisk.RiskFactor> riskFactors(long score) {
+            return TransactionRisk.RiskFactor.fromMask(factorMask(score));
+        }
+
+        public static ProcessingRecommendation recommendation(long score) {
+            return RECOMMENDATIONS[(int) ((score >>> 24) & 0x3)];
+        }
+
+        public static boolean isAlerted(long score) {
+            return (score & ALERT_BIT) != 0;
+        }
+    }
+
     public static final class TransactionData {
         private final String transactionId;
         private final String cardNumber;
@@ -588,6 +1208,6 @@ public final class FraudDetectionService {
     public String toString() {
         return String.format("FraudDetectionService{transactions=%d, alerts=%d, cards=%d}",
                 totalTransactionsProcessed.get(), totalAlertsGenerated.get(),
-                cardRiskWindows.size());
+                activeCards.get());
     }
 }
\ No newline at end of file
@@ -0,0 +1,501 @@
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+
+public final class FraudScoringPipeline implements AutoCloseable {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final FraudDetectionService service;
+    private final OverflowPolicy overflowPolicy;
+    private final int degradeDepth;
+    private final long blockTimeoutNanos;
+
+    private final Partition[] partitions;
+    private final SubmissionPublisher<ScoredTransaction> publisher;
+    private volatile boolean accepting;
+
+    private final LongAdder submittedCount;
+    private final LongAdder rejectedCount;
+    private final LongAdder shedCount;
+    private final LongAdder degradedCount;
+    private final LongAdder fullCount;
+    private final LongAdder droppedDeliveryCount;
+
+    public FraudScoringPipeline(FraudDetectionService service, int partitionCount, int capacityPerPartition,
+                                int degradeDepth, OverflowPolicy overflowPolicy, Duration blockTimeout) {
+        this.service = Objects.requireNonNull(service, "Service cannot be null");
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "Overflow policy cannot be null");
+        Objects.requireNonNull(blockTimeout, "Block timeout cannot be null");
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("Partition count must be positive");
+        }
+        if (capacityPerPartition <= 0) {
+            throw new IllegalArgumentException("Partition capacity must be positive");
+        }
+        if (degradeDepth <= 0) {
+            throw new IllegalArgumentException("Degrade depth must be positive");
+        }
+
+        this.degradeDepth = degradeDepth;
+        this.blockTimeoutNanos = blockTimeout.toNanos();
+        this.publisher = new SubmissionPublisher<>();
+
+        this.submittedCount = new LongAdder();
+        this.rejectedCount = new LongAdder();
+        this.shedCount = new LongAdder();
+        this.degradedCount = new LongAdder();
+        this.fullCount = new LongAdder();
+        this.droppedDeliveryCount = new LongAdder();
+
+        this.accepting = true;
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i, capacityPerPartition);
+        }
+        for (Partition partition : partitions) {
+            partition.worker.start();
+        }
+    }
+
+    public static FraudScoringPipeline createDefault(FraudDetectionService service) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new FraudScoringPipeline(service, cores, 4096, 1024,
+                OverflowPolicy.SHED_TO_FAST_RULES, Duration.ofMillis(5));
+    }
+
+
+    public SubmitStatus submit(FraudDetectionService.TransactionData transaction) {
+        return submit(transaction, null);
+    }
+
+
+    public SubmitStatus submit(FraudDetectionService.TransactionData transaction,
+                               Consumer<ScoredTransaction> callback) {
+        Objects.requireNonNull(transaction, "Transaction cannot be null");
+        Objects.requireNonNull(transaction.getCardNumber(), "Card number cannot be null");
+
+        if (!accepting) {
+            rejectedCount.increment();
+            return SubmitStatus.REJECTED;
+        }
+
+        submittedCount.increment();
+        Task task = new Task(transaction, callback, System.nanoTime(), false);
+        Partition partition = partitionFor(transaction.getCardNumber());
+
+        if (partition.offer(task)) {
+            return SubmitStatus.QUEUED;
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                long deadline = System.nanoTime() + blockTimeoutNanos;
+                while (System.nanoTime() < deadline && accepting) {
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                    if (partition.offer(task)) {
+                        return SubmitStatus.QUEUED;
+                    }
+                }
+                rejectedCount.increment();
+                return SubmitStatus.REJECTED;
+            }
+            case SHED_TO_FAST_RULES -> {
+                if (partition.offerShed(new Task(transaction, callback, task.enqueuedNanos, true))) {
+                    shedCount.increment();
+                    return SubmitStatus.SHED;
+                }
+                rejectedCount.increment();
+                return SubmitStatus.REJECTED;
+            }
+            default -> {
+                rejectedCount.increment();
+                return SubmitStatus.REJECTED;
+            }
+        }
+    }
+
+
+    public void subscribe(Flow.Subscriber<? super ScoredTransaction> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    public Flow.Publisher<ScoredTransaction> getPublisher() {
+        return publisher;
+    }
+
+
+    private Partition partitionFor(String cardNumber) {
+        int hash = cardNumber.hashCode();
+        hash ^= (hash >>> 16);
+        return partitions[Math.floorMod(hash, partitions.length)];
+    }
+
+    private void process(Partition partition, Task task) {
+        FraudDetectionService.TransactionData txn = task.transaction;
+        FraudDetectionService.FraudAnalysisResult result;
+        ScoringMode mode;
+
+        if (task.shed) {
+            result = service.screenTransaction(txn);
+            mode = ScoringMode.SHED;
+        } else if (partition.depth() >= degradeDepth) {
+            degradedCount.increment();
+            result = service.screenTransaction(txn);
+            mode = ScoringMode.DEGRADED;
+        } else {
+            fullCount.increment();
+            result = service.analyzeTransaction(txn.getTransactionId(), txn.getCardNumber(), txn.getAmount(),
+                    txn.getMerchantName(), txn.getMerchantCity(), txn.getMerchantCountry(),
+                    txn.getLatitude(), txn.getLongitude(), txn.getTransactionTime(),
+                    txn.getTransactionType());
+            mode = ScoringMode.FULL;
+        }
+
+        deliver(task, result, mode);
+    }
+
+    private void deliver(Task task, FraudDetectionService.FraudAnalysisResult result, ScoringMode mode) {
+        ScoredTransaction scored = new ScoredTransaction(task.transaction, result, mode,
+                System.nanoTime() - task.enqueuedNanos);
+
+        if (task.callback != null) {
+            try {
+                task.callback.accept(scored);
+            } catch (RuntimeException e) {
+                System.err.println("Scoring callback failed for transaction " +
+                        task.transaction.getTransactionId() + ": " + e.getMessage());
+            }
+        }
+
+        if (publisher.hasSubscribers()) {
+            publisher.offer(scored, (subscriber, dropped) -> {
+                droppedDeliveryCount.increment();
+                return false;
+            });
+        }
+    }
+
+
+    @Override
+    public void close() {
+        if (!accepting) {
+            return;
+        }
+        accepting = false;
+
+        for (Partition partition : partitions) {
+            partition.close();
+            LockSupport.unpark(partition.worker);
+        }
+
+        boolean interrupted = false;
+        for (Partition partition : partitions) {
+            while (partition.worker.isAlive()) {
+                try {
+                    partition.worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        try {
+            for (Partition partition : partitions) {
+                partition.drain();
+            }
+        } finally {
+            publisher.close();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Partition partition : partitions) {
+            depth += partition.depth();
+        }
+        return depth;
+    }
+
+    public PipelineStatistics getStatistics() {
+        return new PipelineStatistics(submittedCount.sum(), fullCount.sum(), degradedCount.sum(),
+                shedCount.sum(), rejectedCount.sum(), droppedDeliveryCount.sum(),
+                getQueueDepth(), partitions.length);
+    }
+
+
+    public enum OverflowPolicy {
+        REJECT, BLOCK, SHED_TO_FAST_RULES
+    }
+
+    public enum SubmitStatus {
+        QUEUED, SHED, REJECTED
+    }
+
+    public enum ScoringMode {
+        FULL, DEGRADED, SHED
+    }
+
+
+    private final class Partition {
+        private final MpscRing<Task> ring;
+        private final MpscRing<Task> shedRing;
+        private final Thread worker;
+
+        Partition(int index, int capacity) {
+            this.ring = new MpscRing<>(capacity);
+            this.shedRing = new MpscRing<>(capacity);
+            this.worker = new Thread(this::run, "FraudScoringPipeline-" + index);
+            this.worker.setDaemon(true);
+        }
+
+        boolean offer(Task task) {
+            if (shedRing.size() > 0 || !ring.offer(task)) {
+                return false;
+            }
+            LockSupport.unpark(worker);
+            return true;
+        }
+
+        boolean offerShed(Task task) {
+            if (!shedRing.offer(task)) {
+                return false;
+            }
+            LockSupport.unpark(worker);
+            return true;
+        }
+
+        int depth() {
+            return ring.size() + shedRing.size();
+        }
+
+        void close() {
+            ring.close();
+            shedRing.close();
+        }
+
+        void drain() {
+            while (depth() > 0) {
+                Task task = next();
+                if (task == null) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                processSafely(task);
+            }
+        }
+
+        private Task next() {
+            Task task = ring.poll();
+            return task != null ? task : shedRing.poll();
+        }
+
+        private void run() {
+            while (!ring.isClosed() || depth() > 0) {
+                Task task = next();
+                if (task == null) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                processSafely(task);
+            }
+        }
+
+        private void processSafely(Task task) {
+            try {
+                process(this, task);
+            } catch (RuntimeException e) {
+                System.err.println("Pipeline scoring failed for transaction " +
+                        task.transaction.getTransactionId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class MpscRing<E> {
+        private static final long CLOSED = Long.MIN_VALUE;
+
+        private final AtomicReferenceArray<E> slots;
+        private final int capacity;
+        private final AtomicLong producerIndex = new AtomicLong();
+        private final AtomicLong consumerIndex = new AtomicLong();
+
+        MpscRing(int capacity) {
+            this.capacity = capacity;
+            this.slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        boolean offer(E element) {
+            while (true) {
+                long producer = producerIndex.get();
+                if ((producer & CLOSED) != 0 || producer - consumerIndex.get() >= capacity) {
+                    return false;
+                }
+                if (producerIndex.compareAndSet(producer, producer + 1)) {
+                    slots.lazySet(slot(producer), element);
+                    return true;
+                }
+            }
+        }
+
+        E poll() {
+            long consumer = consumerIndex.get();
+            int slot = slot(consumer);
+            E element = slots.get(slot);
+            if (element == null) {
+                return null;
+            }
+            slots.lazySet(slot, null);
+            consumerIndex.lazySet(consumer + 1);
+            return element;
+        }
+
+        void close() {
+            long producer;
+            do {
+                producer = producerIndex.get();
+            } while ((producer & CLOSED) == 0 && !producerIndex.compareAndSet(producer, producer | CLOSED));
+        }
+
+        boolean isClosed() {
+            return (producerIndex.get() & CLOSED) != 0;
+        }
+
+        int size() {
+            return (int) Math.max(0, (producerIndex.get() & ~CLOSED) - consumerIndex.get());
+        }
+
+        private int slot(long index) {
+            return (int) (index % capacity);
+        }
+    }
+
+    private static final class Task {
+        private final FraudDetectionService.TransactionData transaction;
+        private final Consumer<ScoredTransaction> callback;
+        private final long enqueuedNanos;
+        private final boolean shed;
+
+        Task(FraudDetectionService.TransactionData transaction, Consumer<ScoredTransaction> callback,
+             long enqueuedNanos, boolean shed) {
+            this.transaction = transaction;
+            this.callback = callback;
+            this.enqueuedNanos = enqueuedNanos;
+            this.shed = shed;
+        }
+    }
+
+
+    public static final class ScoredTransaction {
+        private final FraudDetectionService.TransactionData transaction;
+        private final FraudDetectionService.FraudAnalysisResult result;
+        private final ScoringMode mode;
+        private final long latencyNanos;
+
+        public ScoredTransaction(FraudDetectionService.TransactionData transaction,
+                                 FraudDetectionService.FraudAnalysisResult result,
+                                 ScoringMode mode, long latencyNanos) {
+            this.transaction = transaction;
+            this.result = result;
+            this.mode = mode;
+            this.latencyNanos = latencyNanos;
+        }
+
+        public FraudDetectionService.TransactionData getTransaction() {
+            return transaction;
+        }
+
+        public FraudDetectionService.FraudAnalysisResult getResult() {
+            return result;
+        }
+
+        public ScoringMode getMode() {
+            return mode;
+        }
+
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ScoredTransaction{id=%s, mode=%s, latency=%.3fms}",
+                    transaction.getTransactionId(), mode, latencyNanos / 1_000_000.0);
+        }
+    }
+
+    public static final class PipelineStatistics {
+        private final long submitted;
+        private final long fullyScored;
+        private final long degraded;
+        private final long shed;
+        private final long rejected;
+        private final long droppedDeliveries;
+        private final int queueDepth;
+        private final int partitionCount;
+
+        public PipelineStatistics(long submitted, long fullyScored, long degraded, long shed, long rejected,
+                                  long droppedDeliveries, int queueDepth, int partitionCount) {
+            this.submitted = submitted;
+            this.fullyScored = fullyScored;
+            this.degraded = degraded;
+            this.shed = shed;
+            this.rejected = rejected;
+            this.droppedDeliveries = droppedDeliveries;
+            this.queueDepth = queueDepth;
+            this.partitionCount = partitionCount;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public long getFullyScored() {
+            return fullyScored;
+        }
+
+        public long getDegraded() {
+            return degraded;
+        }
+
+        public long getShed() {
+            return shed;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getDroppedDeliveries() {
+            return droppedDeliveries;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getPartitionCount() {
+            return partitionCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("PipelineStats{submitted=%d, full=%d, degraded=%d, shed=%d, rejected=%d, " +
+                            "dropped=%d, depth=%d, partitions=%d}",
+                    submitted, fullyScored, degraded, shed, rejected, droppedDeliveries,
+                    queueDepth, partitionCount);
+        }
+    }
+}
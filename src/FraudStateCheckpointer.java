@@ -0,0 +1,774 @@
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public final class FraudStateCheckpointer implements AutoCloseable {
+
+    private static final int SNAPSHOT_MAGIC = 0x46524453;
+    private static final int JOURNAL_MAGIC = 0x4652444A;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int JOURNAL_VERSION = 1;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String JOURNAL_PREFIX = "delta-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final long ROTATION_TIMEOUT_SECONDS = 30;
+    private static final int JOURNAL_QUEUE_CAPACITY = 65_536;
+    private static final long RECOVERY_DELAY_MILLIS = 1_000;
+
+    private static final Object STOP = new Object();
+
+    private final Path directory;
+    private final FraudDetectionService service;
+
+    private final AtomicLong nextSequence;
+    private final BlockingQueue<Object> journalQueue;
+    private final Thread journalWriter;
+    private final ScheduledExecutorService snapshotExecutor;
+
+    private final AtomicLong journaledCount;
+    private final AtomicLong droppedCount;
+    private final AtomicBoolean recoveryScheduled;
+    private final AtomicLong snapshotCount;
+    private final long replayedCount;
+    private final Duration restoreDuration;
+
+    private long nextFileId;
+    private volatile long lastSnapshotId;
+    private volatile long lastSnapshotBytes;
+    private volatile Duration lastSnapshotDuration;
+    private volatile boolean degraded;
+    private volatile boolean closed;
+
+    private FraudStateCheckpointer(Path directory, FraudDetectionService service, long nextSequence,
+                                   long nextFileId, long lastSnapshotId, long replayedCount,
+                                   Duration restoreDuration, Duration snapshotInterval) throws IOException {
+        this.directory = directory;
+        this.service = service;
+        this.nextSequence = new AtomicLong(nextSequence);
+        this.journalQueue = new LinkedBlockingQueue<>(JOURNAL_QUEUE_CAPACITY);
+        this.journaledCount = new AtomicLong();
+        this.droppedCount = new AtomicLong();
+        this.recoveryScheduled = new AtomicBoolean();
+        this.snapshotCount = new AtomicLong();
+        this.replayedCount = replayedCount;
+        this.restoreDuration = restoreDuration;
+        this.lastSnapshotId = lastSnapshotId;
+        this.lastSnapshotDuration = Duration.ZERO;
+
+        long segmentId = nextFileId;
+        this.nextFileId = nextFileId + 1;
+        DataOutputStream segment = openSegment(segmentId);
+
+        this.journalWriter = new Thread(() -> runJournalWriter(segment), "FraudStateCheckpointer-Journal");
+        journalWriter.setDaemon(true);
+        journalWriter.start();
+
+        this.snapshotExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "FraudStateCheckpointer-Snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalMillis = snapshotInterval.toMillis();
+        snapshotExecutor.scheduleWithFixedDelay(this::snapshotSafely,
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+
+        service.attachJournal(this);
+    }
+
+
+    public static FraudStateCheckpointer open(Path directory, FraudDetectionConfig config,
+                                              Duration snapshotInterval) {
+        Objects.requireNonNull(directory, "Directory cannot be null");
+        Objects.requireNonNull(config, "Config cannot be null");
+        Objects.requireNonNull(snapshotInterval, "Snapshot interval cannot be null");
+        if (snapshotInterval.isNegative() || snapshotInterval.isZero()) {
+            throw new IllegalArgumentException("Snapshot interval must be positive");
+        }
+
+        long started = System.nanoTime();
+
+        try {
+            Files.createDirectories(directory);
+            deleteTempFiles(directory);
+
+            TreeMap<Long, Path> snapshots = listFiles(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            TreeMap<Long, Path> segments = listFiles(directory, JOURNAL_PREFIX, JOURNAL_SUFFIX);
+
+
+            FraudDetectionService service = null;
+            long[] stripeSequences = new long[0];
+            long duplicateFilterSequence = 0;
+            long snapshotId = -1;
+
+            for (Map.Entry<Long, Path> snapshot : snapshots.descendingMap().entrySet()) {
+                FraudDetectionService candidate = new FraudDetectionService(config);
+                try {
+                    FraudDetectionService.SnapshotSequences sequences =
+                            readSnapshot(snapshot.getValue(), snapshot.getKey(), candidate);
+                    stripeSequences = sequences.getStripeSequences();
+                    duplicateFilterSequence = sequences.getDuplicateFilterSequence();
+                    service = candidate;
+                    snapshotId = snapshot.getKey();
+                    break;
+                } catch (IOException e) {
+                    candidate.shutdown();
+                    System.err.println("Skipping unreadable snapshot " + snapshot.getValue() + ": " + e.getMessage());
+                }
+            }
+
+            if (service == null) {
+                service = new FraudDetectionService(config);
+            }
+
+
+            long maxSequence = -1;
+            for (long sequence : stripeSequences) {
+                maxSequence = Math.max(maxSequence, sequence - 1);
+            }
+
+            List<JournalRecord> pending = new ArrayList<>();
+            for (Map.Entry<Long, Path> segment : segments.tailMap(Math.max(snapshotId, 0L), true).entrySet()) {
+                for (JournalRecord record : readSegment(segment.getValue(), segment.getKey())) {
+                    maxSequence = Math.max(maxSequence, record.sequence);
+                    int stripe = FraudDetectionService.stateStripeOf(record.cardNumber);
+                    if (stripe >= stripeSequences.length || record.sequence >= stripeSequences[stripe]) {
+                        pending.add(record);
+                    }
+                }
+            }
+
+            pending.sort(Comparator.comparingLong(record -> record.sequence));
+            for (JournalRecord record : pending) {
+                if (record.sequence < duplicateFilterSequence) {
+                    service.restoreTransaction(record.transactionId, record.cardNumber, record.amount,
+                            record.merchantName, record.merchantCity, record.merchantCountry,
+                            record.latitude, record.longitude, record.transactionTime);
+                } else {
+                    replay(service, record);
+                }
+            }
+
+
+            long lastFileId = Math.max(snapshots.isEmpty() ? -1 : snapshots.lastKey(),
+                    segments.isEmpty() ? -1 : segments.lastKey());
+
+            return new FraudStateCheckpointer(directory, service, maxSequence + 1, lastFileId + 1,
+                    snapshotId, pending.size(), Duration.ofNanos(System.nanoTime() - started), snapshotInterval);
+
+        } catch (IOException e) {
+            throw new FraudStateStorageException("Failed to restore fraud state from " + directory, e);
+        }
+    }
+
+
+    private static void replay(FraudDetectionService service, JournalRecord record) {
+        BigDecimal amount = record.amount;
+        if (amount.scale() <= 2 && amount.precision() - amount.scale() <= 16) {
+            service.scoreTransactionFast(record.transactionId, record.cardNumber,
+                    amount.movePointRight(2).longValueExact(), record.merchantName, record.merchantCity,
+                    record.merchantCountry, record.latitude, record.longitude, record.transactionTime,
+                    record.transactionType);
+        } else {
+            service.analyzeTransaction(record.transactionId, record.cardNumber, amount,
+                    record.merchantName, record.merchantCity, record.merchantCountry,
+                    record.latitude, record.longitude, record.transactionTime, record.transactionType);
+        }
+    }
+
+
+    public FraudDetectionService getService() {
+        return service;
+    }
+
+
+    boolean append(String transactionId, String cardNumber, BigDecimal amount, String merchantName,
+                   String merchantCity, String merchantCountry, double latitude, double longitude,
+                   LocalDateTime transactionTime, TransactionRisk.TransactionType transactionType) {
+        if (closed) {
+            return false;
+        }
+
+        return enqueue(new JournalRecord(nextSequence.getAndIncrement(), transactionId, cardNumber, amount, 0,
+                merchantName, merchantCity, merchantCountry, latitude, longitude, transactionTime, transactionType));
+    }
+
+    boolean append(String transactionId, String cardNumber, long amountMinorUnits, String merchantName,
+                   String merchantCity, String merchantCountry, double latitude, double longitude,
+                   LocalDateTime transactionTime, TransactionRisk.TransactionType transactionType) {
+        if (closed) {
+            return false;
+        }
+
+        return enqueue(new JournalRecord(nextSequence.getAndIncrement(), transactionId, cardNumber, null,
+                amountMinorUnits, merchantName, merchantCity, merchantCountry, latitude, longitude,
+                transactionTime, transactionType));
+    }
+
+    private boolean enqueue(JournalRecord record) {
+        if (!journalQueue.offer(record)) {
+            recordDropped(1);
+            return false;
+        }
+        journaledCount.incrementAndGet();
+        return !degraded;
+    }
+
+
+    private void recordDropped(int count) {
+        droppedCount.addAndGet(count);
+        degraded = true;
+        scheduleRecovery();
+    }
+
+    private void scheduleRecovery() {
+        if (closed || !recoveryScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            snapshotExecutor.schedule(this::recoverSafely, RECOVERY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            recoveryScheduled.set(false);
+        }
+    }
+
+    private void recoverSafely() {
+        recoveryScheduled.set(false);
+        snapshotSafely();
+    }
+
+
+    public synchronized long snapshotNow() {
+        if (closed) {
+            throw new IllegalStateException("Checkpointer is closed");
+        }
+        return takeSnapshot();
+    }
+
+    private long takeSnapshot() {
+        long started = System.nanoTime();
+        long snapshotId = nextFileId++;
+        long droppedBefore = droppedCount.get();
+
+
+        SegmentRotation rotation = new SegmentRotation(snapshotId);
+
+        Path target = directory.resolve(SNAPSHOT_PREFIX + snapshotId + SNAPSHOT_SUFFIX);
+        Path temp = null;
+
+        try {
+            journalQueue.put(rotation);
+            temp = Files.createTempFile(directory, SNAPSHOT_PREFIX, TEMP_SUFFIX);
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(snapshotId);
+                service.writeSnapshot(out, nextSequence::get);
+            }
+
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            rotation.completed.get(ROTATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            deleteFilesBefore(snapshotId);
+
+        } catch (IOException | RuntimeException | ExecutionException | TimeoutException e) {
+            deleteQuietly(temp);
+            throw new FraudStateStorageException("Failed to write fraud state snapshot " + snapshotId, e);
+        } catch (InterruptedException e) {
+            deleteQuietly(temp);
+            Thread.currentThread().interrupt();
+            throw new FraudStateStorageException("Interrupted while writing fraud state snapshot " + snapshotId, e);
+        }
+
+        try {
+            lastSnapshotBytes = Files.size(target);
+        } catch (IOException e) {
+            lastSnapshotBytes = -1;
+        }
+        lastSnapshotId = snapshotId;
+        lastSnapshotDuration = Duration.ofNanos(System.nanoTime() - started);
+        snapshotCount.incrementAndGet();
+
+        if (droppedCount.get() == droppedBefore) {
+            degraded = false;
+        } else {
+            scheduleRecovery();
+        }
+        return snapshotId;
+    }
+
+    private void snapshotSafely() {
+        try {
+            synchronized (this) {
+                if (!closed) {
+                    takeSnapshot();
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Fraud state snapshot failed: " + e.getMessage());
+        }
+    }
+
+
+    private void runJournalWriter(DataOutputStream initialSegment) {
+        DataOutputStream out = initialSegment;
+        List<Object> batch = new ArrayList<>();
+
+        try {
+            boolean stop = false;
+            while (!stop) {
+                batch.add(journalQueue.take());
+                journalQueue.drainTo(batch);
+
+                int unflushed = 0;
+                for (Object item : batch) {
+                    if (item == STOP) {
+                        stop = true;
+                    } else if (item instanceof SegmentRotation) {
+                        SegmentRotation rotation = (SegmentRotation) item;
+                        if (out != null) {
+                            try {
+                                out.flush();
+                            } catch (IOException e) {
+                                System.err.println("Fraud state journal flush failed: " + e.getMessage());
+                                recordDropped(unflushed);
+                            }
+                        }
+                        unflushed = 0;
+                        closeQuietly(out);
+                        out = null;
+                        try {
+                            out = openSegment(rotation.segmentId);
+                            rotation.completed.complete(null);
+                        } catch (IOException e) {
+                            rotation.completed.completeExceptionally(e);
+                        }
+                    } else if (out != null) {
+                        try {
+                            writeRecord(out, (JournalRecord) item);
+                            unflushed++;
+                        } catch (IOException e) {
+                            System.err.println("Fraud state journal write failed: " + e.getMessage());
+                            closeQuietly(out);
+                            out = null;
+                            recordDropped(unflushed + 1);
+                            unflushed = 0;
+                        }
+                    } else {
+                        recordDropped(1);
+                    }
+                }
+                batch.clear();
+
+                if (out != null) {
+                    try {
+                        out.flush();
+                    } catch (IOException e) {
+                        System.err.println("Fraud state journal flush failed: " + e.getMessage());
+                        closeQuietly(out);
+                        out = null;
+                        recordDropped(unflushed);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private DataOutputStream openSegment(long segmentId) throws IOException {
+        Path path = directory.resolve(JOURNAL_PREFIX + segmentId + JOURNAL_SUFFIX);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)));
+        out.writeInt(JOURNAL_MAGIC);
+        out.writeInt(JOURNAL_VERSION);
+        out.writeLong(segmentId);
+        out.flush();
+        return out;
+    }
+
+
+    private static void writeRecord(DataOutputStream out, JournalRecord record) throws IOException {
+        out.writeLong(record.sequence);
+        out.writeUTF(record.transactionId);
+        out.writeUTF(record.cardNumber);
+        if (record.amount != null) {
+            byte[] unscaled = record.amount.unscaledValue().toByteArray();
+            out.writeByte(unscaled.length);
+            out.write(unscaled);
+            out.writeInt(record.amount.scale());
+        } else {
+            writeUnscaled(out, record.amountMinorUnits);
+            out.writeInt(2);
+        }
+        writeNullable(out, record.merchantName);
+        writeNullable(out, record.merchantCity);
+        writeNullable(out, record.merchantCountry);
+        out.writeDouble(record.latitude);
+        out.writeDouble(record.longitude);
+        out.writeBoolean(record.transactionTime != null);
+        if (record.transactionTime != null) {
+            out.writeLong(record.transactionTime.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(record.transactionTime.getNano());
+        }
+        out.writeByte(record.transactionType == null ? -1 : record.transactionType.ordinal());
+    }
+
+    private static void writeUnscaled(DataOutput out, long value) throws IOException {
+        int length = (Long.SIZE - Long.numberOfLeadingZeros(value ^ (value >> 63))) / 8 + 1;
+        out.writeByte(length);
+        for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+            out.writeByte((int) (value >> shift));
+        }
+    }
+
+    private static JournalRecord readRecord(DataInputStream in) throws IOException {
+        long sequence = in.readLong();
+        String transactionId = in.readUTF();
+        String cardNumber = in.readUTF();
+        byte[] unscaled = new byte[in.readUnsignedByte()];
+        in.readFully(unscaled);
+        BigDecimal amount = new BigDecimal(new BigInteger(unscaled), in.readInt());
+        String merchantName = readNullable(in);
+        String merchantCity = readNullable(in);
+        String merchantCountry = readNullable(in);
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        LocalDateTime transactionTime = in.readBoolean()
+                ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC)
+                : null;
+        int type = in.readByte();
+        TransactionRisk.TransactionType[] types = TransactionRisk.TransactionType.values();
+        if (type >= types.length) {
+            throw new IOException("Unknown transaction type ordinal: " + type);
+        }
+
+        return new JournalRecord(sequence, transactionId, cardNumber, amount, 0, merchantName, merchantCity,
+                merchantCountry, latitude, longitude, transactionTime, type < 0 ? null : types[type]);
+    }
+
+    private static void writeNullable(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+
+    private static FraudDetectionService.SnapshotSequences readSnapshot(Path path, long snapshotId,
+                                                                        FraudDetectionService service)
+            throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a fraud state snapshot");
+            }
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported fraud state snapshot version");
+            }
+            if (in.readLong() != snapshotId) {
+                throw new IOException("Snapshot id does not match file name");
+            }
+            return service.readSnapshot(in);
+        }
+    }
+
+    private static List<JournalRecord> readSegment(Path path, long segmentId) throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            try {
+                if (in.readInt() != JOURNAL_MAGIC || in.readInt() != JOURNAL_VERSION
+                        || in.readLong() != segmentId) {
+                    System.err.println("Skipping foreign journal segment " + path);
+                    return records;
+                }
+            } catch (EOFException e) {
+                return records;
+            }
+
+            while (true) {
+                try {
+                    records.add(readRecord(in));
+                } catch (EOFException e) {
+                    break;
+                } catch (IOException e) {
+                    System.err.println("Truncating journal segment " + path + " at a corrupt record: " + e.getMessage());
+                    break;
+                }
+            }
+        }
+
+        return records;
+    }
+
+
+    private static TreeMap<Long, Path> listFiles(Path directory, String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), path);
+                } catch (NumberFormatException ignored) {
+
+                }
+            }
+        }
+
+        return files;
+    }
+
+    private static void deleteTempFiles(Path directory) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+            for (Path path : stream) {
+                deleteQuietly(path);
+            }
+        }
+    }
+
+    private void deleteFilesBefore(long fileId) throws IOException {
+        for (Path path : listFiles(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).headMap(fileId).values()) {
+            deleteQuietly(path);
+        }
+        for (Path path : listFiles(directory, JOURNAL_PREFIX, JOURNAL_SUFFIX).headMap(fileId).values()) {
+            deleteQuietly(path);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+
+        }
+    }
+
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                takeSnapshot();
+            } catch (FraudStateStorageException e) {
+                System.err.println("Final fraud state snapshot failed: " + e.getMessage());
+            }
+            closed = true;
+        }
+
+        service.attachJournal(null);
+        snapshotExecutor.shutdown();
+
+        try {
+            if (!journalQueue.offer(STOP, 5, TimeUnit.SECONDS)) {
+                System.err.println("Fraud state journal did not accept the stop signal");
+            }
+            if (!snapshotExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                snapshotExecutor.shutdownNow();
+            }
+            journalWriter.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            snapshotExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public long getDroppedJournalRecords() {
+        return droppedCount.get();
+    }
+
+
+    public CheckpointStatistics getStatistics() {
+        return new CheckpointStatistics(lastSnapshotId, snapshotCount.get(), lastSnapshotBytes,
+                lastSnapshotDuration, journaledCount.get(), journalQueue.size(), droppedCount.get(), degraded,
+                replayedCount, restoreDuration);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+
+    private static final class JournalRecord {
+        private final long sequence;
+        private final String transactionId;
+        private final String cardNumber;
+        private final BigDecimal amount;
+        private final long amountMinorUnits;
+        private final String merchantName;
+        private final String merchantCity;
+        private final String merchantCountry;
+        private final double latitude;
+        private final double longitude;
+        private final LocalDateTime transactionTime;
+        private final TransactionRisk.TransactionType transactionType;
+
+        JournalRecord(long sequence, String transactionId, String cardNumber, BigDecimal amount,
+                      long amountMinorUnits, String merchantName, String merchantCity, String merchantCountry,
+                      double latitude, double longitude, LocalDateTime transactionTime,
+                      TransactionRisk.TransactionType transactionType) {
+            this.sequence = sequence;
+            this.transactionId = transactionId;
+            this.cardNumber = cardNumber;
+            this.amount = amount;
+            this.amountMinorUnits = amountMinorUnits;
+            this.merchantName = merchantName;
+            this.merchantCity = merchantCity;
+            this.merchantCountry = merchantCountry;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.transactionTime = transactionTime;
+            this.transactionType = transactionType;
+        }
+    }
+
+    private static final class SegmentRotation {
+        private final long segmentId;
+        private final CompletableFuture<Void> completed = new CompletableFuture<>();
+
+        SegmentRotation(long segmentId) {
+            this.segmentId = segmentId;
+        }
+    }
+
+
+    public static final class CheckpointStatistics {
+        private final long lastSnapshotId;
+        private final long snapshotCount;
+        private final long lastSnapshotBytes;
+        private final Duration lastSnapshotDuration;
+        private final long journaledTransactions;
+        private final int pendingJournalRecords;
+        private final long droppedJournalRecords;
+        private final boolean journalDegraded;
+        private final long replayedTransactions;
+        private final Duration restoreDuration;
+
+        public CheckpointStatistics(long lastSnapshotId, long snapshotCount, long lastSnapshotBytes,
+                                    Duration lastSnapshotDuration, long journaledTransactions,
+                                    int pendingJournalRecords, long droppedJournalRecords,
+                                    boolean journalDegraded, long replayedTransactions,
+                                    Duration restoreDuration) {
+            this.lastSnapshotId = lastSnapshotId;
+            this.snapshotCount = snapshotCount;
+            this.lastSnapshotBytes = lastSnapshotBytes;
+            this.lastSnapshotDuration = lastSnapshotDuration;
+            this.journaledTransactions = journaledTransactions;
+            this.pendingJournalRecords = pendingJournalRecords;
+            this.droppedJournalRecords = droppedJournalRecords;
+            this.journalDegraded = journalDegraded;
+            this.replayedTransactions = replayedTransactions;
+            this.restoreDuration = restoreDuration;
+        }
+
+
+        public long getLastSnapshotId() {
+            return lastSnapshotId;
+        }
+
+        public long getSnapshotCount() {
+            return snapshotCount;
+        }
+
+        public long getLastSnapshotBytes() {
+            return lastSnapshotBytes;
+        }
+
+        public Duration getLastSnapshotDuration() {
+            return lastSnapshotDuration;
+        }
+
+        public long getJournaledTransactions() {
+            return journaledTransactions;
+        }
+
+        public int getPendingJournalRecords() {
+            return pendingJournalRecords;
+        }
+
+        public long getDroppedJournalRecords() {
+            return droppedJournalRecords;
+        }
+
+        public boolean isJournalDegraded() {
+            return journalDegraded;
+        }
+
+        public long getReplayedTransactions() {
+            return replayedTransactions;
+        }
+
+        public Duration getRestoreDuration() {
+            return restoreDuration;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CheckpointStats{lastSnapshot=%d, snapshots=%d, bytes=%d, snapshotTime=%dms, " +
+                            "journaled=%d, pending=%d, dropped=%d, degraded=%s, replayed=%d, restoreTime=%dms}",
+                    lastSnapshotId, snapshotCount, lastSnapshotBytes, lastSnapshotDuration.toMillis(),
+                    journaledTransactions, pendingJournalRecords, droppedJournalRecords, journalDegraded,
+                    replayedTransactions,
+                    restoreDuration.toMillis());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FraudStateCheckpointer{directory=%s, lastSnapshot=%d, journaled=%d}",
+                directory, lastSnapshotId, journaledCount.get());
+    }
+}
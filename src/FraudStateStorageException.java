@@ -0,0 +1,10 @@
+public class FraudStateStorageException extends InfrastructureException {
+
+    public FraudStateStorageException(String message) {
+        super(message);
+    }
+
+    public FraudStateStorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,120 @@
+public final class GeoGrid {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+    public static final double CELL_DEGREES = 0.1;
+
+    private static final int ROWS = (int) Math.round(180.0 / CELL_DEGREES);
+    private static final int COLUMNS = (int) Math.round(360.0 / CELL_DEGREES);
+    private static final double CELL_HEIGHT_KM = EARTH_RADIUS_KM * Math.toRadians(CELL_DEGREES);
+
+
+    private static final double[] ROW_MAX_COS = new double[ROWS];
+    private static final double[] ROW_MAX_CELL_DIAGONAL_KM = new double[ROWS];
+
+    static {
+        for (int row = 0; row < ROWS; row++) {
+            double southEdge = -90.0 + row * CELL_DEGREES;
+            double northEdge = southEdge + CELL_DEGREES;
+            double nearestToEquator = (southEdge <= 0.0 && northEdge >= 0.0)
+                    ? 0.0 : Math.min(Math.abs(southEdge), Math.abs(northEdge));
+            ROW_MAX_COS[row] = Math.cos(Math.toRadians(nearestToEquator));
+            ROW_MAX_CELL_DIAGONAL_KM[row] = CELL_HEIGHT_KM * (1.0 + ROW_MAX_COS[row]);
+        }
+    }
+
+    private GeoGrid() {
+    }
+
+
+    public static long cellOf(double latitude, double longitude) {
+        int row = Math.min(ROWS - 1, (int) ((latitude + 90.0) / CELL_DEGREES));
+        int column = Math.min(COLUMNS - 1, (int) ((longitude + 180.0) / CELL_DEGREES));
+        return ((long) row << 32) | column;
+    }
+
+    public static int row(long cell) {
+        return (int) (cell >>> 32);
+    }
+
+    public static int column(long cell) {
+        return (int) cell;
+    }
+
+
+    public static double lowerBoundKm(double latRadA, long cellA, double latRadB, long cellB) {
+        int rowDelta = Math.abs(row(cellA) - row(cellB));
+        double cellBound = rowDelta > 1 ? (rowDelta - 1) * CELL_HEIGHT_KM : 0.0;
+        return Math.max(cellBound, EARTH_RADIUS_KM * Math.abs(latRadA - latRadB));
+    }
+
+    public static double upperBoundKm(double latRadA, double lonRadA, long cellA,
+                                      double latRadB, double lonRadB, long cellB) {
+        if (cellA == cellB) {
+            return ROW_MAX_CELL_DIAGONAL_KM[row(cellA)];
+        }
+
+        double lonDelta = Math.abs(lonRadA - lonRadB);
+        if (lonDelta > Math.PI) {
+            lonDelta = 2 * Math.PI - lonDelta;
+        }
+        double cos = Math.min(ROW_MAX_COS[row(cellA)], ROW_MAX_COS[row(cellB)]);
+        return EARTH_RADIUS_KM * (Math.abs(latRadA - latRadB) + cos * lonDelta);
+    }
+
+
+    public static double haversineKm(double latRadA, double lonRadA, double cosLatA,
+                                     double latRadB, double lonRadB, double cosLatB) {
+        double sinHalfLat = Math.sin((latRadB - latRadA) / 2);
+        double sinHalfLon = Math.sin((lonRadB - lonRadA) / 2);
+
+        double a = sinHalfLat * sinHalfLat + cosLatA * cosLatB * sinHalfLon * sinHalfLon;
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return EARTH_RADIUS_KM * c;
+    }
+
+
+    public static boolean isWithinKm(double latRadA, double lonRadA, double cosLatA, long cellA,
+                                     double latRadB, double lonRadB, double cosLatB, long cellB,
+                                     double thresholdKm) {
+        if (lowerBoundKm(latRadA, cellA, latRadB, cellB) >= thresholdKm) {
+            return false;
+        }
+        if (upperBoundKm(latRadA, lonRadA, cellA, latRadB, lonRadB, cellB) < thresholdKm) {
+            return true;
+        }
+        return haversineKm(latRadA, lonRadA, cosLatA, latRadB, lonRadB, cosLatB) < thresholdKm;
+    }
+
+    public static boolean exceedsKm(double latRadA, double lonRadA, double cosLatA, long cellA,
+                                    double latRadB, double lonRadB, double cosLatB, long cellB,
+                                    double thresholdKm) {
+        if (lowerBoundKm(latRadA, cellA, latRadB, cellB) > thresholdKm) {
+            return true;
+        }
+        if (upperBoundKm(latRadA, lonRadA, cellA, latRadB, lonRadB, cellB) <= thresholdKm) {
+            return false;
+        }
+        return haversineKm(latRadA, lonRadA, cosLatA, latRadB, lonRadB, cosLatB) > thresholdKm;
+    }
+
+
+    public static double boundedDistanceKm(double latRadA, double lonRadA, double cosLatA, long cellA,
+                                           double latRadB, double lonRadB, double cosLatB, long cellB,
+                                           double thresholdKm) {
+        double lower = lowerBoundKm(latRadA, cellA, latRadB, cellB);
+        if (lower > thresholdKm) {
+            return lower;
+        }
+        double upper = upperBoundKm(latRadA, lonRadA, cellA, latRadB, lonRadB, cellB);
+        if (upper <= thresholdKm) {
+            return upper;
+        }
+        return haversineKm(latRadA, lonRadA, cosLatA, latRadB, lonRadB, cosLatB);
+    }
+
+
+    public static double getCellHeightKm() {
+        return CELL_HEIGHT_KM;
+    }
+}
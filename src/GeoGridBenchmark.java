@@ -0,0 +1,307 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+public class GeoGridBenchmark {
+
+    private static final long SEED = 42L;
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 200_000_000L;
+    private static final int OPS_PER_CHECK = 256;
+
+    private static final int PAIR_COUNT = 1 << 14;
+
+    private static final double SAME_LOCATION_KM = 1.0;
+    private static final double LONG_DISTANCE_KM = 500.0;
+    private static final double MAX_SPEED_KMH = 1000.0;
+
+
+    public enum Spread {
+        LOCAL(0.02),
+        REGIONAL(3.0),
+        GLOBAL(180.0);
+
+        private final double degrees;
+
+        Spread(double degrees) {
+            this.degrees = degrees;
+        }
+
+        public double getDegrees() {
+            return degrees;
+        }
+    }
+
+    public enum Target {
+        EXACT_SAME_LOCATION("haversine < 1km"),
+        GRID_SAME_LOCATION("GeoGrid.isWithinKm 1km"),
+        EXACT_LONG_DISTANCE("haversine > 500km"),
+        GRID_LONG_DISTANCE("GeoGrid.boundedDistanceKm 500km"),
+        EXACT_SPEED("haversine speed > 1000km/h"),
+        GRID_SPEED("GeoGrid.exceedsKm speed");
+
+        private final String label;
+
+        Target(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+
+    public static class BenchmarkResult {
+        public final Target target;
+        public final Spread spread;
+        public final double nsPerOp;
+        public final double nsPerOpError;
+        public final double bytesPerOp;
+        public final long gcCount;
+        public final double hitRate;
+
+        public BenchmarkResult(Target target, Spread spread, double nsPerOp, double nsPerOpError,
+                               double bytesPerOp, long gcCount, double hitRate) {
+            this.target = target;
+            this.spread = spread;
+            this.nsPerOp = nsPerOp;
+            this.nsPerOpError = nsPerOpError;
+            this.bytesPerOp = bytesPerOp;
+            this.gcCount = gcCount;
+            this.hitRate = hitRate;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-34s %-9s %10.2f ± %6.2f %8.1f %5d %6.1f%%",
+                    target.getLabel(), spread, nsPerOp, nsPerOpError, bytesPerOp, gcCount, hitRate * 100);
+        }
+    }
+
+
+    private static final class Fixture {
+        final double[] latitudes;
+        final double[] longitudes;
+        final double[] latitudeRadians;
+        final double[] longitudeRadians;
+        final double[] cosLatitudes;
+        final long[] cells;
+        final long[] minutesBetween;
+
+        Fixture(Spread spread) {
+            Random random = new Random(SEED);
+            int points = PAIR_COUNT * 2;
+
+            this.latitudes = new double[points];
+            this.longitudes = new double[points];
+            this.latitudeRadians = new double[points];
+            this.longitudeRadians = new double[points];
+            this.cosLatitudes = new double[points];
+            this.cells = new long[points];
+            this.minutesBetween = new long[PAIR_COUNT];
+
+            for (int i = 0; i < PAIR_COUNT; i++) {
+                double lat = -60.0 + random.nextDouble() * 120.0;
+                double lon = -179.0 + random.nextDouble() * 358.0;
+                setPoint(2 * i, lat, lon);
+
+                double otherLat = clamp(lat + (random.nextDouble() * 2 - 1) * spread.getDegrees(), -89.9, 89.9);
+                double otherLon = wrap(lon + (random.nextDouble() * 2 - 1) * spread.getDegrees());
+                setPoint(2 * i + 1, otherLat, otherLon);
+
+                minutesBetween[i] = 1 + random.nextInt(120);
+            }
+        }
+
+        private void setPoint(int index, double latitude, double longitude) {
+            LocationTracker.LocationEntry entry = new LocationTracker.LocationEntry(
+                    "T" + index, "C", latitude, longitude, "City", "TR", null);
+            latitudes[index] = latitude;
+            longitudes[index] = longitude;
+            latitudeRadians[index] = entry.getLatitudeRadians();
+            longitudeRadians[index] = entry.getLongitudeRadians();
+            cosLatitudes[index] = entry.getCosLatitude();
+            cells[index] = entry.getGeoCell();
+        }
+
+        private static double clamp(double value, double min, double max) {
+            return Math.max(min, Math.min(max, value));
+        }
+
+        private static double wrap(double longitude) {
+            if (longitude >= 180.0) {
+                return longitude - 360.0;
+            }
+            if (longitude < -180.0) {
+                return longitude + 360.0;
+            }
+            return longitude;
+        }
+    }
+
+
+    private interface Operation {
+        long run(int i);
+    }
+
+    private static long sink;
+
+
+    public static BenchmarkResult run(Target target, Spread spread) {
+        Fixture fixture = new Fixture(spread);
+        Operation operation = operationFor(target, fixture);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            measureIteration(operation);
+        }
+
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long gcCountBefore = totalGcCount();
+
+        double[] nsPerOp = new double[MEASUREMENT_ITERATIONS];
+        long totalOps = 0;
+        long totalBytes = 0;
+        long totalHits = 0;
+
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+            long[] iteration = measureIteration(operation);
+            totalBytes += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+
+            nsPerOp[i] = iteration[1] / (double) iteration[0];
+            totalOps += iteration[0];
+            totalHits += iteration[2];
+        }
+
+        double mean = Arrays.stream(nsPerOp).average().orElse(0.0);
+        double variance = Arrays.stream(nsPerOp).map(v -> (v - mean) * (v - mean)).sum()
+                / Math.max(1, MEASUREMENT_ITERATIONS - 1);
+
+        return new BenchmarkResult(target, spread, mean, Math.sqrt(variance),
+                totalBytes / (double) totalOps,
+                totalGcCount() - gcCountBefore,
+                totalHits / (double) totalOps);
+    }
+
+
+    private static long[] measureIteration(Operation operation) {
+        long ops = 0;
+        long hits = 0;
+        long start = System.nanoTime();
+        long elapsed;
+
+        do {
+            for (int k = 0; k < OPS_PER_CHECK; k++) {
+                hits += operation.run((int) ops++);
+            }
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ITERATION_NANOS);
+
+        sink += hits;
+        return new long[]{ops, elapsed, hits};
+    }
+
+
+    private static Operation operationFor(Target target, Fixture f) {
+        int pairMask = PAIR_COUNT - 1;
+
+        switch (target) {
+            case EXACT_SAME_LOCATION:
+                return i -> {
+                    int a = (i & pairMask) << 1;
+                    return exactDistance(f, a, a + 1) < SAME_LOCATION_KM ? 1 : 0;
+                };
+            case GRID_SAME_LOCATION:
+                return i -> {
+                    int a = (i & pairMask) << 1;
+                    return GeoGrid.isWithinKm(
+                            f.latitudeRadians[a], f.longitudeRadians[a], f.cosLatitudes[a], f.cells[a],
+                            f.latitudeRadians[a + 1], f.longitudeRadians[a + 1], f.cosLatitudes[a + 1], f.cells[a + 1],
+                            SAME_LOCATION_KM) ? 1 : 0;
+                };
+            case EXACT_LONG_DISTANCE:
+                return i -> {
+                    int a = (i & pairMask) << 1;
+                    return exactDistance(f, a, a + 1) > LONG_DISTANCE_KM ? 1 : 0;
+                };
+            case GRID_LONG_DISTANCE:
+                return i -> {
+                    int a = (i & pairMask) << 1;
+                    return GeoGrid.boundedDistanceKm(
+                            f.latitudeRadians[a], f.longitudeRadians[a], f.cosLatitudes[a], f.cells[a],
+                            f.latitudeRadians[a + 1], f.longitudeRadians[a + 1], f.cosLatitudes[a + 1], f.cells[a + 1],
+                            LONG_DISTANCE_KM) > LONG_DISTANCE_KM ? 1 : 0;
+                };
+            case EXACT_SPEED:
+                return i -> {
+                    int pair = i & pairMask;
+                    int a = pair << 1;
+                    double speed = exactDistance(f, a, a + 1) / (f.minutesBetween[pair] / 60.0);
+                    return speed > MAX_SPEED_KMH ? 1 : 0;
+                };
+            case GRID_SPEED:
+                return i -> {
+                    int pair = i & pairMask;
+                    int a = pair << 1;
+                    return GeoGrid.exceedsKm(
+                            f.latitudeRadians[a], f.longitudeRadians[a], f.cosLatitudes[a], f.cells[a],
+                            f.latitudeRadians[a + 1], f.longitudeRadians[a + 1], f.cosLatitudes[a + 1], f.cells[a + 1],
+                            MAX_SPEED_KMH * (f.minutesBetween[pair] / 60.0)) ? 1 : 0;
+                };
+            default:
+                throw new IllegalArgumentException("Unknown benchmark target: " + target);
+        }
+    }
+
+    private static double exactDistance(Fixture f, int a, int b) {
+        return LocationTracker.calculateDistance(f.latitudes[a], f.longitudes[a], f.latitudes[b], f.longitudes[b]);
+    }
+
+
+    private static long totalGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+
+    public static List<BenchmarkResult> runSuite(String filter) {
+        List<BenchmarkResult> results = new ArrayList<>();
+
+        for (Target target : Target.values()) {
+            if (filter != null && !target.getLabel().contains(filter) && !target.name().contains(filter)) {
+                continue;
+            }
+
+            for (Spread spread : Spread.values()) {
+                BenchmarkResult result = run(target, spread);
+                System.out.println(result);
+                results.add(result);
+            }
+        }
+
+        return results;
+    }
+
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : null;
+
+        System.out.println("Geo Grid Benchmark Suite");
+        System.out.printf("warmup=%dx%dms, measurement=%dx%dms, pairs=%d, seed=%d%n",
+                WARMUP_ITERATIONS, ITERATION_NANOS / 1_000_000,
+                MEASUREMENT_ITERATIONS, ITERATION_NANOS / 1_000_000, PAIR_COUNT, SEED);
+        System.out.printf("%-34s %-9s %10s   %6s %8s %5s %7s%n",
+                "Benchmark", "spread", "ns/op", "error", "B/op", "gc", "hits");
+
+        runSuite(filter);
+        System.exit(sink == Long.MIN_VALUE ? 1 : 0);
+    }
+}
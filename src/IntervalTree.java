@@ -115,6 +115,10 @@ public class IntervalTree {
         }
 
 
+        if (node.range.getStartBin() > point) {
+            return null;
+        }
+
         return findIntervalRecursive(node.right, point);
     }
 
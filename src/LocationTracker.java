@@ -1,6 +1,14 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public final class LocationTracker {
@@ -12,21 +20,47 @@ public final class LocationTracker {
     private static final double MAX_REASONABLE_SPEED_KMH = 1000.0;
     private static final double CITY_CHANGE_THRESHOLD_KM = 50.0;
     private static final int SUSPICIOUS_WINDOW_MINUTES = 10;
+    private static final int LONG_DISTANCE_WINDOW_MINUTES = 30;
     private static final double LONG_DISTANCE_THRESHOLD_KM = 500.0;
+    private static final int REPEATED_LOCATION_LOOKBACK = 10;
+    private static final double SAME_LOCATION_RADIUS_KM = 1.0;
 
-    private final Deque<LocationEntry> locationHistory;
+    private static final int DEFAULT_MAX_TRACKED_CARDS = 1_000_000;
+    private static final int INITIAL_TRACK_CAPACITY = 4;
+
+    private final Map<String, CardTrack> cardTracks;
+    private final AtomicInteger totalEntries;
     private final int maxHistorySize;
+    private final int maxTrackedCards;
+
+    private final AtomicLong latestEpochSecond;
+    private final AtomicLong evictedCards;
+    private final AtomicBoolean evicting;
+    private volatile int evictionThreshold;
 
     public LocationTracker(int maxHistorySize) {
+        this(maxHistorySize, DEFAULT_MAX_TRACKED_CARDS);
+    }
+
+    public LocationTracker(int maxHistorySize, int maxTrackedCards) {
         if (maxHistorySize <= 0) {
             throw new IllegalArgumentException("Max history size must be positive");
         }
+        if (maxTrackedCards <= 0) {
+            throw new IllegalArgumentException("Max tracked cards must be positive");
+        }
         this.maxHistorySize = maxHistorySize;
-        this.locationHistory = new ArrayDeque<>();
+        this.maxTrackedCards = maxTrackedCards;
+        this.cardTracks = new ConcurrentHashMap<>();
+        this.totalEntries = new AtomicInteger();
+        this.latestEpochSecond = new AtomicLong(Long.MIN_VALUE);
+        this.evictedCards = new AtomicLong();
+        this.evicting = new AtomicBoolean();
+        this.evictionThreshold = maxTrackedCards;
     }
 
     public static LocationTracker createDefault() {
-        return new LocationTracker(1000);
+        return new LocationTracker(32);
     }
 
 
@@ -45,19 +79,93 @@ public final class LocationTracker {
 
         LocationEntry newEntry = new LocationEntry(transactionId, cardNumber, latitude, longitude,
                 cityName, countryCode, timestamp);
+        long epochSecond = timestamp.toEpochSecond(ZoneOffset.UTC);
+        int nano = timestamp.getNano();
+
+        while (true) {
+            CardTrack track = trackFor(cardNumber);
+            synchronized (track) {
+                if (track.retired) {
+                    continue;
+                }
+
+                LocationAnalysis analysis = describe(newEntry, track.latestEntry(cardNumber),
+                        detectAnomalies(track, newEntry.getLatitudeRadians(), newEntry.getLongitudeRadians(),
+                                newEntry.getCosLatitude(), newEntry.getGeoCell(), epochSecond, nano, countryCode));
+
+                if (track.record(transactionId, latitude, longitude, newEntry.getLatitudeRadians(),
+                        newEntry.getLongitudeRadians(), newEntry.getCosLatitude(), newEntry.getGeoCell(),
+                        epochSecond, nano, cityName, countryCode)) {
+                    totalEntries.incrementAndGet();
+                }
+
+                afterRecord(epochSecond);
+                return analysis;
+            }
+        }
+    }
 
 
-        LocationAnalysis analysis = analyzeLocation(newEntry, cardNumber);
+    public int recordLocationAnomalies(String transactionId, String cardNumber,
+                                       double latitude, double longitude,
+                                       String cityName, String countryCode,
+                                       LocalDateTime timestamp) {
 
+        Objects.requireNonNull(transactionId, "Transaction ID cannot be null");
+        Objects.requireNonNull(cardNumber, "Card number cannot be null");
+        Objects.requireNonNull(cityName, "City name cannot be null");
+        Objects.requireNonNull(countryCode, "Country code cannot be null");
+        Objects.requireNonNull(timestamp, "Timestamp cannot be null");
+
+        validateCoordinates(latitude, longitude);
 
-        locationHistory.addLast(newEntry);
+        double latitudeRadians = Math.toRadians(latitude);
+        double longitudeRadians = Math.toRadians(longitude);
+        double cosLatitude = Math.cos(latitudeRadians);
+        long geoCell = GeoGrid.cellOf(latitude, longitude);
+        long epochSecond = timestamp.toEpochSecond(ZoneOffset.UTC);
+        int nano = timestamp.getNano();
+
+        while (true) {
+            CardTrack track = trackFor(cardNumber);
+            synchronized (track) {
+                if (track.retired) {
+                    continue;
+                }
+
+                int anomalies = detectAnomalies(track, latitudeRadians, longitudeRadians, cosLatitude, geoCell,
+                        epochSecond, nano, countryCode);
+
+                if (track.record(transactionId, latitude, longitude, latitudeRadians, longitudeRadians,
+                        cosLatitude, geoCell, epochSecond, nano, cityName, countryCode)) {
+                    totalEntries.incrementAndGet();
+                }
+
+                afterRecord(epochSecond);
+                return anomalies;
+            }
+        }
+    }
 
 
-        while (locationHistory.size() > maxHistorySize) {
-            locationHistory.removeFirst();
+    private CardTrack trackFor(String cardNumber) {
+        CardTrack track = cardTracks.get(cardNumber);
+        return track != null ? track : cardTracks.computeIfAbsent(cardNumber, k -> new CardTrack(maxHistorySize));
+    }
+
+
+    public LocationAnalysis describeLatest(String cardNumber, int anomalyMask) {
+        Objects.requireNonNull(cardNumber, "Card number cannot be null");
+
+        CardTrack track = cardTracks.get(cardNumber);
+        if (track == null) {
+            return null;
         }
 
-        return analysis;
+        synchronized (track) {
+            LocationEntry latest = track.latestEntry(cardNumber);
+            return latest == null ? null : describe(latest, track.previousEntry(cardNumber), anomalyMask);
+        }
     }
 
 
@@ -103,11 +211,14 @@ public final class LocationTracker {
     public List<LocationEntry> getLocationHistory(String cardNumber, int maxEntries) {
         Objects.requireNonNull(cardNumber, "Card number cannot be null");
 
-        return locationHistory.stream()
-                .filter(entry -> entry.getCardNumber().equals(cardNumber))
-                .sorted(Comparator.comparing(LocationEntry::getTimestamp).reversed())
-                .limit(maxEntries)
-                .toList();
+        CardTrack track = cardTracks.get(cardNumber);
+        if (track == null) {
+            return List.of();
+        }
+
+        synchronized (track) {
+            return track.recentEntries(cardNumber, maxEntries);
+        }
     }
 
 
@@ -116,105 +227,201 @@ public final class LocationTracker {
         Objects.requireNonNull(windowStart, "Window start cannot be null");
         Objects.requireNonNull(windowEnd, "Window end cannot be null");
 
-        Set<String> cities = new HashSet<>();
+        CardTrack track = cardTracks.get(cardNumber);
+        if (track == null) {
+            return 0;
+        }
 
-        locationHistory.stream()
-                .filter(entry -> entry.getCardNumber().equals(cardNumber))
-                .filter(entry -> !entry.getTimestamp().isBefore(windowStart) &&
-                        !entry.getTimestamp().isAfter(windowEnd))
-                .forEach(entry -> cities.add(entry.getCityName()));
+        synchronized (track) {
+            return track.countCitiesBetween(windowStart, windowEnd);
+        }
+    }
+
+
+    public int evictInactiveCards(LocalDateTime cutoffTime) {
+        Objects.requireNonNull(cutoffTime, "Cutoff time cannot be null");
 
-        return cities.size();
+        return evictBefore(cutoffTime.toEpochSecond(ZoneOffset.UTC));
     }
 
 
-    private LocationAnalysis analyzeLocation(LocationEntry newEntry, String cardNumber) {
-        List<LocationEntry> recentLocations = getLocationHistory(cardNumber, 10);
+    private void afterRecord(long second) {
+        if (second > latestEpochSecond.get()) {
+            latestEpochSecond.accumulateAndGet(second, Math::max);
+        }
 
-        if (recentLocations.isEmpty()) {
-            return LocationAnalysis.normal(newEntry);
+        if (cardTracks.size() <= evictionThreshold || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            evictBefore(inactivityCutoff(latestEpochSecond.get()));
+            evictionThreshold = Math.max(maxTrackedCards, cardTracks.size() + maxTrackedCards / 8);
+        } finally {
+            evicting.set(false);
         }
+    }
 
-        LocationEntry previousEntry = recentLocations.get(0);
 
+    static long inactivityCutoff(long latestEpochSecond) {
+        return latestEpochSecond - LONG_DISTANCE_WINDOW_MINUTES * 60L;
+    }
 
-        double distance = calculateDistance(previousEntry.getLatitude(), previousEntry.getLongitude(),
-                newEntry.getLatitude(), newEntry.getLongitude());
 
-        long minutesBetween = ChronoUnit.MINUTES.between(previousEntry.getTimestamp(),
-                newEntry.getTimestamp());
+    private int evictBefore(long cutoffSecond) {
+        int evicted = 0;
 
-        double speed = minutesBetween > 0 ? (distance / (minutesBetween / 60.0)) : Double.MAX_VALUE;
+        for (Map.Entry<String, CardTrack> entry : cardTracks.entrySet()) {
+            CardTrack track = entry.getValue();
+            synchronized (track) {
+                if (track.lastEpochSecond() >= cutoffSecond) {
+                    continue;
+                }
+                track.retired = true;
+                totalEntries.addAndGet(-track.size());
+            }
+            cardTracks.remove(entry.getKey(), track);
+            evicted++;
+        }
 
+        evictedCards.addAndGet(evicted);
+        return evicted;
+    }
 
-        Set<LocationAnomaly> anomalies = new HashSet<>();
 
+    public void writeCardTo(String cardNumber, DataOutput out) throws IOException {
+        Objects.requireNonNull(cardNumber, "Card number cannot be null");
 
-        if (speed > MAX_REASONABLE_SPEED_KMH) {
-            anomalies.add(LocationAnomaly.IMPOSSIBLE_SPEED);
+        CardTrack track = cardTracks.get(cardNumber);
+        if (track == null) {
+            out.writeBoolean(false);
+            return;
         }
 
+        synchronized (track) {
+            out.writeBoolean(!track.retired);
+            if (!track.retired) {
+                track.writeTo(out);
+            }
+        }
+    }
+
+
+    public void readCardFrom(String cardNumber, DataInput in) throws IOException {
+        Objects.requireNonNull(cardNumber, "Card number cannot be null");
+
+        if (!in.readBoolean()) {
+            return;
+        }
+
+        CardTrack track = new CardTrack(maxHistorySize);
+        track.readFrom(cardNumber, in);
+
+        CardTrack previous = cardTracks.put(cardNumber, track);
+        if (previous != null) {
+            synchronized (previous) {
+                previous.retired = true;
+                totalEntries.addAndGet(-previous.size());
+            }
+        }
+        totalEntries.addAndGet(track.size());
+    }
+
+
+    public void clear() {
+        for (Map.Entry<String, CardTrack> entry : cardTracks.entrySet()) {
+            CardTrack track = entry.getValue();
+            synchronized (track) {
+                track.retired = true;
+                totalEntries.addAndGet(-track.size());
+            }
+            cardTracks.remove(entry.getKey(), track);
+        }
+        latestEpochSecond.set(Long.MIN_VALUE);
+        evictionThreshold = maxTrackedCards;
+    }
+
+
+    private int detectAnomalies(CardTrack track, double latitudeRadians, double longitudeRadians,
+                                double cosLatitude, long geoCell, long epochSecond, int nano,
+                                String countryCode) {
+        if (track.nextSequence == 0) {
+            return 0;
+        }
+        int previous = track.slot(track.nextSequence - 1);
+
+
+        long minutesBetween = minutesBetween(track.epochSeconds[previous], track.nanos[previous],
+                epochSecond, nano);
+
+        boolean impossibleSpeed = minutesBetween <= 0 || GeoGrid.exceedsKm(
+                track.latitudeRadians[previous], track.longitudeRadians[previous],
+                track.cosLatitudes[previous], track.geoCells[previous],
+                latitudeRadians, longitudeRadians, cosLatitude, geoCell,
+                MAX_REASONABLE_SPEED_KMH * (minutesBetween / 60.0));
 
-        LocalDateTime tenMinutesAgo = newEntry.getTimestamp().minusMinutes(SUSPICIOUS_WINDOW_MINUTES);
-        int cityCount = getCityCountInWindow(cardNumber, tenMinutesAgo, newEntry.getTimestamp());
+
+        int anomalies = 0;
+
+
+        if (impossibleSpeed) {
+            anomalies |= LocationAnomaly.IMPOSSIBLE_SPEED.mask();
+        }
+
+
+        int cityCount = track.distinctCitiesSince(epochSecond - SUSPICIOUS_WINDOW_MINUTES * 60L, nano);
         if (cityCount >= 3) {
-            anomalies.add(LocationAnomaly.RAPID_CITY_CHANGES);
+            anomalies |= LocationAnomaly.RAPID_CITY_CHANGES.mask();
         }
 
 
-        LocalDateTime thirtyMinutesAgo = newEntry.getTimestamp().minusMinutes(30);
-        double maxDistanceIn30Min = calculateMaxDistanceInWindow(cardNumber, thirtyMinutesAgo,
-                newEntry.getTimestamp());
+        double maxDistanceIn30Min = track.maxHopDistanceSince(
+                epochSecond - LONG_DISTANCE_WINDOW_MINUTES * 60L, nano);
         if (maxDistanceIn30Min > LONG_DISTANCE_THRESHOLD_KM) {
-            anomalies.add(LocationAnomaly.LONG_DISTANCE_SHORT_TIME);
+            anomalies |= LocationAnomaly.LONG_DISTANCE_SHORT_TIME.mask();
         }
 
 
-        if (!previousEntry.getCountryCode().equals(newEntry.getCountryCode())) {
-            anomalies.add(LocationAnomaly.INTERNATIONAL_TRAVEL);
+        if (!track.countryCodes[previous].equals(countryCode)) {
+            anomalies |= LocationAnomaly.INTERNATIONAL_TRAVEL.mask();
         }
 
 
-        long sameLocationCount = recentLocations.stream()
-                .filter(entry -> isSameLocation(entry, newEntry))
-                .count();
+        int sameLocationCount = track.countNearby(latitudeRadians, longitudeRadians, cosLatitude, geoCell,
+                REPEATED_LOCATION_LOOKBACK);
         if (sameLocationCount >= 5) {
-            anomalies.add(LocationAnomaly.REPEATED_LOCATION);
+            anomalies |= LocationAnomaly.REPEATED_LOCATION.mask();
         }
 
-        return new LocationAnalysis(newEntry, previousEntry, distance, speed,
-                minutesBetween, anomalies);
+        return anomalies;
     }
 
-    private double calculateMaxDistanceInWindow(String cardNumber, LocalDateTime windowStart,
-                                                LocalDateTime windowEnd) {
-        List<LocationEntry> windowEntries = locationHistory.stream()
-                .filter(entry -> entry.getCardNumber().equals(cardNumber))
-                .filter(entry -> !entry.getTimestamp().isBefore(windowStart) &&
-                        !entry.getTimestamp().isAfter(windowEnd))
-                .sorted(Comparator.comparing(LocationEntry::getTimestamp))
-                .toList();
-
-        if (windowEntries.size() < 2) {
-            return 0.0;
+    private static long minutesBetween(long fromSecond, int fromNano, long toSecond, int toNano) {
+        long seconds = toSecond - fromSecond;
+        if (seconds > 0 && toNano < fromNano) {
+            seconds--;
+        } else if (seconds < 0 && toNano > fromNano) {
+            seconds++;
         }
+        return seconds / 60;
+    }
+
 
-        double maxDistance = 0.0;
-        for (int i = 0; i < windowEntries.size() - 1; i++) {
-            LocationEntry from = windowEntries.get(i);
-            LocationEntry to = windowEntries.get(i + 1);
-            double distance = calculateDistance(from.getLatitude(), from.getLongitude(),
-                    to.getLatitude(), to.getLongitude());
-            maxDistance = Math.max(maxDistance, distance);
+    private static LocationAnalysis describe(LocationEntry currentEntry, LocationEntry previousEntry,
+                                             int anomalyMask) {
+        if (previousEntry == null) {
+            return LocationAnalysis.normal(currentEntry);
         }
 
-        return maxDistance;
-    }
+        double distance = calculateDistance(previousEntry.getLatitude(), previousEntry.getLongitude(),
+                currentEntry.getLatitude(), currentEntry.getLongitude());
 
-    private boolean isSameLocation(LocationEntry entry1, LocationEntry entry2) {
-        double distance = calculateDistance(entry1.getLatitude(), entry1.getLongitude(),
-                entry2.getLatitude(), entry2.getLongitude());
-        return distance < 1.0;
+        long minutesBetween = ChronoUnit.MINUTES.between(previousEntry.getTimestamp(),
+                currentEntry.getTimestamp());
+
+        double speed = minutesBetween > 0 ? (distance / (minutesBetween / 60.0)) : Double.MAX_VALUE;
+
+        return new LocationAnalysis(currentEntry, previousEntry, distance, speed,
+                minutesBetween, LocationAnomaly.fromMask(anomalyMask));
     }
 
     private void validateCoordinates(double latitude, double longitude) {
@@ -228,29 +435,336 @@ public final class LocationTracker {
 
 
     public TrackerStatistics getStatistics() {
-        Map<String, Integer> cardLocationCounts = new HashMap<>();
         Map<String, Integer> countryCounts = new HashMap<>();
         Set<String> uniqueCities = new HashSet<>();
-
-        for (LocationEntry entry : locationHistory) {
-            cardLocationCounts.merge(entry.getCardNumber(), 1, Integer::sum);
-            countryCounts.merge(entry.getCountryCode(), 1, Integer::sum);
-            uniqueCities.add(entry.getCityName());
+        int entryCount = 0;
+        int cardCount = 0;
+
+        for (CardTrack track : cardTracks.values()) {
+            synchronized (track) {
+                if (track.retired || track.size() == 0) {
+                    continue;
+                }
+                cardCount++;
+                entryCount += track.size();
+                track.collectStatistics(countryCounts, uniqueCities);
+            }
         }
 
-        return new TrackerStatistics(locationHistory.size(), cardLocationCounts.size(),
-                uniqueCities.size(), countryCounts);
+        return new TrackerStatistics(entryCount, cardCount, uniqueCities.size(), countryCounts);
     }
 
 
     public int getHistorySize() {
-        return locationHistory.size();
+        return totalEntries.get();
     }
 
     public int getMaxHistorySize() {
         return maxHistorySize;
     }
 
+    public int getTrackedCardCount() {
+        return cardTracks.size();
+    }
+
+    public int getMaxTrackedCards() {
+        return maxTrackedCards;
+    }
+
+    public long getEvictedCardCount() {
+        return evictedCards.get();
+    }
+
+
+    private static final class CardTrack {
+        private final int capacity;
+        private double[] latitudes;
+        private double[] longitudes;
+        private double[] latitudeRadians;
+        private double[] longitudeRadians;
+        private double[] cosLatitudes;
+        private long[] geoCells;
+        private long[] epochSeconds;
+        private int[] nanos;
+        private String[] transactionIds;
+        private String[] cityNames;
+        private String[] countryCodes;
+        private double[] hopDistances;
+
+        private long[] hopQueue;
+        private long hopHead;
+        private long hopTail;
+
+        private final Map<String, Integer> windowCityCounts = new HashMap<>();
+        private long cityWindowStart;
+        private long distanceWindowStart;
+
+        private long nextSequence;
+        private boolean retired;
+
+        CardTrack(int capacity) {
+            this.capacity = capacity;
+            int initial = Math.min(capacity, INITIAL_TRACK_CAPACITY);
+            this.latitudes = new double[initial];
+            this.longitudes = new double[initial];
+            this.latitudeRadians = new double[initial];
+            this.longitudeRadians = new double[initial];
+            this.cosLatitudes = new double[initial];
+            this.geoCells = new long[initial];
+            this.epochSeconds = new long[initial];
+            this.nanos = new int[initial];
+            this.transactionIds = new String[initial];
+            this.cityNames = new String[initial];
+            this.countryCodes = new String[initial];
+            this.hopDistances = new double[initial];
+            this.hopQueue = new long[initial];
+        }
+
+
+        private void ensureLength(int required) {
+            int length = latitudes.length;
+            if (required <= length) {
+                return;
+            }
+            int next = Math.min(capacity, Math.max(required, length * 2));
+            latitudes = Arrays.copyOf(latitudes, next);
+            longitudes = Arrays.copyOf(longitudes, next);
+            latitudeRadians = Arrays.copyOf(latitudeRadians, next);
+            longitudeRadians = Arrays.copyOf(longitudeRadians, next);
+            cosLatitudes = Arrays.copyOf(cosLatitudes, next);
+            geoCells = Arrays.copyOf(geoCells, next);
+            epochSeconds = Arrays.copyOf(epochSeconds, next);
+            nanos = Arrays.copyOf(nanos, next);
+            transactionIds = Arrays.copyOf(transactionIds, next);
+            cityNames = Arrays.copyOf(cityNames, next);
+            countryCodes = Arrays.copyOf(countryCodes, next);
+            hopDistances = Arrays.copyOf(hopDistances, next);
+            hopQueue = Arrays.copyOf(hopQueue, next);
+        }
+
+
+        boolean record(String transactionId, double latitude, double longitude,
+                       double latitudeRadian, double longitudeRadian, double cosLatitude, long geoCell,
+                       long epochSecond, int nano, String cityName, String countryCode) {
+            boolean grew = nextSequence < capacity;
+            long sequence = nextSequence;
+            if (grew) {
+                ensureLength((int) sequence + 1);
+            }
+            long oldestRetained = Math.max(0, sequence + 1 - capacity);
+
+            while (cityWindowStart < oldestRetained) {
+                releaseCity(cityWindowStart++);
+            }
+            distanceWindowStart = Math.max(distanceWindowStart, oldestRetained);
+            while (hopHead < hopTail && hopQueue[slot(hopHead)] <= oldestRetained) {
+                hopHead++;
+            }
+
+            double hop = 0.0;
+            if (sequence > 0) {
+                int previous = slot(sequence - 1);
+                hop = GeoGrid.boundedDistanceKm(
+                        latitudeRadians[previous], longitudeRadians[previous],
+                        cosLatitudes[previous], geoCells[previous],
+                        latitudeRadian, longitudeRadian, cosLatitude, geoCell,
+                        LONG_DISTANCE_THRESHOLD_KM);
+            }
+
+            int slot = slot(sequence);
+            latitudes[slot] = latitude;
+            longitudes[slot] = longitude;
+            latitudeRadians[slot] = latitudeRadian;
+            longitudeRadians[slot] = longitudeRadian;
+            cosLatitudes[slot] = cosLatitude;
+            geoCells[slot] = geoCell;
+            epochSeconds[slot] = epochSecond;
+            nanos[slot] = nano;
+            transactionIds[slot] = transactionId;
+            cityNames[slot] = cityName;
+            countryCodes[slot] = countryCode;
+            windowCityCounts.merge(cityName, 1, Integer::sum);
+
+            if (sequence > 0) {
+                hopDistances[slot] = hop;
+                while (hopHead < hopTail && hopDistances[slot(hopQueue[slot(hopTail - 1)])] <= hop) {
+                    hopTail--;
+                }
+                hopQueue[slot(hopTail++)] = sequence;
+            }
+
+            nextSequence++;
+            return grew;
+        }
+
+        LocationEntry latestEntry(String cardNumber) {
+            return nextSequence > 0 ? entryAt(cardNumber, slot(nextSequence - 1)) : null;
+        }
+
+        LocationEntry previousEntry(String cardNumber) {
+            return nextSequence > 1 && capacity > 1 ? entryAt(cardNumber, slot(nextSequence - 2)) : null;
+        }
+
+
+        int distinctCitiesSince(long second, int nano) {
+            while (cityWindowStart < nextSequence && isBefore(slot(cityWindowStart), second, nano)) {
+                releaseCity(cityWindowStart++);
+            }
+            return windowCityCounts.size();
+        }
+
+        double maxHopDistanceSince(long second, int nano) {
+            while (distanceWindowStart < nextSequence && isBefore(slot(distanceWindowStart), second, nano)) {
+                distanceWindowStart++;
+            }
+            while (hopHead < hopTail && hopQueue[slot(hopHead)] <= distanceWindowStart) {
+                hopHead++;
+            }
+            return hopHead < hopTail ? hopDistances[slot(hopQueue[slot(hopHead)])] : 0.0;
+        }
+
+        int countNearby(double latRad, double lonRad, double cosLat, long cell, int lookback) {
+            int count = 0;
+            long stop = Math.max(oldestSequence(), nextSequence - lookback);
+            for (long sequence = nextSequence - 1; sequence >= stop; sequence--) {
+                int slot = slot(sequence);
+                if (GeoGrid.isWithinKm(latitudeRadians[slot], longitudeRadians[slot], cosLatitudes[slot],
+                        geoCells[slot], latRad, lonRad, cosLat, cell, SAME_LOCATION_RADIUS_KM)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        int countCitiesBetween(LocalDateTime windowStart, LocalDateTime windowEnd) {
+            Set<String> cities = new HashSet<>();
+            for (long sequence = oldestSequence(); sequence < nextSequence; sequence++) {
+                LocalDateTime timestamp = timestampAt(slot(sequence));
+                if (!timestamp.isBefore(windowStart) && !timestamp.isAfter(windowEnd)) {
+                    cities.add(cityNames[slot(sequence)]);
+                }
+            }
+            return cities.size();
+        }
+
+        List<LocationEntry> recentEntries(String cardNumber, int maxEntries) {
+            List<LocationEntry> result = new ArrayList<>();
+            long stop = Math.max(oldestSequence(), nextSequence - Math.max(0, maxEntries));
+            for (long sequence = nextSequence - 1; sequence >= stop; sequence--) {
+                result.add(entryAt(cardNumber, slot(sequence)));
+            }
+            return result;
+        }
+
+        void writeTo(DataOutput out) throws IOException {
+            long oldest = oldestSequence();
+            out.writeInt((int) (nextSequence - oldest));
+            out.writeInt((int) (cityWindowStart - oldest));
+            out.writeInt((int) (distanceWindowStart - oldest));
+
+            out.writeInt((int) (hopTail - hopHead));
+            for (long i = hopHead; i < hopTail; i++) {
+                out.writeInt((int) (hopQueue[slot(i)] - oldest));
+            }
+
+            for (long sequence = oldest; sequence < nextSequence; sequence++) {
+                int slot = slot(sequence);
+                out.writeDouble(latitudes[slot]);
+                out.writeDouble(longitudes[slot]);
+                out.writeLong(epochSeconds[slot]);
+                out.writeInt(nanos[slot]);
+                out.writeUTF(transactionIds[slot]);
+                out.writeUTF(cityNames[slot]);
+                out.writeUTF(countryCodes[slot]);
+                out.writeDouble(hopDistances[slot]);
+            }
+        }
+
+        void readFrom(String cardNumber, DataInput in) throws IOException {
+            int count = in.readInt();
+            int cityStart = in.readInt();
+            int distanceStart = in.readInt();
+            int hopCount = in.readInt();
+            if (count < 0 || count > capacity || cityStart < 0 || cityStart > count
+                    || distanceStart < 0 || distanceStart > count || hopCount < 0 || hopCount > count) {
+                throw new IOException("Corrupt location track for card " + cardNumber);
+            }
+            ensureLength(count);
+
+            for (int i = 0; i < hopCount; i++) {
+                hopQueue[slot(i)] = in.readInt();
+            }
+            hopHead = 0;
+            hopTail = hopCount;
+
+            for (int sequence = 0; sequence < count; sequence++) {
+                int slot = slot(sequence);
+                latitudes[slot] = in.readDouble();
+                longitudes[slot] = in.readDouble();
+                latitudeRadians[slot] = Math.toRadians(latitudes[slot]);
+                longitudeRadians[slot] = Math.toRadians(longitudes[slot]);
+                cosLatitudes[slot] = Math.cos(latitudeRadians[slot]);
+                geoCells[slot] = GeoGrid.cellOf(latitudes[slot], longitudes[slot]);
+                epochSeconds[slot] = in.readLong();
+                nanos[slot] = in.readInt();
+                transactionIds[slot] = in.readUTF();
+                cityNames[slot] = in.readUTF();
+                countryCodes[slot] = in.readUTF();
+                hopDistances[slot] = in.readDouble();
+            }
+
+            nextSequence = count;
+            cityWindowStart = cityStart;
+            distanceWindowStart = distanceStart;
+            windowCityCounts.clear();
+            for (long sequence = cityWindowStart; sequence < nextSequence; sequence++) {
+                windowCityCounts.merge(cityNames[slot(sequence)], 1, Integer::sum);
+            }
+        }
+
+        void collectStatistics(Map<String, Integer> countryCounts, Set<String> uniqueCities) {
+            for (long sequence = oldestSequence(); sequence < nextSequence; sequence++) {
+                int slot = slot(sequence);
+                countryCounts.merge(countryCodes[slot], 1, Integer::sum);
+                uniqueCities.add(cityNames[slot]);
+            }
+        }
+
+
+        int size() {
+            return (int) Math.min(nextSequence, capacity);
+        }
+
+        long lastEpochSecond() {
+            return nextSequence == 0 ? Long.MIN_VALUE : epochSeconds[slot(nextSequence - 1)];
+        }
+
+        private long oldestSequence() {
+            return Math.max(0, nextSequence - capacity);
+        }
+
+        private void releaseCity(long sequence) {
+            windowCityCounts.computeIfPresent(cityNames[slot(sequence)], (k, v) -> v > 1 ? v - 1 : null);
+        }
+
+        private boolean isBefore(int slot, long second, int nano) {
+            return epochSeconds[slot] < second || (epochSeconds[slot] == second && nanos[slot] < nano);
+        }
+
+        private LocationEntry entryAt(String cardNumber, int slot) {
+            return new LocationEntry(transactionIds[slot], cardNumber, latitudes[slot],
+                    longitudes[slot], cityNames[slot], countryCodes[slot], timestampAt(slot));
+        }
+
+        private LocalDateTime timestampAt(int slot) {
+            return LocalDateTime.ofEpochSecond(epochSeconds[slot], nanos[slot], ZoneOffset.UTC);
+        }
+
+        private int slot(long sequence) {
+            return (int) (sequence % capacity);
+        }
+    }
+
 
     public enum LocationAnomaly {
         IMPOSSIBLE_SPEED("İmkansız seyahat hızı"),
@@ -259,6 +773,8 @@ public final class LocationTracker {
         INTERNATIONAL_TRAVEL("Uluslararası seyahat"),
         REPEATED_LOCATION("Tekrarlanan lokasyon");
 
+        private static final LocationAnomaly[] VALUES = values();
+
         private final String description;
 
         LocationAnomaly(String description) {
@@ -268,6 +784,25 @@ public final class LocationTracker {
         public String getDescription() {
             return description;
         }
+
+        public int mask() {
+            return 1 << ordinal();
+        }
+
+        public static boolean isHighRisk(int mask) {
+            return (mask & (IMPOSSIBLE_SPEED.mask() | RAPID_CITY_CHANGES.mask())) != 0 ||
+                    Integer.bitCount(mask) >= 3;
+        }
+
+        public static EnumSet<LocationAnomaly> fromMask(int mask) {
+            EnumSet<LocationAnomaly> anomalies = EnumSet.noneOf(LocationAnomaly.class);
+            for (LocationAnomaly anomaly : VALUES) {
+                if ((mask & anomaly.mask()) != 0) {
+                    anomalies.add(anomaly);
+                }
+            }
+            return anomalies;
+        }
     }
 
     public static final class LocationEntry {
@@ -278,6 +813,10 @@ public final class LocationTracker {
         private final String cityName;
         private final String countryCode;
         private final LocalDateTime timestamp;
+        private final double latitudeRadians;
+        private final double longitudeRadians;
+        private final double cosLatitude;
+        private final long geoCell;
 
         public LocationEntry(String transactionId, String cardNumber, double latitude, double longitude,
                              String cityName, String countryCode, LocalDateTime timestamp) {
@@ -288,6 +827,10 @@ public final class LocationTracker {
             this.cityName = cityName;
             this.countryCode = countryCode;
             this.timestamp = timestamp;
+            this.latitudeRadians = Math.toRadians(latitude);
+            this.longitudeRadians = Math.toRadians(longitude);
+            this.cosLatitude = Math.cos(latitudeRadians);
+            this.geoCell = GeoGrid.cellOf(latitude, longitude);
         }
 
 
@@ -319,6 +862,22 @@ public final class LocationTracker {
             return timestamp;
         }
 
+        public double getLatitudeRadians() {
+            return latitudeRadians;
+        }
+
+        public double getLongitudeRadians() {
+            return longitudeRadians;
+        }
+
+        public double getCosLatitude() {
+            return cosLatitude;
+        }
+
+        public long getGeoCell() {
+            return geoCell;
+        }
+
         public String getLocation() {
             return cityName + ", " + countryCode;
         }
@@ -378,6 +937,14 @@ public final class LocationTracker {
             return EnumSet.copyOf(anomalies);
         }
 
+        public int getAnomalyMask() {
+            int mask = 0;
+            for (LocationAnomaly anomaly : anomalies) {
+                mask |= anomaly.mask();
+            }
+            return mask;
+        }
+
         public boolean hasSuspiciousActivity() {
             return !anomalies.isEmpty();
         }
@@ -448,6 +1015,7 @@ public final class LocationTracker {
 
     @Override
     public String toString() {
-        return String.format("LocationTracker{entries=%d/%d}", locationHistory.size(), maxHistorySize);
+        return String.format("LocationTracker{entries=%d, cards=%d/%d, perCard=%d, evicted=%d}",
+                totalEntries.get(), cardTracks.size(), maxTrackedCards, maxHistorySize, evictedCards.get());
     }
 }
\ No newline at end of file
@@ -0,0 +1,467 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public final class MappedBinTable implements BinRangeRepository {
+
+    private static final int MAGIC = 0x42494E54;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 32;
+
+    private static final int OFFSET_START = 0;
+    private static final int OFFSET_END = 8;
+    private static final int OFFSET_BANK = 16;
+    private static final int OFFSET_CARD_TYPE = 20;
+    private static final int OFFSET_COUNTRY = 24;
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final int recordCount;
+    private final int stringCount;
+    private final int poolOffset;
+
+
+    private final String[] strings;
+    private final BinRange[] materialized;
+
+    private MappedBinTable(Path path, ByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new BinStorageException("Not a BIN table file: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new BinStorageException(
+                    String.format("Unsupported BIN table version %d in %s", buffer.getInt(4), path));
+        }
+
+        this.recordCount = buffer.getInt(8);
+        this.stringCount = buffer.getInt(12);
+        long pool = buffer.getLong(24);
+
+        if (recordCount < 0 || stringCount < 0 || buffer.getLong(16) != HEADER_SIZE
+                || pool != HEADER_SIZE + (long) recordCount * RECORD_SIZE
+                || pool + 4L * (stringCount + 1) > buffer.capacity()) {
+            throw new BinStorageException("Corrupt BIN table header: " + path);
+        }
+
+        this.poolOffset = (int) pool;
+        this.strings = new String[stringCount];
+        this.materialized = new BinRange[recordCount];
+
+        validateStringPool();
+        validateRecords();
+    }
+
+    private void validateStringPool() {
+        long dataStart = poolOffset + 4L * (stringCount + 1);
+        long dataLength = buffer.capacity() - dataStart;
+
+        int previous = buffer.getInt(poolOffset);
+        if (previous != 0) {
+            throw new BinStorageException("Corrupt BIN table string pool: " + path);
+        }
+        for (int i = 1; i <= stringCount; i++) {
+            int offset = buffer.getInt(poolOffset + 4 * i);
+            if (offset < previous || offset > dataLength) {
+                throw new BinStorageException(
+                        String.format("Corrupt BIN table string pool entry %d in %s", i - 1, path));
+            }
+            previous = offset;
+        }
+    }
+
+    private void validateRecords() {
+        for (int i = 0; i < recordCount; i++) {
+            int offset = recordOffset(i);
+            if (buffer.getLong(offset + OFFSET_START) > buffer.getLong(offset + OFFSET_END)
+                    || (i > 0 && buffer.getLong(offset + OFFSET_START) <= endAt(i - 1))) {
+                throw new BinStorageException(String.format("Corrupt BIN table record %d in %s", i, path));
+            }
+            checkStringRef(buffer.getInt(offset + OFFSET_BANK), i);
+            checkStringRef(buffer.getInt(offset + OFFSET_CARD_TYPE), i);
+            checkStringRef(buffer.getInt(offset + OFFSET_COUNTRY), i);
+        }
+    }
+
+    private void checkStringRef(int index, int record) {
+        if (index < 0 || index >= stringCount) {
+            throw new BinStorageException(
+                    String.format("Invalid string reference %d in record %d of %s", index, record, path));
+        }
+    }
+
+
+    public static MappedBinTable open(Path path) {
+        Objects.requireNonNull(path, "Path cannot be null");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new BinStorageException("BIN table too large to map: " + path);
+            }
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedBinTable(path, mapped);
+
+        } catch (IOException e) {
+            throw new BinStorageException("Failed to open BIN table: " + path, e);
+        }
+    }
+
+
+    public static void write(Path path, Collection<BinRange> ranges) throws OverlappingRangeException {
+        Objects.requireNonNull(path, "Path cannot be null");
+
+        List<BinRange> sorted = BinLookupIndex.of(ranges).asList();
+
+        Map<String, Integer> poolIndex = new LinkedHashMap<>();
+        int[][] refs = new int[sorted.size()][];
+        for (int i = 0; i < sorted.size(); i++) {
+            BinRange range = sorted.get(i);
+            refs[i] = new int[]{
+                    intern(poolIndex, range.getBankName()),
+                    intern(poolIndex, range.getCardType()),
+                    intern(poolIndex, range.getCountry())
+            };
+        }
+
+        Path absolute = path.toAbsolutePath();
+        Path temp = null;
+
+        try {
+            temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(sorted.size());
+                out.writeInt(poolIndex.size());
+                out.writeLong(HEADER_SIZE);
+                out.writeLong(HEADER_SIZE + (long) sorted.size() * RECORD_SIZE);
+
+                for (int i = 0; i < sorted.size(); i++) {
+                    BinRange range = sorted.get(i);
+                    out.writeLong(range.getStartBin());
+                    out.writeLong(range.getEndBin());
+                    out.writeInt(refs[i][0]);
+                    out.writeInt(refs[i][1]);
+                    out.writeInt(refs[i][2]);
+                    out.writeInt(0);
+                }
+
+
+                List<byte[]> encoded = new ArrayList<>(poolIndex.size());
+                for (String value : poolIndex.keySet()) {
+                    encoded.add(value.getBytes(StandardCharsets.UTF_8));
+                }
+
+                int offset = 0;
+                out.writeInt(offset);
+                for (byte[] bytes : encoded) {
+                    offset += bytes.length;
+                    out.writeInt(offset);
+                }
+                for (byte[] bytes : encoded) {
+                    out.write(bytes);
+                }
+            }
+
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new BinStorageException("Failed to write BIN table: " + path, e);
+        }
+    }
+
+    private static int intern(Map<String, Integer> poolIndex, String value) {
+        Integer existing = poolIndex.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        int index = poolIndex.size();
+        poolIndex.put(value, index);
+        return index;
+    }
+
+    private static void deleteQuietly(Path temp) {
+        if (temp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException ignored) {
+
+        }
+    }
+
+
+    public int indexOf(long bin) {
+        int n = recordCount;
+        if (n == 0 || bin < startAt(0)) {
+            return -1;
+        }
+
+        int base = 0;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = (startAt(base + half) <= bin) ? base + half : base;
+            n -= half;
+        }
+
+        return bin <= endAt(base) ? base : -1;
+    }
+
+    public long startAt(int index) {
+        return buffer.getLong(recordOffset(index) + OFFSET_START);
+    }
+
+    public long endAt(int index) {
+        return buffer.getLong(recordOffset(index) + OFFSET_END);
+    }
+
+
+    public BinRange rangeAt(int index) {
+        BinRange range = materialized[index];
+        if (range == null) {
+            int offset = recordOffset(index);
+            range = BinRange.of(
+                    buffer.getLong(offset + OFFSET_START),
+                    buffer.getLong(offset + OFFSET_END),
+                    stringAt(buffer.getInt(offset + OFFSET_BANK)),
+                    stringAt(buffer.getInt(offset + OFFSET_CARD_TYPE)),
+                    stringAt(buffer.getInt(offset + OFFSET_COUNTRY)));
+            materialized[index] = range;
+        }
+        return range;
+    }
+
+    private String stringAt(int index) {
+        if (index < 0 || index >= stringCount) {
+            throw new BinStorageException(String.format("Invalid string reference %d in %s", index, path));
+        }
+
+        String value = strings[index];
+        if (value == null) {
+            int dataStart = poolOffset + 4 * (stringCount + 1);
+            int from = buffer.getInt(poolOffset + 4 * index);
+            int to = buffer.getInt(poolOffset + 4 * (index + 1));
+
+            byte[] bytes = new byte[to - from];
+            buffer.get(dataStart + from, bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = value;
+        }
+        return value;
+    }
+
+    private int recordOffset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+
+    @Override
+    public Optional<BinRange> findRangeForBin(long bin) {
+        return Optional.ofNullable(lookupBin(bin));
+    }
+
+    @Override
+    public BinRange lookupBin(long bin) {
+        int idx = indexOf(bin);
+        return idx >= 0 ? rangeAt(idx) : null;
+    }
+
+    @Override
+    public void addRange(BinRange range) {
+        throw new UnsupportedOperationException("MappedBinTable is read-only: " + path);
+    }
+
+    @Override
+    public Map<Long, BinRange> findRangesForBins(List<Long> bins) {
+        Map<Long, BinRange> results = new HashMap<>();
+        for (Long bin : bins) {
+            BinRange range = lookupBin(bin);
+            if (range != null) {
+                results.put(bin, range);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public List<BinRange> findByBankName(String bankName) {
+        List<BinRange> result = new ArrayList<>();
+        for (int i = 0; i < recordCount; i++) {
+            if (stringAt(buffer.getInt(recordOffset(i) + OFFSET_BANK)).equals(bankName)) {
+                result.add(rangeAt(i));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<BinRange> findByCountry(String country) {
+        List<BinRange> result = new ArrayList<>();
+        for (int i = 0; i < recordCount; i++) {
+            if (stringAt(buffer.getInt(recordOffset(i) + OFFSET_COUNTRY)).equals(country)) {
+                result.add(rangeAt(i));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Map.Entry<BinRange, BinRange>> validateNoOverlaps() {
+        List<Map.Entry<BinRange, BinRange>> overlaps = new ArrayList<>();
+        for (int i = 1; i < recordCount; i++) {
+            if (endAt(i - 1) >= startAt(i)) {
+                overlaps.add(new AbstractMap.SimpleImmutableEntry<>(rangeAt(i - 1), rangeAt(i)));
+            }
+        }
+        return overlaps;
+    }
+
+
+    @Override
+    public List<BinRange> findInRange(Long start, Long end) {
+        List<BinRange> result = new ArrayList<>();
+        for (int i = firstCandidate(start); i < recordCount && startAt(i) <= end; i++) {
+            if (startAt(i) >= start && endAt(i) <= end) {
+                result.add(rangeAt(i));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<BinRange> findOverlapping(Long start, Long end) {
+        List<BinRange> result = new ArrayList<>();
+        for (int i = firstCandidate(start); i < recordCount && startAt(i) <= end; i++) {
+            if (endAt(i) >= start) {
+                result.add(rangeAt(i));
+            }
+        }
+        return result;
+    }
+
+    private int firstCandidate(long start) {
+        int lo = 0;
+        int hi = recordCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (startAt(mid) <= start) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return Math.max(0, lo - 1);
+    }
+
+    @Override
+    public List<BinRange> findContaining(Long point) {
+        BinRange range = lookupBin(point);
+        return range != null ? List.of(range) : Collections.emptyList();
+    }
+
+
+    @Override
+    public Optional<BinRange> findById(Long startBin) {
+        int idx = indexOf(startBin);
+        return (idx >= 0 && startAt(idx) == startBin) ? Optional.of(rangeAt(idx)) : Optional.empty();
+    }
+
+    @Override
+    public List<BinRange> findAll() {
+        List<BinRange> result = new ArrayList<>(recordCount);
+        for (int i = 0; i < recordCount; i++) {
+            result.add(rangeAt(i));
+        }
+        return result;
+    }
+
+    @Override
+    public BinRange save(BinRange entity) {
+        throw new UnsupportedOperationException("MappedBinTable is read-only: " + path);
+    }
+
+    @Override
+    public List<BinRange> saveAll(List<BinRange> entities) {
+        throw new UnsupportedOperationException("MappedBinTable is read-only: " + path);
+    }
+
+    @Override
+    public boolean deleteById(Long startBin) {
+        throw new UnsupportedOperationException("MappedBinTable is read-only: " + path);
+    }
+
+    @Override
+    public boolean delete(BinRange entity) {
+        throw new UnsupportedOperationException("MappedBinTable is read-only: " + path);
+    }
+
+    @Override
+    public boolean existsById(Long startBin) {
+        return findById(startBin).isPresent();
+    }
+
+    @Override
+    public long count() {
+        return recordCount;
+    }
+
+    @Override
+    public List<BinRange> findWithPagination(int offset, int limit) {
+        List<BinRange> result = new ArrayList<>();
+        for (int i = Math.max(0, offset); i < recordCount && result.size() < limit; i++) {
+            result.add(rangeAt(i));
+        }
+        return result;
+    }
+
+    @Override
+    public List<BinRange> findByExample(BinRange example) {
+        List<BinRange> result = new ArrayList<>();
+        for (int i = 0; i < recordCount; i++) {
+            BinRange range = rangeAt(i);
+            if (range.getBankName().equals(example.getBankName()) &&
+                    range.getCardType().equals(example.getCardType()) &&
+                    range.getCountry().equals(example.getCountry())) {
+                result.add(range);
+            }
+        }
+        return result;
+    }
+
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getRangeCount() {
+        return recordCount;
+    }
+
+    public int getStringPoolSize() {
+        return stringCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MappedBinTable[path=%s, ranges=%d, strings=%d, bytes=%d]",
+                path, recordCount, stringCount, buffer.capacity());
+    }
+}
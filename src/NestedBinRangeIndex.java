@@ -0,0 +1,293 @@
+import java.util.*;
+
+public final class NestedBinRangeIndex {
+
+    private static final Comparator<BinRange> OUTERMOST_FIRST = Comparator
+            .comparingLong(BinRange::getStartBin)
+            .thenComparing(Comparator.comparingLong(BinRange::getEndBin).reversed());
+
+    private static final NestedBinRangeIndex EMPTY =
+            new NestedBinRangeIndex(new long[0], new long[0], new long[0], new BinRange[0]);
+
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] maxEnd;
+    private final BinRange[] payloads;
+
+    private NestedBinRangeIndex(long[] starts, long[] ends, long[] maxEnd, BinRange[] payloads) {
+        this.starts = starts;
+        this.ends = ends;
+        this.maxEnd = maxEnd;
+        this.payloads = payloads;
+    }
+
+    public static NestedBinRangeIndex empty() {
+        return EMPTY;
+    }
+
+
+    public static NestedBinRangeIndex of(Collection<BinRange> ranges) throws OverlappingRangeException {
+        Objects.requireNonNull(ranges, "Ranges cannot be null");
+
+        if (ranges.isEmpty()) {
+            return EMPTY;
+        }
+
+        BinRange[] sorted = ranges.toArray(new BinRange[0]);
+        if (!isSorted(sorted)) {
+            Arrays.sort(sorted, OUTERMOST_FIRST);
+        }
+
+        return fromSorted(sorted);
+    }
+
+
+    private static NestedBinRangeIndex fromSorted(BinRange[] sorted) throws OverlappingRangeException {
+        int n = sorted.length;
+        long[] starts = new long[n];
+        long[] ends = new long[n];
+        int[] open = new int[n];
+        int depth = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && sorted[i - 1].getStartBin() == sorted[i].getStartBin()
+                    && sorted[i - 1].getEndBin() == sorted[i].getEndBin()) {
+                throw new OverlappingRangeException(sorted[i - 1], sorted[i]);
+            }
+            starts[i] = sorted[i].getStartBin();
+            ends[i] = sorted[i].getEndBin();
+
+            while (depth > 0 && ends[open[depth - 1]] < starts[i]) {
+                depth--;
+            }
+            if (depth > 0 && ends[open[depth - 1]] < ends[i]) {
+                throw new OverlappingRangeException(sorted[open[depth - 1]], sorted[i]);
+            }
+            open[depth++] = i;
+        }
+
+        long[] maxEnd = new long[n];
+        buildMaxEnd(ends, maxEnd, 0, n);
+
+        return new NestedBinRangeIndex(starts, ends, maxEnd, sorted);
+    }
+
+
+    private static long buildMaxEnd(long[] ends, long[] maxEnd, int lo, int hi) {
+        if (lo >= hi) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        long max = Math.max(ends[mid],
+                Math.max(buildMaxEnd(ends, maxEnd, lo, mid), buildMaxEnd(ends, maxEnd, mid + 1, hi)));
+        maxEnd[mid] = max;
+        return max;
+    }
+
+    private static boolean isSorted(BinRange[] ranges) {
+        for (int i = 1; i < ranges.length; i++) {
+            if (OUTERMOST_FIRST.compare(ranges[i - 1], ranges[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    public int findContaining(long bin, BinRange[] out) {
+        if (out.length == 0) {
+            return 0;
+        }
+        return collect(bin, 0, payloads.length, out, 0);
+    }
+
+    public List<BinRange> findContaining(long bin) {
+        List<BinRange> result = new ArrayList<>();
+        collect(bin, 0, payloads.length, result);
+        result.sort((a, b) -> isMoreSpecific(a, b) ? -1 : isMoreSpecific(b, a) ? 1 : 0);
+        return result;
+    }
+
+    private int collect(long bin, int lo, int hi, BinRange[] out, int count) {
+        if (lo >= hi) {
+            return count;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (maxEnd[mid] < bin) {
+            return count;
+        }
+
+        count = collect(bin, lo, mid, out, count);
+        if (starts[mid] > bin) {
+            return count;
+        }
+
+        if (ends[mid] >= bin) {
+            count = offer(out, count, payloads[mid]);
+        }
+        return collect(bin, mid + 1, hi, out, count);
+    }
+
+    private static int offer(BinRange[] out, int count, BinRange candidate) {
+        if (count == out.length) {
+            if (!isMoreSpecific(candidate, out[count - 1])) {
+                return count;
+            }
+            count--;
+        }
+
+        int j = count - 1;
+        while (j >= 0 && isMoreSpecific(candidate, out[j])) {
+            out[j + 1] = out[j];
+            j--;
+        }
+        out[j + 1] = candidate;
+        return count + 1;
+    }
+
+    private void collect(long bin, int lo, int hi, List<BinRange> out) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (maxEnd[mid] < bin) {
+            return;
+        }
+
+        collect(bin, lo, mid, out);
+        if (starts[mid] > bin) {
+            return;
+        }
+
+        if (ends[mid] >= bin) {
+            out.add(payloads[mid]);
+        }
+        collect(bin, mid + 1, hi, out);
+    }
+
+
+    public BinRange findMostSpecific(long bin) {
+        int idx = mostSpecific(bin, 0, payloads.length, -1);
+        return idx >= 0 ? payloads[idx] : null;
+    }
+
+    private int mostSpecific(long bin, int lo, int hi, int best) {
+        if (lo >= hi) {
+            return best;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (maxEnd[mid] < bin) {
+            return best;
+        }
+
+        best = mostSpecific(bin, lo, mid, best);
+        if (starts[mid] > bin) {
+            return best;
+        }
+
+        if (ends[mid] >= bin && (best < 0 || isMoreSpecific(payloads[mid], payloads[best]))) {
+            best = mid;
+        }
+        return mostSpecific(bin, mid + 1, hi, best);
+    }
+
+
+    private static boolean isMoreSpecific(BinRange candidate, BinRange other) {
+        long candidateSize = candidate.getRangeSize();
+        long otherSize = other.getRangeSize();
+        if (candidateSize != otherSize) {
+            return candidateSize < otherSize;
+        }
+        return candidate.getStartBin() > other.getStartBin();
+    }
+
+
+    public NestedBinRangeIndex with(BinRange range) throws OverlappingRangeException {
+        int insertAt = Arrays.binarySearch(payloads, range, OUTERMOST_FIRST);
+        if (insertAt >= 0) {
+            throw new OverlappingRangeException(payloads[insertAt], range);
+        }
+        insertAt = -insertAt - 1;
+
+        BinRange[] next = new BinRange[payloads.length + 1];
+        System.arraycopy(payloads, 0, next, 0, insertAt);
+        next[insertAt] = range;
+        System.arraycopy(payloads, insertAt, next, insertAt + 1, payloads.length - insertAt);
+
+        return fromSorted(next);
+    }
+
+
+    public NestedBinRangeIndex without(BinRange range) {
+        int idx = Arrays.binarySearch(payloads, range, OUTERMOST_FIRST);
+        if (idx < 0 || !payloads[idx].equals(range)) {
+            return this;
+        }
+        if (payloads.length == 1) {
+            return EMPTY;
+        }
+
+        BinRange[] next = new BinRange[payloads.length - 1];
+        System.arraycopy(payloads, 0, next, 0, idx);
+        System.arraycopy(payloads, idx + 1, next, idx, payloads.length - idx - 1);
+
+        try {
+            return fromSorted(next);
+        } catch (OverlappingRangeException e) {
+            throw new IllegalStateException("Removing a range cannot introduce overlaps", e);
+        }
+    }
+
+
+    public BinRange findOutermostStartingAt(long startBin) {
+        int lo = 0;
+        int hi = starts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] < startBin) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return (lo < starts.length && starts[lo] == startBin) ? payloads[lo] : null;
+    }
+
+
+    public BinRange rangeAt(int index) {
+        return payloads[index];
+    }
+
+    public int size() {
+        return payloads.length;
+    }
+
+    public boolean isEmpty() {
+        return payloads.length == 0;
+    }
+
+    public List<BinRange> asList() {
+        return Collections.unmodifiableList(Arrays.asList(payloads));
+    }
+
+
+    public int getMaxNestingDepth() {
+        int maxDepth = 0;
+        PriorityQueue<Long> openEnds = new PriorityQueue<>();
+
+        for (int i = 0; i < payloads.length; i++) {
+            while (!openEnds.isEmpty() && openEnds.peek() < starts[i]) {
+                openEnds.poll();
+            }
+            openEnds.add(ends[i]);
+            maxDepth = Math.max(maxDepth, openEnds.size());
+        }
+
+        return maxDepth;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("NestedBinRangeIndex[ranges=%d, maxDepth=%d]", payloads.length, getMaxNestingDepth());
+    }
+}
@@ -0,0 +1,266 @@
+import java.util.*;
+
+public class NestedBinRangeRepository implements BinRangeRepository {
+
+    private final Object writeLock = new Object();
+    private volatile NestedBinRangeIndex snapshot;
+
+    public NestedBinRangeRepository() {
+        this.snapshot = NestedBinRangeIndex.empty();
+    }
+
+    public NestedBinRangeRepository(Collection<BinRange> ranges) throws OverlappingRangeException {
+        this.snapshot = NestedBinRangeIndex.of(ranges);
+    }
+
+
+    @Override
+    public Optional<BinRange> findRangeForBin(long bin) {
+        return Optional.ofNullable(snapshot.findMostSpecific(bin));
+    }
+
+    @Override
+    public BinRange lookupBin(long bin) {
+        return snapshot.findMostSpecific(bin);
+    }
+
+
+    @Override
+    public void addRange(BinRange range) throws OverlappingRangeException {
+        Objects.requireNonNull(range, "BIN range cannot be null");
+
+        synchronized (writeLock) {
+            snapshot = snapshot.with(range);
+        }
+    }
+
+
+    public boolean removeRange(BinRange range) {
+        synchronized (writeLock) {
+            NestedBinRangeIndex current = snapshot;
+            NestedBinRangeIndex next = current.without(range);
+            snapshot = next;
+            return next != current;
+        }
+    }
+
+
+    @Override
+    public void replaceAll(Collection<BinRange> ranges) throws OverlappingRangeException {
+        NestedBinRangeIndex next = NestedBinRangeIndex.of(ranges);
+
+        synchronized (writeLock) {
+            snapshot = next;
+        }
+    }
+
+    @Override
+    public boolean supportsReplaceAll() {
+        return true;
+    }
+
+    @Override
+    public boolean allowsNestedRanges() {
+        return true;
+    }
+
+    public NestedBinRangeIndex getSnapshot() {
+        return snapshot;
+    }
+
+
+    @Override
+    public Map<Long, BinRange> findRangesForBins(List<Long> bins) {
+        NestedBinRangeIndex index = snapshot;
+        Map<Long, BinRange> results = new HashMap<>();
+
+        for (Long bin : bins) {
+            BinRange range = index.findMostSpecific(bin);
+            if (range != null) {
+                results.put(bin, range);
+            }
+        }
+
+        return results;
+    }
+
+    @Override
+    public int findRangesForBins(long[] bins, BinRange[] out) {
+        NestedBinRangeIndex index = snapshot;
+        int found = 0;
+
+        for (int i = 0; i < bins.length; i++) {
+            out[i] = index.findMostSpecific(bins[i]);
+            if (out[i] != null) {
+                found++;
+            }
+        }
+
+        return found;
+    }
+
+    @Override
+    public List<BinRange> findByBankName(String bankName) {
+        List<BinRange> result = new ArrayList<>();
+        for (BinRange range : snapshot.asList()) {
+            if (range.getBankName().equals(bankName)) {
+                result.add(range);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<BinRange> findByCountry(String country) {
+        List<BinRange> result = new ArrayList<>();
+        for (BinRange range : snapshot.asList()) {
+            if (range.getCountry().equals(country)) {
+                result.add(range);
+            }
+        }
+        return result;
+    }
+
+
+    @Override
+    public List<Map.Entry<BinRange, BinRange>> validateNoOverlaps() {
+        List<BinRange> ranges = snapshot.asList();
+        List<Map.Entry<BinRange, BinRange>> crossings = new ArrayList<>();
+        Deque<BinRange> open = new ArrayDeque<>();
+
+        for (BinRange range : ranges) {
+            while (!open.isEmpty() && open.peek().getEndBin() < range.getStartBin()) {
+                open.pop();
+            }
+            if (!open.isEmpty() && open.peek().getEndBin() < range.getEndBin()) {
+                crossings.add(new AbstractMap.SimpleImmutableEntry<>(open.peek(), range));
+            }
+            open.push(range);
+        }
+
+        return crossings;
+    }
+
+
+    @Override
+    public List<BinRange> findInRange(Long start, Long end) {
+        List<BinRange> result = new ArrayList<>();
+        for (BinRange range : snapshot.asList()) {
+            if (range.getStartBin() > end) {
+                break;
+            }
+            if (range.getStartBin() >= start && range.getEndBin() <= end) {
+                result.add(range);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<BinRange> findOverlapping(Long start, Long end) {
+        List<BinRange> result = new ArrayList<>();
+        for (BinRange range : snapshot.asList()) {
+            if (range.getStartBin() > end) {
+                break;
+            }
+            if (range.getEndBin() >= start) {
+                result.add(range);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<BinRange> findContaining(Long point) {
+        return snapshot.findContaining(point);
+    }
+
+
+    @Override
+    public Optional<BinRange> findById(Long startBin) {
+        return Optional.ofNullable(snapshot.findOutermostStartingAt(startBin));
+    }
+
+    @Override
+    public List<BinRange> findAll() {
+        return snapshot.asList();
+    }
+
+    @Override
+    public BinRange save(BinRange entity) throws DomainException {
+        addRange(entity);
+        return entity;
+    }
+
+    @Override
+    public List<BinRange> saveAll(List<BinRange> entities) throws DomainException {
+        Objects.requireNonNull(entities, "Entities cannot be null");
+
+        synchronized (writeLock) {
+            List<BinRange> merged = new ArrayList<>(snapshot.asList());
+            merged.addAll(entities);
+            snapshot = NestedBinRangeIndex.of(merged);
+        }
+
+        return entities;
+    }
+
+    @Override
+    public boolean deleteById(Long startBin) {
+        synchronized (writeLock) {
+            BinRange outermost = snapshot.findOutermostStartingAt(startBin);
+            return outermost != null && removeRange(outermost);
+        }
+    }
+
+    @Override
+    public boolean delete(BinRange entity) {
+        return removeRange(entity);
+    }
+
+    @Override
+    public boolean existsById(Long startBin) {
+        return snapshot.findOutermostStartingAt(startBin) != null;
+    }
+
+    @Override
+    public long count() {
+        return snapshot.size();
+    }
+
+    @Override
+    public List<BinRange> findWithPagination(int offset, int limit) {
+        List<BinRange> all = snapshot.asList();
+        if (offset >= all.size()) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(all.subList(offset, Math.min(all.size(), offset + limit)));
+    }
+
+    @Override
+    public List<BinRange> findByExample(BinRange example) {
+        List<BinRange> result = new ArrayList<>();
+        for (BinRange range : snapshot.asList()) {
+            if (range.getBankName().equals(example.getBankName()) &&
+                    range.getCardType().equals(example.getCardType()) &&
+                    range.getCountry().equals(example.getCountry())) {
+                result.add(range);
+            }
+        }
+        return result;
+    }
+
+
+    public int getRangeCount() {
+        return snapshot.size();
+    }
+
+    public String getRepositoryStats() {
+        NestedBinRangeIndex index = snapshot;
+        return String.format(
+                "NestedBinRangeRepository Stats: ranges=%d, maxDepth=%d",
+                index.size(),
+                index.getMaxNestingDepth()
+        );
+    }
+}
@@ -9,17 +9,24 @@ final class ParsedRule {
     private final String ruleId;
     private final String dslExpression;
     private final ASTNode ast;
+    private final RuleCompiler.CompiledRule compiledRule;
     private final Rule.RuleType ruleType;
     private final int priority;
     private final String description;
     private final LocalDateTime creationTime;
-    private volatile boolean active;
+    private final boolean active;
 
     public ParsedRule(String ruleId, String dslExpression, ASTNode ast,
                       Rule.RuleType ruleType, int priority, String description, boolean active) {
+        this(ruleId, dslExpression, ast, RuleCompiler.compile(ast), ruleType, priority, description, active);
+    }
+
+    public ParsedRule(String ruleId, String dslExpression, ASTNode ast, RuleCompiler.CompiledRule compiledRule,
+                      Rule.RuleType ruleType, int priority, String description, boolean active) {
         this.ruleId = Objects.requireNonNull(ruleId, "Rule ID cannot be null");
         this.dslExpression = Objects.requireNonNull(dslExpression, "DSL expression cannot be null");
         this.ast = Objects.requireNonNull(ast, "AST cannot be null");
+        this.compiledRule = Objects.requireNonNull(compiledRule, "Compiled rule cannot be null");
         this.ruleType = Objects.requireNonNull(ruleType, "Rule type cannot be null");
         this.priority = priority;
         this.description = description;
@@ -40,6 +47,14 @@ final class ParsedRule {
         return ast;
     }
 
+    public RuleCompiler.CompiledCondition getCompiledCondition() {
+        return compiledRule.getCondition();
+    }
+
+    public RuleCompiler.CompiledRule getCompiledRule() {
+        return compiledRule;
+    }
+
     public Rule.RuleType getRuleType() {
         return ruleType;
     }
@@ -61,8 +76,15 @@ final class ParsedRule {
     }
 
 
-    public void setActive(boolean active) {
-        this.active = active;
+    public ParsedRule withActive(boolean active) {
+        if (this.active == active) {
+            return this;
+        }
+        return new ParsedRule(ruleId, dslExpression, ast, compiledRule, ruleType, priority, description, active);
+    }
+
+    ParsedRule withCompiledRule(RuleCompiler.CompiledRule compiledRule) {
+        return new ParsedRule(ruleId, dslExpression, ast, compiledRule, ruleType, priority, description, active);
     }
 
 
@@ -132,6 +154,11 @@ final class RuleEngineStatistics {
     private final AtomicLong evaluationErrors = new AtomicLong(0);
 
 
+    private volatile int sharedPredicates = 0;
+    private final AtomicLong predicateEvaluations = new AtomicLong(0);
+    private final AtomicLong predicateReuses = new AtomicLong(0);
+
+
     private final LocalDateTime startTime = LocalDateTime.now();
 
 
@@ -167,6 +194,11 @@ final class RuleEngineStatistics {
         evaluationErrors.incrementAndGet();
     }
 
+    public void recordPredicateUsage(long evaluations, long reuses) {
+        predicateEvaluations.addAndGet(evaluations);
+        predicateReuses.addAndGet(reuses);
+    }
+
 
     public void recordEvaluationTime(long nanoTime) {
 
@@ -218,6 +250,10 @@ final class RuleEngineStatistics {
         this.averageEvaluationTime = averageEvaluationTime;
     }
 
+    public void setSharedPredicates(int sharedPredicates) {
+        this.sharedPredicates = sharedPredicates;
+    }
+
 
     public long getRulesAdded() {
         return rulesAdded.get();
@@ -279,6 +315,18 @@ final class RuleEngineStatistics {
         return evaluationErrors.get();
     }
 
+    public int getSharedPredicates() {
+        return sharedPredicates;
+    }
+
+    public long getPredicateEvaluations() {
+        return predicateEvaluations.get();
+    }
+
+    public long getPredicateReuses() {
+        return predicateReuses.get();
+    }
+
     public LocalDateTime getStartTime() {
         return startTime;
     }
@@ -294,6 +342,11 @@ final class RuleEngineStatistics {
         return totalCacheAccess == 0 ? 0.0 : (double) getCacheHits() / totalCacheAccess * 100.0;
     }
 
+    public double getPredicateReuseRate() {
+        long total = getPredicateEvaluations() + getPredicateReuses();
+        return total == 0 ? 0.0 : (double) getPredicateReuses() / total * 100.0;
+    }
+
     public double getAverageParsingTimeMs() {
         return getAverageParsingTime() / 1_000_000.0;
     }
@@ -335,6 +388,10 @@ final class RuleEngineStatistics {
 
         parseErrors.set(0);
         evaluationErrors.set(0);
+
+        sharedPredicates = 0;
+        predicateEvaluations.set(0);
+        predicateReuses.set(0);
     }
 
 
@@ -362,6 +419,11 @@ final class RuleEngineStatistics {
         sb.append("  Cache Hit Rate: ").append(String.format("%.1f%%", getCacheHitRate())).append("\n");
         sb.append("  Cache Hits/Misses: ").append(getCacheHits()).append("/").append(getCacheMisses()).append("\n");
 
+        sb.append("\nPredicate Network:\n");
+        sb.append("  Shared Predicates: ").append(getSharedPredicates()).append("\n");
+        sb.append("  Predicate Reuse Rate: ").append(String.format("%.1f%%", getPredicateReuseRate())).append("\n");
+        sb.append("  Evaluations/Reuses: ").append(getPredicateEvaluations()).append("/").append(getPredicateReuses()).append("\n");
+
         sb.append("\nError Summary:\n");
         sb.append("  Parse Errors: ").append(getParseErrors()).append("\n");
         sb.append("  Evaluation Errors: ").append(getEvaluationErrors()).append("\n");
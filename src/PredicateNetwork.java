@@ -0,0 +1,132 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+final class PredicateNetwork {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte FAILED = 3;
+
+    private final Map<String, SharedPredicate> predicates;
+    private final AtomicInteger nextIndex;
+
+    PredicateNetwork() {
+        this(new ConcurrentHashMap<>(), 0);
+    }
+
+    private PredicateNetwork(Map<String, SharedPredicate> predicates, int nextIndex) {
+        this.predicates = predicates;
+        this.nextIndex = new AtomicInteger(nextIndex);
+    }
+
+
+    PredicateNetwork fork() {
+        return new PredicateNetwork(new ConcurrentHashMap<>(predicates), nextIndex.get());
+    }
+
+
+    RuleCompiler.CompiledCondition share(String key, RuleCompiler.CompiledCondition condition, boolean canFail) {
+        return predicates.computeIfAbsent(key,
+                k -> new SharedPredicate(nextIndex.getAndIncrement(), condition, canFail));
+    }
+
+    int size() {
+        return nextIndex.get();
+    }
+
+    Frame newFrame() {
+        return new Frame(nextIndex.get());
+    }
+
+
+    private static final class SharedPredicate implements RuleCompiler.CompiledCondition {
+        private final int index;
+        private final RuleCompiler.CompiledCondition condition;
+        private final boolean canFail;
+
+        SharedPredicate(int index, RuleCompiler.CompiledCondition condition, boolean canFail) {
+            this.index = index;
+            this.condition = condition;
+            this.canFail = canFail;
+        }
+
+        @Override
+        public boolean canFail() {
+            return canFail;
+        }
+
+        @Override
+        public boolean test(TransactionContext context, Frame frame) throws RuleEvaluationException {
+            if (frame == null) {
+                return condition.test(context, null);
+            }
+            return frame.test(index, condition, context);
+        }
+    }
+
+
+    static final class Frame {
+        private byte[] states;
+        private Exception[] failures;
+        private long evaluations;
+        private long reuses;
+
+        private Frame(int size) {
+            this.states = new byte[Math.max(size, 1)];
+        }
+
+        private boolean test(int index, RuleCompiler.CompiledCondition condition, TransactionContext context)
+                throws RuleEvaluationException {
+            if (index >= states.length) {
+                states = Arrays.copyOf(states, Math.max(index + 1, states.length * 2));
+            }
+
+            switch (states[index]) {
+                case TRUE:
+                    reuses++;
+                    return true;
+                case FALSE:
+                    reuses++;
+                    return false;
+                case FAILED:
+                    reuses++;
+                    return rethrow(failures[index]);
+                default:
+                    break;
+            }
+
+            evaluations++;
+            try {
+                boolean result = condition.test(context, this);
+                states[index] = result ? TRUE : FALSE;
+                return result;
+            } catch (RuleEvaluationException | RuntimeException e) {
+                if (failures == null || index >= failures.length) {
+                    failures = Arrays.copyOf(failures == null ? new Exception[0] : failures, states.length);
+                }
+                failures[index] = e;
+                states[index] = FAILED;
+                throw e;
+            }
+        }
+
+        private static boolean rethrow(Exception failure) throws RuleEvaluationException {
+            if (failure instanceof RuleEvaluationException) {
+                throw (RuleEvaluationException) failure;
+            }
+            throw (RuntimeException) failure;
+        }
+
+        long getEvaluations() {
+            return evaluations;
+        }
+
+        long getReuses() {
+            return reuses;
+        }
+    }
+}
@@ -1,23 +1,42 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.ZoneOffset;
 import java.util.*;
 
 
 public final class RiskWindow {
 
-    private final Deque<WindowEntry> entries;
+    private static final int INITIAL_CAPACITY = 8;
+    private static final long ROUND_AMOUNT_MINOR_UNITS = 1000;
+    private static final int MERCHANT_HAMMERING_THRESHOLD = 10;
+
     private final int windowSizeMinutes;
     private final int maxEntries;
 
 
-    private BigDecimal totalAmount;
+    private String[] transactionIds;
+    private String[] cardNumbers;
+    private long[] amounts;
+    private String[] merchantNames;
+    private String[] locations;
+    private long[] epochSeconds;
+    private int[] nanos;
+    private long headSequence;
+    private long tailSequence;
+
+
+    private long totalAmountMinorUnits;
     private int transactionCount;
 
 
     private LocalDateTime lastCleanupTime;
     private final Map<String, Integer> merchantCounts;
     private final Map<String, Integer> locationCounts;
+    private final Map<String, CardAggregate> cardAggregates;
 
     public RiskWindow(int windowSizeMinutes, int maxEntries) {
         if (windowSizeMinutes <= 0) {
@@ -29,12 +48,22 @@ public final class RiskWindow {
 
         this.windowSizeMinutes = windowSizeMinutes;
         this.maxEntries = maxEntries;
-        this.entries = new ArrayDeque<>();
-        this.totalAmount = BigDecimal.ZERO;
+
+        int initial = Math.min(maxEntries, INITIAL_CAPACITY);
+        this.transactionIds = new String[initial];
+        this.cardNumbers = new String[initial];
+        this.amounts = new long[initial];
+        this.merchantNames = new String[initial];
+        this.locations = new String[initial];
+        this.epochSeconds = new long[initial];
+        this.nanos = new int[initial];
+
+        this.totalAmountMinorUnits = 0;
         this.transactionCount = 0;
         this.lastCleanupTime = LocalDateTime.now();
         this.merchantCounts = new HashMap<>();
         this.locationCounts = new HashMap<>();
+        this.cardAggregates = new HashMap<>();
     }
 
 
@@ -62,27 +91,138 @@ public final class RiskWindow {
         Objects.requireNonNull(location, "Location cannot be null");
         Objects.requireNonNull(timestamp, "Timestamp cannot be null");
 
+        append(transactionId, cardNumber, toMinorUnits(amount), merchantName, location, timestamp);
+
+        return analyzeWindow(cardNumber, timestamp);
+    }
+
+
+    public synchronized void appendTransaction(String transactionId, String cardNumber,
+                                               BigDecimal amount, String merchantName,
+                                               String location, LocalDateTime timestamp) {
+
+        Objects.requireNonNull(transactionId, "Transaction ID cannot be null");
+        Objects.requireNonNull(cardNumber, "Card number cannot be null");
+        Objects.requireNonNull(amount, "Amount cannot be null");
+        Objects.requireNonNull(merchantName, "Merchant name cannot be null");
+        Objects.requireNonNull(location, "Location cannot be null");
+        Objects.requireNonNull(timestamp, "Timestamp cannot be null");
+
+        append(transactionId, cardNumber, toMinorUnits(amount), merchantName, location, timestamp);
+    }
+
+
+    public synchronized int recordTransaction(String transactionId, String cardNumber,
+                                              long amountMinorUnits, String merchantName,
+                                              String location, LocalDateTime timestamp) {
+
+        Objects.requireNonNull(transactionId, "Transaction ID cannot be null");
+        Objects.requireNonNull(cardNumber, "Card number cannot be null");
+        Objects.requireNonNull(merchantName, "Merchant name cannot be null");
+        Objects.requireNonNull(location, "Location cannot be null");
+        Objects.requireNonNull(timestamp, "Timestamp cannot be null");
+
+        append(transactionId, cardNumber, amountMinorUnits, merchantName, location, timestamp);
+
+        CardAggregate aggregate = cardAggregates.get(cardNumber);
+        return detectPatterns(aggregate, transactionsPerMinute(aggregate));
+    }
+
+
+    static boolean fitsMinorUnits(BigDecimal amount) {
+        BigDecimal normalized = amount.stripTrailingZeros();
+        return normalized.scale() <= 2 && normalized.precision() - normalized.scale() <= 16;
+    }
+
+    private static long toMinorUnits(BigDecimal amount) {
+        try {
+            return amount.setScale(2).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount does not fit 2-decimal minor units: " + amount, e);
+        }
+    }
+
+
+    private void append(String transactionId, String cardNumber, long amountMinorUnits,
+                        String merchantName, String location, LocalDateTime timestamp) {
 
         cleanupExpiredEntries(timestamp);
 
+        push(transactionId, cardNumber, amountMinorUnits, merchantName, location,
+                timestamp.toEpochSecond(ZoneOffset.UTC), timestamp.getNano());
+    }
+
+
+    private void push(String transactionId, String cardNumber, long amountMinorUnits,
+                      String merchantName, String location, long epochSecond, int nano) {
+
+        if (tailSequence - headSequence == amounts.length) {
+            grow();
+        }
 
-        WindowEntry newEntry = new WindowEntry(transactionId, cardNumber, amount,
-                merchantName, location, timestamp);
-        entries.addLast(newEntry);
+        long sequence = tailSequence++;
+        int slot = slot(sequence);
+        transactionIds[slot] = transactionId;
+        cardNumbers[slot] = cardNumber;
+        amounts[slot] = amountMinorUnits;
+        merchantNames[slot] = merchantName;
+        locations[slot] = location;
+        epochSeconds[slot] = epochSecond;
+        nanos[slot] = nano;
 
 
-        totalAmount = totalAmount.add(amount);
+        totalAmountMinorUnits += amountMinorUnits;
         transactionCount++;
         merchantCounts.merge(merchantName, 1, Integer::sum);
         locationCounts.merge(location, 1, Integer::sum);
 
+        CardAggregate aggregate = cardAggregates.get(cardNumber);
+        if (aggregate == null) {
+            aggregate = new CardAggregate();
+            cardAggregates.put(cardNumber, aggregate);
+        }
+        aggregate.add(sequence);
+
 
-        while (entries.size() > maxEntries) {
+        while (tailSequence - headSequence > maxEntries) {
             removeOldestEntry();
         }
+    }
 
+    private void grow() {
+        int length = amounts.length;
+        int next = (int) Math.min(maxEntries + 1L, length * 2L);
+        String[] grownIds = new String[next];
+        String[] grownCards = new String[next];
+        long[] grownAmounts = new long[next];
+        String[] grownMerchants = new String[next];
+        String[] grownLocations = new String[next];
+        long[] grownSeconds = new long[next];
+        int[] grownNanos = new int[next];
+
+        for (long sequence = headSequence; sequence < tailSequence; sequence++) {
+            int from = (int) (sequence % length);
+            int to = (int) (sequence % next);
+            grownIds[to] = transactionIds[from];
+            grownCards[to] = cardNumbers[from];
+            grownAmounts[to] = amounts[from];
+            grownMerchants[to] = merchantNames[from];
+            grownLocations[to] = locations[from];
+            grownSeconds[to] = epochSeconds[from];
+            grownNanos[to] = nanos[from];
+        }
+
+        transactionIds = grownIds;
+        cardNumbers = grownCards;
+        amounts = grownAmounts;
+        merchantNames = grownMerchants;
+        locations = grownLocations;
+        epochSeconds = grownSeconds;
+        nanos = grownNanos;
+    }
 
-        return analyzeWindow(newEntry, cardNumber, timestamp);
+    private int slot(long sequence) {
+        return (int) (sequence % amounts.length);
     }
 
 
@@ -92,190 +232,211 @@ public final class RiskWindow {
 
         cleanupExpiredEntries(currentTime);
 
-        return analyzeWindow(null, cardNumber, currentTime);
+        return analyzeWindow(cardNumber, currentTime);
     }
 
 
     private void cleanupExpiredEntries(LocalDateTime currentTime) {
-        LocalDateTime cutoffTime = currentTime.minusMinutes(windowSizeMinutes);
+        long cutoffSecond = currentTime.toEpochSecond(ZoneOffset.UTC) - windowSizeMinutes * 60L;
+        int cutoffNano = currentTime.getNano();
 
-        while (!entries.isEmpty() && entries.peekFirst().getTimestamp().isBefore(cutoffTime)) {
+        while (headSequence < tailSequence && isBefore(slot(headSequence), cutoffSecond, cutoffNano)) {
             removeOldestEntry();
         }
 
         lastCleanupTime = currentTime;
     }
 
+    private boolean isBefore(int slot, long second, int nano) {
+        return epochSeconds[slot] < second || (epochSeconds[slot] == second && nanos[slot] < nano);
+    }
+
 
     private void removeOldestEntry() {
-        WindowEntry oldest = entries.removeFirst();
-        if (oldest != null) {
-            totalAmount = totalAmount.subtract(oldest.getAmount());
-            transactionCount--;
+        if (headSequence == tailSequence) {
+            return;
+        }
 
+        long sequence = headSequence;
+        int slot = slot(sequence);
+        String cardNumber = cardNumbers[slot];
 
-            String merchant = oldest.getMerchantName();
-            merchantCounts.computeIfPresent(merchant, (k, v) -> v > 1 ? v - 1 : null);
+        totalAmountMinorUnits -= amounts[slot];
+        transactionCount--;
+        merchantCounts.computeIfPresent(merchantNames[slot], (k, v) -> v > 1 ? v - 1 : null);
+        locationCounts.computeIfPresent(locations[slot], (k, v) -> v > 1 ? v - 1 : null);
 
 
-            String location = oldest.getLocation();
-            locationCounts.computeIfPresent(location, (k, v) -> v > 1 ? v - 1 : null);
+        CardAggregate aggregate = cardAggregates.get(cardNumber);
+        if (aggregate != null) {
+            aggregate.removeOldest();
+            if (aggregate.isEmpty()) {
+                cardAggregates.remove(cardNumber);
+            }
         }
-    }
 
-
-    private WindowAnalysis analyzeWindow(WindowEntry newEntry, String cardNumber,
-                                         LocalDateTime currentTime) {
+        transactionIds[slot] = null;
+        cardNumbers[slot] = null;
+        merchantNames[slot] = null;
+        locations[slot] = null;
+        headSequence++;
+    }
 
 
-        List<WindowEntry> cardEntries = entries.stream()
-                .filter(entry -> entry.getCardNumber().equals(cardNumber))
-                .sorted(Comparator.comparing(WindowEntry::getTimestamp))
-                .toList();
+    private WindowAnalysis analyzeWindow(String cardNumber, LocalDateTime currentTime) {
 
-        if (cardEntries.isEmpty()) {
+        CardAggregate aggregate = cardAggregates.get(cardNumber);
+        if (aggregate == null || aggregate.isEmpty()) {
             return WindowAnalysis.empty(cardNumber, currentTime);
         }
 
+        double transactionsPerMinute = transactionsPerMinute(aggregate);
+        RiskPattern riskPattern = RiskPattern.fromMask(detectPatterns(aggregate, transactionsPerMinute));
 
-        BigDecimal cardTotalAmount = cardEntries.stream()
-                .map(WindowEntry::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        int cardTransactionCount = cardEntries.size();
-
-
-        Set<String> uniqueMerchants = new HashSet<>();
-        Set<String> uniqueLocations = new HashSet<>();
-        Map<String, Integer> cardMerchantCounts = new HashMap<>();
-        Map<String, Integer> cardLocationCounts = new HashMap<>();
-
-        for (WindowEntry entry : cardEntries) {
-            uniqueMerchants.add(entry.getMerchantName());
-            uniqueLocations.add(entry.getLocation());
-            cardMerchantCounts.merge(entry.getMerchantName(), 1, Integer::sum);
-            cardLocationCounts.merge(entry.getLocation(), 1, Integer::sum);
-        }
+        return new WindowAnalysis(cardNumber, currentTime, windowSizeMinutes,
+                aggregate.size(), BigDecimal.valueOf(aggregate.getTotalAmount(), 2),
+                aggregate.getMerchantCounts().size(), aggregate.getLocationCounts().size(),
+                transactionsPerMinute, riskPattern,
+                aggregate.getMerchantCounts(), aggregate.getLocationCounts());
+    }
 
 
-        double transactionsPerMinute = 0.0;
-        if (!cardEntries.isEmpty() && cardEntries.size() > 1) {
-            LocalDateTime firstTransaction = cardEntries.get(0).getTimestamp();
-            LocalDateTime lastTransaction = cardEntries.get(cardEntries.size() - 1).getTimestamp();
-            long minutesBetween = ChronoUnit.MINUTES.between(firstTransaction, lastTransaction);
-            if (minutesBetween > 0) {
-                transactionsPerMinute = (double) cardTransactionCount / minutesBetween;
-            }
+    private static double transactionsPerMinute(CardAggregate aggregate) {
+        if (aggregate == null || aggregate.size() <= 1) {
+            return 0.0;
         }
 
-
-        RiskPattern riskPattern = analyzeRiskPatterns(cardEntries, cardMerchantCounts,
-                cardLocationCounts, transactionsPerMinute);
-
-        return new WindowAnalysis(cardNumber, currentTime, windowSizeMinutes,
-                cardTransactionCount, cardTotalAmount, uniqueMerchants.size(),
-                uniqueLocations.size(), transactionsPerMinute, riskPattern,
-                cardMerchantCounts, cardLocationCounts);
+        long minutesBetween = aggregate.getSpanMinutes();
+        return minutesBetween > 0 ? (double) aggregate.size() / minutesBetween : 0.0;
     }
 
 
-    private RiskPattern analyzeRiskPatterns(List<WindowEntry> entries,
-                                            Map<String, Integer> merchantCounts,
-                                            Map<String, Integer> locationCounts,
-                                            double transactionsPerMinute) {
+    private static int detectPatterns(CardAggregate aggregate, double transactionsPerMinute) {
+        if (aggregate == null || aggregate.isEmpty()) {
+            return 0;
+        }
 
-        Set<RiskPattern.PatternType> detectedPatterns = new HashSet<>();
-        int riskScore = 0;
+        int patterns = 0;
+        int size = aggregate.size();
 
 
         if (transactionsPerMinute > 2.0) {
-            detectedPatterns.add(RiskPattern.PatternType.HIGH_VELOCITY);
-            riskScore += 30;
+            patterns |= RiskPattern.PatternType.HIGH_VELOCITY.mask();
         }
 
 
-        for (int count : merchantCounts.values()) {
-            if (count >= 10) {
-                detectedPatterns.add(RiskPattern.PatternType.MERCHANT_HAMMERING);
-                riskScore += 25;
-                break;
-            }
+        if (aggregate.getHammeredMerchants() > 0) {
+            patterns |= RiskPattern.PatternType.MERCHANT_HAMMERING.mask();
         }
 
 
-        if (locationCounts.size() >= 5 && entries.size() >= 10) {
-            detectedPatterns.add(RiskPattern.PatternType.LOCATION_HOPPING);
-            riskScore += 20;
+        if (aggregate.getLocationCounts().size() >= 5 && size >= 10) {
+            patterns |= RiskPattern.PatternType.LOCATION_HOPPING.mask();
         }
 
 
-        long roundAmounts = entries.stream()
-                .mapToLong(entry -> {
-                    BigDecimal amount = entry.getAmount();
-                    return amount.remainder(new BigDecimal("10")).compareTo(BigDecimal.ZERO) == 0 ? 1 : 0;
-                })
-                .sum();
-
-        if (roundAmounts >= entries.size() * 0.8) {
-            detectedPatterns.add(RiskPattern.PatternType.ROUND_AMOUNTS);
-            riskScore += 15;
+        if (aggregate.getRoundAmounts() >= size * 0.8) {
+            patterns |= RiskPattern.PatternType.ROUND_AMOUNTS.mask();
         }
 
 
-        if (hasSequentialAmountPattern(entries)) {
-            detectedPatterns.add(RiskPattern.PatternType.SEQUENTIAL_AMOUNTS);
-            riskScore += 20;
+        if (aggregate.hasSequentialAmountPattern()) {
+            patterns |= RiskPattern.PatternType.SEQUENTIAL_AMOUNTS.mask();
         }
 
 
-        long nightTransactions = entries.stream()
-                .mapToLong(entry -> {
-                    int hour = entry.getTimestamp().getHour();
-                    return (hour < 6 || hour > 22) ? 1 : 0;
-                })
-                .sum();
-
-        if (nightTransactions >= entries.size() * 0.7) {
-            detectedPatterns.add(RiskPattern.PatternType.NIGHT_ACTIVITY);
-            riskScore += 10;
+        if (aggregate.getNightTransactions() >= size * 0.7) {
+            patterns |= RiskPattern.PatternType.NIGHT_ACTIVITY.mask();
         }
 
-        return new RiskPattern(detectedPatterns, Math.min(100, riskScore));
+        return patterns;
     }
 
 
-    private boolean hasSequentialAmountPattern(List<WindowEntry> entries) {
-        if (entries.size() < 3) return false;
+    public synchronized void clear() {
+        Arrays.fill(transactionIds, null);
+        Arrays.fill(cardNumbers, null);
+        Arrays.fill(merchantNames, null);
+        Arrays.fill(locations, null);
+        headSequence = 0;
+        tailSequence = 0;
+        totalAmountMinorUnits = 0;
+        transactionCount = 0;
+        merchantCounts.clear();
+        locationCounts.clear();
+        cardAggregates.clear();
+        lastCleanupTime = LocalDateTime.now();
+    }
 
 
-        boolean ascending = true;
-        boolean descending = true;
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeInt(windowSizeMinutes);
+        out.writeInt(maxEntries);
+        out.writeLong(lastCleanupTime.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(lastCleanupTime.getNano());
+
+        out.writeInt((int) (tailSequence - headSequence));
+        for (long sequence = headSequence; sequence < tailSequence; sequence++) {
+            int slot = slot(sequence);
+            out.writeUTF(transactionIds[slot]);
+            out.writeUTF(cardNumbers[slot]);
+            byte[] unscaled = BigInteger.valueOf(amounts[slot]).toByteArray();
+            out.writeByte(unscaled.length);
+            out.write(unscaled);
+            out.writeInt(2);
+            out.writeUTF(merchantNames[slot]);
+            out.writeUTF(locations[slot]);
+            out.writeLong(epochSeconds[slot]);
+            out.writeInt(nanos[slot]);
+        }
+    }
 
-        for (int i = 1; i < entries.size(); i++) {
-            BigDecimal prev = entries.get(i - 1).getAmount();
-            BigDecimal curr = entries.get(i).getAmount();
 
-            if (curr.compareTo(prev) <= 0) ascending = false;
-            if (curr.compareTo(prev) >= 0) descending = false;
+    public static RiskWindow readFrom(DataInput in) throws IOException {
+        int windowSizeMinutes = in.readInt();
+        int maxEntries = in.readInt();
+        if (windowSizeMinutes <= 0 || maxEntries <= 0) {
+            throw new IOException("Corrupt risk window header");
         }
 
-        return ascending || descending;
-    }
+        RiskWindow window = new RiskWindow(windowSizeMinutes, maxEntries);
+        window.lastCleanupTime = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
 
+        int entryCount = in.readInt();
+        if (entryCount < 0 || entryCount > maxEntries) {
+            throw new IOException("Corrupt risk window entry count: " + entryCount);
+        }
 
-    public synchronized void clear() {
-        entries.clear();
-        totalAmount = BigDecimal.ZERO;
-        transactionCount = 0;
-        merchantCounts.clear();
-        locationCounts.clear();
-        lastCleanupTime = LocalDateTime.now();
+        for (int i = 0; i < entryCount; i++) {
+            String transactionId = in.readUTF();
+            String cardNumber = in.readUTF();
+            byte[] unscaled = new byte[in.readUnsignedByte()];
+            in.readFully(unscaled);
+            BigDecimal amount = new BigDecimal(new BigInteger(unscaled), in.readInt());
+            String merchantName = in.readUTF();
+            String location = in.readUTF();
+            long epochSecond = in.readLong();
+            int nano = in.readInt();
+            if (nano < 0 || nano > 999_999_999) {
+                throw new IOException("Corrupt risk window timestamp");
+            }
+
+            long amountMinorUnits;
+            try {
+                amountMinorUnits = toMinorUnits(amount);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Risk window amount out of range: " + amount, e);
+            }
+            window.push(transactionId, cardNumber, amountMinorUnits, merchantName, location, epochSecond, nano);
+        }
+
+        return window;
     }
 
 
     public synchronized WindowStatistics getStatistics() {
-        return new WindowStatistics(entries.size(), transactionCount, totalAmount,
-                merchantCounts.size(), locationCounts.size(),
+        return new WindowStatistics((int) (tailSequence - headSequence), transactionCount,
+                BigDecimal.valueOf(totalAmountMinorUnits, 2), merchantCounts.size(), locationCounts.size(),
                 windowSizeMinutes, maxEntries, lastCleanupTime);
     }
 
@@ -288,66 +449,216 @@ public final class RiskWindow {
         return maxEntries;
     }
 
-    public int getCurrentSize() {
-        return entries.size();
+    public synchronized int getCurrentSize() {
+        return (int) (tailSequence - headSequence);
     }
 
-    public BigDecimal getTotalAmount() {
-        return totalAmount;
+    public synchronized BigDecimal getTotalAmount() {
+        return BigDecimal.valueOf(totalAmountMinorUnits, 2);
     }
 
-    public int getTransactionCount() {
+    public synchronized int getTransactionCount() {
         return transactionCount;
     }
 
+    public synchronized long getLatestEpochSecond() {
+        return headSequence == tailSequence ? Long.MIN_VALUE : epochSeconds[slot(tailSequence - 1)];
+    }
 
-    public static final class WindowEntry {
-        private final String transactionId;
-        private final String cardNumber;
-        private final BigDecimal amount;
-        private final String merchantName;
-        private final String location;
-        private final LocalDateTime timestamp;
-
-        public WindowEntry(String transactionId, String cardNumber, BigDecimal amount,
-                           String merchantName, String location, LocalDateTime timestamp) {
-            this.transactionId = transactionId;
-            this.cardNumber = cardNumber;
-            this.amount = amount;
-            this.merchantName = merchantName;
-            this.location = location;
-            this.timestamp = timestamp;
+
+    private final class CardAggregate {
+        private final SequenceDeque entries = new SequenceDeque();
+        private final SequenceDeque minTimestamps = new SequenceDeque();
+        private final SequenceDeque maxTimestamps = new SequenceDeque();
+        private final Map<String, Integer> merchantCounts = new HashMap<>();
+        private final Map<String, Integer> locationCounts = new HashMap<>();
+
+        private long totalAmount;
+        private int hammeredMerchants;
+        private int roundAmounts;
+        private int nightTransactions;
+        private int nonAscendingSteps;
+        private int nonDescendingSteps;
+
+
+        void add(long sequence) {
+            int slot = slot(sequence);
+            if (!entries.isEmpty()) {
+                adjustSteps(slot(entries.peekLast()), slot, 1);
+            }
+            entries.addLast(sequence);
+
+            while (!minTimestamps.isEmpty() && isAfter(slot(minTimestamps.peekLast()), slot)) {
+                minTimestamps.removeLast();
+            }
+            minTimestamps.addLast(sequence);
+
+            while (!maxTimestamps.isEmpty() && isAfter(slot, slot(maxTimestamps.peekLast()))) {
+                maxTimestamps.removeLast();
+            }
+            maxTimestamps.addLast(sequence);
+
+            totalAmount += amounts[slot];
+            if (merchantCounts.merge(merchantNames[slot], 1, Integer::sum) == MERCHANT_HAMMERING_THRESHOLD) {
+                hammeredMerchants++;
+            }
+            locationCounts.merge(locations[slot], 1, Integer::sum);
+            if (isRoundAmount(slot)) {
+                roundAmounts++;
+            }
+            if (isNightTime(slot)) {
+                nightTransactions++;
+            }
+        }
+
+        void removeOldest() {
+            if (entries.isEmpty()) {
+                return;
+            }
+            long oldest = entries.removeFirst();
+            int slot = slot(oldest);
+
+            if (!entries.isEmpty()) {
+                adjustSteps(slot, slot(entries.peekFirst()), -1);
+            }
+
+            if (minTimestamps.peekFirst() == oldest) {
+                minTimestamps.removeFirst();
+            }
+            if (maxTimestamps.peekFirst() == oldest) {
+                maxTimestamps.removeFirst();
+            }
+
+            totalAmount -= amounts[slot];
+            String merchantName = merchantNames[slot];
+            if (merchantCounts.get(merchantName) == MERCHANT_HAMMERING_THRESHOLD) {
+                hammeredMerchants--;
+            }
+            merchantCounts.computeIfPresent(merchantName, (k, v) -> v > 1 ? v - 1 : null);
+            locationCounts.computeIfPresent(locations[slot], (k, v) -> v > 1 ? v - 1 : null);
+            if (isRoundAmount(slot)) {
+                roundAmounts--;
+            }
+            if (isNightTime(slot)) {
+                nightTransactions--;
+            }
         }
 
+        private void adjustSteps(int earlier, int later, int delta) {
+            int comparison = Long.compare(amounts[later], amounts[earlier]);
+            if (comparison <= 0) {
+                nonAscendingSteps += delta;
+            }
+            if (comparison >= 0) {
+                nonDescendingSteps += delta;
+            }
+        }
 
-        public String getTransactionId() {
-            return transactionId;
+        private boolean isAfter(int slot, int other) {
+            return epochSeconds[slot] > epochSeconds[other]
+                    || (epochSeconds[slot] == epochSeconds[other] && nanos[slot] > nanos[other]);
         }
 
-        public String getCardNumber() {
-            return cardNumber;
+        private boolean isRoundAmount(int slot) {
+            return amounts[slot] % ROUND_AMOUNT_MINOR_UNITS == 0;
         }
 
-        public BigDecimal getAmount() {
-            return amount;
+        private boolean isNightTime(int slot) {
+            int hour = (int) (Math.floorMod(epochSeconds[slot], 86_400L) / 3_600);
+            return hour < 6 || hour > 22;
         }
 
-        public String getMerchantName() {
-            return merchantName;
+
+        boolean isEmpty() {
+            return entries.isEmpty();
         }
 
-        public String getLocation() {
-            return location;
+        int size() {
+            return entries.size();
         }
 
-        public LocalDateTime getTimestamp() {
-            return timestamp;
+        long getTotalAmount() {
+            return totalAmount;
         }
 
-        @Override
-        public String toString() {
-            return String.format("WindowEntry{id=%s, amount=%s, merchant=%s, time=%s}",
-                    transactionId, amount, merchantName, timestamp);
+        long getSpanMinutes() {
+            int first = slot(minTimestamps.peekFirst());
+            int last = slot(maxTimestamps.peekFirst());
+            long seconds = epochSeconds[last] - epochSeconds[first];
+            if (nanos[last] < nanos[first]) {
+                seconds--;
+            }
+            return seconds / 60;
+        }
+
+        Map<String, Integer> getMerchantCounts() {
+            return merchantCounts;
+        }
+
+        Map<String, Integer> getLocationCounts() {
+            return locationCounts;
+        }
+
+        int getHammeredMerchants() {
+            return hammeredMerchants;
+        }
+
+        int getRoundAmounts() {
+            return roundAmounts;
+        }
+
+        int getNightTransactions() {
+            return nightTransactions;
+        }
+
+        boolean hasSequentialAmountPattern() {
+            return entries.size() >= 3 && (nonAscendingSteps == 0 || nonDescendingSteps == 0);
+        }
+    }
+
+    private static final class SequenceDeque {
+        private long[] items = new long[INITIAL_CAPACITY];
+        private int head;
+        private int size;
+
+        void addLast(long value) {
+            if (size == items.length) {
+                long[] grown = new long[items.length * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = items[(head + i) % items.length];
+                }
+                items = grown;
+                head = 0;
+            }
+            items[(head + size) % items.length] = value;
+            size++;
+        }
+
+        long removeFirst() {
+            long value = items[head];
+            head = (head + 1) % items.length;
+            size--;
+            return value;
+        }
+
+        void removeLast() {
+            size--;
+        }
+
+        long peekFirst() {
+            return items[head];
+        }
+
+        long peekLast() {
+            return items[(head + size - 1) % items.length];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
         }
     }
 
@@ -450,25 +761,37 @@ public final class RiskWindow {
 
     public static final class RiskPattern {
         public enum PatternType {
-            HIGH_VELOCITY("Yüksek işlem hızı"),
-            MERCHANT_HAMMERING("Aynı merchant'ta çok işlem"),
-            LOCATION_HOPPING("Hızlı lokasyon değişimi"),
-            ROUND_AMOUNTS("Round tutar pattern'i"),
-            SEQUENTIAL_AMOUNTS("Sıralı tutar pattern'i"),
-            NIGHT_ACTIVITY("Gece aktivitesi"),
-            WEEKEND_BURST("Hafta sonu patlaması");
+            HIGH_VELOCITY("Yüksek işlem hızı", 30),
+            MERCHANT_HAMMERING("Aynı merchant'ta çok işlem", 25),
+            LOCATION_HOPPING("Hızlı lokasyon değişimi", 20),
+            ROUND_AMOUNTS("Round tutar pattern'i", 15),
+            SEQUENTIAL_AMOUNTS("Sıralı tutar pattern'i", 20),
+            NIGHT_ACTIVITY("Gece aktivitesi", 10),
+            WEEKEND_BURST("Hafta sonu patlaması", 0);
 
             private final String description;
+            private final int weight;
 
-            PatternType(String description) {
+            PatternType(String description, int weight) {
                 this.description = description;
+                this.weight = weight;
             }
 
             public String getDescription() {
                 return description;
             }
+
+            public int getWeight() {
+                return weight;
+            }
+
+            public int mask() {
+                return 1 << ordinal();
+            }
         }
 
+        private static final PatternType[] PATTERN_TYPES = PatternType.values();
+
         private final Set<PatternType> detectedPatterns;
         private final int riskScore;
 
@@ -477,6 +800,26 @@ public final class RiskWindow {
             this.riskScore = Math.max(0, Math.min(100, riskScore));
         }
 
+        public static RiskPattern fromMask(int patternMask) {
+            Set<PatternType> detected = EnumSet.noneOf(PatternType.class);
+            for (PatternType type : PATTERN_TYPES) {
+                if ((patternMask & type.mask()) != 0) {
+                    detected.add(type);
+                }
+            }
+            return new RiskPattern(detected, scoreOf(patternMask));
+        }
+
+        public static int scoreOf(int patternMask) {
+            int score = 0;
+            for (PatternType type : PATTERN_TYPES) {
+                if ((patternMask & type.mask()) != 0) {
+                    score += type.getWeight();
+                }
+            }
+            return Math.min(100, score);
+        }
+
         public Set<PatternType> getDetectedPatterns() {
             return EnumSet.copyOf(detectedPatterns);
         }
@@ -485,6 +828,14 @@ public final class RiskWindow {
             return riskScore;
         }
 
+        public int getPatternMask() {
+            int mask = 0;
+            for (PatternType type : detectedPatterns) {
+                mask |= type.mask();
+            }
+            return mask;
+        }
+
         public boolean hasPattern(PatternType pattern) {
             return detectedPatterns.contains(pattern);
         }
@@ -564,8 +915,9 @@ public final class RiskWindow {
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return String.format("RiskWindow{size=%dmin, entries=%d/%d, amount=%s}",
-                windowSizeMinutes, entries.size(), maxEntries, totalAmount);
+                windowSizeMinutes, tailSequence - headSequence, maxEntries,
+                BigDecimal.valueOf(totalAmountMinorUnits, 2));
     }
 }
\ No newline at end of file
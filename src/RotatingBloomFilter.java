@@ -0,0 +1,338 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+
+public final class RotatingBloomFilter {
+
+    private final Duration window;
+    private final Duration generationSpan;
+    private final int generationCount;
+    private final int elementsPerGeneration;
+    private final double generationFalsePositiveRate;
+    private final boolean blocked;
+
+    private volatile Generations state;
+
+    public RotatingBloomFilter(Duration window, int generationCount, int elementsPerGeneration,
+                               double generationFalsePositiveRate) {
+        this(window, generationCount, elementsPerGeneration, generationFalsePositiveRate, false);
+    }
+
+    public RotatingBloomFilter(Duration window, int generationCount, int elementsPerGeneration,
+                               double generationFalsePositiveRate, boolean blocked) {
+        Objects.requireNonNull(window, "Window cannot be null");
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("Window must be positive");
+        }
+        if (generationCount < 2) {
+            throw new IllegalArgumentException("At least two generations are required");
+        }
+
+        this.window = window;
+        this.generationSpan = window.dividedBy(generationCount - 1);
+        if (generationSpan.isZero()) {
+            throw new IllegalArgumentException("Window is too short for " + generationCount + " generations");
+        }
+
+        this.generationCount = generationCount;
+        this.elementsPerGeneration = elementsPerGeneration;
+        this.generationFalsePositiveRate = generationFalsePositiveRate;
+        this.blocked = blocked;
+        this.state = emptyGenerations();
+    }
+
+
+    public static RotatingBloomFilter createForFraudDetection() {
+        return new RotatingBloomFilter(Duration.ofMinutes(60), 4, 100000, 0.001, true);
+    }
+
+
+    public void add(String element, LocalDateTime eventTime) {
+        Objects.requireNonNull(element, "Element cannot be null");
+        Objects.requireNonNull(eventTime, "Event time cannot be null");
+
+        generationForInsert(eventTime).add(element);
+    }
+
+
+    public void add(long key, LocalDateTime eventTime) {
+        Objects.requireNonNull(eventTime, "Event time cannot be null");
+
+        generationForInsert(eventTime).add(key);
+    }
+
+
+    public boolean mightContain(String element, LocalDateTime eventTime) {
+        Objects.requireNonNull(element, "Element cannot be null");
+        Objects.requireNonNull(eventTime, "Event time cannot be null");
+
+        for (BloomFilter generation : generationsAt(eventTime).filters) {
+            if (generation.getElementCount() > 0 && generation.mightContain(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    public boolean mightContain(long key, LocalDateTime eventTime) {
+        Objects.requireNonNull(eventTime, "Event time cannot be null");
+
+        for (BloomFilter generation : generationsAt(eventTime).filters) {
+            if (generation.getElementCount() > 0 && generation.mightContain(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private BloomFilter generationForInsert(LocalDateTime eventTime) {
+        Generations current = generationsAt(eventTime);
+        BloomFilter newest = current.filters[0];
+        if (newest.getElementCount() < elementsPerGeneration) {
+            return newest;
+        }
+        return rotateFull(current, eventTime);
+    }
+
+    private Generations generationsAt(LocalDateTime eventTime) {
+        Generations current = state;
+        if (current.end != null && eventTime.isBefore(current.end)) {
+            return current;
+        }
+        return advanceTo(eventTime);
+    }
+
+    private synchronized Generations advanceTo(LocalDateTime eventTime) {
+        Generations current = state;
+        if (current.end != null && eventTime.isBefore(current.end)) {
+            return current;
+        }
+
+        LocalDateTime start = current.starts[0];
+        if (start == null) {
+            state = current.restarted(eventTime);
+            return state;
+        }
+
+        int steps = 0;
+        while (!eventTime.isBefore(start.plus(generationSpan)) && steps < generationCount) {
+            start = start.plus(generationSpan);
+            current = current.rotated(newGeneration(), start);
+            steps++;
+        }
+
+        if (!eventTime.isBefore(start.plus(generationSpan))) {
+            current = current.restarted(eventTime);
+        }
+        state = current;
+        return current;
+    }
+
+    private synchronized BloomFilter rotateFull(Generations seen, LocalDateTime eventTime) {
+        if (state == seen) {
+            state = seen.rotated(newGeneration(), eventTime);
+        }
+        return state.filters[0];
+    }
+
+
+    private BloomFilter newGeneration() {
+        return blocked
+                ? BloomFilter.createBlocked(elementsPerGeneration, generationFalsePositiveRate)
+                : new BloomFilter(elementsPerGeneration, generationFalsePositiveRate);
+    }
+
+    private Generations emptyGenerations() {
+        BloomFilter[] filters = new BloomFilter[generationCount];
+        for (int i = 0; i < generationCount; i++) {
+            filters[i] = newGeneration();
+        }
+        return new Generations(filters, new LocalDateTime[generationCount], null, 0);
+    }
+
+
+    public synchronized void clear() {
+        state = emptyGenerations();
+    }
+
+
+    public void writeTo(DataOutput out) throws IOException {
+        Generations current = state;
+        out.writeInt(generationCount);
+        out.writeInt(0);
+        out.writeLong(current.rotationCount);
+
+        for (int i = 0; i < generationCount; i++) {
+            int age = (generationCount - i) % generationCount;
+            LocalDateTime start = current.starts[age];
+            out.writeBoolean(start != null);
+            if (start != null) {
+                out.writeLong(start.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(start.getNano());
+            }
+            current.filters[age].writeTo(out);
+        }
+    }
+
+
+    public synchronized void readFrom(DataInput in) throws IOException {
+        int storedGenerations = in.readInt();
+        if (storedGenerations != generationCount) {
+            throw new IOException(String.format("Generation count mismatch: stored %d, expected %d",
+                    storedGenerations, generationCount));
+        }
+
+        int storedCurrent = in.readInt();
+        if (storedCurrent < 0 || storedCurrent >= generationCount) {
+            throw new IOException("Current generation out of range: " + storedCurrent);
+        }
+        long storedRotations = in.readLong();
+
+        BloomFilter[] filters = new BloomFilter[generationCount];
+        LocalDateTime[] starts = new LocalDateTime[generationCount];
+        for (int i = 0; i < generationCount; i++) {
+            int age = Math.floorMod(storedCurrent - i, generationCount);
+            starts[age] = in.readBoolean()
+                    ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC)
+                    : null;
+            filters[age] = newGeneration();
+            filters[age].readFrom(in);
+        }
+
+        state = new Generations(filters, starts,
+                starts[0] != null ? starts[0].plus(generationSpan) : null, storedRotations);
+    }
+
+
+    public double getEstimatedFalsePositiveRate() {
+        return estimatedFalsePositiveRate(state);
+    }
+
+    private static double estimatedFalsePositiveRate(Generations current) {
+        double trueNegative = 1.0;
+        for (BloomFilter generation : current.filters) {
+            trueNegative *= 1.0 - generation.getEstimatedFalsePositiveRate();
+        }
+        return 1.0 - trueNegative;
+    }
+
+
+    public double getMemoryUtilization() {
+        long bitsSet = 0;
+        long totalBits = 0;
+        for (BloomFilter generation : state.filters) {
+            bitsSet += generation.getBitsSet();
+            totalBits += generation.getBitArraySize();
+        }
+        return (double) bitsSet / totalBits * 100.0;
+    }
+
+
+    public List<BloomFilter.BloomFilterStatistics> getGenerationStatistics() {
+        Generations current = state;
+        List<BloomFilter.BloomFilterStatistics> statistics = new ArrayList<>(generationCount);
+        for (BloomFilter generation : current.filters) {
+            statistics.add(generation.getStatistics());
+        }
+        return statistics;
+    }
+
+
+    public BloomFilter.BloomFilterStatistics getStatistics() {
+        Generations current = state;
+        int bitArraySize = 0;
+        int elementCount = 0;
+        int bitsSet = 0;
+        for (BloomFilter generation : current.filters) {
+            bitArraySize += generation.getBitArraySize();
+            elementCount += generation.getElementCount();
+            bitsSet += generation.getBitsSet();
+        }
+
+        return new BloomFilter.BloomFilterStatistics(
+                bitArraySize,
+                current.filters[0].getHashFunctionCount(),
+                elementCount,
+                bitsSet,
+                (double) bitsSet / bitArraySize * 100.0,
+                estimatedFalsePositiveRate(current)
+        );
+    }
+
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public Duration getGenerationSpan() {
+        return generationSpan;
+    }
+
+    public int getGenerationCount() {
+        return generationCount;
+    }
+
+    public int getElementsPerGeneration() {
+        return elementsPerGeneration;
+    }
+
+    public double getGenerationFalsePositiveRate() {
+        return generationFalsePositiveRate;
+    }
+
+    public boolean isBlocked() {
+        return blocked;
+    }
+
+    public long getRotationCount() {
+        return state.rotationCount;
+    }
+
+
+    private final class Generations {
+        private final BloomFilter[] filters;
+        private final LocalDateTime[] starts;
+        private final LocalDateTime end;
+        private final long rotationCount;
+
+        Generations(BloomFilter[] filters, LocalDateTime[] starts, LocalDateTime end, long rotationCount) {
+            this.filters = filters;
+            this.starts = starts;
+            this.end = end;
+            this.rotationCount = rotationCount;
+        }
+
+        Generations rotated(BloomFilter newest, LocalDateTime start) {
+            BloomFilter[] nextFilters = new BloomFilter[filters.length];
+            LocalDateTime[] nextStarts = new LocalDateTime[starts.length];
+            nextFilters[0] = newest;
+            nextStarts[0] = start;
+            System.arraycopy(filters, 0, nextFilters, 1, filters.length - 1);
+            System.arraycopy(starts, 0, nextStarts, 1, starts.length - 1);
+            return new Generations(nextFilters, nextStarts, start.plus(generationSpan), rotationCount + 1);
+        }
+
+        Generations restarted(LocalDateTime start) {
+            LocalDateTime[] nextStarts = starts.clone();
+            nextStarts[0] = start;
+            return new Generations(filters, nextStarts, start.plus(generationSpan), rotationCount);
+        }
+    }
+
+    @Override
+    public String toString() {
+        Generations current = state;
+        return String.format("RotatingBloomFilter{window=%s, generations=%d, perGeneration=%d, rotations=%d, FPR=%.3f%%}",
+                window, generationCount, elementsPerGeneration, current.rotationCount,
+                estimatedFalsePositiveRate(current) * 100);
+    }
+}
@@ -0,0 +1,770 @@
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+
+final class RuleCompiler {
+
+    private final PredicateNetwork network;
+    private final Set<Object> infallible = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<ASTNode, AdaptiveChain> chains = new IdentityHashMap<>();
+
+    private RuleCompiler(PredicateNetwork network) {
+        this.network = network;
+    }
+
+
+    interface CompiledCondition {
+        boolean test(TransactionContext context, PredicateNetwork.Frame frame) throws RuleEvaluationException;
+
+        default boolean canFail() {
+            return true;
+        }
+    }
+
+    interface CompiledValue {
+        Object get(TransactionContext context, PredicateNetwork.Frame frame) throws RuleEvaluationException;
+    }
+
+
+    enum FieldSlot {
+        AMOUNT("amount", BigDecimal.class, false, TransactionContext::getAmount),
+        CURRENCY("currency", String.class, false, TransactionContext::getCurrency),
+        MCC("mcc", TransactionContext.MccCategory.class, false, TransactionContext::getMccCategory),
+        COUNTRY("country", String.class, true, c -> c.getMerchantCountry().orElse(null)),
+        CITY("city", String.class, true, c -> c.getMerchantCity().orElse(null)),
+        HOUR("hour", Integer.class, false, TransactionContext::getHourOfDay),
+        DAY("day", DayOfWeek.class, false, TransactionContext::getDayOfWeek),
+        CUSTOMER_AGE("customer_age", Integer.class, true, c -> c.getCustomerAge().orElse(null)),
+        CUSTOMER_SEGMENT("customer_segment", String.class, true, c -> c.getCustomerSegment().orElse(null)),
+        ACCOUNT_BALANCE("account_balance", BigDecimal.class, true, c -> c.getAccountBalance().orElse(null)),
+        MONTHLY_SPENDING("monthly_spending", BigDecimal.class, true, c -> c.getMonthlySpending().orElse(null)),
+        CHANNEL("channel", String.class, true, c -> c.getChannel().orElse(null)),
+        TRANSACTION_TYPE("transaction_type", TransactionContext.TransactionType.class, false,
+                TransactionContext::getTransactionType);
+
+        private static final Map<String, FieldSlot> BY_NAME = new HashMap<>();
+
+        static {
+            for (FieldSlot slot : values()) {
+                BY_NAME.put(slot.fieldName, slot);
+            }
+        }
+
+        private final String fieldName;
+        private final Class<?> valueType;
+        private final boolean nullable;
+        private final Function<TransactionContext, Object> accessor;
+
+        FieldSlot(String fieldName, Class<?> valueType, boolean nullable,
+                  Function<TransactionContext, Object> accessor) {
+            this.fieldName = fieldName;
+            this.valueType = valueType;
+            this.nullable = nullable;
+            this.accessor = accessor;
+        }
+
+        static FieldSlot resolve(String fieldName) {
+            return BY_NAME.get(fieldName.toLowerCase());
+        }
+
+        Object read(TransactionContext context) {
+            return accessor.apply(context);
+        }
+
+        String getFieldName() {
+            return fieldName;
+        }
+
+        Class<?> getValueType() {
+            return valueType;
+        }
+
+        boolean isNullable() {
+            return nullable;
+        }
+    }
+
+
+    private static final class ConstantCondition implements CompiledCondition {
+        private final boolean value;
+
+        ConstantCondition(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(TransactionContext context, PredicateNetwork.Frame frame) {
+            return value;
+        }
+
+        @Override
+        public boolean canFail() {
+            return false;
+        }
+    }
+
+    private static final class ConstantValue implements CompiledValue {
+        private final Object value;
+
+        ConstantValue(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object get(TransactionContext context, PredicateNetwork.Frame frame) {
+            return value;
+        }
+    }
+
+    private static final class FieldValue implements CompiledValue {
+        private final FieldSlot slot;
+
+        FieldValue(FieldSlot slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public Object get(TransactionContext context, PredicateNetwork.Frame frame) {
+            return slot.read(context);
+        }
+    }
+
+
+    private static final CompiledCondition ALWAYS_TRUE = new ConstantCondition(true);
+    private static final CompiledCondition ALWAYS_FALSE = new ConstantCondition(false);
+
+
+    static CompiledRule compile(ASTNode ast) {
+        return compile(ast, null);
+    }
+
+    static CompiledRule compile(ASTNode ast, PredicateNetwork network) {
+        Objects.requireNonNull(ast, "AST cannot be null");
+        RuleCompiler compiler = new RuleCompiler(network);
+        CompiledCondition condition = compiler.root(ast);
+        return new CompiledRule(ast, condition, ColumnarRuleCompiler.compile(ast), compiler.chains);
+    }
+
+
+    private CompiledCondition root(ASTNode ast) {
+        if (producesBoolean(ast)) {
+            return condition(ast);
+        }
+
+
+        CompiledValue value = value(ast);
+        if (value instanceof ConstantValue || value instanceof FieldValue) {
+            return ALWAYS_FALSE;
+        }
+        return (context, frame) -> {
+            value.get(context, frame);
+            return false;
+        };
+    }
+
+
+    static boolean producesBoolean(ASTNode node) {
+        return node instanceof ASTNode.AndNode
+                || node instanceof ASTNode.OrNode
+                || node instanceof ASTNode.NotNode
+                || node instanceof ASTNode.EqualsNode
+                || node instanceof ASTNode.GreaterThanNode
+                || node instanceof ASTNode.InNode
+                || node instanceof ASTNode.BetweenNode;
+    }
+
+
+    private CompiledCondition condition(ASTNode node) {
+        if (node instanceof ASTNode.AndNode) {
+            return chain(node, true);
+        }
+        if (node instanceof ASTNode.OrNode) {
+            return chain(node, false);
+        }
+        if (node instanceof ASTNode.NotNode) {
+            CompiledCondition operand = truth(((ASTNode.NotNode) node).getOperand());
+            if (operand instanceof ConstantCondition) {
+                return constant(!((ConstantCondition) operand).value);
+            }
+            CompiledCondition not = (context, frame) -> !operand.test(context, frame);
+            return isInfallible(operand) ? infallible(not) : not;
+        }
+        if (node instanceof ASTNode.EqualsNode) {
+            ASTNode.EqualsNode equals = (ASTNode.EqualsNode) node;
+            return shared(node, equalsCondition(value(equals.getLeft()), value(equals.getRight())));
+        }
+        if (node instanceof ASTNode.GreaterThanNode) {
+            ASTNode.GreaterThanNode greaterThan = (ASTNode.GreaterThanNode) node;
+            return shared(node, greaterThanCondition(value(greaterThan.getLeft()), value(greaterThan.getRight())));
+        }
+        if (node instanceof ASTNode.InNode) {
+            ASTNode.InNode in = (ASTNode.InNode) node;
+            if (in.getConstantSet() != null) {
+                return shared(node, setCondition(value(in.getLeft()), in.getConstantSet()));
+            }
+            return shared(node, inCondition(value(in.getLeft()), value(in.getRight())));
+        }
+        if (node instanceof ASTNode.BetweenNode) {
+            return shared(node, betweenCondition((ASTNode.BetweenNode) node));
+        }
+
+        return truth(node);
+    }
+
+
+    private CompiledCondition shared(ASTNode comparison, CompiledCondition condition) {
+        if (network == null || condition instanceof ConstantCondition) {
+            return condition;
+        }
+        return network.share(comparison.getNodeType() + ":" + comparison.toExpressionString(),
+                condition, !isInfallible(condition));
+    }
+
+
+    private <T> T infallible(T compiled) {
+        infallible.add(compiled);
+        return compiled;
+    }
+
+    private boolean isInfallible(Object compiled) {
+        if (compiled instanceof CompiledCondition && !((CompiledCondition) compiled).canFail()) {
+            return true;
+        }
+        return compiled instanceof ConstantValue || compiled instanceof FieldValue || infallible.contains(compiled);
+    }
+
+
+    private CompiledCondition truth(ASTNode node) {
+        if (producesBoolean(node)) {
+            return condition(node);
+        }
+
+        CompiledValue value = value(node);
+        if (value instanceof ConstantValue) {
+            return constant(ASTNode.isTrue(((ConstantValue) value).value));
+        }
+        CompiledCondition truth = (context, frame) -> ASTNode.isTrue(value.get(context, frame));
+        return isInfallible(value) ? infallible(truth) : truth;
+    }
+
+
+    private CompiledCondition chain(ASTNode node, boolean conjunction) {
+        List<ASTNode> operands = new ArrayList<>();
+        flatten(node, conjunction, operands);
+
+        List<ASTNode> termNodes = new ArrayList<>();
+        List<CompiledCondition> terms = new ArrayList<>();
+        boolean allInfallible = true;
+        for (ASTNode operand : operands) {
+            CompiledCondition term = truth(operand);
+            if (term instanceof ConstantCondition && ((ConstantCondition) term).value == conjunction) {
+                continue;
+            }
+
+            termNodes.add(operand);
+            terms.add(term);
+            allInfallible &= isInfallible(term);
+            if (term instanceof ConstantCondition) {
+                break;
+            }
+        }
+
+        if (terms.isEmpty()) {
+            return constant(conjunction);
+        }
+        if (allInfallible && terms.get(terms.size() - 1) instanceof ConstantCondition) {
+            return constant(!conjunction);
+        }
+        if (terms.size() == 1) {
+            return terms.get(0);
+        }
+
+        boolean[] reorderable = new boolean[terms.size()];
+        for (int i = 0; i < reorderable.length; i++) {
+            reorderable[i] = isInfallible(terms.get(i));
+        }
+
+        AdaptiveChain chain = new AdaptiveChain(conjunction,
+                terms.toArray(new CompiledCondition[0]), termNodes.toArray(new ASTNode[0]), reorderable);
+        chains.put(node, chain);
+        return chain;
+    }
+
+    private static void flatten(ASTNode node, boolean conjunction, List<ASTNode> operands) {
+        if (conjunction && node instanceof ASTNode.AndNode) {
+            flatten(((ASTNode.AndNode) node).getLeft(), true, operands);
+            flatten(((ASTNode.AndNode) node).getRight(), true, operands);
+        } else if (!conjunction && node instanceof ASTNode.OrNode) {
+            flatten(((ASTNode.OrNode) node).getLeft(), false, operands);
+            flatten(((ASTNode.OrNode) node).getRight(), false, operands);
+        } else {
+            operands.add(node);
+        }
+    }
+
+
+    private CompiledValue value(ASTNode node) {
+        if (node instanceof ASTNode.NumberNode) {
+            return new ConstantValue(((ASTNode.NumberNode) node).getValue());
+        }
+        if (node instanceof ASTNode.StringNode) {
+            return new ConstantValue(((ASTNode.StringNode) node).getValue());
+        }
+        if (node instanceof ASTNode.EnumNode) {
+            return new ConstantValue(((ASTNode.EnumNode) node).getEnumValue());
+        }
+        if (node instanceof ASTNode.FieldNode) {
+            String fieldName = ((ASTNode.FieldNode) node).getFieldName();
+            FieldSlot slot = FieldSlot.resolve(fieldName);
+            if (slot == null) {
+                return (context, frame) -> {
+                    throw new RuleEvaluationException("Unknown field: " + fieldName);
+                };
+            }
+            return new FieldValue(slot);
+        }
+        if (node instanceof ASTNode.ListNode) {
+            return listValue(((ASTNode.ListNode) node).getElements());
+        }
+        if (producesBoolean(node)) {
+            CompiledCondition condition = condition(node);
+            if (condition instanceof ConstantCondition) {
+                return new ConstantValue(((ConstantCondition) condition).value);
+            }
+            CompiledValue value = condition::test;
+            return isInfallible(condition) ? infallible(value) : value;
+        }
+
+        return (context, frame) -> node.evaluate(context);
+    }
+
+    private CompiledValue listValue(List<ASTNode> elements) {
+        CompiledValue[] values = new CompiledValue[elements.size()];
+        boolean allConstant = true;
+        boolean allInfallible = true;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = value(elements.get(i));
+            allConstant &= values[i] instanceof ConstantValue;
+            allInfallible &= isInfallible(values[i]);
+        }
+
+        if (allConstant) {
+            List<Object> folded = new ArrayList<>(values.length);
+            for (CompiledValue value : values) {
+                folded.add(((ConstantValue) value).value);
+            }
+            return new ConstantValue(Collections.unmodifiableList(folded));
+        }
+
+        CompiledValue list = (context, frame) -> {
+            List<Object> result = new ArrayList<>(values.length);
+            for (CompiledValue value : values) {
+                result.add(value.get(context, frame));
+            }
+            return result;
+        };
+        return allInfallible ? infallible(list) : list;
+    }
+
+
+    private CompiledCondition equalsCondition(CompiledValue left, CompiledValue right) {
+        if (left instanceof ConstantValue && right instanceof ConstantValue) {
+            return constant(Objects.equals(((ConstantValue) left).value, ((ConstantValue) right).value));
+        }
+        if (left instanceof FieldValue && right instanceof ConstantValue) {
+            return fieldEquals(((FieldValue) left).slot, ((ConstantValue) right).value);
+        }
+        if (left instanceof ConstantValue && right instanceof FieldValue) {
+            return fieldEquals(((FieldValue) right).slot, ((ConstantValue) left).value);
+        }
+
+        CompiledCondition equals = (context, frame) -> Objects.equals(left.get(context, frame), right.get(context, frame));
+        return isInfallible(left) && isInfallible(right) ? infallible(equals) : equals;
+    }
+
+    private CompiledCondition fieldEquals(FieldSlot slot, Object constant) {
+        if (constant == null) {
+            return slot.isNullable() ? infallible((context, frame) -> slot.read(context) == null) : ALWAYS_FALSE;
+        }
+        if (!slot.getValueType().isInstance(constant)) {
+            return ALWAYS_FALSE;
+        }
+        if (constant instanceof Enum) {
+            return infallible((context, frame) -> slot.read(context) == constant);
+        }
+        return infallible((context, frame) -> constant.equals(slot.read(context)));
+    }
+
+
+    private CompiledCondition greaterThanCondition(CompiledValue left, CompiledValue right) {
+        if (left instanceof ConstantValue && right instanceof ConstantValue) {
+            Object leftValue = ((ConstantValue) left).value;
+            Object rightValue = ((ConstantValue) right).value;
+            try {
+                return constant(compareGreater(leftValue, rightValue));
+            } catch (RuleEvaluationException e) {
+                return (context, frame) -> compareGreater(leftValue, rightValue);
+            }
+        }
+        if (left instanceof FieldValue && right instanceof ConstantValue) {
+            CompiledCondition typed = fieldGreaterThan(((FieldValue) left).slot, ((ConstantValue) right).value, false);
+            if (typed != null) {
+                return typed;
+            }
+        }
+        if (left instanceof ConstantValue && right instanceof FieldValue) {
+            CompiledCondition typed = fieldGreaterThan(((FieldValue) right).slot, ((ConstantValue) left).value, true);
+            if (typed != null) {
+                return typed;
+            }
+        }
+
+        return (context, frame) -> compareGreater(left.get(context, frame), right.get(context, frame));
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompiledCondition fieldGreaterThan(FieldSlot slot, Object constant, boolean constantOnLeft) {
+        if (!(constant instanceof Comparable) || !slot.getValueType().isInstance(constant)) {
+            return null;
+        }
+
+        if (constant instanceof BigDecimal) {
+            BigDecimal threshold = (BigDecimal) constant;
+            if (!slot.isNullable()) {
+                return infallible(constantOnLeft
+                        ? (CompiledCondition) (context, frame) -> threshold.compareTo((BigDecimal) slot.read(context)) > 0
+                        : (CompiledCondition) (context, frame) -> ((BigDecimal) slot.read(context)).compareTo(threshold) > 0);
+            }
+            return (context, frame) -> {
+                BigDecimal value = (BigDecimal) slot.read(context);
+                if (value == null) {
+                    throw new RuleEvaluationException("Operands must be comparable for > operation");
+                }
+                return constantOnLeft ? threshold.compareTo(value) > 0 : value.compareTo(threshold) > 0;
+            };
+        }
+
+        Comparable<Object> threshold = (Comparable<Object>) constant;
+        CompiledCondition compare = (context, frame) -> {
+            Object value = slot.read(context);
+            if (value == null) {
+                throw new RuleEvaluationException("Operands must be comparable for > operation");
+            }
+            return constantOnLeft
+                    ? threshold.compareTo(value) > 0
+                    : ((Comparable<Object>) value).compareTo(constant) > 0;
+        };
+        return slot.isNullable() ? compare : infallible(compare);
+    }
+
+    @SuppressWarnings("unchecked")
+    static boolean compareGreater(Object leftValue, Object rightValue) throws RuleEvaluationException {
+        if (leftValue instanceof Comparable && rightValue instanceof Comparable) {
+            try {
+                return ((Comparable<Object>) leftValue).compareTo(rightValue) > 0;
+            } catch (ClassCastException e) {
+                throw new RuleEvaluationException("Cannot compare " + leftValue.getClass().getSimpleName() +
+                        " with " + rightValue.getClass().getSimpleName(), e);
+            }
+        }
+
+        throw new RuleEvaluationException("Operands must be comparable for > operation");
+    }
+
+
+    private CompiledCondition inCondition(CompiledValue left, CompiledValue right) {
+        if (right instanceof ConstantValue && ((ConstantValue) right).value instanceof Collection) {
+            Collection<?> candidates = (Collection<?>) ((ConstantValue) right).value;
+
+            if (left instanceof ConstantValue) {
+                return constant(candidates.contains(((ConstantValue) left).value));
+            }
+            if (left instanceof FieldValue) {
+                FieldSlot slot = ((FieldValue) left).slot;
+                if (candidates.stream().noneMatch(slot.getValueType()::isInstance)) {
+                    return ALWAYS_FALSE;
+                }
+                return infallible((CompiledCondition) (context, frame) -> candidates.contains(slot.read(context)));
+            }
+            CompiledCondition in = (context, frame) -> candidates.contains(left.get(context, frame));
+            return isInfallible(left) ? infallible(in) : in;
+        }
+
+        return (context, frame) -> contains(left.get(context, frame), right.get(context, frame));
+    }
+
+    private CompiledCondition setCondition(CompiledValue left, ConstantSet set) {
+        if (left instanceof ConstantValue) {
+            return constant(set.contains(((ConstantValue) left).value));
+        }
+        if (left instanceof FieldValue) {
+            FieldSlot slot = ((FieldValue) left).slot;
+            if (!set.mayContain(slot.getValueType())) {
+                return ALWAYS_FALSE;
+            }
+            return infallible((CompiledCondition) (context, frame) -> set.contains(slot.read(context)));
+        }
+        CompiledCondition in = (context, frame) -> set.contains(left.get(context, frame));
+        return isInfallible(left) ? infallible(in) : in;
+    }
+
+    private static boolean contains(Object leftValue, Object rightValue) throws RuleEvaluationException {
+        if (rightValue instanceof Collection) {
+            return ((Collection<?>) rightValue).contains(leftValue);
+        }
+
+        if (rightValue instanceof Object[]) {
+            return Arrays.asList((Object[]) rightValue).contains(leftValue);
+        }
+
+        throw new RuleEvaluationException("Right operand of 'in' must be a collection or array");
+    }
+
+
+    private CompiledCondition betweenCondition(ASTNode.BetweenNode between) {
+        CompiledValue candidate = value(between.getValue());
+
+        if (between.hasConstantBounds()) {
+            if (candidate instanceof ConstantValue) {
+                Object constant = ((ConstantValue) candidate).value;
+                try {
+                    return constant(between.isWithinBounds(constant));
+                } catch (RuleEvaluationException e) {
+                    return (context, frame) -> between.isWithinBounds(constant);
+                }
+            }
+            CompiledCondition within = (context, frame) -> between.isWithinBounds(candidate.get(context, frame));
+            if (candidate instanceof FieldValue) {
+                FieldSlot slot = ((FieldValue) candidate).slot;
+                if (!slot.isNullable() && Number.class.isAssignableFrom(slot.getValueType())) {
+                    return infallible(within);
+                }
+            }
+            return within;
+        }
+
+        CompiledValue lower = value(between.getLower());
+        CompiledValue upper = value(between.getUpper());
+        return (context, frame) -> ASTNode.BetweenNode.isBetween(candidate.get(context, frame),
+                lower.get(context, frame), upper.get(context, frame));
+    }
+
+
+    private static CompiledCondition constant(boolean value) {
+        return value ? ALWAYS_TRUE : ALWAYS_FALSE;
+    }
+
+
+    static final class AdaptiveChain implements CompiledCondition {
+        private static final int SAMPLE_MASK = 15;
+        private static final int SAMPLES_PER_REORDER = 512;
+
+        private final boolean conjunction;
+        private final CompiledCondition[] terms;
+        private final ASTNode[] termNodes;
+        private final boolean[] reorderable;
+        private final boolean adaptive;
+        private final boolean canFail;
+
+        private final long[] sampledEvaluations;
+        private final long[] sampledDecisions;
+        private final long[] sampledNanos;
+        private int samples;
+        private volatile int[] order;
+        private volatile int reorderCount;
+
+        AdaptiveChain(boolean conjunction, CompiledCondition[] terms, ASTNode[] termNodes, boolean[] reorderable) {
+            this.conjunction = conjunction;
+            this.terms = terms;
+            this.termNodes = termNodes;
+            this.reorderable = reorderable;
+            this.sampledEvaluations = new long[terms.length];
+            this.sampledDecisions = new long[terms.length];
+            this.sampledNanos = new long[terms.length];
+
+            int[] initial = new int[terms.length];
+            boolean anyFallible = false;
+            boolean hasReorderableRun = false;
+            for (int i = 0; i < terms.length; i++) {
+                initial[i] = i;
+                anyFallible |= !reorderable[i];
+                hasReorderableRun |= i > 0 && reorderable[i] && reorderable[i - 1];
+            }
+            this.order = initial;
+            this.canFail = anyFallible;
+            this.adaptive = hasReorderableRun;
+        }
+
+        @Override
+        public boolean test(TransactionContext context, PredicateNetwork.Frame frame) throws RuleEvaluationException {
+            int[] current = order;
+            if (!adaptive || (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) != 0) {
+                for (int index : current) {
+                    if (terms[index].test(context, frame) != conjunction) {
+                        return !conjunction;
+                    }
+                }
+                return conjunction;
+            }
+            return sampledTest(current, context, frame);
+        }
+
+        @Override
+        public boolean canFail() {
+            return canFail;
+        }
+
+        private boolean sampledTest(int[] current, TransactionContext context, PredicateNetwork.Frame frame)
+                throws RuleEvaluationException {
+            long[] elapsed = new long[current.length];
+            int evaluated = 0;
+            boolean decided = false;
+            try {
+                for (int index : current) {
+                    long start = System.nanoTime();
+                    boolean result = terms[index].test(context, frame);
+                    elapsed[evaluated++] = System.nanoTime() - start;
+
+                    if (result != conjunction) {
+                        decided = true;
+                        return !conjunction;
+                    }
+                }
+                return conjunction;
+            } finally {
+                recordSample(current, elapsed, evaluated, decided);
+            }
+        }
+
+        private synchronized void recordSample(int[] current, long[] elapsed, int evaluated, boolean decided) {
+            for (int i = 0; i < evaluated; i++) {
+                sampledNanos[current[i]] += elapsed[i];
+                sampledEvaluations[current[i]]++;
+            }
+            if (decided) {
+                sampledDecisions[current[evaluated - 1]]++;
+            }
+            if (++samples >= SAMPLES_PER_REORDER) {
+                reorder();
+            }
+        }
+
+
+        synchronized void reorder() {
+            samples = 0;
+
+            double totalCost = 0;
+            int measured = 0;
+            for (int i = 0; i < terms.length; i++) {
+                if (sampledEvaluations[i] > 0) {
+                    totalCost += sampledNanos[i] / (double) sampledEvaluations[i];
+                    measured++;
+                }
+            }
+            double defaultCost = measured == 0 ? 1.0 : totalCost / measured;
+
+            double[] rank = new double[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                double cost = sampledEvaluations[i] == 0
+                        ? defaultCost : Math.max(1.0, sampledNanos[i] / (double) sampledEvaluations[i]);
+                double decisiveness = (sampledDecisions[i] + 1.0) / (sampledEvaluations[i] + 2.0);
+                rank[i] = cost / decisiveness;
+
+                sampledEvaluations[i] >>= 1;
+                sampledDecisions[i] >>= 1;
+                sampledNanos[i] >>= 1;
+            }
+
+            int[] current = order;
+            Integer[] next = new Integer[current.length];
+            for (int i = 0; i < current.length; i++) {
+                next[i] = current[i];
+            }
+
+            int start = 0;
+            while (start < next.length) {
+                if (!reorderable[next[start]]) {
+                    start++;
+                    continue;
+                }
+                int end = start;
+                while (end < next.length && reorderable[next[end]]) {
+                    end++;
+                }
+                Arrays.sort(next, start, end, Comparator.comparingDouble(index -> rank[index]));
+                start = end;
+            }
+
+            int[] reordered = new int[next.length];
+            for (int i = 0; i < next.length; i++) {
+                reordered[i] = next[i];
+            }
+            if (!Arrays.equals(reordered, current)) {
+                order = reordered;
+                reorderCount++;
+            }
+        }
+
+        String describe(Function<ASTNode, String> renderer) {
+            StringJoiner joiner = new StringJoiner(conjunction ? " AND " : " OR ", "(", ")");
+            for (int index : order) {
+                joiner.add(renderer.apply(termNodes[index]));
+            }
+            return joiner.toString();
+        }
+
+        int getReorderCount() {
+            return reorderCount;
+        }
+    }
+
+
+    static final class CompiledRule {
+        private final ASTNode ast;
+        private final CompiledCondition condition;
+        private final ColumnarRuleCompiler.VectorCondition vectorCondition;
+        private final Map<ASTNode, AdaptiveChain> chains;
+
+        private CompiledRule(ASTNode ast, CompiledCondition condition,
+                             ColumnarRuleCompiler.VectorCondition vectorCondition, Map<ASTNode, AdaptiveChain> chains) {
+            this.ast = ast;
+            this.condition = condition;
+            this.vectorCondition = vectorCondition;
+            this.chains = chains;
+        }
+
+        CompiledCondition getCondition() {
+            return condition;
+        }
+
+        ColumnarRuleCompiler.VectorCondition getVectorCondition() {
+            return vectorCondition;
+        }
+
+        String getEvaluationOrder() {
+            return render(ast);
+        }
+
+        int getReorderCount() {
+            int count = 0;
+            for (AdaptiveChain chain : chains.values()) {
+                count += chain.getReorderCount();
+            }
+            return count;
+        }
+
+        private String render(ASTNode node) {
+            AdaptiveChain chain = chains.get(node);
+            if (chain != null) {
+                return chain.describe(this::render);
+            }
+            if (node instanceof ASTNode.NotNode) {
+                return "NOT " + render(((ASTNode.NotNode) node).getOperand());
+            }
+            return node.toExpressionString();
+        }
+    }
+}
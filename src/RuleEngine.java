@@ -1,7 +1,6 @@
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
@@ -9,54 +8,98 @@ import java.util.stream.Collectors;
 public final class RuleEngine {
 
     private final RuleParser parser;
-    private final Map<String, ParsedRule> ruleCache;
-    private final Map<Rule.RuleType, List<ParsedRule>> rulesByType;
     private final RuleEngineStatistics statistics;
+    private final Object updateLock = new Object();
+    private volatile RuleSet ruleSet;
+    private volatile EvaluationMode evaluationMode = EvaluationMode.COMPILED;
 
 
     private final AtomicLong totalEvaluations = new AtomicLong(0);
     private final AtomicLong totalParsingTime = new AtomicLong(0);
     private final AtomicLong totalEvaluationTime = new AtomicLong(0);
 
+    private static final Rule.RuleType[] PRIORITY_ORDER = {
+            Rule.RuleType.LIMIT_CHECK,
+            Rule.RuleType.FRAUD_CHECK,
+            Rule.RuleType.GEOGRAPHIC,
+            Rule.RuleType.TIME_BASED,
+            Rule.RuleType.MCC_ROUTING,
+            Rule.RuleType.REWARD,
+            Rule.RuleType.DISCOUNT,
+            Rule.RuleType.ALERT
+    };
+
     public RuleEngine() {
         this.parser = new RuleParser();
-        this.ruleCache = new ConcurrentHashMap<>();
-        this.rulesByType = new EnumMap<>(Rule.RuleType.class);
         this.statistics = new RuleEngineStatistics();
-
-
-        for (Rule.RuleType type : Rule.RuleType.values()) {
-            rulesByType.put(type, new ArrayList<>());
-        }
+        this.ruleSet = RuleSet.empty();
     }
 
 
     public void addRule(String ruleId, String dslExpression, Rule.RuleType ruleType,
                         int priority, String description) throws RuleSyntaxException {
-        Objects.requireNonNull(ruleId, "Rule ID cannot be null");
-        Objects.requireNonNull(dslExpression, "DSL expression cannot be null");
-        Objects.requireNonNull(ruleType, "Rule type cannot be null");
+        applyBatch(newBatch().addRule(ruleId, dslExpression, ruleType, priority, description));
+    }
 
-        if (ruleCache.containsKey(ruleId)) {
-            throw new IllegalArgumentException("Rule with ID '" + ruleId + "' already exists");
-        }
 
-        long startTime = System.nanoTime();
-        try {
-            ASTNode ast = parser.parse(dslExpression);
-            ParsedRule parsedRule = new ParsedRule(ruleId, dslExpression, ast, ruleType,
-                    priority, description, true);
+    public RuleBatch newBatch() {
+        return new RuleBatch();
+    }
 
-            ruleCache.put(ruleId, parsedRule);
-            rulesByType.get(ruleType).add(parsedRule);
 
+    public long applyBatch(RuleBatch batch) {
+        Objects.requireNonNull(batch, "Rule batch cannot be null");
+        if (batch.getEngine() != this) {
+            throw new IllegalArgumentException("Rule batch was created by a different engine");
+        }
 
-            rulesByType.get(ruleType).sort((a, b) -> Integer.compare(b.getPriority(), a.getPriority()));
+        synchronized (updateLock) {
+            RuleSet.Builder builder = ruleSet.toBuilder();
+            int added = 0;
+            int removed = 0;
+
+            for (RuleChange change : batch.changes) {
+                switch (change.kind) {
+                    case CLEAR:
+                        removed += builder.getRules().size();
+                        builder.clear();
+                        break;
+
+                    case ADD:
+                        if (builder.contains(change.ruleId)) {
+                            throw new IllegalArgumentException("Rule with ID '" + change.ruleId + "' already exists");
+                        }
+                        builder.put(new ParsedRule(change.ruleId, change.dslExpression, change.ast,
+                                RuleCompiler.compile(change.ast, builder.getPredicateNetwork()),
+                                change.ruleType, change.priority, change.description, true));
+                        added++;
+                        break;
+
+                    case REMOVE:
+                        if (builder.remove(change.ruleId) != null) {
+                            removed++;
+                        }
+                        break;
+
+                    case TOGGLE:
+                        ParsedRule rule = builder.get(change.ruleId);
+                        if (rule != null) {
+                            builder.put(rule.withActive(change.active));
+                        }
+                        break;
+                }
+            }
 
-            statistics.incrementRulesAdded();
+            RuleSet next = builder.build();
+            ruleSet = next;
 
-        } finally {
-            totalParsingTime.addAndGet(System.nanoTime() - startTime);
+            for (int i = 0; i < added; i++) {
+                statistics.incrementRulesAdded();
+            }
+            for (int i = 0; i < removed; i++) {
+                statistics.incrementRulesRemoved();
+            }
+            return next.getVersion();
         }
     }
 
@@ -65,7 +108,18 @@ public final class RuleEngine {
         Objects.requireNonNull(ruleType, "Rule type cannot be null");
         Objects.requireNonNull(context, "Transaction context cannot be null");
 
-        List<ParsedRule> rules = rulesByType.get(ruleType);
+        RuleSet snapshot = ruleSet;
+        PredicateNetwork.Frame frame = snapshot.getPredicateNetwork().newFrame();
+        try {
+            return evaluateRules(snapshot, ruleType, context, frame);
+        } finally {
+            statistics.recordPredicateUsage(frame.getEvaluations(), frame.getReuses());
+        }
+    }
+
+    private List<RuleResult> evaluateRules(RuleSet snapshot, Rule.RuleType ruleType, TransactionContext context,
+                                           PredicateNetwork.Frame frame) {
+        List<ParsedRule> rules = snapshot.getRules(ruleType);
         List<RuleResult> results = new ArrayList<>();
 
         long startTime = System.nanoTime();
@@ -76,7 +130,7 @@ public final class RuleEngine {
                 }
 
                 try {
-                    RuleResult result = evaluateRule(rule, context);
+                    RuleResult result = evaluateRule(rule, context, frame, snapshot.getVersion());
                     results.add(result);
 
                     if (result.isApplied()) {
@@ -84,7 +138,8 @@ public final class RuleEngine {
                     }
 
                 } catch (RuleEvaluationException e) {
-                    RuleResult errorResult = RuleResult.error(rule.getRuleId(), e.getMessage());
+                    RuleResult errorResult = RuleResult.error(rule.getRuleId(), e.getMessage(),
+                            snapshot.getVersion());
                     results.add(errorResult);
                     statistics.incrementFailedEvaluations();
                 }
@@ -104,39 +159,79 @@ public final class RuleEngine {
 
         Map<Rule.RuleType, List<RuleResult>> allResults = new EnumMap<>(Rule.RuleType.class);
 
-
-        Rule.RuleType[] priorityOrder = {
-                Rule.RuleType.LIMIT_CHECK,
-                Rule.RuleType.FRAUD_CHECK,
-                Rule.RuleType.GEOGRAPHIC,
-                Rule.RuleType.TIME_BASED,
-                Rule.RuleType.MCC_ROUTING,
-                Rule.RuleType.REWARD,
-                Rule.RuleType.DISCOUNT,
-                Rule.RuleType.ALERT
-        };
-
-        for (Rule.RuleType ruleType : priorityOrder) {
-            List<RuleResult> results = evaluateRules(ruleType, context);
-            if (!results.isEmpty()) {
-                allResults.put(ruleType, results);
+        RuleSet snapshot = ruleSet;
+        PredicateNetwork.Frame frame = snapshot.getPredicateNetwork().newFrame();
+        try {
+            for (Rule.RuleType ruleType : PRIORITY_ORDER) {
+                List<RuleResult> results = evaluateRules(snapshot, ruleType, context, frame);
+                if (!results.isEmpty()) {
+                    allResults.put(ruleType, results);
+                }
             }
+        } finally {
+            statistics.recordPredicateUsage(frame.getEvaluations(), frame.getReuses());
         }
 
         return allResults;
     }
 
 
-    private RuleResult evaluateRule(ParsedRule rule, TransactionContext context) throws RuleEvaluationException {
+    public BatchEvaluationResult evaluateBatch(TransactionBatch batch) {
+        Objects.requireNonNull(batch, "Transaction batch cannot be null");
+
+        RuleSet snapshot = ruleSet;
+        long[] allRows = ColumnarRuleCompiler.allRows(batch.size());
+        ColumnarRuleCompiler.Frame frame = new ColumnarRuleCompiler.Frame();
+        LinkedHashMap<String, BitSet> matches = new LinkedHashMap<>();
+        LinkedHashMap<String, BitSet> errors = new LinkedHashMap<>();
+
         try {
+            for (Rule.RuleType ruleType : PRIORITY_ORDER) {
+                for (ParsedRule rule : snapshot.getRules(ruleType)) {
+                    if (!rule.isActive()) {
+                        continue;
+                    }
+
+                    ColumnarRuleCompiler.Mask mask = rule.getCompiledRule().getVectorCondition()
+                            .evaluate(batch, allRows, frame);
+                    matches.put(rule.getRuleId(), BitSet.valueOf(mask.getValues()));
+                    errors.put(rule.getRuleId(), BitSet.valueOf(mask.getErrors()));
+                }
+            }
+        } finally {
+            statistics.recordPredicateUsage(frame.getEvaluations(), frame.getReuses());
+        }
 
-            Object result = rule.getAst().evaluate(context);
+        return new BatchEvaluationResult(snapshot.getVersion(), batch.size(), matches, errors);
+    }
+
+
+    public void setEvaluationMode(EvaluationMode evaluationMode) {
+        this.evaluationMode = Objects.requireNonNull(evaluationMode, "Evaluation mode cannot be null");
+    }
+
+    public EvaluationMode getEvaluationMode() {
+        return evaluationMode;
+    }
 
-            if (result instanceof Boolean && (Boolean) result) {
 
-                return executeRuleActions(rule, context);
+    private RuleResult evaluateRule(ParsedRule rule, TransactionContext context,
+                                    PredicateNetwork.Frame frame, long ruleSetVersion) throws RuleEvaluationException {
+        try {
+
+            boolean matched;
+            if (evaluationMode == EvaluationMode.COMPILED) {
+                matched = rule.getCompiledCondition().test(context, frame);
+            } else {
+                Object result = rule.getAst().evaluate(context);
+                matched = result instanceof Boolean && (Boolean) result;
+            }
+
+            if (matched) {
+
+                return executeRuleActions(rule, context, ruleSetVersion);
             } else {
-                return RuleResult.notApplied(rule.getRuleId(), "Condition not met");
+                return RuleResult.notApplied(rule.getRuleId(), "Condition not met", ruleSetVersion);
             }
 
         } catch (Exception e) {
@@ -146,13 +241,14 @@ public final class RuleEngine {
     }
 
 
-    private RuleResult executeRuleActions(ParsedRule rule, TransactionContext context) {
+    private RuleResult executeRuleActions(ParsedRule rule, TransactionContext context, long ruleSetVersion) {
 
 
         RuleResult.Builder builder = RuleResult.builder(rule.getRuleId(),
                         mapRuleTypeToResultType(rule.getRuleType()))
                 .applied(true)
-                .description(rule.getDescription());
+                .description(rule.getDescription())
+                .ruleSetVersion(ruleSetVersion);
 
 
         switch (rule.getRuleType()) {
@@ -198,50 +294,61 @@ public final class RuleEngine {
 
 
     public boolean toggleRule(String ruleId, boolean active) {
-        ParsedRule rule = ruleCache.get(ruleId);
-        if (rule != null) {
-            rule.setActive(active);
+        synchronized (updateLock) {
+            if (ruleSet.getRule(ruleId) == null) {
+                return false;
+            }
+            applyBatch(newBatch().toggleRule(ruleId, active));
             return true;
         }
-        return false;
     }
 
 
     public boolean removeRule(String ruleId) {
-        ParsedRule rule = ruleCache.remove(ruleId);
-        if (rule != null) {
-            rulesByType.get(rule.getRuleType()).remove(rule);
-            statistics.incrementRulesRemoved();
+        synchronized (updateLock) {
+            if (ruleSet.getRule(ruleId) == null) {
+                return false;
+            }
+            applyBatch(newBatch().removeRule(ruleId));
             return true;
         }
-        return false;
     }
 
 
     public List<String> getRuleIdsByType(Rule.RuleType ruleType) {
-        return rulesByType.get(ruleType).stream()
+        return ruleSet.getRules(ruleType).stream()
                 .map(ParsedRule::getRuleId)
                 .collect(Collectors.toList());
     }
 
 
     public Optional<RuleInfo> getRuleInfo(String ruleId) {
-        ParsedRule rule = ruleCache.get(ruleId);
+        ParsedRule rule = ruleSet.getRule(ruleId);
         if (rule != null) {
             return Optional.of(new RuleInfo(rule.getRuleId(), rule.getDslExpression(),
                     rule.getRuleType(), rule.getPriority(),
                     rule.getDescription(), rule.isActive(),
-                    rule.getAst().getConditionCount()));
+                    rule.getAst().getConditionCount(),
+                    rule.getCompiledRule().getEvaluationOrder(),
+                    rule.getCompiledRule().getReorderCount()));
         }
         return Optional.empty();
     }
 
 
+    public long getRuleSetVersion() {
+        return ruleSet.getVersion();
+    }
+
+
     public RuleEngineStatistics getStatistics() {
-        statistics.setTotalRules(ruleCache.size());
+        RuleSet snapshot = ruleSet;
+        statistics.setTotalRules(snapshot.size());
+        statistics.setActiveRules(snapshot.getActiveRules());
+        statistics.setSharedPredicates(snapshot.getPredicateNetwork().size());
         statistics.setTotalEvaluations(totalEvaluations.get());
-        statistics.setAverageParsingTime(ruleCache.isEmpty() ? 0 :
-                totalParsingTime.get() / ruleCache.size());
+        statistics.setAverageParsingTime(snapshot.size() == 0 ? 0 :
+                totalParsingTime.get() / snapshot.size());
         statistics.setAverageEvaluationTime(totalEvaluations.get() == 0 ? 0 :
                 totalEvaluationTime.get() / totalEvaluations.get());
         return statistics;
@@ -249,9 +356,10 @@ public final class RuleEngine {
 
 
     public void clearCache() {
-        ruleCache.clear();
-        rulesByType.values().forEach(List::clear);
-        statistics.reset();
+        synchronized (updateLock) {
+            applyBatch(newBatch().clear());
+            statistics.reset();
+        }
     }
 
 
@@ -265,6 +373,98 @@ public final class RuleEngine {
     }
 
 
+    public final class RuleBatch {
+        private final List<RuleChange> changes = new ArrayList<>();
+
+        private RuleBatch() {
+        }
+
+        public RuleBatch addRule(String ruleId, String dslExpression, Rule.RuleType ruleType,
+                                 int priority, String description) throws RuleSyntaxException {
+            Objects.requireNonNull(ruleId, "Rule ID cannot be null");
+            Objects.requireNonNull(dslExpression, "DSL expression cannot be null");
+            Objects.requireNonNull(ruleType, "Rule type cannot be null");
+
+            long startTime = System.nanoTime();
+            try {
+                ASTNode ast = parser.parse(dslExpression);
+                changes.add(RuleChange.add(ruleId, dslExpression, ast, ruleType, priority, description));
+                return this;
+            } finally {
+                totalParsingTime.addAndGet(System.nanoTime() - startTime);
+            }
+        }
+
+        public RuleBatch removeRule(String ruleId) {
+            changes.add(RuleChange.of(RuleChange.Kind.REMOVE,
+                    Objects.requireNonNull(ruleId, "Rule ID cannot be null"), false));
+            return this;
+        }
+
+        public RuleBatch toggleRule(String ruleId, boolean active) {
+            changes.add(RuleChange.of(RuleChange.Kind.TOGGLE,
+                    Objects.requireNonNull(ruleId, "Rule ID cannot be null"), active));
+            return this;
+        }
+
+        public RuleBatch clear() {
+            changes.add(RuleChange.of(RuleChange.Kind.CLEAR, null, false));
+            return this;
+        }
+
+        public int size() {
+            return changes.size();
+        }
+
+        private RuleEngine getEngine() {
+            return RuleEngine.this;
+        }
+    }
+
+
+    private static final class RuleChange {
+        enum Kind {
+            ADD, REMOVE, TOGGLE, CLEAR
+        }
+
+        private final Kind kind;
+        private final String ruleId;
+        private final String dslExpression;
+        private final ASTNode ast;
+        private final Rule.RuleType ruleType;
+        private final int priority;
+        private final String description;
+        private final boolean active;
+
+        private RuleChange(Kind kind, String ruleId, String dslExpression, ASTNode ast,
+                           Rule.RuleType ruleType, int priority, String description, boolean active) {
+            this.kind = kind;
+            this.ruleId = ruleId;
+            this.dslExpression = dslExpression;
+            this.ast = ast;
+            this.ruleType = ruleType;
+            this.priority = priority;
+            this.description = description;
+            this.active = active;
+        }
+
+        static RuleChange add(String ruleId, String dslExpression, ASTNode ast,
+                              Rule.RuleType ruleType, int priority, String description) {
+            return new RuleChange(Kind.ADD, ruleId, dslExpression, ast, ruleType, priority, description, true);
+        }
+
+        static RuleChange of(Kind kind, String ruleId, boolean active) {
+            return new RuleChange(kind, ruleId, null, null, null, 0, null, active);
+        }
+    }
+
+
+    public enum EvaluationMode {
+        COMPILED,
+        INTERPRETED
+    }
+
+
     public static final class ValidationResult {
         private final boolean valid;
         private final String errorMessage;
@@ -299,9 +499,12 @@ public final class RuleEngine {
         private final String description;
         private final boolean active;
         private final int conditionCount;
+        private final String evaluationOrder;
+        private final int reorderCount;
 
         public RuleInfo(String ruleId, String dslExpression, Rule.RuleType ruleType,
-                        int priority, String description, boolean active, int conditionCount) {
+                        int priority, String description, boolean active, int conditionCount,
+                        String evaluationOrder, int reorderCount) {
             this.ruleId = ruleId;
             this.dslExpression = dslExpression;
             this.ruleType = ruleType;
@@ -309,6 +512,8 @@ public final class RuleEngine {
             this.description = description;
             this.active = active;
             this.conditionCount = conditionCount;
+            this.evaluationOrder = evaluationOrder;
+            this.reorderCount = reorderCount;
         }
 
 
@@ -339,5 +544,13 @@ public final class RuleEngine {
         public int getConditionCount() {
             return conditionCount;
         }
+
+        public String getEvaluationOrder() {
+            return evaluationOrder;
+        }
+
+        public int getReorderCount() {
+            return reorderCount;
+        }
     }
 }
\ No newline at end of file
@@ -22,9 +22,6 @@ public final class RuleParser {
             "monthly_spending", "channel", "transaction_type"
     );
 
-    private Tokenizer tokenizer;
-    private String originalExpression;
-
     public RuleParser() {
 
     }
@@ -32,268 +29,297 @@ public final class RuleParser {
 
     public ASTNode parse(String expression) throws RuleSyntaxException {
         Objects.requireNonNull(expression, "Expression cannot be null");
+        return new Session(expression.trim()).parse();
+    }
+
 
-        this.originalExpression = expression.trim();
-        if (originalExpression.isEmpty()) {
-            throw RuleSyntaxException.incompleteExpression("");
+    private static final class Session {
+        private final String originalExpression;
+        private Tokenizer tokenizer;
+
+        private Session(String originalExpression) {
+            this.originalExpression = originalExpression;
         }
 
-        this.tokenizer = new Tokenizer(originalExpression);
+        private ASTNode parse() throws RuleSyntaxException {
+            if (originalExpression.isEmpty()) {
+                throw RuleSyntaxException.incompleteExpression("");
+            }
 
-        try {
-            ASTNode ast = parseExpression();
+            this.tokenizer = new Tokenizer(originalExpression);
 
+            try {
+                ASTNode ast = parseExpression();
 
-            if (!tokenizer.isAtEnd()) {
-                Token unexpected = tokenizer.peek();
-                throw RuleSyntaxException.unexpectedToken(originalExpression,
-                        unexpected.getPosition(), unexpected.getValue());
-            }
 
-            return ast;
+                if (!tokenizer.isAtEnd()) {
+                    Token unexpected = tokenizer.peek();
+                    throw RuleSyntaxException.unexpectedToken(originalExpression,
+                            unexpected.getPosition(), unexpected.getValue());
+                }
 
-        } catch (RuntimeException e) {
-            throw new RuleSyntaxException("Parse error: " + e.getMessage(), e);
-        }
-    }
+                return ast;
 
+            } catch (RuntimeException e) {
+                throw new RuleSyntaxException("Parse error: " + e.getMessage(), e);
+            }
+        }
 
-    private ASTNode parseExpression() throws RuleSyntaxException {
-        ASTNode condition = parseOrCondition();
 
+        private ASTNode parseExpression() throws RuleSyntaxException {
+            ASTNode condition = parseOrCondition();
 
-        if (tokenizer.peek().getType() == TokenType.KEYWORD &&
-                "then".equals(tokenizer.peek().getValue())) {
-            tokenizer.consume();
 
-            while (!tokenizer.isAtEnd()) {
+            if (tokenizer.peek().getType() == TokenType.KEYWORD &&
+                    "then".equals(tokenizer.peek().getValue())) {
                 tokenizer.consume();
+
+                while (!tokenizer.isAtEnd()) {
+                    tokenizer.consume();
+                }
             }
+
+            return condition;
         }
 
-        return condition;
-    }
 
+        private ASTNode parseOrCondition() throws RuleSyntaxException {
+            ASTNode left = parseAndCondition();
 
-    private ASTNode parseOrCondition() throws RuleSyntaxException {
-        ASTNode left = parseAndCondition();
+            while (tokenizer.peek().getType() == TokenType.KEYWORD &&
+                    "or".equals(tokenizer.peek().getValue())) {
+                tokenizer.consume();
+                ASTNode right = parseAndCondition();
+                left = new ASTNode.OrNode(left, right);
+            }
 
-        while (tokenizer.peek().getType() == TokenType.KEYWORD &&
-                "or".equals(tokenizer.peek().getValue())) {
-            tokenizer.consume();
-            ASTNode right = parseAndCondition();
-            left = new ASTNode.OrNode(left, right);
+            return left;
         }
 
-        return left;
-    }
 
+        private ASTNode parseAndCondition() throws RuleSyntaxException {
+            ASTNode left = parseNotCondition();
 
-    private ASTNode parseAndCondition() throws RuleSyntaxException {
-        ASTNode left = parseNotCondition();
+            while (tokenizer.peek().getType() == TokenType.KEYWORD &&
+                    "and".equals(tokenizer.peek().getValue())) {
+                tokenizer.consume();
+                ASTNode right = parseNotCondition();
+                left = new ASTNode.AndNode(left, right);
+            }
 
-        while (tokenizer.peek().getType() == TokenType.KEYWORD &&
-                "and".equals(tokenizer.peek().getValue())) {
-            tokenizer.consume();
-            ASTNode right = parseNotCondition();
-            left = new ASTNode.AndNode(left, right);
+            return left;
         }
 
-        return left;
-    }
 
+        private ASTNode parseNotCondition() throws RuleSyntaxException {
+            if (tokenizer.peek().getType() == TokenType.KEYWORD &&
+                    "not".equals(tokenizer.peek().getValue())) {
+                tokenizer.consume();
+                ASTNode operand = parseComparison();
+                return new ASTNode.NotNode(operand);
+            }
 
-    private ASTNode parseNotCondition() throws RuleSyntaxException {
-        if (tokenizer.peek().getType() == TokenType.KEYWORD &&
-                "not".equals(tokenizer.peek().getValue())) {
-            tokenizer.consume();
-            ASTNode operand = parseComparison();
-            return new ASTNode.NotNode(operand);
+            return parseComparison();
         }
 
-        return parseComparison();
-    }
 
+        private ASTNode parseComparison() throws RuleSyntaxException {
+            ASTNode left = parseOperand();
 
-    private ASTNode parseComparison() throws RuleSyntaxException {
-        ASTNode left = parseOperand();
+            Token operator = tokenizer.peek();
 
-        Token operator = tokenizer.peek();
 
+            switch (operator.getType()) {
+                case OPERATOR:
+                    String op = operator.getValue();
+                    tokenizer.consume();
+                    ASTNode right = parseOperand();
+
+                    switch (op) {
+                        case "==":
+                            return new ASTNode.EqualsNode(left, right);
+                        case "!=":
+                            return new ASTNode.NotNode(new ASTNode.EqualsNode(left, right));
+                        case ">":
+                            return new ASTNode.GreaterThanNode(left, right);
+                        case "<":
+                            return new ASTNode.GreaterThanNode(right, left);
+                        case ">=":
+                            return new ASTNode.OrNode(
+                                    new ASTNode.GreaterThanNode(left, right),
+                                    new ASTNode.EqualsNode(left, right)
+                            );
+                        case "<=":
+                            return new ASTNode.OrNode(
+                                    new ASTNode.GreaterThanNode(right, left),
+                                    new ASTNode.EqualsNode(left, right)
+                            );
+                        default:
+                            throw RuleSyntaxException.invalidOperator(originalExpression,
+                                    operator.getPosition(), op);
+                    }
 
-        switch (operator.getType()) {
-            case OPERATOR:
-                String op = operator.getValue();
-                tokenizer.consume();
-                ASTNode right = parseOperand();
-
-                switch (op) {
-                    case "==":
-                        return new ASTNode.EqualsNode(left, right);
-                    case "!=":
-                        return new ASTNode.NotNode(new ASTNode.EqualsNode(left, right));
-                    case ">":
-                        return new ASTNode.GreaterThanNode(left, right);
-                    case "<":
-                        return new ASTNode.GreaterThanNode(right, left);
-                    case ">=":
-                        return new ASTNode.OrNode(
-                                new ASTNode.GreaterThanNode(left, right),
-                                new ASTNode.EqualsNode(left, right)
-                        );
-                    case "<=":
-                        return new ASTNode.OrNode(
-                                new ASTNode.GreaterThanNode(right, left),
-                                new ASTNode.EqualsNode(left, right)
-                        );
-                    default:
-                        throw RuleSyntaxException.invalidOperator(originalExpression,
-                                operator.getPosition(), op);
-                }
+                case KEYWORD:
+                    if ("in".equals(operator.getValue())) {
+                        tokenizer.consume();
+                        ASTNode rightOperand = parseOperand();
+                        return new ASTNode.InNode(left, rightOperand);
+                    }
+                    if ("not_in".equals(operator.getValue())) {
+                        tokenizer.consume();
+                        ASTNode rightOperand = parseOperand();
+                        return new ASTNode.NotNode(new ASTNode.InNode(left, rightOperand));
+                    }
+                    if ("between".equals(operator.getValue())) {
+                        tokenizer.consume();
+                        ASTNode lower = parseOperand();
+                        Token and = tokenizer.peek();
+                        if (and.getType() != TokenType.KEYWORD || !"and".equals(and.getValue())) {
+                            throw RuleSyntaxException.expectedToken(originalExpression,
+                                    and.getPosition(), "and", and.getValue());
+                        }
+                        tokenizer.consume();
+                        ASTNode upper = parseOperand();
+                        return new ASTNode.BetweenNode(left, lower, upper);
+                    }
+                    break;
+            }
 
-            case KEYWORD:
-                if ("in".equals(operator.getValue())) {
-                    tokenizer.consume();
-                    ASTNode rightOperand = parseOperand();
-                    return new ASTNode.InNode(left, rightOperand);
-                }
-                break;
+            return left;
         }
 
-        return left;
-    }
 
+        private ASTNode parseOperand() throws RuleSyntaxException {
+            Token token = tokenizer.peek();
 
-    private ASTNode parseOperand() throws RuleSyntaxException {
-        Token token = tokenizer.peek();
+            switch (token.getType()) {
+                case IDENTIFIER:
+                    return parseField();
 
-        switch (token.getType()) {
-            case IDENTIFIER:
-                return parseField();
+                case NUMBER:
+                    tokenizer.consume();
+                    return new ASTNode.NumberNode(token.getValue());
 
-            case NUMBER:
-                tokenizer.consume();
-                return new ASTNode.NumberNode(token.getValue());
+                case STRING:
+                    tokenizer.consume();
 
-            case STRING:
-                tokenizer.consume();
+                    String stringValue = token.getValue();
+                    if (stringValue.startsWith("'") && stringValue.endsWith("'")) {
+                        stringValue = stringValue.substring(1, stringValue.length() - 1);
+                    }
+                    return new ASTNode.StringNode(stringValue);
 
-                String stringValue = token.getValue();
-                if (stringValue.startsWith("'") && stringValue.endsWith("'")) {
-                    stringValue = stringValue.substring(1, stringValue.length() - 1);
-                }
-                return new ASTNode.StringNode(stringValue);
+                case KEYWORD:
+                    if ("true".equals(token.getValue()) || "false".equals(token.getValue())) {
+                        tokenizer.consume();
+                        return new ASTNode.StringNode(token.getValue());
+                    }
 
-            case KEYWORD:
-                if ("true".equals(token.getValue()) || "false".equals(token.getValue())) {
                     tokenizer.consume();
-                    return new ASTNode.StringNode(token.getValue());
-                }
+                    return new ASTNode.EnumNode(token.getValue());
 
-                tokenizer.consume();
-                return new ASTNode.EnumNode(token.getValue());
-
-            case LPAREN:
-                tokenizer.consume();
-                ASTNode expression = parseOrCondition();
-                Token rparen = tokenizer.peek();
-                if (rparen.getType() != TokenType.RPAREN) {
-                    throw RuleSyntaxException.expectedToken(originalExpression,
-                            rparen.getPosition(), ")", rparen.getValue());
-                }
-                tokenizer.consume();
-                return expression;
+                case LPAREN:
+                    tokenizer.consume();
+                    ASTNode expression = parseOrCondition();
+                    Token rparen = tokenizer.peek();
+                    if (rparen.getType() != TokenType.RPAREN) {
+                        throw RuleSyntaxException.expectedToken(originalExpression,
+                                rparen.getPosition(), ")", rparen.getValue());
+                    }
+                    tokenizer.consume();
+                    return expression;
 
-            case LBRACKET:
-                return parseList();
+                case LBRACKET:
+                    return parseList();
 
-            default:
-                throw RuleSyntaxException.unexpectedToken(originalExpression,
-                        token.getPosition(), token.getValue());
+                default:
+                    throw RuleSyntaxException.unexpectedToken(originalExpression,
+                            token.getPosition(), token.getValue());
+            }
         }
-    }
 
 
-    private ASTNode parseField() throws RuleSyntaxException {
-        Token token = tokenizer.peek();
-        if (token.getType() != TokenType.IDENTIFIER) {
-            throw RuleSyntaxException.expectedToken(originalExpression,
-                    token.getPosition(), "field name", token.getValue());
-        }
+        private ASTNode parseField() throws RuleSyntaxException {
+            Token token = tokenizer.peek();
+            if (token.getType() != TokenType.IDENTIFIER) {
+                throw RuleSyntaxException.expectedToken(originalExpression,
+                        token.getPosition(), "field name", token.getValue());
+            }
+
+            tokenizer.consume();
+            String fieldName = token.getValue();
 
-        tokenizer.consume();
-        String fieldName = token.getValue();
 
+            if (!VALID_FIELDS.contains(fieldName.toLowerCase())) {
+                throw RuleSyntaxException.invalidFieldName(originalExpression,
+                        token.getPosition(), fieldName);
+            }
 
-        if (!VALID_FIELDS.contains(fieldName.toLowerCase())) {
-            throw RuleSyntaxException.invalidFieldName(originalExpression,
-                    token.getPosition(), fieldName);
+            return new ASTNode.FieldNode(fieldName);
         }
 
-        return new ASTNode.FieldNode(fieldName);
-    }
 
+        private ASTNode parseList() throws RuleSyntaxException {
+            Token lbracket = tokenizer.peek();
+            if (lbracket.getType() != TokenType.LBRACKET) {
+                throw RuleSyntaxException.expectedToken(originalExpression,
+                        lbracket.getPosition(), "[", lbracket.getValue());
+            }
+            tokenizer.consume();
 
-    private ASTNode parseList() throws RuleSyntaxException {
-        Token lbracket = tokenizer.peek();
-        if (lbracket.getType() != TokenType.LBRACKET) {
-            throw RuleSyntaxException.expectedToken(originalExpression,
-                    lbracket.getPosition(), "[", lbracket.getValue());
-        }
-        tokenizer.consume();
+            List<ASTNode> elements = new ArrayList<>();
 
-        List<ASTNode> elements = new ArrayList<>();
 
+            if (tokenizer.peek().getType() == TokenType.RBRACKET) {
+                tokenizer.consume();
+                return new ASTNode.ListNode(elements);
+            }
 
-        if (tokenizer.peek().getType() == TokenType.RBRACKET) {
-            tokenizer.consume();
-            return new ASTNode.ListNode(elements);
-        }
 
+            elements.add(parseListElement());
 
-        elements.add(parseListElement());
 
+            while (tokenizer.peek().getType() == TokenType.COMMA) {
+                tokenizer.consume();
+                elements.add(parseListElement());
+            }
 
-        while (tokenizer.peek().getType() == TokenType.COMMA) {
+            Token rbracket = tokenizer.peek();
+            if (rbracket.getType() != TokenType.RBRACKET) {
+                throw RuleSyntaxException.expectedToken(originalExpression,
+                        rbracket.getPosition(), "]", rbracket.getValue());
+            }
             tokenizer.consume();
-            elements.add(parseListElement());
-        }
 
-        Token rbracket = tokenizer.peek();
-        if (rbracket.getType() != TokenType.RBRACKET) {
-            throw RuleSyntaxException.expectedToken(originalExpression,
-                    rbracket.getPosition(), "]", rbracket.getValue());
+            return new ASTNode.ListNode(elements);
         }
-        tokenizer.consume();
-
-        return new ASTNode.ListNode(elements);
-    }
 
 
-    private ASTNode parseListElement() throws RuleSyntaxException {
-        Token token = tokenizer.peek();
+        private ASTNode parseListElement() throws RuleSyntaxException {
+            Token token = tokenizer.peek();
 
-        switch (token.getType()) {
-            case NUMBER:
-                tokenizer.consume();
-                return new ASTNode.NumberNode(token.getValue());
+            switch (token.getType()) {
+                case NUMBER:
+                    tokenizer.consume();
+                    return new ASTNode.NumberNode(token.getValue());
 
-            case STRING:
-                tokenizer.consume();
-                String stringValue = token.getValue();
-                if (stringValue.startsWith("'") && stringValue.endsWith("'")) {
-                    stringValue = stringValue.substring(1, stringValue.length() - 1);
-                }
-                return new ASTNode.StringNode(stringValue);
+                case STRING:
+                    tokenizer.consume();
+                    String stringValue = token.getValue();
+                    if (stringValue.startsWith("'") && stringValue.endsWith("'")) {
+                        stringValue = stringValue.substring(1, stringValue.length() - 1);
+                    }
+                    return new ASTNode.StringNode(stringValue);
 
-            case IDENTIFIER:
-            case KEYWORD:
-                tokenizer.consume();
-                return new ASTNode.EnumNode(token.getValue());
+                case IDENTIFIER:
+                case KEYWORD:
+                    tokenizer.consume();
+                    return new ASTNode.EnumNode(token.getValue());
 
-            default:
-                throw RuleSyntaxException.unexpectedToken(originalExpression,
-                        token.getPosition(), token.getValue());
+                default:
+                    throw RuleSyntaxException.unexpectedToken(originalExpression,
+                            token.getPosition(), token.getValue());
+            }
         }
     }
 
@@ -15,6 +15,7 @@ public final class RuleResult {
     private final Map<String, Object> values;
     private final List<String> warnings;
     private final List<String> errors;
+    private final long ruleSetVersion;
 
     private RuleResult(Builder builder) {
         this.ruleId = Objects.requireNonNull(builder.ruleId, "Rule ID cannot be null");
@@ -25,6 +26,7 @@ public final class RuleResult {
         this.values = Collections.unmodifiableMap(new HashMap<>(builder.values));
         this.warnings = Collections.unmodifiableList(new ArrayList<>(builder.warnings));
         this.errors = Collections.unmodifiableList(new ArrayList<>(builder.errors));
+        this.ruleSetVersion = builder.ruleSetVersion;
     }
 
 
@@ -60,6 +62,10 @@ public final class RuleResult {
         return errors;
     }
 
+    public long getRuleSetVersion() {
+        return ruleSetVersion;
+    }
+
 
     public Optional<BigDecimal> getPoints() {
         return getValueAs("points", BigDecimal.class);
@@ -109,9 +115,14 @@ public final class RuleResult {
 
 
     public static RuleResult notApplied(String ruleId, String reason) {
+        return notApplied(ruleId, reason, 0);
+    }
+
+    public static RuleResult notApplied(String ruleId, String reason, long ruleSetVersion) {
         return builder(ruleId, ResultType.NOT_APPLIED)
                 .applied(false)
                 .description(reason)
+                .ruleSetVersion(ruleSetVersion)
                 .build();
     }
 
@@ -141,10 +152,15 @@ public final class RuleResult {
     }
 
     public static RuleResult error(String ruleId, String errorMessage) {
+        return error(ruleId, errorMessage, 0);
+    }
+
+    public static RuleResult error(String ruleId, String errorMessage, long ruleSetVersion) {
         return builder(ruleId, ResultType.ERROR)
                 .applied(false)
                 .description("Rule evaluation failed")
                 .error(errorMessage)
+                .ruleSetVersion(ruleSetVersion)
                 .build();
     }
 
@@ -162,6 +178,7 @@ public final class RuleResult {
         private final Map<String, Object> values = new HashMap<>();
         private final List<String> warnings = new ArrayList<>();
         private final List<String> errors = new ArrayList<>();
+        private long ruleSetVersion;
 
         private Builder(String ruleId, ResultType resultType) {
             this.ruleId = ruleId;
@@ -203,6 +220,11 @@ public final class RuleResult {
             return this;
         }
 
+        public Builder ruleSetVersion(long ruleSetVersion) {
+            this.ruleSetVersion = ruleSetVersion;
+            return this;
+        }
+
 
         public Builder points(BigDecimal points) {
             return value("points", points);
@@ -0,0 +1,151 @@
+import java.util.*;
+
+
+final class RuleSet {
+
+    private final long version;
+    private final PredicateNetwork predicateNetwork;
+    private final Map<String, ParsedRule> rulesById;
+    private final Map<Rule.RuleType, List<ParsedRule>> rulesByType;
+    private final int activeRules;
+
+    private RuleSet(long version, PredicateNetwork predicateNetwork, LinkedHashMap<String, ParsedRule> rules) {
+        this.version = version;
+        this.predicateNetwork = predicateNetwork;
+        this.rulesById = Collections.unmodifiableMap(rules);
+
+        Map<Rule.RuleType, List<ParsedRule>> byType = new EnumMap<>(Rule.RuleType.class);
+        for (Rule.RuleType type : Rule.RuleType.values()) {
+            byType.put(type, new ArrayList<>());
+        }
+
+        int active = 0;
+        for (ParsedRule rule : rules.values()) {
+            byType.get(rule.getRuleType()).add(rule);
+            if (rule.isActive()) {
+                active++;
+            }
+        }
+
+        for (Map.Entry<Rule.RuleType, List<ParsedRule>> entry : byType.entrySet()) {
+            List<ParsedRule> sorted = entry.getValue();
+            sorted.sort((a, b) -> Integer.compare(b.getPriority(), a.getPriority()));
+            entry.setValue(Collections.unmodifiableList(sorted));
+        }
+
+        this.rulesByType = Collections.unmodifiableMap(byType);
+        this.activeRules = active;
+    }
+
+
+    static RuleSet empty() {
+        return new RuleSet(0, new PredicateNetwork(), new LinkedHashMap<>());
+    }
+
+
+    public long getVersion() {
+        return version;
+    }
+
+    public PredicateNetwork getPredicateNetwork() {
+        return predicateNetwork;
+    }
+
+    public ParsedRule getRule(String ruleId) {
+        return rulesById.get(ruleId);
+    }
+
+    public Collection<ParsedRule> getRules() {
+        return rulesById.values();
+    }
+
+    public List<ParsedRule> getRules(Rule.RuleType ruleType) {
+        return rulesByType.get(ruleType);
+    }
+
+    public int size() {
+        return rulesById.size();
+    }
+
+    public int getActiveRules() {
+        return activeRules;
+    }
+
+
+    Builder toBuilder() {
+        return new Builder(this);
+    }
+
+
+    static final class Builder {
+        private final long baseVersion;
+        private final PredicateNetwork baseNetwork;
+        private PredicateNetwork predicateNetwork;
+        private boolean pruned;
+        private final LinkedHashMap<String, ParsedRule> rules;
+
+        private Builder(RuleSet base) {
+            this.baseVersion = base.version;
+            this.baseNetwork = base.predicateNetwork;
+            this.rules = new LinkedHashMap<>(base.rulesById);
+        }
+
+        PredicateNetwork getPredicateNetwork() {
+            if (predicateNetwork == null) {
+                predicateNetwork = baseNetwork.fork();
+            }
+            return predicateNetwork;
+        }
+
+        Collection<ParsedRule> getRules() {
+            return rules.values();
+        }
+
+        boolean contains(String ruleId) {
+            return rules.containsKey(ruleId);
+        }
+
+        ParsedRule get(String ruleId) {
+            return rules.get(ruleId);
+        }
+
+        Builder put(ParsedRule rule) {
+            rules.put(rule.getRuleId(), rule);
+            return this;
+        }
+
+        ParsedRule remove(String ruleId) {
+            ParsedRule removed = rules.remove(ruleId);
+            if (removed != null) {
+                pruned = true;
+            }
+            return removed;
+        }
+
+        Builder clear() {
+            rules.clear();
+            predicateNetwork = new PredicateNetwork();
+            pruned = false;
+            return this;
+        }
+
+        RuleSet build() {
+            PredicateNetwork network = predicateNetwork != null ? predicateNetwork : baseNetwork;
+            if (pruned) {
+                network = new PredicateNetwork();
+                for (Map.Entry<String, ParsedRule> entry : rules.entrySet()) {
+                    ParsedRule rule = entry.getValue();
+                    entry.setValue(rule.withCompiledRule(RuleCompiler.compile(rule.getAst(), network)));
+                }
+            }
+            return new RuleSet(baseVersion + 1, network, new LinkedHashMap<>(rules));
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("RuleSet{version=%d, rules=%d, active=%d, sharedPredicates=%d}",
+                version, rulesById.size(), activeRules, predicateNetwork.size());
+    }
+}
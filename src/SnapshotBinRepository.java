@@ -0,0 +1,253 @@
+import java.util.*;
+
+public class SnapshotBinRepository implements BinRangeRepository {
+
+    private final Object writeLock = new Object();
+    private volatile BinLookupIndex snapshot;
+
+    public SnapshotBinRepository() {
+        this.snapshot = BinLookupIndex.empty();
+    }
+
+    public SnapshotBinRepository(Collection<BinRange> ranges) throws OverlappingRangeException {
+        this.snapshot = BinLookupIndex.of(ranges);
+    }
+
+
+    @Override
+    public Optional<BinRange> findRangeForBin(long bin) {
+        return Optional.ofNullable(snapshot.find(bin));
+    }
+
+    @Override
+    public BinRange lookupBin(long bin) {
+        return snapshot.find(bin);
+    }
+
+
+    @Override
+    public void addRange(BinRange range) throws OverlappingRangeException {
+        Objects.requireNonNull(range, "BIN range cannot be null");
+
+        synchronized (writeLock) {
+            snapshot = snapshot.with(range);
+        }
+    }
+
+
+    public boolean removeRange(long startBin) {
+        synchronized (writeLock) {
+            BinLookupIndex current = snapshot;
+            BinLookupIndex next = current.without(startBin);
+            snapshot = next;
+            return next != current;
+        }
+    }
+
+
+    @Override
+    public void replaceAll(Collection<BinRange> ranges) throws OverlappingRangeException {
+        BinLookupIndex next = BinLookupIndex.of(ranges);
+
+        synchronized (writeLock) {
+            snapshot = next;
+        }
+    }
+
+    @Override
+    public boolean supportsReplaceAll() {
+        return true;
+    }
+
+    public BinLookupIndex getSnapshot() {
+        return snapshot;
+    }
+
+
+    @Override
+    public Map<Long, BinRange> findRangesForBins(List<Long> bins) {
+        BinLookupIndex index = snapshot;
+        Map<Long, BinRange> results = new HashMap<>();
+
+        for (Long bin : bins) {
+            BinRange range = index.find(bin);
+            if (range != null) {
+                results.put(bin, range);
+            }
+        }
+
+        return results;
+    }
+
+    @Override
+    public int findRangesForBins(long[] bins, BinRange[] out) {
+        return snapshot.findAll(bins, out);
+    }
+
+    @Override
+    public List<BinRange> findByBankName(String bankName) {
+        List<BinRange> result = new ArrayList<>();
+        for (BinRange range : snapshot.asList()) {
+            if (range.getBankName().equals(bankName)) {
+                result.add(range);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<BinRange> findByCountry(String country) {
+        List<BinRange> result = new ArrayList<>();
+        for (BinRange range : snapshot.asList()) {
+            if (range.getCountry().equals(country)) {
+                result.add(range);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Map.Entry<BinRange, BinRange>> validateNoOverlaps() {
+        BinLookupIndex index = snapshot;
+        List<Map.Entry<BinRange, BinRange>> overlaps = new ArrayList<>();
+
+        for (int i = 1; i < index.size(); i++) {
+            if (index.endAt(i - 1) >= index.startAt(i)) {
+                overlaps.add(new AbstractMap.SimpleImmutableEntry<>(index.rangeAt(i - 1), index.rangeAt(i)));
+            }
+        }
+
+        return overlaps;
+    }
+
+
+    @Override
+    public List<BinRange> findInRange(Long start, Long end) {
+        BinLookupIndex index = snapshot;
+        List<BinRange> result = new ArrayList<>();
+
+        for (int i = Math.max(0, index.floorIndex(start)); i < index.size() && index.startAt(i) <= end; i++) {
+            if (index.startAt(i) >= start && index.endAt(i) <= end) {
+                result.add(index.rangeAt(i));
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<BinRange> findOverlapping(Long start, Long end) {
+        BinLookupIndex index = snapshot;
+        List<BinRange> result = new ArrayList<>();
+
+        for (int i = Math.max(0, index.floorIndex(start)); i < index.size() && index.startAt(i) <= end; i++) {
+            if (index.endAt(i) >= start) {
+                result.add(index.rangeAt(i));
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<BinRange> findContaining(Long point) {
+        BinRange range = snapshot.find(point);
+        return range != null ? List.of(range) : Collections.emptyList();
+    }
+
+
+    @Override
+    public Optional<BinRange> findById(Long startBin) {
+        BinLookupIndex index = snapshot;
+        int idx = index.indexOfStart(startBin);
+        return idx >= 0 ? Optional.of(index.rangeAt(idx)) : Optional.empty();
+    }
+
+    @Override
+    public List<BinRange> findAll() {
+        return snapshot.asList();
+    }
+
+    @Override
+    public BinRange save(BinRange entity) throws DomainException {
+        addRange(entity);
+        return entity;
+    }
+
+    @Override
+    public List<BinRange> saveAll(List<BinRange> entities) throws DomainException {
+        Objects.requireNonNull(entities, "Entities cannot be null");
+
+        synchronized (writeLock) {
+            List<BinRange> merged = new ArrayList<>(snapshot.asList());
+            merged.addAll(entities);
+            snapshot = BinLookupIndex.of(merged);
+        }
+
+        return entities;
+    }
+
+    @Override
+    public boolean deleteById(Long startBin) {
+        return removeRange(startBin);
+    }
+
+    @Override
+    public boolean delete(BinRange entity) {
+        synchronized (writeLock) {
+            BinLookupIndex current = snapshot;
+            int idx = current.indexOfStart(entity.getStartBin());
+            if (idx < 0 || !current.rangeAt(idx).equals(entity)) {
+                return false;
+            }
+            snapshot = current.without(entity.getStartBin());
+            return true;
+        }
+    }
+
+    @Override
+    public boolean existsById(Long startBin) {
+        return snapshot.indexOfStart(startBin) >= 0;
+    }
+
+    @Override
+    public long count() {
+        return snapshot.size();
+    }
+
+    @Override
+    public List<BinRange> findWithPagination(int offset, int limit) {
+        List<BinRange> all = snapshot.asList();
+        if (offset >= all.size()) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(all.subList(offset, Math.min(all.size(), offset + limit)));
+    }
+
+    @Override
+    public List<BinRange> findByExample(BinRange example) {
+        List<BinRange> result = new ArrayList<>();
+        for (BinRange range : snapshot.asList()) {
+            if (range.getBankName().equals(example.getBankName()) &&
+                    range.getCardType().equals(example.getCardType()) &&
+                    range.getCountry().equals(example.getCountry())) {
+                result.add(range);
+            }
+        }
+        return result;
+    }
+
+
+    public int getRangeCount() {
+        return snapshot.size();
+    }
+
+    public String getRepositoryStats() {
+        BinLookupIndex index = snapshot;
+        return String.format(
+                "SnapshotBinRepository Stats: ranges=%d, memory=%dKB",
+                index.size(),
+                index.estimateMemoryUsage() / 1024
+        );
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+public final class StringDictionary {
+
+    public static final int NULL_ID = -1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+
+    public int idOf(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (values) {
+            return ids.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+    }
+
+    public int lookup(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        return ids.getOrDefault(value, NULL_ID);
+    }
+
+    public String valueOf(int id) {
+        if (id == NULL_ID) {
+            return null;
+        }
+        synchronized (values) {
+            Objects.checkIndex(id, values.size());
+            return values.get(id);
+        }
+    }
+
+    public int size() {
+        synchronized (values) {
+            return values.size();
+        }
+    }
+
+    String[] snapshot() {
+        synchronized (values) {
+            return values.toArray(new String[0]);
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("StringDictionary{size=%d}", size());
+    }
+}
@@ -0,0 +1,453 @@
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+
+public final class TransactionBatch {
+
+    public static final int NULL_INT = Integer.MIN_VALUE;
+    public static final long NULL_AMOUNT = Long.MIN_VALUE;
+    public static final int AMOUNT_SCALE = 2;
+
+    private static final LocalDate REFERENCE_MONDAY = LocalDate.of(2024, 1, 1);
+    private static final byte DEFAULT_SCALE = AMOUNT_SCALE;
+
+    private final int size;
+    private final StringDictionary dictionary;
+
+    private final long[] amounts;
+    private final byte[] amountScales;
+    private final int[] currencies;
+    private final int[] mccOrdinals;
+    private final int[] countries;
+    private final int[] cities;
+    private final int[] hours;
+    private final int[] days;
+    private final int[] customerAges;
+    private final int[] customerSegments;
+    private final long[] accountBalances;
+    private final byte[] accountBalanceScales;
+    private final long[] monthlySpending;
+    private final byte[] monthlySpendingScales;
+    private final int[] channels;
+    private final int[] transactionTypes;
+
+    private final TransactionContext[] contexts;
+
+    private TransactionBatch(Builder builder) {
+        this.size = builder.size;
+        this.dictionary = builder.dictionary;
+
+        this.amounts = required(builder.amounts, "amounts", size);
+        this.amountScales = builder.amountScales != null ? builder.amountScales : filled(size, DEFAULT_SCALE);
+        this.currencies = required(builder.currencies, "currencies", size);
+        this.mccOrdinals = required(builder.mccOrdinals, "mccOrdinals", size);
+        this.hours = required(builder.hours, "hours", size);
+        this.days = required(builder.days, "days", size);
+        this.transactionTypes = required(builder.transactionTypes, "transactionTypes", size);
+
+        this.countries = optional(builder.countries, "countries", size, StringDictionary.NULL_ID);
+        this.cities = optional(builder.cities, "cities", size, StringDictionary.NULL_ID);
+        this.customerAges = optional(builder.customerAges, "customerAges", size, NULL_INT);
+        this.customerSegments = optional(builder.customerSegments, "customerSegments", size, StringDictionary.NULL_ID);
+        this.channels = optional(builder.channels, "channels", size, StringDictionary.NULL_ID);
+        this.accountBalances = optional(builder.accountBalances, "accountBalances", size);
+        this.accountBalanceScales = builder.accountBalanceScales != null
+                ? builder.accountBalanceScales : filled(size, DEFAULT_SCALE);
+        this.monthlySpending = optional(builder.monthlySpending, "monthlySpending", size);
+        this.monthlySpendingScales = builder.monthlySpendingScales != null
+                ? builder.monthlySpendingScales : filled(size, DEFAULT_SCALE);
+
+        this.contexts = builder.contexts != null ? builder.contexts : new TransactionContext[size];
+
+        validate();
+    }
+
+    private void validate() {
+        int mccCount = TransactionContext.MccCategory.values().length;
+        int typeCount = TransactionContext.TransactionType.values().length;
+        int dictionarySize = dictionary.size();
+
+        for (int i = 0; i < size; i++) {
+            if (amounts[i] <= 0) {
+                throw new IllegalArgumentException("Amount must be positive at row " + i);
+            }
+            if (currencies[i] < 0 || currencies[i] >= dictionarySize) {
+                throw new IllegalArgumentException("Unknown currency id at row " + i + ": " + currencies[i]);
+            }
+            checkCode(countries[i], dictionarySize, "country", i);
+            checkCode(cities[i], dictionarySize, "city", i);
+            checkCode(customerSegments[i], dictionarySize, "customer segment", i);
+            checkCode(channels[i], dictionarySize, "channel", i);
+            if (mccOrdinals[i] < 0 || mccOrdinals[i] >= mccCount) {
+                throw new IllegalArgumentException("Invalid MCC ordinal at row " + i + ": " + mccOrdinals[i]);
+            }
+            if (hours[i] < 0 || hours[i] > 23) {
+                throw new IllegalArgumentException("Invalid hour at row " + i + ": " + hours[i]);
+            }
+            if (days[i] < 0 || days[i] > 6) {
+                throw new IllegalArgumentException("Invalid day ordinal at row " + i + ": " + days[i]);
+            }
+            if (transactionTypes[i] < 0 || transactionTypes[i] >= typeCount) {
+                throw new IllegalArgumentException("Invalid transaction type ordinal at row " + i + ": " +
+                        transactionTypes[i]);
+            }
+        }
+    }
+
+
+    private static void checkCode(int id, int dictionarySize, String column, int row) {
+        if (id < StringDictionary.NULL_ID || id >= dictionarySize) {
+            throw new IllegalArgumentException("Unknown " + column + " id at row " + row + ": " + id);
+        }
+    }
+
+
+    public static TransactionBatch of(List<TransactionContext> contexts) {
+        return of(contexts, new StringDictionary());
+    }
+
+    public static TransactionBatch of(List<TransactionContext> contexts, StringDictionary dictionary) {
+        Objects.requireNonNull(contexts, "Contexts cannot be null");
+        int size = contexts.size();
+
+        long[] amounts = new long[size];
+        byte[] amountScales = new byte[size];
+        int[] currencies = new int[size];
+        int[] mccOrdinals = new int[size];
+        int[] countries = new int[size];
+        int[] cities = new int[size];
+        int[] hours = new int[size];
+        int[] days = new int[size];
+        int[] customerAges = new int[size];
+        int[] customerSegments = new int[size];
+        long[] accountBalances = new long[size];
+        byte[] accountBalanceScales = new byte[size];
+        long[] monthlySpending = new long[size];
+        byte[] monthlySpendingScales = new byte[size];
+        int[] channels = new int[size];
+        int[] transactionTypes = new int[size];
+        TransactionContext[] sources = new TransactionContext[size];
+
+        for (int i = 0; i < size; i++) {
+            TransactionContext context = Objects.requireNonNull(contexts.get(i), "Context cannot be null");
+            sources[i] = context;
+
+            amounts[i] = toMinorUnits(context.getAmount(), i);
+            amountScales[i] = scaleOf(context.getAmount(), i);
+            currencies[i] = dictionary.idOf(context.getCurrency());
+            mccOrdinals[i] = context.getMccCategory().ordinal();
+            countries[i] = dictionary.idOf(context.getMerchantCountry().orElse(null));
+            cities[i] = dictionary.idOf(context.getMerchantCity().orElse(null));
+            hours[i] = context.getHourOfDay();
+            days[i] = context.getDayOfWeek().ordinal();
+            customerAges[i] = context.getCustomerAge().orElse(NULL_INT);
+            customerSegments[i] = dictionary.idOf(context.getCustomerSegment().orElse(null));
+            channels[i] = dictionary.idOf(context.getChannel().orElse(null));
+            transactionTypes[i] = context.getTransactionType().ordinal();
+
+            BigDecimal balance = context.getAccountBalance().orElse(null);
+            accountBalances[i] = balance == null ? NULL_AMOUNT : toMinorUnits(balance, i);
+            accountBalanceScales[i] = balance == null ? DEFAULT_SCALE : scaleOf(balance, i);
+
+            BigDecimal spending = context.getMonthlySpending().orElse(null);
+            monthlySpending[i] = spending == null ? NULL_AMOUNT : toMinorUnits(spending, i);
+            monthlySpendingScales[i] = spending == null ? DEFAULT_SCALE : scaleOf(spending, i);
+        }
+
+        Builder builder = builder(size, dictionary)
+                .amounts(amounts)
+                .currencies(currencies)
+                .mccOrdinals(mccOrdinals)
+                .countries(countries)
+                .cities(cities)
+                .hours(hours)
+                .days(days)
+                .customerAges(customerAges)
+                .customerSegments(customerSegments)
+                .accountBalances(accountBalances)
+                .monthlySpending(monthlySpending)
+                .channels(channels)
+                .transactionTypes(transactionTypes);
+        builder.amountScales = amountScales;
+        builder.accountBalanceScales = accountBalanceScales;
+        builder.monthlySpendingScales = monthlySpendingScales;
+        builder.contexts = sources;
+        return builder.build();
+    }
+
+    private static long toMinorUnits(BigDecimal value, int row) {
+        try {
+            return value.setScale(AMOUNT_SCALE).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount at row " + row + " does not fit " + AMOUNT_SCALE +
+                    "-decimal minor units: " + value, e);
+        }
+    }
+
+    private static byte scaleOf(BigDecimal value, int row) {
+        if (value.scale() < Byte.MIN_VALUE || value.scale() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Amount scale out of range at row " + row + ": " + value);
+        }
+        return (byte) value.scale();
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+    public StringDictionary getDictionary() {
+        return dictionary;
+    }
+
+
+    long[] decimalColumn(RuleCompiler.FieldSlot slot) {
+        switch (slot) {
+            case AMOUNT:
+                return amounts;
+            case ACCOUNT_BALANCE:
+                return accountBalances;
+            case MONTHLY_SPENDING:
+                return monthlySpending;
+            default:
+                throw new IllegalArgumentException("Not a decimal column: " + slot);
+        }
+    }
+
+    byte[] scaleColumn(RuleCompiler.FieldSlot slot) {
+        switch (slot) {
+            case AMOUNT:
+                return amountScales;
+            case ACCOUNT_BALANCE:
+                return accountBalanceScales;
+            case MONTHLY_SPENDING:
+                return monthlySpendingScales;
+            default:
+                throw new IllegalArgumentException("Not a decimal column: " + slot);
+        }
+    }
+
+    int[] intColumn(RuleCompiler.FieldSlot slot) {
+        switch (slot) {
+            case HOUR:
+                return hours;
+            case CUSTOMER_AGE:
+                return customerAges;
+            case CURRENCY:
+                return currencies;
+            case COUNTRY:
+                return countries;
+            case CITY:
+                return cities;
+            case CUSTOMER_SEGMENT:
+                return customerSegments;
+            case CHANNEL:
+                return channels;
+            case MCC:
+                return mccOrdinals;
+            case DAY:
+                return days;
+            case TRANSACTION_TYPE:
+                return transactionTypes;
+            default:
+                throw new IllegalArgumentException("Not an int column: " + slot);
+        }
+    }
+
+
+    TransactionContext contextAt(int row) {
+        TransactionContext context = contexts[row];
+        if (context == null) {
+            context = materialize(row);
+            contexts[row] = context;
+        }
+        return context;
+    }
+
+    private TransactionContext materialize(int row) {
+        return TransactionContext.builder()
+                .transactionId("batch-" + row)
+                .cardNumber("batch")
+                .customerId("batch")
+                .accountId("batch")
+                .amount(fromMinorUnits(amounts[row], amountScales[row]))
+                .currency(dictionary.valueOf(currencies[row]))
+                .mccCategory(TransactionContext.MccCategory.values()[mccOrdinals[row]])
+                .merchantCountry(dictionary.valueOf(countries[row]))
+                .merchantCity(dictionary.valueOf(cities[row]))
+                .transactionDateTime(REFERENCE_MONDAY.plusDays(days[row]).atTime(hours[row], 0))
+                .transactionType(TransactionContext.TransactionType.values()[transactionTypes[row]])
+                .channel(dictionary.valueOf(channels[row]))
+                .customerAge(customerAges[row] == NULL_INT ? null : customerAges[row])
+                .customerSegment(dictionary.valueOf(customerSegments[row]))
+                .accountBalance(accountBalances[row] == NULL_AMOUNT
+                        ? null : fromMinorUnits(accountBalances[row], accountBalanceScales[row]))
+                .monthlySpending(monthlySpending[row] == NULL_AMOUNT
+                        ? null : fromMinorUnits(monthlySpending[row], monthlySpendingScales[row]))
+                .build();
+    }
+
+    private static BigDecimal fromMinorUnits(long minorUnits, byte scale) {
+        return BigDecimal.valueOf(minorUnits, AMOUNT_SCALE).setScale(scale);
+    }
+
+
+    private static int[] required(int[] column, String name, int size) {
+        if (column == null) {
+            throw new IllegalStateException("Column '" + name + "' is required");
+        }
+        return checkLength(column, column.length, name, size);
+    }
+
+    private static long[] required(long[] column, String name, int size) {
+        if (column == null) {
+            throw new IllegalStateException("Column '" + name + "' is required");
+        }
+        return checkLength(column, column.length, name, size);
+    }
+
+    private static int[] optional(int[] column, String name, int size, int nullValue) {
+        if (column == null) {
+            int[] empty = new int[size];
+            Arrays.fill(empty, nullValue);
+            return empty;
+        }
+        return checkLength(column, column.length, name, size);
+    }
+
+    private static long[] optional(long[] column, String name, int size) {
+        if (column == null) {
+            long[] empty = new long[size];
+            Arrays.fill(empty, NULL_AMOUNT);
+            return empty;
+        }
+        return checkLength(column, column.length, name, size);
+    }
+
+    private static <T> T checkLength(T column, int length, String name, int size) {
+        if (length != size) {
+            throw new IllegalArgumentException("Column '" + name + "' has " + length + " rows, expected " + size);
+        }
+        return column;
+    }
+
+    private static byte[] filled(int size, byte value) {
+        byte[] column = new byte[size];
+        Arrays.fill(column, value);
+        return column;
+    }
+
+
+    public static Builder builder(int size, StringDictionary dictionary) {
+        return new Builder(size, dictionary);
+    }
+
+    public static final class Builder {
+        private final int size;
+        private final StringDictionary dictionary;
+
+        private long[] amounts;
+        private byte[] amountScales;
+        private int[] currencies;
+        private int[] mccOrdinals;
+        private int[] countries;
+        private int[] cities;
+        private int[] hours;
+        private int[] days;
+        private int[] customerAges;
+        private int[] customerSegments;
+        private long[] accountBalances;
+        private byte[] accountBalanceScales;
+        private long[] monthlySpending;
+        private byte[] monthlySpendingScales;
+        private int[] channels;
+        private int[] transactionTypes;
+        private TransactionContext[] contexts;
+
+        private Builder(int size, StringDictionary dictionary) {
+            if (size < 0) {
+                throw new IllegalArgumentException("Batch size cannot be negative: " + size);
+            }
+            this.size = size;
+            this.dictionary = Objects.requireNonNull(dictionary, "Dictionary cannot be null");
+        }
+
+        public Builder amounts(long[] minorUnits) {
+            this.amounts = minorUnits;
+            return this;
+        }
+
+        public Builder currencies(int[] ids) {
+            this.currencies = ids;
+            return this;
+        }
+
+        public Builder mccOrdinals(int[] ordinals) {
+            this.mccOrdinals = ordinals;
+            return this;
+        }
+
+        public Builder countries(int[] ids) {
+            this.countries = ids;
+            return this;
+        }
+
+        public Builder cities(int[] ids) {
+            this.cities = ids;
+            return this;
+        }
+
+        public Builder hours(int[] hours) {
+            this.hours = hours;
+            return this;
+        }
+
+        public Builder days(int[] dayOrdinals) {
+            this.days = dayOrdinals;
+            return this;
+        }
+
+        public Builder customerAges(int[] ages) {
+            this.customerAges = ages;
+            return this;
+        }
+
+        public Builder customerSegments(int[] ids) {
+            this.customerSegments = ids;
+            return this;
+        }
+
+        public Builder accountBalances(long[] minorUnits) {
+            this.accountBalances = minorUnits;
+            return this;
+        }
+
+        public Builder monthlySpending(long[] minorUnits) {
+            this.monthlySpending = minorUnits;
+            return this;
+        }
+
+        public Builder channels(int[] ids) {
+            this.channels = ids;
+            return this;
+        }
+
+        public Builder transactionTypes(int[] ordinals) {
+            this.transactionTypes = ordinals;
+            return this;
+        }
+
+        public TransactionBatch build() {
+            return new TransactionBatch(this);
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("TransactionBatch{size=%d, dictionary=%d}", size, dictionary.size());
+    }
+}
@@ -7,6 +7,9 @@ import java.util.Set;
 
 public final class TransactionRisk implements Comparable<TransactionRisk> {
 
+    private static final long HIGH_AMOUNT_MINOR_UNITS = 1_000_000L;
+    private static final long LOW_AMOUNT_MINOR_UNITS = 10_000L;
+
     private final String transactionId;
     private final String cardNumber;
     private final BigDecimal amount;
@@ -65,26 +68,48 @@ public final class TransactionRisk implements Comparable<TransactionRisk> {
     }
 
     public enum RiskFactor {
-        VELOCITY_ANOMALY("Çok hızlı ardışık işlemler"),
-        LOCATION_JUMP("Coğrafi konum atlaması"),
-        AMOUNT_ANOMALY("Alışılmadık tutar"),
-        TIME_ANOMALY("Alışılmadık saat"),
-        MERCHANT_RISK("Riskli iş yeri"),
-        DUPLICATE_TRANSACTION("Tekrarlanan işlem"),
-        INTERNATIONAL("Uluslararası işlem"),
-        HIGH_FREQUENCY("Yüksek frekans"),
-        WEEKEND_ACTIVITY("Hafta sonu aktivitesi"),
-        NIGHT_ACTIVITY("Gece aktivitesi");
+        VELOCITY_ANOMALY("Çok hızlı ardışık işlemler", 25),
+        LOCATION_JUMP("Coğrafi konum atlaması", 35),
+        AMOUNT_ANOMALY("Alışılmadık tutar", 20),
+        TIME_ANOMALY("Alışılmadık saat", 15),
+        MERCHANT_RISK("Riskli iş yeri", 25),
+        DUPLICATE_TRANSACTION("Tekrarlanan işlem", 30),
+        INTERNATIONAL("Uluslararası işlem", 10),
+        HIGH_FREQUENCY("Yüksek frekans", 20),
+        WEEKEND_ACTIVITY("Hafta sonu aktivitesi", 5),
+        NIGHT_ACTIVITY("Gece aktivitesi", 10);
+
+        private static final RiskFactor[] VALUES = values();
 
         private final String description;
+        private final int weight;
 
-        RiskFactor(String description) {
+        RiskFactor(String description, int weight) {
             this.description = description;
+            this.weight = weight;
         }
 
         public String getDescription() {
             return description;
         }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public int mask() {
+            return 1 << ordinal();
+        }
+
+        public static EnumSet<RiskFactor> fromMask(int mask) {
+            EnumSet<RiskFactor> factors = EnumSet.noneOf(RiskFactor.class);
+            for (RiskFactor factor : VALUES) {
+                if ((mask & factor.mask()) != 0) {
+                    factors.add(factor);
+                }
+            }
+            return factors;
+        }
     }
 
     public TransactionRisk(String transactionId, String cardNumber, BigDecimal amount,
@@ -216,22 +241,30 @@ public final class TransactionRisk implements Comparable<TransactionRisk> {
     }
 
 
+    public static int calculateRiskScore(int factorMask, long amountMinorUnits) {
+        int baseScore = 10;
+
+        for (RiskFactor factor : RiskFactor.VALUES) {
+            if ((factorMask & factor.mask()) != 0) {
+                baseScore += factor.getWeight();
+            }
+        }
+
+
+        if (amountMinorUnits > HIGH_AMOUNT_MINOR_UNITS) {
+            baseScore += 15;
+        } else if (amountMinorUnits < LOW_AMOUNT_MINOR_UNITS) {
+            baseScore -= 5;
+        }
+
+        return Math.max(0, Math.min(100, baseScore));
+    }
+
     private static int calculateRiskScore(EnumSet<RiskFactor> factors, BigDecimal amount) {
         int baseScore = 10;
 
         for (RiskFactor factor : factors) {
-            baseScore += switch (factor) {
-                case VELOCITY_ANOMALY -> 25;
-                case LOCATION_JUMP -> 35;
-                case AMOUNT_ANOMALY -> 20;
-                case DUPLICATE_TRANSACTION -> 30;
-                case TIME_ANOMALY -> 15;
-                case MERCHANT_RISK -> 25;
-                case INTERNATIONAL -> 10;
-                case HIGH_FREQUENCY -> 20;
-                case WEEKEND_ACTIVITY -> 5;
-                case NIGHT_ACTIVITY -> 10;
-            };
+            baseScore += factor.getWeight();
         }
 
 
@@ -6,10 +6,24 @@ public final class ValidationError implements Serializable {
 
     private static final long serialVersionUID = 1L;
     private final BinRange range;
+    private final int lineNumber;
     private final String errorMessage;
 
     public ValidationError(BinRange range, String errorMessage) {
         this.range = Objects.requireNonNull(range);
+        this.lineNumber = -1;
+        this.errorMessage = Objects.requireNonNull(errorMessage);
+    }
+
+    public ValidationError(int lineNumber, String errorMessage) {
+        this.range = null;
+        this.lineNumber = lineNumber;
+        this.errorMessage = Objects.requireNonNull(errorMessage);
+    }
+
+    public ValidationError(BinRange range, int lineNumber, String errorMessage) {
+        this.range = Objects.requireNonNull(range);
+        this.lineNumber = lineNumber;
         this.errorMessage = Objects.requireNonNull(errorMessage);
     }
 
@@ -21,8 +35,22 @@ public final class ValidationError implements Serializable {
         return errorMessage;
     }
 
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public boolean hasRange() {
+        return range != null;
+    }
+
     @Override
     public String toString() {
+        if (range == null) {
+            return String.format("ValidationError: line %d - %s", lineNumber, errorMessage);
+        }
+        if (lineNumber >= 0) {
+            return String.format("ValidationError: line %d %s - %s", lineNumber, range, errorMessage);
+        }
         return String.format("ValidationError: %s - %s", range, errorMessage);
     }
 }
\ No newline at end of file